@@ -0,0 +1,78 @@
+package com.ticketapp.bean;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * The {@link AllocationStrategy} constants
+ */
+final class AllocationStrategies {
+
+	private AllocationStrategies() {
+	}
+
+	static List<Seat> bestAvailable(Event event, int firstLevel, int lastLevel, int count) {
+		return fill(event, IntStream.rangeClosed(firstLevel, lastLevel).boxed().collect(Collectors.toList()), count);
+	}
+
+	static List<Seat> bestSingleLevel(Event event, int firstLevel, int lastLevel, int count) {
+		List<Seat> seats = singleLevel(event, firstLevel, lastLevel, count);
+		return seats != null ? seats : bestAvailable(event, firstLevel, lastLevel, count);
+	}
+
+	static List<Seat> cheapest(Event event, int firstLevel, int lastLevel, int count) {
+		List<SeatLevel> levels = event.getLevels();
+		// stable, so better levels come first at the same price
+		return fill(event, IntStream.rangeClosed(firstLevel, lastLevel).boxed()
+				.sorted(Comparator.comparingLong(i -> levels.get(i).getPriceCents())).collect(Collectors.toList()),
+				count);
+	}
+
+	static List<Seat> contiguousFirst(Event event, int firstLevel, int lastLevel, int count) {
+		for (int i = firstLevel; i <= lastLevel; i++) {
+			List<Seat> seats = event.getAdjacentAvailableSeats(i, count);
+			if (!seats.isEmpty()) {
+				return seats;
+			}
+		}
+		return bestSingleLevel(event, firstLevel, lastLevel, count);
+	}
+
+	static List<Seat> fewestLevels(Event event, int firstLevel, int lastLevel, int count) {
+		List<Seat> seats = singleLevel(event, firstLevel, lastLevel, count);
+		if (seats != null) {
+			return seats;
+		}
+		// the fewest levels which add up to the group are the largest ones
+		return fill(event, IntStream.rangeClosed(firstLevel, lastLevel).boxed()
+				.sorted(Comparator.comparingInt((Integer i) -> event.getAvailableSeatCount(i)).reversed())
+				.collect(Collectors.toList()), count);
+	}
+
+	/**
+	 * @return the best seats of the best level with enough available, null if
+	 *         there is none
+	 */
+	private static List<Seat> singleLevel(Event event, int firstLevel, int lastLevel, int count) {
+		for (int i = firstLevel; i <= lastLevel; i++) {
+			if (event.getAvailableSeatCount(i) >= count) {
+				return event.getBestAvailableSeats(i, count);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Takes the best seats of each level in turn until there are enough
+	 */
+	private static List<Seat> fill(Event event, List<Integer> levelOrder, int count) {
+		List<Seat> seats = new ArrayList<>(count);
+		for (int i = 0; i < levelOrder.size() && seats.size() < count; i++) {
+			seats.addAll(event.getBestAvailableSeats(levelOrder.get(i), count - seats.size()));
+		}
+		return seats;
+	}
+}
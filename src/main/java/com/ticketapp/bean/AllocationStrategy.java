@@ -0,0 +1,63 @@
+package com.ticketapp.bean;
+
+import java.util.List;
+
+/**
+ * Picks the seats of a hold among the levels a customer accepts. An
+ * {@link Event} keeps one, {@link #BEST_AVAILABLE} unless it was created with
+ * another.
+ * <p>
+ * The strategies here decide from the per level available counts, list
+ * prices and per row free run lengths of the event, which cost O(levels) or
+ * O(rows of a level) to read, and then only look at the seats they pick, so
+ * no strategy scans the venue.
+ */
+@FunctionalInterface
+public interface AllocationStrategy {
+
+	/**
+	 * Best seats first, in level order: a group spills into the next level
+	 * when the best level runs out
+	 */
+	AllocationStrategy BEST_AVAILABLE = AllocationStrategies::bestAvailable;
+
+	/**
+	 * The best level which can seat the whole group, spilling over levels as
+	 * {@link #BEST_AVAILABLE} only if none can
+	 */
+	AllocationStrategy BEST_SINGLE_LEVEL = AllocationStrategies::bestSingleLevel;
+
+	/**
+	 * Lowest list price first, level by level. Ignores dynamic prices, which
+	 * only apply once seats are held.
+	 */
+	AllocationStrategy CHEAPEST = AllocationStrategies::cheapest;
+
+	/**
+	 * Side by side in one row, best level and front row first, otherwise as
+	 * {@link #BEST_SINGLE_LEVEL}
+	 */
+	AllocationStrategy CONTIGUOUS_FIRST = AllocationStrategies::contiguousFirst;
+
+	/**
+	 * As few levels as possible: the best level which can seat the whole
+	 * group, otherwise the levels with the most available seats first
+	 */
+	AllocationStrategy FEWEST_LEVELS = AllocationStrategies::fewestLevels;
+
+	/**
+	 * @param event
+	 *            state to pick from
+	 * @param firstLevel
+	 *            position in {@link VenueLayout#getLevels()} of the best level
+	 *            accepted
+	 * @param lastLevel
+	 *            position of the worst level accepted, at least
+	 *            <code>firstLevel</code>
+	 * @param count
+	 *            seats wanted, at least 1
+	 * @return available seats, <code>count</code> of them unless the levels
+	 *         accepted have fewer
+	 */
+	List<Seat> allocate(Event event, int firstLevel, int lastLevel, int count);
+}
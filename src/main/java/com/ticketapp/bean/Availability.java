@@ -0,0 +1,109 @@
+package com.ticketapp.bean;
+
+import java.util.Collections;
+import java.util.List;
+
+import com.ticketapp.util.Money;
+
+/**
+ * Seats left and current prices of an event, level by level, as of one
+ * {@link Event} state. Object is immutable.
+ */
+public final class Availability {
+
+	private final int eventId;
+	private final long time;
+	private final List<LevelAvailability> levels;
+
+	public Availability(int eventId, long time, List<LevelAvailability> levels) {
+		this.eventId = eventId;
+		this.time = time;
+		this.levels = Collections.unmodifiableList(levels);
+	}
+
+	public int getEventId() {
+		return eventId;
+	}
+
+	/**
+	 * @return when the prices were computed, epoch millis
+	 */
+	public long getTime() {
+		return time;
+	}
+
+	/**
+	 * @return levels from best to worst
+	 */
+	public List<LevelAvailability> getLevels() {
+		return levels;
+	}
+
+	/**
+	 * @return the level or null if the event has no such level
+	 */
+	public LevelAvailability getLevel(int levelId) {
+		for (LevelAvailability level : levels) {
+			if (level.getLevelId() == levelId) {
+				return level;
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public String toString() {
+		return new StringBuilder("Availability[eventId: ").append(eventId).append(", levels: ").append(levels)
+				.append("]").toString();
+	}
+
+	public static final class LevelAvailability {
+		private final int levelId;
+		private final int totalSeats;
+		private final int availableSeats;
+		private final long basePriceCents;
+		private final long priceCents;
+
+		public LevelAvailability(int levelId, int totalSeats, int availableSeats, long basePriceCents,
+				long priceCents) {
+			this.levelId = levelId;
+			this.totalSeats = totalSeats;
+			this.availableSeats = availableSeats;
+			this.basePriceCents = basePriceCents;
+			this.priceCents = priceCents;
+		}
+
+		public int getLevelId() {
+			return levelId;
+		}
+
+		public int getTotalSeats() {
+			return totalSeats;
+		}
+
+		public int getAvailableSeats() {
+			return availableSeats;
+		}
+
+		/**
+		 * @return price of the {@link SeatLevel} in cents
+		 */
+		public long getBasePriceCents() {
+			return basePriceCents;
+		}
+
+		/**
+		 * @return price of a seat right now in cents
+		 */
+		public long getPriceCents() {
+			return priceCents;
+		}
+
+		@Override
+		public String toString() {
+			return new StringBuilder("LevelAvailability[levelId: ").append(levelId).append(", available: ")
+					.append(availableSeats).append("/").append(totalSeats).append(", price: ").append(Money.format(priceCents))
+					.append("]").toString();
+		}
+	}
+}
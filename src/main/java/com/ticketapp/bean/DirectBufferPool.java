@@ -0,0 +1,123 @@
+package com.ticketapp.bean;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Direct buffers of {@link SeatStorage#DIRECT}, so that an event update does
+ * not make a native allocation.
+ * <p>
+ * Buffers are cut from chunks of {@link #BUFFERS_PER_CHUNK} buffers of the
+ * same size. An event version may be read for as long as anybody keeps it, so
+ * a buffer is only reused once the view handed out is collected: each view
+ * is tracked by a phantom reference, which brings the buffer back to the pool
+ * when it is enqueued. Up to {@link #MAX_POOLED} free buffers of a size are
+ * kept, further ones are left to the collector with their chunk.
+ */
+final class DirectBufferPool {
+
+	static final int BUFFERS_PER_CHUNK = 16;
+	static final int MAX_POOLED = 256;
+
+	private final ConcurrentMap<Integer, Sizes> sizes = new ConcurrentHashMap<>();
+	private final ReferenceQueue<Object> collected = new ReferenceQueue<>();
+	/** keeps the references of live views reachable */
+	private final Set<Recycler> owned = ConcurrentHashMap.newKeySet();
+	private final AtomicLong chunks = new AtomicLong();
+
+	/**
+	 * @return a buffer of <code>words</code> longs, of any content, which
+	 *         comes back to the pool once it is collected
+	 */
+	LongBuffer take(int words) {
+		recycle();
+		Sizes pool = sizes.computeIfAbsent(words, Sizes::new);
+		ByteBuffer buffer = pool.free.poll();
+		if (buffer == null) {
+			buffer = pool.cutChunk();
+		} else {
+			pool.count.decrementAndGet();
+		}
+		LongBuffer view = buffer.asLongBuffer();
+		owned.add(new Recycler(view, buffer, collected));
+		return view;
+	}
+
+	/**
+	 * @return native allocations made so far
+	 */
+	long getChunks() {
+		return chunks.get();
+	}
+
+	/**
+	 * Brings back the buffers of the views collected so far
+	 */
+	void recycle() {
+		Reference<?> ref;
+		while ((ref = collected.poll()) != null) {
+			Recycler recycler = (Recycler) ref;
+			owned.remove(recycler);
+			Sizes pool = sizes.get(recycler.buffer.capacity() / Long.BYTES);
+			if (pool.count.incrementAndGet() <= MAX_POOLED) {
+				pool.free.add(recycler.buffer);
+			} else {
+				pool.count.decrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * Free buffers of one size
+	 */
+	private final class Sizes {
+		private final int words;
+		private final Queue<ByteBuffer> free = new ConcurrentLinkedQueue<>();
+		private final AtomicInteger count = new AtomicInteger();
+
+		Sizes(int words) {
+			this.words = words;
+		}
+
+		/**
+		 * @return the first buffer of a new chunk, the others go to the pool
+		 */
+		ByteBuffer cutChunk() {
+			int bytes = words * Long.BYTES;
+			ByteBuffer chunk = ByteBuffer.allocateDirect(bytes * BUFFERS_PER_CHUNK);
+			chunks.incrementAndGet();
+			ByteBuffer first = null;
+			for (int i = 0; i < BUFFERS_PER_CHUNK; i++) {
+				chunk.limit((i + 1) * bytes).position(i * bytes);
+				ByteBuffer buffer = chunk.slice().order(ByteOrder.nativeOrder());
+				if (first == null) {
+					first = buffer;
+				} else {
+					free.add(buffer);
+					count.incrementAndGet();
+				}
+			}
+			return first;
+		}
+	}
+
+	private static final class Recycler extends PhantomReference<Object> {
+		private final ByteBuffer buffer;
+
+		Recycler(Object view, ByteBuffer buffer, ReferenceQueue<Object> queue) {
+			super(view, queue);
+			this.buffer = buffer;
+		}
+	}
+}
@@ -1,39 +1,78 @@
 package com.ticketapp.bean;
 
 import java.time.ZonedDateTime;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Optional;
 import java.util.Set;
-import java.util.TreeSet;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
-import java.util.function.Predicate;
+import java.util.stream.IntStream;
 
 import com.ticketapp.bean.Seat.SeatState;
+import com.ticketapp.bean.SeatStorage.SeatStates;
 
 /**
- * Contains event state data. Object is immutable.
+ * Contains event state data. Object is immutable, only a {@link Draft} updates
+ * its own unpublished copy.
+ * <p>
+ * Seats are not materialized. The seat layout is a {@link VenueLayout} shared
+ * with other events of the same venue, and the event only keeps the state of
+ * each seat, 2 bits per seat number packed into a <code>long[]</code>. A
+ * zeroed array means every seat is {@link SeatState#AVAILABLE}, so creating an
+ * event costs one small array whatever the layout. Updates copy the state
+ * array and a per level count of unavailable seats. The words can also live
+ * off the heap, see {@link SeatStorage}. A per row length of the longest run
+ * of available seats is kept up to date for the rows an update touches, so
+ * that an {@link AllocationStrategy} can find adjacent seats without looking
+ * at full rows.
  * TODO: use Builder pattern instead of multiple ugly constructors
  * @author peter
  */
 public class Event implements Comparable<Event> {
 
+	static final int STATE_BITS = 2;
+	static final int STATE_MASK = (1 << STATE_BITS) - 1;
+	static final int SEATS_PER_WORD = Long.SIZE / STATE_BITS;
+	private static final SeatState[] STATES = SeatState.values();
+
 	private final int id;
 	private final String name;
 	private final ZonedDateTime startDateTime;
 	private final long duration;
-	private final ConcurrentMap<SeatIdentifier, Seat> seats;
-	private final int bestLevel;
-	private final int worstLevel;
+	private final VenueLayout layout;
 	/**
-	 * Ordered set which returns the current best available seats
+	 * {@link SeatState} ordinal of every seat number, see
+	 * {@link VenueLayout#seatIndex(SeatIdentifier)}
 	 */
-	private final Set<Seat> bestSeats;
+	private final SeatStates seatStates;
+	/**
+	 * Number of seats not available per level, in the order of the layout
+	 * levels
+	 */
+	private final int[] unavailableCounts;
+	/**
+	 * Number of seats booked per level, in the order of the layout levels
+	 */
+	private final int[] bookedCounts;
+	/**
+	 * Longest run of adjacent available seats of each row, see
+	 * {@link VenueLayout#rowIndexOf(int)}
+	 */
+	private final int[] freeRuns;
+	/**
+	 * Picks the seats of a hold
+	 */
+	private final AllocationStrategy allocationStrategy;
+	private final int bestLevel;
+	private final int worstLevel;
 	/**
 	 * Says when the object was created. Useful to determine validity of object
 	 */
@@ -46,78 +85,187 @@ public class Event implements Comparable<Event> {
 
 	public Event(int id, String name, ZonedDateTime startDT, long duration, List<SeatLevel> levels,
 			long expirationSeconds) {
+		this(id, name, startDT, duration, new VenueLayout(levels), expirationSeconds);
+	}
+
+	/**
+	 * Creates an event in a shared venue layout
+	 */
+	public Event(int id, String name, ZonedDateTime startDT, long duration, VenueLayout layout,
+			long expirationSeconds) {
+		this(id, name, startDT, duration, layout, expirationSeconds, SeatStorage.HEAP);
+	}
+
+	/**
+	 * Creates an event keeping its seat states in the given storage. Updated
+	 * events keep the storage of the event they update.
+	 */
+	public Event(int id, String name, ZonedDateTime startDT, long duration, VenueLayout layout,
+			long expirationSeconds, SeatStorage seatStorage) {
+		this(id, name, startDT, duration, layout, expirationSeconds, seatStorage, AllocationStrategy.BEST_AVAILABLE);
+	}
+
+	/**
+	 * Creates an event which picks the seats of its holds with the given
+	 * strategy. Updated events keep the strategy of the event they update.
+	 */
+	public Event(int id, String name, ZonedDateTime startDT, long duration, VenueLayout layout,
+			long expirationSeconds, SeatStorage seatStorage, AllocationStrategy allocationStrategy) {
 		this.id = id;
 		this.name = name;
 		this.startDateTime = startDT;
 		this.duration = duration;
 		this.holdExpirationSeconds = expirationSeconds;
-		this.seats = new ConcurrentHashMap<>();
-		this.bestSeats = new TreeSet<>();
-		for (SeatLevel level : levels) {
-			for (int rowId = 1; rowId <= level.getRows(); rowId++) {
-				for (int seatId = 1; seatId <= level.getSeats(); seatId++) {
-					SeatIdentifier sid = new SeatIdentifier(level.getId(), rowId, seatId);
-					Seat seat = new Seat(sid);
-					Seat oldSeat = seats.putIfAbsent(sid, seat);
-					assert oldSeat == null; // testing code
-					bestSeats.add(seat);
-				}
-			}
+		this.layout = layout;
+		this.seatStates = seatStorage.allocate((layout.size() + SEATS_PER_WORD - 1) / SEATS_PER_WORD);
+		this.unavailableCounts = new int[layout.getLevels().size()];
+		this.bookedCounts = new int[layout.getLevels().size()];
+		this.freeRuns = new int[layout.getRowCount()];
+		for (int i = 0; i < layout.getLevels().size(); i++) {
+			Arrays.fill(freeRuns, layout.levelRowStart(i), layout.levelRowStart(i + 1),
+					layout.getLevels().get(i).getSeats());
 		}
-		this.bestLevel = levels.get(0).getId();
-		this.worstLevel = levels.get(levels.size() - 1).getId();
+		this.allocationStrategy = allocationStrategy;
+		this.bestLevel = layout.getLevels().get(0).getId();
+		this.worstLevel = layout.getLevels().get(layout.getLevels().size() - 1).getId();
 		this.createdTime = System.currentTimeMillis();
 	}
 
 	public Event(Event oldEvent, Map<SeatState, List<Seat>> seatStateUpdates) {
+		this(oldEvent);
 		// validate that information is current (i.e we are trying to update
 		// from the correct state to the correct state)
-		this.seats = new ConcurrentHashMap<>();
-		this.bestSeats = new TreeSet<>();
+		apply(oldEvent.seatStates, seatStateUpdates);
+	}
+
+	/**
+	 * Copy of the event state, to be updated before it is published
+	 */
+	private Event(Event oldEvent) {
 		this.id = oldEvent.id;
 		this.name = oldEvent.getName();
 		this.startDateTime = oldEvent.startDateTime;
 		this.duration = oldEvent.duration;
 		this.holdExpirationSeconds = oldEvent.holdExpirationSeconds;
+		this.layout = oldEvent.layout;
+		this.bestLevel = oldEvent.bestLevel;
+		this.worstLevel = oldEvent.worstLevel;
+		this.seatStates = oldEvent.seatStates.copy();
+		this.unavailableCounts = oldEvent.unavailableCounts.clone();
+		this.bookedCounts = oldEvent.bookedCounts.clone();
+		this.freeRuns = oldEvent.freeRuns.clone();
+		this.allocationStrategy = oldEvent.allocationStrategy;
+		this.createdTime = System.currentTimeMillis();
+	}
 
-		int tmpBestLevel = Integer.MAX_VALUE;
-		int tmpWorstLevel = Integer.MIN_VALUE;
+	/**
+	 * Updates the seat states in place
+	 *
+	 * @param oldStates
+	 *            states the updated seats must have had, this event's own
+	 *            when the updates are steps of a {@link Draft}
+	 */
+	private void apply(SeatStates oldStates, Map<SeatState, List<Seat>> seatStateUpdates) {
+		BitSet touchedRows = new BitSet();
 		for (Entry<SeatState, List<Seat>> entry : seatStateUpdates.entrySet()) {
 			SeatState newState = entry.getKey();
 			for (Seat updateSeat : entry.getValue()) {
-				Seat oldSeat = oldEvent.getSeats().get(updateSeat.getId());
-				if (oldSeat.getState() != updateSeat.getState()) {
-					throw new IllegalArgumentException(String.format("State update to {} failed: {} is not in state {}",
-							newState, updateSeat, oldSeat.getState()));
-				} else {
-					Seat newSeat = new Seat(updateSeat.getId(), newState);
-					Seat prevSeat = this.seats.putIfAbsent(updateSeat.getId(), newSeat);
-					assert prevSeat == null;
-					if (newState == SeatState.AVAILABLE) {
-						this.bestSeats.add(newSeat);
-					}
+				SeatIdentifier seatId = updateSeat.getId();
+				int seatIndex = layout.seatIndex(seatId);
+				if (seatIndex < 0) {
+					throw new IllegalArgumentException(String.format("%s is not a seat of eventId %d", seatId, id));
+				}
+				SeatState oldState = state(oldStates, seatIndex);
+				// a seat updated twice no longer has its old state here
+				if (oldState != updateSeat.getState() || state(seatStates, seatIndex) != oldState) {
+					throw new IllegalArgumentException(String.format("State update to %s failed: %s is not in state %s",
+							newState, seatId, oldState));
+				}
+				int levelIndex = layout.levelIndexOf(seatIndex);
+				if (oldState == SeatState.AVAILABLE) {
+					unavailableCounts[levelIndex]++;
+				}
+				if (newState == SeatState.AVAILABLE) {
+					unavailableCounts[levelIndex]--;
+				}
+				if (oldState == SeatState.BOOKED) {
+					bookedCounts[levelIndex]--;
 				}
+				if (newState == SeatState.BOOKED) {
+					bookedCounts[levelIndex]++;
+				}
+				setState(seatStates, seatIndex, newState);
+				touchedRows.set(layout.rowIndexOf(seatIndex));
 			}
 		}
+		for (int row = touchedRows.nextSetBit(0); row >= 0; row = touchedRows.nextSetBit(row + 1)) {
+			freeRuns[row] = longestFreeRun(row);
+		}
+	}
 
-		for (Entry<SeatIdentifier, Seat> oldSeatEntry : oldEvent.seats.entrySet()) {
-			SeatIdentifier seatId = oldSeatEntry.getKey();
-			Seat oldSeat = oldSeatEntry.getValue();
-			Seat newSeat = this.seats.putIfAbsent(seatId, oldSeat);
-			// if newSeat != null, it was already added, so, don't overwrite it
-			if (newSeat == null && oldSeat.getState() == SeatState.AVAILABLE) {
-				this.bestSeats.add(oldSeat);
-			}
-			if (seatId.getLevel() < tmpBestLevel) {
-				tmpBestLevel = seatId.getLevel();
-			}
-			if (tmpWorstLevel < seatId.getLevel()) {
-				tmpWorstLevel = seatId.getLevel();
+	/**
+	 * Next state of an event decided in several steps, each seeing the ones
+	 * before, e.g. the holds of waiting customers served from the seats of one
+	 * commit. The event is copied once, and every step updates the copy in
+	 * place, so it must not be shared until {@link #done()}.
+	 */
+	public static final class Draft {
+		private final Event event;
+		private boolean done;
+
+		public Draft(Event oldEvent) {
+			this.event = new Event(oldEvent);
+		}
+
+		/**
+		 * @return the state so far, only to be read until done
+		 */
+		public Event getEvent() {
+			return event;
+		}
+
+		/**
+		 * Same as {@link Event#Event(Event, Map)} on the state so far
+		 */
+		public void update(Map<SeatState, List<Seat>> seatStateUpdates) {
+			if (done) {
+				throw new IllegalStateException("Draft of eventId " + event.id + " is done");
 			}
+			event.apply(event.seatStates, seatStateUpdates);
+		}
+
+		/**
+		 * @return the event, which is no longer updated and may be published
+		 */
+		public Event done() {
+			done = true;
+			return event;
+		}
+	}
+
+	/**
+	 * O(seats of the row)
+	 */
+	private int longestFreeRun(int row) {
+		int seats = layout.getLevels().get(layout.levelIndexOfRow(row)).getSeats();
+		int rowStart = layout.rowStart(row);
+		int longest = 0, run = 0;
+		for (int seatIndex = rowStart; seatIndex < rowStart + seats; seatIndex++) {
+			run = state(seatStates, seatIndex) == SeatState.AVAILABLE ? run + 1 : 0;
+			longest = Math.max(longest, run);
 		}
-		this.bestLevel = tmpBestLevel;
-		this.worstLevel = tmpWorstLevel;
-		createdTime = System.currentTimeMillis();
+		return longest;
+	}
+
+	private static SeatState state(SeatStates states, int seatIndex) {
+		return STATES[(int) (states.word(seatIndex / SEATS_PER_WORD) >>> ((seatIndex % SEATS_PER_WORD) * STATE_BITS))
+				& STATE_MASK];
+	}
+
+	private static void setState(SeatStates states, int seatIndex, SeatState state) {
+		int shift = (seatIndex % SEATS_PER_WORD) * STATE_BITS;
+		int word = seatIndex / SEATS_PER_WORD;
+		states.setWord(word, (states.word(word) & ~((long) STATE_MASK << shift)) | ((long) state.ordinal() << shift));
 	}
 
 	public int getId() {
@@ -140,8 +288,73 @@ public class Event implements Comparable<Event> {
 		return holdExpirationSeconds;
 	}
 
+	/**
+	 * All seats of the event. The map is a view which creates the seats as
+	 * they are read, so iterating it is O(seats). Prefer
+	 * {@link #getSeat(SeatIdentifier)} or {@link #getChangedSeats()}.
+	 */
 	public Map<SeatIdentifier, Seat> getSeats() {
-		return Collections.unmodifiableMap(seats);
+		return new SeatMap();
+	}
+
+	/**
+	 * @return seats which are on hold or booked, in seat number order
+	 */
+	public Map<SeatIdentifier, Seat> getChangedSeats() {
+		Map<SeatIdentifier, Seat> changedSeats = new LinkedHashMap<>();
+		for (int word = 0; word < seatStates.words(); word++) {
+			if (seatStates.word(word) == 0) {
+				continue;
+			}
+			int end = Math.min((word + 1) * SEATS_PER_WORD, layout.size());
+			for (int seatIndex = word * SEATS_PER_WORD; seatIndex < end; seatIndex++) {
+				SeatState state = state(seatStates, seatIndex);
+				if (state != SeatState.AVAILABLE) {
+					SeatIdentifier seatId = layout.seatId(seatIndex);
+					changedSeats.put(seatId, new Seat(seatId, state));
+				}
+			}
+		}
+		return Collections.unmodifiableMap(changedSeats);
+	}
+
+	/**
+	 * @return the seat in its current state or null if the event has no such
+	 *         seat
+	 */
+	public Seat getSeat(SeatIdentifier seatId) {
+		int seatIndex = layout.seatIndex(seatId);
+		return seatIndex < 0 ? null : new Seat(seatId, state(seatStates, seatIndex));
+	}
+
+	/**
+	 * @return state of a seat by its seat number, see
+	 *         {@link VenueLayout#seatIndex(SeatIdentifier)}. Allocates nothing.
+	 */
+	public SeatState getSeatState(int seatIndex) {
+		if (seatIndex < 0 || seatIndex >= layout.size()) {
+			throw new IndexOutOfBoundsException("Seat number " + seatIndex + " of eventId " + id);
+		}
+		return state(seatStates, seatIndex);
+	}
+
+	public SeatStorage getSeatStorage() {
+		return seatStates.storage();
+	}
+
+	/**
+	 * Packed seat states, read only, see {@link SeatMapCodec}
+	 */
+	SeatStates getSeatStates() {
+		return seatStates;
+	}
+
+	public VenueLayout getLayout() {
+		return layout;
+	}
+
+	public List<SeatLevel> getLevels() {
+		return layout.getLevels();
 	}
 
 	public long getCreatedTime() {
@@ -149,26 +362,84 @@ public class Event implements Comparable<Event> {
 	}
 
 	public int getAvailableSeatCount(Optional<Integer> levelId) {
-		return getSeatCount(levelId, seat -> seat.getState() == SeatState.AVAILABLE);
+		if (levelId.isPresent()) {
+			int levelIndex = layout.levelIndex(levelId.get());
+			return levelIndex < 0 ? 0 : layout.getLevelSeatCount(levelIndex) - unavailableCounts[levelIndex];
+		}
+		int available = layout.size();
+		for (int unavailable : unavailableCounts) {
+			available -= unavailable;
+		}
+		return available;
 	}
 
-	public int getTotalSeatCount(Optional<Integer> levelId) {
-		return getSeatCount(levelId, seat -> true);
+	public int getBookedSeatCount(Optional<Integer> levelId) {
+		if (levelId.isPresent()) {
+			int levelIndex = layout.levelIndex(levelId.get());
+			return levelIndex < 0 ? 0 : bookedCounts[levelIndex];
+		}
+		int booked = 0;
+		for (int count : bookedCounts) {
+			booked += count;
+		}
+		return booked;
 	}
 
-	private Integer getSeatCount(Optional<Integer> levelId, Predicate<Seat> predicate) {
-		// get seats based on valid level id or for all levels
+	/**
+	 * @return seats booked of a level by its index in the layout, see
+	 *         {@link VenueLayout#levelIndex(int)}
+	 */
+	public int getBookedSeatCount(int levelIndex) {
+		return bookedCounts[levelIndex];
+	}
+
+	/**
+	 * @return seats available of a level by its index in the layout
+	 */
+	public int getAvailableSeatCount(int levelIndex) {
+		return layout.getLevelSeatCount(levelIndex) - unavailableCounts[levelIndex];
+	}
+
+	/**
+	 * @return seats on hold or booked of a level by its index in the layout
+	 */
+	public int getUnavailableSeatCount(int levelIndex) {
+		return unavailableCounts[levelIndex];
+	}
 
-		return levelId
-				.map(level -> seats.entrySet().parallelStream()
-						.filter(seatEntry -> seatEntry.getKey().getLevel() == level
-								&& predicate.test(seatEntry.getValue()))
-						.mapToInt(e -> 1).sum())
-				.orElse(seats.entrySet().parallelStream().filter(seatEntry -> predicate.test(seatEntry.getValue()))
-						.mapToInt(e -> 1).sum());
+	/**
+	 * @return longest run of available seats of a row, rows numbered as in
+	 *         {@link VenueLayout#rowStart(int)}. Kept up to date by every
+	 *         update, so this is O(1).
+	 */
+	public int getLongestFreeRun(int row) {
+		return freeRuns[row];
+	}
+
+	public int getTotalSeatCount(Optional<Integer> levelId) {
+		if (levelId.isPresent()) {
+			int levelIndex = layout.levelIndex(levelId.get());
+			return levelIndex < 0 ? 0 : layout.getLevelSeatCount(levelIndex);
+		}
+		return layout.size();
 	}
 
+	/**
+	 * Seats for a hold of <code>count</code> seats between two levels, picked
+	 * by the allocation strategy of the event
+	 *
+	 * @return fewer seats only if the levels have fewer available
+	 */
 	public List<Seat> getBestAvailableSeats(Optional<Integer> minLevel, Optional<Integer> maxLevel, int count) {
+		return getBestAvailableSeats(minLevel, maxLevel, count, allocationStrategy);
+	}
+
+	/**
+	 * Same as {@link #getBestAvailableSeats(Optional, Optional, int)} with
+	 * another strategy
+	 */
+	public List<Seat> getBestAvailableSeats(Optional<Integer> minLevel, Optional<Integer> maxLevel, int count,
+			AllocationStrategy strategy) {
 		/*
 		 * since this is an immutable object, it's kinda alright to have
 		 * business logic here. Moving it out to the service should not be
@@ -176,14 +447,131 @@ public class Event implements Comparable<Event> {
 		 */
 		int startLevel = minLevel.map(level -> level).orElse(bestLevel);
 		int endLevel = maxLevel.map(level -> level).orElse(worstLevel);
-		List<Seat> bestList = new ArrayList<>();
-		Iterator<Seat> seatIterator = bestSeats.stream()
-				.filter(seat -> seat.getId().getLevel() >= startLevel && seat.getId().getLevel() <= endLevel)
-				.iterator();
-		while (bestList.size() < count && seatIterator.hasNext()) {
-			bestList.add(seatIterator.next());
+		// levels are ordered by id, so the levels allowed are a range of positions
+		List<SeatLevel> levels = layout.getLevels();
+		int firstLevel = 0;
+		while (firstLevel < levels.size() && levels.get(firstLevel).getId() < startLevel) {
+			firstLevel++;
+		}
+		int lastLevel = levels.size() - 1;
+		while (lastLevel >= 0 && levels.get(lastLevel).getId() > endLevel) {
+			lastLevel--;
+		}
+		if (firstLevel > lastLevel || count < 1) {
+			return Collections.emptyList();
+		}
+		return Collections.unmodifiableList(strategy.allocate(this, firstLevel, lastLevel, count));
+	}
+
+	/**
+	 * Best available seats of one level, in the order of the layout's
+	 * {@link SeatScorer}. O(seats looked at), a full level costs nothing.
+	 *
+	 * @return up to <code>count</code> seats
+	 */
+	public List<Seat> getBestAvailableSeats(int levelIndex, int count) {
+		int available = getAvailableSeatCount(levelIndex);
+		if (available == 0) {
+			return Collections.emptyList();
+		}
+		List<Seat> bestList = new ArrayList<>(Math.min(count, available));
+		// walk the precomputed ranking, skipping seats which are taken
+		int[] ranking = layout.ranking(levelIndex);
+		int levelStart = layout.levelStart(levelIndex);
+		for (int r = 0; r < layout.getLevelSeatCount(levelIndex) && bestList.size() < count; r++) {
+			int seatIndex = ranking == null ? levelStart + r : ranking[r];
+			if (state(seatStates, seatIndex) == SeatState.AVAILABLE) {
+				bestList.add(new Seat(layout.seatId(seatIndex)));
+			}
+		}
+		return bestList;
+	}
+
+	/**
+	 * Finds <code>count</code> adjacent available seats in one row of a level,
+	 * front row first, as close to the middle of the row as they fit. Rows are
+	 * skipped by their longest run of available seats, so only a row which
+	 * has room is looked at.
+	 *
+	 * @return the seats or an empty list if no row of the level has room
+	 */
+	public List<Seat> getAdjacentAvailableSeats(int levelIndex, int count) {
+		SeatLevel level = layout.getLevels().get(levelIndex);
+		if (count > level.getSeats() || getAvailableSeatCount(levelIndex) < count) {
+			return Collections.emptyList();
+		}
+		for (int row = layout.levelRowStart(levelIndex); row < layout.levelRowStart(levelIndex + 1); row++) {
+			if (freeRuns[row] < count) {
+				continue;
+			}
+			int rowStart = layout.rowStart(row);
+			// in half seats, so that the middle of an even row is exact
+			int middle = level.getSeats();
+			int bestStart = -1;
+			int runStart = 0;
+			for (int seat = 0; seat <= level.getSeats(); seat++) {
+				if (seat < level.getSeats() && state(seatStates, rowStart + seat) == SeatState.AVAILABLE) {
+					continue;
+				}
+				// the run is runStart..seat-1, center the seats in it as far as it goes
+				if (seat - runStart >= count) {
+					int start = Math.max(runStart, Math.min(seat - count, (middle - count) / 2));
+					if (bestStart < 0 || Math.abs(2 * start + count - middle) < Math.abs(2 * bestStart + count - middle)) {
+						bestStart = start;
+					}
+				}
+				runStart = seat + 1;
+			}
+			List<Seat> seats = new ArrayList<>(count);
+			for (int seat = bestStart; seat < bestStart + count; seat++) {
+				seats.add(new Seat(layout.seatId(rowStart + seat)));
+			}
+			return seats;
+		}
+		return Collections.emptyList();
+	}
+
+	public AllocationStrategy getAllocationStrategy() {
+		return allocationStrategy;
+	}
+
+	/**
+	 * Read only view of every seat of the event, see {@link #getSeats()}
+	 */
+	private final class SeatMap extends AbstractMap<SeatIdentifier, Seat> {
+
+		@Override
+		public Seat get(Object key) {
+			return key instanceof SeatIdentifier ? getSeat((SeatIdentifier) key) : null;
+		}
+
+		@Override
+		public boolean containsKey(Object key) {
+			return get(key) != null;
+		}
+
+		@Override
+		public int size() {
+			return layout.size();
+		}
+
+		@Override
+		public Set<Entry<SeatIdentifier, Seat>> entrySet() {
+			return new AbstractSet<Entry<SeatIdentifier, Seat>>() {
+				@Override
+				public Iterator<Entry<SeatIdentifier, Seat>> iterator() {
+					return IntStream.range(0, layout.size()).<Entry<SeatIdentifier, Seat>>mapToObj(seatIndex -> {
+						SeatIdentifier seatId = layout.seatId(seatIndex);
+						return new SimpleImmutableEntry<>(seatId, new Seat(seatId, state(seatStates, seatIndex)));
+					}).iterator();
+				}
+
+				@Override
+				public int size() {
+					return layout.size();
+				}
+			};
 		}
-		return Collections.unmodifiableList(bestList);
 	}
 
 	@Override
@@ -194,7 +582,7 @@ public class Event implements Comparable<Event> {
 	@Override
 	public String toString() {
 		return new StringBuilder("Event[id: ").append(id).append(", name: ").append(name).append(", totalSeats: ")
-				.append(seats.size()).append(", available: ").append(getAvailableSeatCount(Optional.empty()))
-				.append("]").toString();
+				.append(getTotalSeatCount(Optional.empty())).append(", available: ")
+				.append(getAvailableSeatCount(Optional.empty())).append("]").toString();
 	}
 }
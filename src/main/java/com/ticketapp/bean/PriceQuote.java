@@ -0,0 +1,142 @@
+package com.ticketapp.bean;
+
+import com.ticketapp.util.Money;
+
+/**
+ * Price of a set of seats, broken down by level, plus fees. Amounts are
+ * fixed-point cents, see {@link Money}. Object is immutable.
+ * <p>
+ * The breakdown is kept as parallel primitive arrays, one entry per level
+ * with seats, from best level to worst.
+ */
+public final class PriceQuote {
+
+	private final int[] levelIds;
+	private final int[] seatCounts;
+	private final long[] unitPriceCents;
+	private final long subtotalCents;
+	private final long feeCents;
+
+	/**
+	 * Arrays are not copied, the caller must not modify them afterwards
+	 */
+	public PriceQuote(int[] levelIds, int[] seatCounts, long[] unitPriceCents, long feeCents) {
+		if (levelIds.length != seatCounts.length || levelIds.length != unitPriceCents.length) {
+			throw new IllegalArgumentException("Level breakdown arrays differ in length");
+		}
+		this.levelIds = levelIds;
+		this.seatCounts = seatCounts;
+		this.unitPriceCents = unitPriceCents;
+		this.feeCents = feeCents;
+		long subtotal = 0;
+		for (int i = 0; i < levelIds.length; i++) {
+			subtotal += seatCounts[i] * unitPriceCents[i];
+		}
+		this.subtotalCents = subtotal;
+	}
+
+	/**
+	 * @return number of levels in the breakdown
+	 */
+	public int getLevelCount() {
+		return levelIds.length;
+	}
+
+	public int getLevelId(int index) {
+		return levelIds[index];
+	}
+
+	public int getSeatCount(int index) {
+		return seatCounts[index];
+	}
+
+	public long getUnitPriceCents(int index) {
+		return unitPriceCents[index];
+	}
+
+	public long getLevelSubtotalCents(int index) {
+		return seatCounts[index] * unitPriceCents[index];
+	}
+
+	/**
+	 * @return position of the level in the breakdown or -1
+	 */
+	public int indexOf(int levelId) {
+		for (int i = 0; i < levelIds.length; i++) {
+			if (levelIds[i] == levelId) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @return number of seats quoted
+	 */
+	public int getSeatCount() {
+		int seats = 0;
+		for (int count : seatCounts) {
+			seats += count;
+		}
+		return seats;
+	}
+
+	public long getSubtotalCents() {
+		return subtotalCents;
+	}
+
+	public long getFeeCents() {
+		return feeCents;
+	}
+
+	public long getTotalCents() {
+		return subtotalCents + feeCents;
+	}
+
+	/**
+	 * @param part
+	 *            some of the seats of this quote, at its prices
+	 * @return the rest of this quote, which adds up with <code>part</code> to
+	 *         this quote
+	 */
+	public PriceQuote without(PriceQuote part) {
+		int[] counts = seatCounts.clone();
+		for (int p = 0; p < part.levelIds.length; p++) {
+			int i = indexOf(part.levelIds[p]);
+			if (i < 0 || counts[i] < part.seatCounts[p] || unitPriceCents[i] != part.unitPriceCents[p]) {
+				throw new IllegalArgumentException(String.format("%s is not part of %s", part, this));
+			}
+			counts[i] -= part.seatCounts[p];
+		}
+		if (part.feeCents > feeCents) {
+			throw new IllegalArgumentException(String.format("%s is not part of %s", part, this));
+		}
+		int levels = 0;
+		for (int count : counts) {
+			levels += count > 0 ? 1 : 0;
+		}
+		int[] restLevelIds = new int[levels];
+		int[] restCounts = new int[levels];
+		long[] restPrices = new long[levels];
+		for (int i = 0, r = 0; i < counts.length; i++) {
+			if (counts[i] > 0) {
+				restLevelIds[r] = levelIds[i];
+				restCounts[r] = counts[i];
+				restPrices[r] = unitPriceCents[i];
+				r++;
+			}
+		}
+		return new PriceQuote(restLevelIds, restCounts, restPrices, feeCents - part.feeCents);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder("PriceQuote[");
+		for (int i = 0; i < levelIds.length; i++) {
+			builder.append("level ").append(levelIds[i]).append(": ").append(seatCounts[i]).append(" x ")
+					.append(Money.format(unitPriceCents[i])).append(", ");
+		}
+		return builder.append("fees: ").append(Money.format(feeCents)).append(", total: ")
+				.append(Money.format(getTotalCents())).append("]").toString();
+	}
+}
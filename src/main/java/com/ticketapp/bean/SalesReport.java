@@ -0,0 +1,184 @@
+package com.ticketapp.bean;
+
+import java.util.Collections;
+import java.util.List;
+
+import com.ticketapp.util.Money;
+
+/**
+ * Sales of an event, level by level, as of one {@link Event} state, with the
+ * recent sales velocity. Object is immutable.
+ */
+public final class SalesReport {
+
+	private final int eventId;
+	private final long time;
+	private final List<LevelSales> levels;
+	private final long feeCents;
+	private final long bucketMillis;
+	private final long[] soldPerBucket;
+
+	public SalesReport(int eventId, long time, List<LevelSales> levels, long bucketMillis, long[] soldPerBucket) {
+		this(eventId, time, levels, 0, bucketMillis, soldPerBucket);
+	}
+
+	/**
+	 * @param feeCents
+	 *            fees of the sold seats, which are not broken down by level
+	 */
+	public SalesReport(int eventId, long time, List<LevelSales> levels, long feeCents, long bucketMillis,
+			long[] soldPerBucket) {
+		this.eventId = eventId;
+		this.time = time;
+		this.levels = Collections.unmodifiableList(levels);
+		this.feeCents = feeCents;
+		this.bucketMillis = bucketMillis;
+		this.soldPerBucket = soldPerBucket;
+	}
+
+	public int getEventId() {
+		return eventId;
+	}
+
+	/**
+	 * @return when the report was taken, epoch millis
+	 */
+	public long getTime() {
+		return time;
+	}
+
+	/**
+	 * @return levels from best to worst
+	 */
+	public List<LevelSales> getLevels() {
+		return levels;
+	}
+
+	/**
+	 * @return the level or null if the event has no such level
+	 */
+	public LevelSales getLevel(int levelId) {
+		for (LevelSales level : levels) {
+			if (level.getLevelId() == levelId) {
+				return level;
+			}
+		}
+		return null;
+	}
+
+	public int getSoldSeats() {
+		return levels.stream().mapToInt(LevelSales::getSoldSeats).sum();
+	}
+
+	public int getHeldSeats() {
+		return levels.stream().mapToInt(LevelSales::getHeldSeats).sum();
+	}
+
+	/**
+	 * @return fees of the sold seats, net of refunds
+	 */
+	public long getFeeCents() {
+		return feeCents;
+	}
+
+	/**
+	 * @return revenue of every level plus fees
+	 */
+	public long getRevenueCents() {
+		return levels.stream().mapToLong(LevelSales::getRevenueCents).sum() + feeCents;
+	}
+
+	/**
+	 * @return seats booked out of every seat put on hold, 0 before any hold
+	 */
+	public double getConversion() {
+		long holds = levels.stream().mapToLong(LevelSales::getSeatsHeldTotal).sum();
+		return holds == 0 ? 0 : (double) getSoldSeats() / holds;
+	}
+
+	public long getBucketMillis() {
+		return bucketMillis;
+	}
+
+	/**
+	 * @return seats sold in each of the last time buckets, oldest first, the
+	 *         last one being the current bucket
+	 */
+	public long[] getSoldPerBucket() {
+		return soldPerBucket.clone();
+	}
+
+	@Override
+	public String toString() {
+		return new StringBuilder("SalesReport[eventId: ").append(eventId).append(", sold: ").append(getSoldSeats())
+				.append(", revenue: ").append(Money.format(getRevenueCents())).append(", levels: ").append(levels)
+				.append("]").toString();
+	}
+
+	public static final class LevelSales {
+		private final int levelId;
+		private final int totalSeats;
+		private final int soldSeats;
+		private final int heldSeats;
+		private final long seatsHeldTotal;
+		private final long revenueCents;
+
+		public LevelSales(int levelId, int totalSeats, int soldSeats, int heldSeats, long seatsHeldTotal,
+				long revenueCents) {
+			this.levelId = levelId;
+			this.totalSeats = totalSeats;
+			this.soldSeats = soldSeats;
+			this.heldSeats = heldSeats;
+			this.seatsHeldTotal = seatsHeldTotal;
+			this.revenueCents = revenueCents;
+		}
+
+		public int getLevelId() {
+			return levelId;
+		}
+
+		public int getTotalSeats() {
+			return totalSeats;
+		}
+
+		public int getSoldSeats() {
+			return soldSeats;
+		}
+
+		/**
+		 * @return seats on hold right now
+		 */
+		public int getHeldSeats() {
+			return heldSeats;
+		}
+
+		/**
+		 * @return seats put on hold since the event came to the node
+		 */
+		public long getSeatsHeldTotal() {
+			return seatsHeldTotal;
+		}
+
+		/**
+		 * @return sold seats at the prices they were booked at, net of
+		 *         refunds, without fees
+		 */
+		public long getRevenueCents() {
+			return revenueCents;
+		}
+
+		/**
+		 * @return seats booked out of every seat put on hold, 0 before any hold
+		 */
+		public double getConversion() {
+			return seatsHeldTotal == 0 ? 0 : (double) soldSeats / seatsHeldTotal;
+		}
+
+		@Override
+		public String toString() {
+			return new StringBuilder("LevelSales[levelId: ").append(levelId).append(", sold: ").append(soldSeats)
+					.append("/").append(totalSeats).append(", held: ").append(heldSeats).append(", revenue: ")
+					.append(Money.format(revenueCents)).append("]").toString();
+		}
+	}
+}
@@ -12,12 +12,18 @@ public class SeatHold {
 	private final List<SeatIdentifier> seatIds;
 	private final int id;
 	private final int eventId;
+	private final PriceQuote quote;
 
 	public SeatHold(int eventId, int holdId, String emailId, List<SeatIdentifier> seatIds) {
+		this(eventId, holdId, emailId, seatIds, null);
+	}
+
+	public SeatHold(int eventId, int holdId, String emailId, List<SeatIdentifier> seatIds, PriceQuote quote) {
 		this.eventId = eventId;
 		this.emailId = emailId;
 		this.seatIds = seatIds;
 		this.id = holdId;
+		this.quote = quote;
 	}
 
 	public String getEmailId() {
@@ -36,9 +42,16 @@ public class SeatHold {
 		return eventId;
 	}
 
+	/**
+	 * @return price of the held seats as of the hold, null if not priced
+	 */
+	public PriceQuote getQuote() {
+		return quote;
+	}
+
 	@Override
 	public String toString() {
 		return new StringBuilder("SeatHold[id: ").append(id).append(", eventId: ").append(eventId).append(", seats: ")
-				.append(seatIds).append("]").toString();
+				.append(seatIds).append(", quote: ").append(quote).append("]").toString();
 	}
 }
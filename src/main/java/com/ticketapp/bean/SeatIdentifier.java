@@ -24,6 +24,17 @@ import org.apache.commons.lang3.builder.HashCodeBuilder;
  *
  */
 public class SeatIdentifier implements Comparable<SeatIdentifier> {
+	/**
+	 * Bit layout of {@link #pack()}: 7 bits level, 12 bits row, 12 bits seat
+	 */
+	private static final int ROW_BITS = 12, SEAT_BITS = 12, LEVEL_BITS = 7;
+	private static final int ROW_MASK = (1 << ROW_BITS) - 1, SEAT_MASK = (1 << SEAT_BITS) - 1,
+			LEVEL_MASK = (1 << LEVEL_BITS) - 1;
+	/**
+	 * Highest level id, row and seat number which can be packed
+	 */
+	public static final int MAX_LEVEL = LEVEL_MASK, MAX_ROW = ROW_MASK, MAX_SEAT = SEAT_MASK;
+
 	private final int level;
 	private final int row;
 	private final int seat;
@@ -46,6 +57,28 @@ public class SeatIdentifier implements Comparable<SeatIdentifier> {
 		return seat;
 	}
 
+	/**
+	 * Packs this identifier into a single non-negative int so that seat
+	 * references can be stored in primitive arrays
+	 * 
+	 * @throws IllegalStateException
+	 *             if level &gt; 127, row &gt; 4095 or seat &gt; 4095
+	 */
+	public int pack() {
+		if (level < 0 || level > LEVEL_MASK || row < 0 || row > ROW_MASK || seat < 0 || seat > SEAT_MASK) {
+			throw new IllegalStateException(this + " cannot be packed");
+		}
+		return (level << (ROW_BITS + SEAT_BITS)) | (row << SEAT_BITS) | seat;
+	}
+
+	/**
+	 * Inverse of {@link #pack()}
+	 */
+	public static SeatIdentifier unpack(int packed) {
+		return new SeatIdentifier((packed >>> (ROW_BITS + SEAT_BITS)) & LEVEL_MASK, (packed >>> SEAT_BITS) & ROW_MASK,
+				packed & SEAT_MASK);
+	}
+
 	@Override
 	public int hashCode() {
 		return new HashCodeBuilder().append(level).append(row).append(seat).toHashCode();
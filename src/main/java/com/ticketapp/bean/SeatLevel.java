@@ -2,6 +2,8 @@ package com.ticketapp.bean;
 
 import org.apache.commons.lang3.builder.HashCodeBuilder;
 
+import com.ticketapp.util.Money;
+
 /**
  * Holds information of a particular Event seat level
  * @author peter
@@ -12,11 +14,17 @@ public class SeatLevel implements Comparable<SeatLevel>{
 	private final String name;
 	private final int rows;
 	private final int seats;
-	private final Double price;
+	/**
+	 * Fixed-point price, see {@link Money}
+	 */
+	private final long priceCents;
 	public SeatLevel(int id, String name, Double price, int numRows, int numSeats) {
+		this(id, name, Money.toCents(price), numRows, numSeats);
+	}
+	public SeatLevel(int id, String name, long priceCents, int numRows, int numSeats) {
 		this.id = id;
 		this.name = name;
-		this.price = price;
+		this.priceCents = priceCents;
 		this.rows = numRows;
 		this.seats = numSeats;
 	}
@@ -26,8 +34,14 @@ public class SeatLevel implements Comparable<SeatLevel>{
 	public String getName() {
 		return name;
 	}
+	/**
+	 * @return price for display, use {@link #getPriceCents()} for arithmetic
+	 */
 	public Double getPrice() {
-		return price;
+		return Money.toDecimal(priceCents);
+	}
+	public long getPriceCents() {
+		return priceCents;
 	}
 	public int getRows() {
 		return rows;
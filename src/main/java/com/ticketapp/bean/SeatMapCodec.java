@@ -0,0 +1,339 @@
+package com.ticketapp.bean;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.ticketapp.bean.Seat.SeatState;
+import com.ticketapp.bean.SeatStorage.SeatStates;
+
+/**
+ * Compact binary seat map of an {@link Event}, for bulk clients which would
+ * otherwise walk {@link Event#getSeats()} and serialize one object pair per
+ * seat.
+ * <p>
+ * The map carries the level dimensions and the state of every seat, in seat
+ * number order (see {@link VenueLayout#seatIndex(SeatIdentifier)}). It is
+ * little endian:
+ * <ul>
+ * <li>int magic, byte version, byte {@link Encoding} ordinal, short level
+ * count, int event id</li>
+ * <li>per level: int level id, int rows, int seats per row</li>
+ * <li>int seat count, int body length in bytes, the body</li>
+ * </ul>
+ * A {@link Encoding#PACKED} body is the state words of the event as they are
+ * stored, 2 bits per seat: seat <code>n</code> is bits
+ * <code>2 * (n % 4)</code> of byte <code>n / 4</code>, padded to whole longs.
+ * It is written with one bulk copy from the heap or direct storage. A
+ * {@link Encoding#RUN_LENGTH} body is a varint of
+ * <code>length &lt;&lt; 2 | state ordinal</code> per run of seats in the same
+ * state; whole words of one state are counted without looking at their
+ * seats. Sold out blocks and empty levels make long runs, so a large venue
+ * usually fits in a few hundred bytes.
+ * <p>
+ * Usage: <code>
+ * ByteBuffer map = SeatMapCodec.encode(ticketService.getEvent(eventId));
+ * SeatMapCodec.DecodedSeatMap seats = SeatMapCodec.decode(map);
+ * </code>
+ */
+public final class SeatMapCodec {
+
+	public enum Encoding {
+		PACKED, RUN_LENGTH
+	}
+
+	static final int MAGIC = 0x50414d53;
+	static final byte VERSION = 1;
+	private static final int HEADER_BYTES = 12;
+	private static final int LEVEL_BYTES = 12;
+	private static final int BODY_HEADER_BYTES = 8;
+	private static final Encoding[] ENCODINGS = Encoding.values();
+	private static final SeatState[] STATES = SeatState.values();
+	/**
+	 * Word of 32 seats all in the state of that ordinal
+	 */
+	private static final long[] UNIFORM_WORDS = { 0L, 0x5555555555555555L, 0xaaaaaaaaaaaaaaaaL };
+	private static final long LOW_BITS = 0x5555555555555555L;
+
+	private SeatMapCodec() {
+	}
+
+	/**
+	 * @return bytes needed to encode the event as {@link Encoding#PACKED}, the
+	 *         most {@link #encode(Event, ByteBuffer)} writes
+	 */
+	public static int maxEncodedSize(Event event) {
+		return HEADER_BYTES + LEVEL_BYTES * event.getLevels().size() + BODY_HEADER_BYTES
+				+ event.getSeatStates().words() * Long.BYTES;
+	}
+
+	/**
+	 * Encodes the seat map in a new buffer, with the smaller encoding
+	 *
+	 * @return buffer positioned at the start of the map, limited at its end
+	 */
+	public static ByteBuffer encode(Event event) {
+		ByteBuffer out = ByteBuffer.allocate(maxEncodedSize(event));
+		encode(event, out);
+		out.flip();
+		return out.order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	/**
+	 * Encodes the seat map at the position of <code>out</code> with the
+	 * smaller encoding: run length, unless it would be larger than the packed
+	 * states. The byte order of <code>out</code> is left as it was.
+	 *
+	 * @throws java.nio.BufferOverflowException
+	 *             if <code>out</code> has less than
+	 *             {@link #maxEncodedSize(Event)} bytes remaining
+	 */
+	public static void encode(Event event, ByteBuffer out) {
+		encode(event, null, out);
+	}
+
+	/**
+	 * Encodes the seat map at the position of <code>out</code>. A run length
+	 * map can need more than {@link #maxEncodedSize(Event)} bytes, up to 5 per
+	 * seat when every seat differs from the next.
+	 *
+	 * @throws java.nio.BufferOverflowException
+	 *             if <code>out</code> is too small
+	 */
+	public static void encode(Event event, Encoding encoding, ByteBuffer out) {
+		ByteBuffer buffer = out.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+		VenueLayout layout = event.getLayout();
+		List<SeatLevel> levels = layout.getLevels();
+		SeatStates states = event.getSeatStates();
+		buffer.putInt(MAGIC);
+		int encodingPosition = buffer.position() + 1;
+		buffer.put(VERSION).put((byte) 0).putShort((short) levels.size()).putInt(event.getId());
+		for (SeatLevel level : levels) {
+			buffer.putInt(level.getId()).putInt(level.getRows()).putInt(level.getSeats());
+		}
+		buffer.putInt(layout.size());
+		int lengthPosition = buffer.position();
+		int bodyStart = lengthPosition + Integer.BYTES;
+		buffer.position(bodyStart);
+		int packedBytes = states.words() * Long.BYTES;
+		if (encoding == Encoding.PACKED
+				|| encoding == null && !writeRuns(states, layout.size(), buffer, bodyStart + packedBytes)) {
+			buffer.position(bodyStart);
+			LongBuffer words = buffer.asLongBuffer();
+			states.writeTo(words);
+			buffer.position(bodyStart + words.position() * Long.BYTES);
+			encoding = Encoding.PACKED;
+		} else if (encoding == Encoding.RUN_LENGTH) {
+			writeRuns(states, layout.size(), buffer, Integer.MAX_VALUE);
+		} else {
+			encoding = Encoding.RUN_LENGTH;
+		}
+		buffer.put(encodingPosition, (byte) encoding.ordinal());
+		buffer.putInt(lengthPosition, buffer.position() - bodyStart);
+		out.position(buffer.position());
+	}
+
+	/**
+	 * @param limit
+	 *            position not to write past
+	 * @return false if the runs did not fit before <code>limit</code>
+	 */
+	private static boolean writeRuns(SeatStates states, int seats, ByteBuffer out, int limit) {
+		int state = -1;
+		long run = 0;
+		for (int word = 0; word < states.words(); word++) {
+			long bits = states.word(word);
+			int end = Math.min(Event.SEATS_PER_WORD, seats - word * Event.SEATS_PER_WORD);
+			if (state >= 0 && end == Event.SEATS_PER_WORD && bits == UNIFORM_WORDS[state]) {
+				run += Event.SEATS_PER_WORD;
+				continue;
+			}
+			for (int seat = 0; seat < end; seat++) {
+				int seatState = (int) (bits >>> (seat * Event.STATE_BITS)) & Event.STATE_MASK;
+				if (seatState == state) {
+					run++;
+					continue;
+				}
+				if (run > 0 && !writeRun(out, run, state, limit)) {
+					return false;
+				}
+				state = seatState;
+				run = 1;
+			}
+		}
+		return run == 0 || writeRun(out, run, state, limit);
+	}
+
+	private static boolean writeRun(ByteBuffer out, long run, int state, int limit) {
+		long value = run << Event.STATE_BITS | state;
+		while (true) {
+			if (out.position() >= limit) {
+				return false;
+			}
+			if ((value & ~0x7fL) == 0) {
+				out.put((byte) value);
+				return true;
+			}
+			out.put((byte) ((value & 0x7f) | 0x80));
+			value >>>= 7;
+		}
+	}
+
+	/**
+	 * Decodes a seat map from the position of <code>in</code>, which is left
+	 * after its end. The byte order of <code>in</code> is left as it was.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the bytes are not a seat map
+	 */
+	public static DecodedSeatMap decode(ByteBuffer in) {
+		ByteBuffer buffer = in.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+		try {
+			if (buffer.getInt() != MAGIC) {
+				throw new IllegalArgumentException("Not a seat map");
+			}
+			byte version = buffer.get();
+			if (version != VERSION) {
+				throw new IllegalArgumentException("Unsupported seat map version: " + version);
+			}
+			int encodingOrdinal = buffer.get();
+			if (encodingOrdinal < 0 || encodingOrdinal >= ENCODINGS.length) {
+				throw new IllegalArgumentException("Unknown seat map encoding: " + encodingOrdinal);
+			}
+			Encoding encoding = ENCODINGS[encodingOrdinal];
+			int levelCount = buffer.getShort() & 0xffff;
+			int eventId = buffer.getInt();
+			List<SeatLevel> levels = new ArrayList<>(levelCount);
+			for (int i = 0; i < levelCount; i++) {
+				levels.add(new SeatLevel(buffer.getInt(), null, 0L, buffer.getInt(), buffer.getInt()));
+			}
+			VenueLayout layout = new VenueLayout(levels);
+			int seats = buffer.getInt();
+			int bodyLength = buffer.getInt();
+			if (seats != layout.size() || bodyLength < 0 || bodyLength > buffer.remaining()) {
+				throw new IllegalArgumentException("Corrupt seat map of eventId " + eventId);
+			}
+			int bodyEnd = buffer.position() + bodyLength;
+			long[] words = new long[(seats + Event.SEATS_PER_WORD - 1) / Event.SEATS_PER_WORD];
+			if (encoding == Encoding.PACKED) {
+				if (bodyLength < words.length * Long.BYTES) {
+					throw new IllegalArgumentException("Corrupt seat map of eventId " + eventId);
+				}
+				buffer.asLongBuffer().get(words);
+			} else {
+				readRuns(buffer, bodyEnd, words, seats, eventId);
+			}
+			in.position(bodyEnd);
+			return new DecodedSeatMap(eventId, encoding, layout, words);
+		} catch (BufferUnderflowException ex) {
+			throw new IllegalArgumentException("Truncated seat map", ex);
+		}
+	}
+
+	private static void readRuns(ByteBuffer in, int end, long[] words, int seats, int eventId) {
+		int seat = 0;
+		while (in.position() < end) {
+			long value = 0;
+			int shift = 0;
+			byte b;
+			do {
+				if (shift > 35) {
+					throw new IllegalArgumentException("Corrupt seat map of eventId " + eventId);
+				}
+				b = in.get();
+				value |= (long) (b & 0x7f) << shift;
+				shift += 7;
+			} while (b < 0);
+			int state = (int) value & Event.STATE_MASK;
+			long run = value >>> Event.STATE_BITS;
+			if (state >= STATES.length || run > seats - seat) {
+				throw new IllegalArgumentException("Corrupt seat map of eventId " + eventId);
+			}
+			fill(words, seat, (int) run, state);
+			seat += run;
+		}
+		if (seat != seats) {
+			throw new IllegalArgumentException("Corrupt seat map of eventId " + eventId);
+		}
+	}
+
+	/**
+	 * Sets a run of seats, whole words at once
+	 */
+	private static void fill(long[] words, int from, int length, int state) {
+		int end = from + length;
+		for (; from < end && from % Event.SEATS_PER_WORD != 0; from++) {
+			words[from / Event.SEATS_PER_WORD] |= (long) state << ((from % Event.SEATS_PER_WORD) * Event.STATE_BITS);
+		}
+		for (; end - from >= Event.SEATS_PER_WORD; from += Event.SEATS_PER_WORD) {
+			words[from / Event.SEATS_PER_WORD] = UNIFORM_WORDS[state];
+		}
+		for (; from < end; from++) {
+			words[from / Event.SEATS_PER_WORD] |= (long) state << ((from % Event.SEATS_PER_WORD) * Event.STATE_BITS);
+		}
+	}
+
+	/**
+	 * Seat map read back by {@link SeatMapCodec#decode(ByteBuffer)}. Object is
+	 * immutable. Its levels carry ids and dimensions only, no names or prices.
+	 */
+	public static final class DecodedSeatMap {
+		private final int eventId;
+		private final Encoding encoding;
+		private final VenueLayout layout;
+		private final long[] words;
+
+		DecodedSeatMap(int eventId, Encoding encoding, VenueLayout layout, long[] words) {
+			this.eventId = eventId;
+			this.encoding = encoding;
+			this.layout = layout;
+			this.words = words;
+		}
+
+		public int getEventId() {
+			return eventId;
+		}
+
+		public Encoding getEncoding() {
+			return encoding;
+		}
+
+		public VenueLayout getLayout() {
+			return layout;
+		}
+
+		/**
+		 * @return state of a seat by its seat number
+		 */
+		public SeatState getSeatState(int seatIndex) {
+			if (seatIndex < 0 || seatIndex >= layout.size()) {
+				throw new IndexOutOfBoundsException("Seat number " + seatIndex + " of eventId " + eventId);
+			}
+			return STATES[(int) (words[seatIndex / Event.SEATS_PER_WORD] >>> ((seatIndex % Event.SEATS_PER_WORD)
+					* Event.STATE_BITS)) & Event.STATE_MASK];
+		}
+
+		/**
+		 * @return state of the seat or null if the map has no such seat
+		 */
+		public SeatState getSeatState(SeatIdentifier seatId) {
+			int seatIndex = layout.seatIndex(seatId);
+			return seatIndex < 0 ? null : getSeatState(seatIndex);
+		}
+
+		/**
+		 * @return number of available seats, counted a word at a time
+		 */
+		public int getAvailableSeatCount() {
+			int unavailable = 0;
+			for (long word : words) {
+				// one bit per seat which is not available
+				unavailable += Long.bitCount((word | word >>> 1) & LOW_BITS);
+			}
+			return layout.size() - unavailable;
+		}
+	}
+}
@@ -12,12 +12,29 @@ import java.util.UUID;
 public final class SeatReservation {
 	private final UUID id;
 	private final int eventId;
+	private final String customerEmail;
 	private final List<SeatIdentifier> seatIds;
+	private final PriceQuote quote;
 
 	public SeatReservation(UUID id, int eventId, List<SeatIdentifier> seatIds) {
+		this(id, eventId, seatIds, null);
+	}
+
+	public SeatReservation(UUID id, int eventId, List<SeatIdentifier> seatIds, PriceQuote quote) {
+		this(id, eventId, null, seatIds, quote);
+	}
+
+	/**
+	 * @param customerEmail
+	 *            who booked, the only one who may cancel
+	 */
+	public SeatReservation(UUID id, int eventId, String customerEmail, List<SeatIdentifier> seatIds,
+			PriceQuote quote) {
 		this.id = id;
 		this.eventId = eventId;
+		this.customerEmail = customerEmail;
 		this.seatIds = seatIds;
+		this.quote = quote;
 	}
 
 	public int getEventId() {
@@ -28,13 +45,28 @@ public final class SeatReservation {
 		return id;
 	}
 
+	/**
+	 * @return who booked, null if not known
+	 */
+	public String getCustomerEmail() {
+		return customerEmail;
+	}
+
 	public List<SeatIdentifier> getSeatIds() {
 		return Collections.unmodifiableList(seatIds);
 	}
 
+	/**
+	 * @return price of the booked seats at the prices of their hold, null if
+	 *         not priced
+	 */
+	public PriceQuote getQuote() {
+		return quote;
+	}
+
 	@Override
 	public String toString() {
 		return new StringBuilder("SeatReservation[id: ").append(id).append(", eventId: ").append(eventId)
-				.append(", seatIds: ").append(seatIds).append("]").toString();
+				.append(", seatIds: ").append(seatIds).append(", quote: ").append(quote).append("]").toString();
 	}
 }
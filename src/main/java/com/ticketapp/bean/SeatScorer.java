@@ -0,0 +1,52 @@
+package com.ticketapp.bean;
+
+/**
+ * Scores the seats of a {@link VenueLayout} to decide which seats of a level
+ * are best. Lower is better, seats with the same score are ranked by seat
+ * number. A layout scores every seat once and keeps the resulting order, so
+ * scoring does not have to be fast.
+ * <p>
+ * Levels are always offered best level first, a scorer only orders the seats
+ * within a level.
+ */
+@FunctionalInterface
+public interface SeatScorer {
+
+	/**
+	 * Seat number order: row by row, lowest seat first. Layouts using it keep
+	 * no ranking at all.
+	 */
+	SeatScorer NATURAL = (level, row, seat) -> 0;
+
+	/**
+	 * Front rows first, and within a row from the center out to the aisles
+	 */
+	SeatScorer CENTER = (level, row, seat) -> clamp(
+			(long) (row - 1) * (level.getSeats() + 1) + Math.abs(2 * seat - (level.getSeats() + 1)));
+
+	/**
+	 * Closest to a spot a third of the way back, on the center line, by
+	 * distance. Front row aisle seats rank below central seats a few rows back.
+	 */
+	SeatScorer SIGHTLINE = (level, row, seat) -> {
+		// in half rows and half seats so that the center of an even row is exact
+		long rowDistance = 2 * row - (2 + (level.getRows() - 1) * 2 / 3);
+		long seatDistance = 2 * seat - (level.getSeats() + 1);
+		return clamp(rowDistance * rowDistance + seatDistance * seatDistance);
+	};
+
+	/**
+	 * @param level
+	 *            level of the seat
+	 * @param row
+	 *            row of the seat, from 1
+	 * @param seat
+	 *            seat in the row, from 1
+	 * @return score of the seat, must not be negative
+	 */
+	int score(SeatLevel level, int row, int seat);
+
+	static int clamp(long score) {
+		return (int) Math.min(score, Integer.MAX_VALUE);
+	}
+}
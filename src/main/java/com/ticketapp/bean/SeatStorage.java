@@ -0,0 +1,148 @@
+package com.ticketapp.bean;
+
+import java.nio.LongBuffer;
+
+/**
+ * Where an {@link Event} keeps the packed state of its seats.
+ * <p>
+ * {@link #HEAP} is a <code>long[]</code>, the default. {@link #DIRECT} is a
+ * direct buffer outside the heap, for nodes with many or very large live
+ * events: each event version then keeps a small object on the heap whatever
+ * the size of its venue, and old generation does not grow with the
+ * inventory. Direct buffers come from a {@link DirectBufferPool}, which makes
+ * native allocations a chunk of buffers at a time and reuses the buffer of a
+ * version once the version is collected, so updates do not allocate direct
+ * memory. Copying a version costs the same either way. Small events are
+ * still better kept on the heap, where allocation is cheapest.
+ */
+public enum SeatStorage {
+	HEAP {
+		@Override
+		SeatStates allocate(int words) {
+			return new HeapSeatStates(new long[words]);
+		}
+	},
+	DIRECT {
+		@Override
+		SeatStates allocate(int words) {
+			LongBuffer buffer = DIRECT_BUFFERS.take(words);
+			for (int i = 0; i < words; i++) {
+				buffer.put(i, 0);
+			}
+			return new DirectSeatStates(buffer);
+		}
+	};
+
+	private static final DirectBufferPool DIRECT_BUFFERS = new DirectBufferPool();
+
+	/**
+	 * @return zeroed words, i.e. every seat available
+	 */
+	abstract SeatStates allocate(int words);
+
+	/**
+	 * Words of packed seat states. Written only while the event owning them
+	 * is being constructed, so reads need no synchronization once the event is
+	 * published.
+	 */
+	abstract static class SeatStates {
+
+		abstract int words();
+
+		abstract long word(int index);
+
+		abstract void setWord(int index, long value);
+
+		abstract SeatStates copy();
+
+		abstract SeatStorage storage();
+
+		/**
+		 * Bulk copies every word to <code>out</code>, advancing its position
+		 */
+		abstract void writeTo(LongBuffer out);
+	}
+
+	private static final class HeapSeatStates extends SeatStates {
+		private final long[] words;
+
+		HeapSeatStates(long[] words) {
+			this.words = words;
+		}
+
+		@Override
+		int words() {
+			return words.length;
+		}
+
+		@Override
+		long word(int index) {
+			return words[index];
+		}
+
+		@Override
+		void setWord(int index, long value) {
+			words[index] = value;
+		}
+
+		@Override
+		SeatStates copy() {
+			return new HeapSeatStates(words.clone());
+		}
+
+		@Override
+		SeatStorage storage() {
+			return HEAP;
+		}
+
+		@Override
+		void writeTo(LongBuffer out) {
+			out.put(words);
+		}
+	}
+
+	private static final class DirectSeatStates extends SeatStates {
+		/**
+		 * Only accessed by index, its position never moves
+		 */
+		private final LongBuffer words;
+
+		DirectSeatStates(LongBuffer words) {
+			this.words = words;
+		}
+
+		@Override
+		int words() {
+			return words.capacity();
+		}
+
+		@Override
+		long word(int index) {
+			return words.get(index);
+		}
+
+		@Override
+		void setWord(int index, long value) {
+			words.put(index, value);
+		}
+
+		@Override
+		SeatStates copy() {
+			// of any content, every word is overwritten
+			DirectSeatStates copy = new DirectSeatStates(DIRECT_BUFFERS.take(words.capacity()));
+			// bulk copy between direct buffers is a memory copy, duplicated to keep the position of both
+			copy.words.duplicate().put(words.duplicate());
+			return copy;
+		}
+
+		@Override
+		SeatStorage storage() {
+			return DIRECT;
+		}
+
+		@Override
+		void writeTo(LongBuffer out) {
+			out.put(words.duplicate());
+		}
+	}
+}
@@ -0,0 +1,259 @@
+package com.ticketapp.bean;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Seat layout of a venue, shared by every {@link Event} held in it. Object is
+ * immutable.
+ * <p>
+ * Seats are numbered <code>0..size-1</code> level by level, row by row, so an
+ * event only needs a primitive array indexed by seat number for its seat
+ * states. The best seat order within each level is computed once per layout
+ * by its {@link SeatScorer} and kept as an array of seat numbers, best first.
+ * {@link SeatScorer#NATURAL} keeps no array, its order is the seat numbers.
+ * Levels of a large venue are ranked in parallel on the common fork/join pool,
+ * each into its own array, so the tasks share nothing but the result slots.
+ */
+public final class VenueLayout {
+
+	/**
+	 * Venues with fewer seats are ranked on the calling thread, forking costs
+	 * more than it saves
+	 */
+	static final int PARALLEL_RANKING_SEATS = 1 << 15;
+
+	/**
+	 * Ordered by level id (best level first)
+	 */
+	private final List<SeatLevel> levels;
+	/**
+	 * First seat number of each level, plus the total seat count at the end
+	 */
+	private final int[] levelStarts;
+	/**
+	 * First row of each level, plus the total row count at the end. Rows are
+	 * numbered <code>0..rows-1</code> level by level.
+	 */
+	private final int[] levelRowStarts;
+	/**
+	 * Seat numbers of each level in best seat order, null for seat number
+	 * order
+	 */
+	private final int[][] rankings;
+	private final SeatScorer scorer;
+
+	public VenueLayout(List<SeatLevel> levels) {
+		this(levels, SeatScorer.NATURAL);
+	}
+
+	public VenueLayout(List<SeatLevel> levels, SeatScorer scorer) {
+		if (levels == null || levels.isEmpty()) {
+			throw new IllegalArgumentException("A venue needs at least one level");
+		}
+		List<SeatLevel> sortedLevels = new ArrayList<>(levels);
+		Collections.sort(sortedLevels);
+		this.levels = Collections.unmodifiableList(sortedLevels);
+		this.levelStarts = new int[sortedLevels.size() + 1];
+		this.levelRowStarts = new int[sortedLevels.size() + 1];
+		this.rankings = new int[sortedLevels.size()][];
+		long total = 0;
+		for (int i = 0; i < sortedLevels.size(); i++) {
+			SeatLevel level = sortedLevels.get(i);
+			// seat ids of holds, replicas and archives are packed, every seat must fit
+			if (level.getId() < 0 || level.getId() > SeatIdentifier.MAX_LEVEL || level.getRows() > SeatIdentifier.MAX_ROW
+					|| level.getSeats() > SeatIdentifier.MAX_SEAT) {
+				throw new IllegalArgumentException(String.format(
+						"Level %d of %d rows of %d seats is too large, at most %d levels of %d rows of %d seats",
+						level.getId(), level.getRows(), level.getSeats(), SeatIdentifier.MAX_LEVEL, SeatIdentifier.MAX_ROW,
+						SeatIdentifier.MAX_SEAT));
+			}
+			levelStarts[i] = (int) total;
+			total += (long) level.getRows() * level.getSeats();
+			if (total > Integer.MAX_VALUE) {
+				throw new IllegalArgumentException("Venue is too large");
+			}
+			// rows without seats do not count
+			levelRowStarts[i + 1] = levelRowStarts[i] + (level.getSeats() > 0 ? level.getRows() : 0);
+		}
+		levelStarts[sortedLevels.size()] = (int) total;
+		this.scorer = scorer;
+		if (scorer != SeatScorer.NATURAL) {
+			IntStream levelIndexes = IntStream.range(0, sortedLevels.size());
+			if (total >= PARALLEL_RANKING_SEATS) {
+				levelIndexes = levelIndexes.parallel();
+			}
+			// the terminal operation waits for every level, publishing the rankings to this thread
+			levelIndexes.forEach(i -> rankings[i] = rank(sortedLevels.get(i), levelStarts[i], scorer));
+		}
+	}
+
+	/**
+	 * Sorts the seats of a level by score then seat number. Both are packed
+	 * into a long so that the sort is a primitive one. A large level is scored
+	 * row by row and sorted on the fork/join pool.
+	 */
+	private static int[] rank(SeatLevel level, int levelStart, SeatScorer scorer) {
+		long[] keys = new long[level.getRows() * level.getSeats()];
+		IntStream rows = IntStream.rangeClosed(1, level.getRows());
+		if (keys.length >= PARALLEL_RANKING_SEATS) {
+			rows = rows.parallel();
+		}
+		// each row writes its own part of the keys
+		rows.forEach(row -> {
+			int offset = (row - 1) * level.getSeats();
+			for (int seat = 1; seat <= level.getSeats(); seat++, offset++) {
+				int score = scorer.score(level, row, seat);
+				if (score < 0) {
+					throw new IllegalArgumentException(String.format("Negative score %d for row %d seat %d of level %d",
+							score, row, seat, level.getId()));
+				}
+				keys[offset] = ((long) score << 32) | offset;
+			}
+		});
+		// small arrays are sorted on the calling thread
+		Arrays.parallelSort(keys);
+		int[] ranking = new int[keys.length];
+		for (int r = 0; r < keys.length; r++) {
+			ranking[r] = levelStart + (int) keys[r];
+		}
+		return ranking;
+	}
+
+	public List<SeatLevel> getLevels() {
+		return levels;
+	}
+
+	public SeatScorer getScorer() {
+		return scorer;
+	}
+
+	/**
+	 * @return number of seats of the venue
+	 */
+	public int size() {
+		return levelStarts[levels.size()];
+	}
+
+	/**
+	 * @return position of the level in {@link #getLevels()} or -1
+	 */
+	public int levelIndex(int levelId) {
+		for (int i = 0; i < levels.size(); i++) {
+			if (levels.get(i).getId() == levelId) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	public int getLevelSeatCount(int levelIndex) {
+		return levelStarts[levelIndex + 1] - levelStarts[levelIndex];
+	}
+
+	/**
+	 * @return seat number of the first seat of the level
+	 */
+	public int levelStart(int levelIndex) {
+		return levelStarts[levelIndex];
+	}
+
+	/**
+	 * @return number of rows of the venue
+	 */
+	public int getRowCount() {
+		return levelRowStarts[levels.size()];
+	}
+
+	/**
+	 * @return row number of the first row of the level
+	 */
+	public int levelRowStart(int levelIndex) {
+		return levelRowStarts[levelIndex];
+	}
+
+	/**
+	 * @return row number of a seat number
+	 */
+	public int rowIndexOf(int seatIndex) {
+		int levelIndex = levelIndexOf(seatIndex);
+		return levelRowStarts[levelIndex] + (seatIndex - levelStarts[levelIndex]) / levels.get(levelIndex).getSeats();
+	}
+
+	/**
+	 * @return level position of a seat number
+	 */
+	public int levelIndexOf(int seatIndex) {
+		return indexOf(levelStarts, seatIndex);
+	}
+
+	/**
+	 * @return level position of a row number
+	 */
+	public int levelIndexOfRow(int row) {
+		return indexOf(levelRowStarts, row);
+	}
+
+	/**
+	 * @return seat number of the first seat of a row
+	 */
+	public int rowStart(int row) {
+		int levelIndex = levelIndexOfRow(row);
+		return levelStarts[levelIndex] + (row - levelRowStarts[levelIndex]) * levels.get(levelIndex).getSeats();
+	}
+
+	private static int indexOf(int[] starts, int value) {
+		int idx = Arrays.binarySearch(starts, value);
+		if (idx < 0) {
+			return -idx - 2;
+		}
+		// empty levels share their start with the next level
+		while (starts[idx + 1] == value) {
+			idx++;
+		}
+		return idx;
+	}
+
+	/**
+	 * @return seat number of the seat or -1 if the venue has no such seat
+	 */
+	public int seatIndex(SeatIdentifier seatId) {
+		int levelIndex = levelIndex(seatId.getLevel());
+		if (levelIndex < 0) {
+			return -1;
+		}
+		SeatLevel level = levels.get(levelIndex);
+		if (seatId.getRow() < 1 || seatId.getRow() > level.getRows() || seatId.getSeat() < 1
+				|| seatId.getSeat() > level.getSeats()) {
+			return -1;
+		}
+		return levelStarts[levelIndex] + (seatId.getRow() - 1) * level.getSeats() + seatId.getSeat() - 1;
+	}
+
+	/**
+	 * Inverse of {@link #seatIndex(SeatIdentifier)}
+	 */
+	public SeatIdentifier seatId(int seatIndex) {
+		int levelIndex = levelIndexOf(seatIndex);
+		SeatLevel level = levels.get(levelIndex);
+		int offset = seatIndex - levelStarts[levelIndex];
+		return new SeatIdentifier(level.getId(), offset / level.getSeats() + 1, offset % level.getSeats() + 1);
+	}
+
+	/**
+	 * @return seat numbers of the level in best seat order or null if that is
+	 *         seat number order. Not copied, must not be modified
+	 */
+	int[] ranking(int levelIndex) {
+		return rankings[levelIndex];
+	}
+
+	@Override
+	public String toString() {
+		return new StringBuilder("VenueLayout[levels: ").append(levels.size()).append(", seats: ").append(size())
+				.append("]").toString();
+	}
+}
@@ -3,18 +3,54 @@ package com.ticketapp.bean.input;
 import java.time.ZonedDateTime;
 import java.util.List;
 
+import com.ticketapp.bean.AllocationStrategy;
+import com.ticketapp.bean.SeatScorer;
+import com.ticketapp.bean.SeatStorage;
+
 public class EventInput {
 	private final String name;
 	private final ZonedDateTime startDateTime;
 	private final long duration;
 	private final List<LevelInput> levels;
 	private final long holdExpirationSeconds;
+	private final SeatScorer seatScorer;
+	private final SeatStorage seatStorage;
+	private final AllocationStrategy allocationStrategy;
 	public EventInput(String name, ZonedDateTime startDT, long duration, List<LevelInput> levels, long holdExpirationSeconds) {
+		this(name, startDT, duration, levels, holdExpirationSeconds, SeatScorer.NATURAL);
+	}
+	/**
+	 * @param seatScorer
+	 *            decides which seats of a level are best, see {@link SeatScorer}
+	 */
+	public EventInput(String name, ZonedDateTime startDT, long duration, List<LevelInput> levels,
+			long holdExpirationSeconds, SeatScorer seatScorer) {
+		this(name, startDT, duration, levels, holdExpirationSeconds, seatScorer, SeatStorage.HEAP);
+	}
+	/**
+	 * @param seatStorage
+	 *            where the event keeps its seat states, see {@link SeatStorage}
+	 */
+	public EventInput(String name, ZonedDateTime startDT, long duration, List<LevelInput> levels,
+			long holdExpirationSeconds, SeatScorer seatScorer, SeatStorage seatStorage) {
+		this(name, startDT, duration, levels, holdExpirationSeconds, seatScorer, seatStorage,
+				AllocationStrategy.BEST_AVAILABLE);
+	}
+	/**
+	 * @param allocationStrategy
+	 *            picks the seats of holds, see {@link AllocationStrategy}
+	 */
+	public EventInput(String name, ZonedDateTime startDT, long duration, List<LevelInput> levels,
+			long holdExpirationSeconds, SeatScorer seatScorer, SeatStorage seatStorage,
+			AllocationStrategy allocationStrategy) {
 		this.name = name;
 		this.startDateTime = startDT;
 		this.duration = duration;
 		this.levels = levels;
 		this.holdExpirationSeconds = holdExpirationSeconds;
+		this.seatScorer = seatScorer;
+		this.seatStorage = seatStorage;
+		this.allocationStrategy = allocationStrategy;
 	}
 	public String getName() {
 		return name;
@@ -31,4 +67,13 @@ public class EventInput {
 	public long getHoldExpirationSeconds() {
 		return holdExpirationSeconds;
 	}
+	public SeatScorer getSeatScorer() {
+		return seatScorer;
+	}
+	public SeatStorage getSeatStorage() {
+		return seatStorage;
+	}
+	public AllocationStrategy getAllocationStrategy() {
+		return allocationStrategy;
+	}
 }
@@ -1,13 +1,20 @@
 package com.ticketapp.bean.input;
 
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+
+import com.ticketapp.util.Money;
+
 public class LevelInput {
 	private final String name;
 	private final Double price;
 	private final int rows;
 	private final int seatsInRow;
+	private final long priceCents;
 	public LevelInput(String name, Double price, int rows, int seats) {
 		this.name = name;
 		this.price = price;
+		this.priceCents = Money.toCents(price);
 		this.rows = rows;
 		this.seatsInRow = seats;
 	}
@@ -17,10 +24,35 @@ public class LevelInput {
 	public Double getPrice() {
 		return price;
 	}
+	/**
+	 * @return the price in fixed-point cents, see {@link Money}
+	 */
+	public long getPriceCents() {
+		return priceCents;
+	}
 	public int getRows() {
 		return rows;
 	}
 	public int getSeatsInRow() {
 		return seatsInRow;
 	}
+	@Override
+	public boolean equals(Object obj) {
+		if (obj == null) {
+			return false;
+		}
+		if (this == obj) {
+			return true;
+		}
+		if (obj.getClass() != this.getClass()) {
+			return false;
+		}
+		LevelInput other = (LevelInput) obj;
+		return new EqualsBuilder().append(name, other.name).append(price, other.price).append(rows, other.rows)
+				.append(seatsInRow, other.seatsInRow).isEquals();
+	}
+	@Override
+	public int hashCode() {
+		return new HashCodeBuilder().append(name).append(price).append(rows).append(seatsInRow).toHashCode();
+	}
 }
@@ -0,0 +1,62 @@
+package com.ticketapp.service;
+
+import java.util.List;
+import java.util.Map;
+
+import com.ticketapp.bean.Event;
+import com.ticketapp.bean.PriceQuote;
+import com.ticketapp.bean.Seat;
+import com.ticketapp.bean.Seat.SeatState;
+import com.ticketapp.bean.SeatIdentifier;
+
+/**
+ * Told about every {@link Event} state a {@link TicketServiceImpl} makes
+ * current. Calls for an event are made in commit order, with the event write
+ * lock held, so a listener must be quick and must not call back into the
+ * service.
+ */
+public interface EventCommitListener {
+
+	/**
+	 * The event was created, updated or imported and this is its new state
+	 */
+	void eventCommitted(Event event);
+
+	/**
+	 * The seats of the event were updated and this is its new state. A
+	 * listener which keeps its own copy of the seats can apply
+	 * <code>updatedSeats</code> instead of looking at every seat again.
+	 *
+	 * @param updatedSeats
+	 *            seats by their new state, each in its previous state
+	 */
+	default void seatsCommitted(Event event, Map<SeatState, List<Seat>> updatedSeats) {
+		eventCommitted(event);
+	}
+
+	/**
+	 * Seats of the event were booked, after the commit which booked them.
+	 * Also told for the reservations of an event imported or already on the
+	 * node when the listener is added, after its state.
+	 *
+	 * @param quote
+	 *            prices the seats were booked at, null if they were not priced
+	 */
+	default void seatsBooked(int eventId, List<SeatIdentifier> seatIds, PriceQuote quote) {
+	}
+
+	/**
+	 * Booked seats of the event were cancelled
+	 *
+	 * @param refund
+	 *            what the customer gets back, null if the seats were not
+	 *            priced
+	 */
+	default void seatsCancelled(int eventId, List<SeatIdentifier> seatIds, PriceQuote refund) {
+	}
+
+	/**
+	 * The event is no longer on this node, e.g. it was exported
+	 */
+	void eventRemoved(int eventId);
+}
@@ -0,0 +1,101 @@
+package com.ticketapp.service;
+
+import java.util.Collections;
+import java.util.List;
+
+import com.ticketapp.bean.Event;
+import com.ticketapp.bean.PriceQuote;
+import com.ticketapp.bean.SeatLevel;
+import com.ticketapp.bean.SeatReservation;
+
+/**
+ * Complete state of one event taken off a {@link TicketNode} so that it can be
+ * imported by another node. Object is immutable.
+ * <p>
+ * Besides the event itself, the snapshot carries the open holds with their
+ * ids and deadlines, so that customers keep their holds across the move.
+ */
+public final class EventSnapshot {
+	private final Event event;
+	private final List<SeatLevel> seatLevels;
+	private final List<Hold> holds;
+	private final List<SeatReservation> reservations;
+
+	EventSnapshot(Event event, List<SeatLevel> seatLevels, List<Hold> holds, List<SeatReservation> reservations) {
+		this.event = event;
+		this.seatLevels = Collections.unmodifiableList(seatLevels);
+		this.holds = Collections.unmodifiableList(holds);
+		this.reservations = Collections.unmodifiableList(reservations);
+	}
+
+	public Event getEvent() {
+		return event;
+	}
+
+	public List<SeatLevel> getSeatLevels() {
+		return seatLevels;
+	}
+
+	List<Hold> getHolds() {
+		return holds;
+	}
+
+	public int getHoldCount() {
+		return holds.size();
+	}
+
+	public List<SeatReservation> getReservations() {
+		return reservations;
+	}
+
+	@Override
+	public String toString() {
+		return new StringBuilder("EventSnapshot[eventId: ").append(event.getId()).append(", holds: ")
+				.append(holds.size()).append(", reservations: ").append(reservations.size()).append("]").toString();
+	}
+
+	/**
+	 * An open hold as stored in the {@link HoldRegistry}
+	 */
+	static final class Hold {
+		private final int id;
+		private final String email;
+		private final int[] packedSeats;
+		private final long createdTime;
+		private final long expiry;
+		private final PriceQuote quote;
+
+		Hold(int id, String email, int[] packedSeats, long createdTime, long expiry, PriceQuote quote) {
+			this.id = id;
+			this.email = email;
+			this.packedSeats = packedSeats;
+			this.createdTime = createdTime;
+			this.expiry = expiry;
+			this.quote = quote;
+		}
+
+		int getId() {
+			return id;
+		}
+
+		String getEmail() {
+			return email;
+		}
+
+		int[] getPackedSeats() {
+			return packedSeats;
+		}
+
+		long getCreatedTime() {
+			return createdTime;
+		}
+
+		long getExpiry() {
+			return expiry;
+		}
+
+		PriceQuote getQuote() {
+			return quote;
+		}
+	}
+}
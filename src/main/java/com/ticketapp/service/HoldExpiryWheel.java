@@ -0,0 +1,189 @@
+package com.ticketapp.service;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntToLongFunction;
+
+/**
+ * Hashed timing wheel which decides when holds expire.
+ * <p>
+ * The wheel only stores hold ids. The authoritative deadline of a hold lives
+ * in the {@link HoldRegistry} and is looked up through a
+ * <code>deadlineOf</code> function, which returns a negative value once the
+ * hold is gone. This keeps every lifecycle change O(1) and free of task
+ * cancellation:
+ * <ul>
+ * <li>extending a hold only moves its deadline in the registry. When its old
+ * bucket comes around, the hold is found to be still alive and is put back
+ * into the bucket of its new deadline</li>
+ * <li>releasing or reserving a hold only removes it from the registry. Its
+ * wheel entry is dropped when its bucket comes around</li>
+ * </ul>
+ * Deadlines more than one revolution away are handled the same way as
+ * extensions.
+ * <p>
+ * <b>Concurrency:</b> any thread may {@link #schedule(int)} a hold. New ids
+ * go to an inbox guarded by a {@link ReentrantLock}. Only one thread at a
+ * time advances the wheel (guarded by another lock). That thread drains the
+ * inbox into the buckets, so the buckets themselves are single threaded.
+ */
+final class HoldExpiryWheel {
+
+	private final long tickMillis;
+	private final int mask;
+	private final IntList[] buckets;
+	private final ReentrantLock inboxLock = new ReentrantLock();
+	private final ReentrantLock advanceLock = new ReentrantLock();
+	private IntList inbox = new IntList();
+	private IntList spareInbox = new IntList();
+	/**
+	 * Last tick whose bucket has been processed. Guarded by advanceLock
+	 */
+	private long currentTick;
+
+	/**
+	 * @param tickMillis
+	 *            resolution of the wheel, holds expire at most this late
+	 * @param wheelSize
+	 *            number of buckets, rounded up to a power of two
+	 * @param startMillis
+	 *            current time
+	 */
+	HoldExpiryWheel(long tickMillis, int wheelSize, long startMillis) {
+		if (tickMillis <= 0 || wheelSize <= 0) {
+			throw new IllegalArgumentException("Invalid wheel tick " + tickMillis + " or size " + wheelSize);
+		}
+		int size = 1;
+		while (size < wheelSize) {
+			size <<= 1;
+		}
+		this.tickMillis = tickMillis;
+		this.mask = size - 1;
+		this.buckets = new IntList[size];
+		for (int i = 0; i < size; i++) {
+			buckets[i] = new IntList();
+		}
+		this.currentTick = startMillis / tickMillis;
+	}
+
+	long getTickMillis() {
+		return tickMillis;
+	}
+
+	/**
+	 * Start tracking a hold. Its deadline must already be visible through the
+	 * <code>deadlineOf</code> function passed to {@link #advance}
+	 */
+	void schedule(int holdId) {
+		inboxLock.lock();
+		try {
+			inbox.add(holdId);
+		} finally {
+			inboxLock.unlock();
+		}
+	}
+
+	/**
+	 * Processes every tick up to <code>now</code>
+	 *
+	 * @param now
+	 *            current time in epoch millis
+	 * @param deadlineOf
+	 *            current deadline of a hold, negative if it no longer exists
+	 * @param expired
+	 *            receives the holds whose deadline is at or before
+	 *            <code>now</code>
+	 * @return false if another thread is already advancing the wheel
+	 */
+	boolean advance(long now, IntToLongFunction deadlineOf, IntList expired) {
+		if (!advanceLock.tryLock()) {
+			return false;
+		}
+		try {
+			IntList drained;
+			inboxLock.lock();
+			try {
+				drained = inbox;
+				inbox = spareInbox;
+				spareInbox = drained;
+			} finally {
+				inboxLock.unlock();
+			}
+			for (int i = 0; i < drained.size(); i++) {
+				place(drained.get(i), deadlineOf, expired);
+			}
+			drained.clear();
+
+			long nowTick = now / tickMillis;
+			// no point spinning more than one revolution, every bucket gets visited once
+			if (nowTick - currentTick > buckets.length) {
+				currentTick = nowTick - buckets.length;
+			}
+			while (currentTick < nowTick) {
+				currentTick++;
+				IntList bucket = buckets[(int) (currentTick & mask)];
+				int size = bucket.size();
+				for (int i = 0; i < size; i++) {
+					// re-placed holds go to other buckets or, if a revolution
+					// or more away, are appended to this one past 'size'
+					place(bucket.get(i), deadlineOf, expired);
+				}
+				bucket.removeFirst(size);
+			}
+			return true;
+		} finally {
+			advanceLock.unlock();
+		}
+	}
+
+	private void place(int holdId, IntToLongFunction deadlineOf, IntList expired) {
+		long deadline = deadlineOf.applyAsLong(holdId);
+		if (deadline < 0) {
+			// released, reserved or already expired
+			return;
+		}
+		// round up so that a hold never expires before its deadline
+		long tick = (deadline + tickMillis - 1) / tickMillis;
+		if (tick <= currentTick) {
+			expired.add(holdId);
+		} else {
+			buckets[(int) (tick & mask)].add(holdId);
+		}
+	}
+
+	/**
+	 * Minimal growable list of primitive ints
+	 */
+	static final class IntList {
+		private int[] values = new int[8];
+		private int size;
+
+		void add(int value) {
+			if (size == values.length) {
+				values = Arrays.copyOf(values, size << 1);
+			}
+			values[size++] = value;
+		}
+
+		int get(int index) {
+			return values[index];
+		}
+
+		int size() {
+			return size;
+		}
+
+		boolean isEmpty() {
+			return size == 0;
+		}
+
+		void clear() {
+			size = 0;
+		}
+
+		void removeFirst(int count) {
+			System.arraycopy(values, count, values, 0, size - count);
+			size -= count;
+		}
+	}
+}
@@ -0,0 +1,68 @@
+package com.ticketapp.service;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands out hold ids in blocks leased to an event, so that the event of a hold
+ * can be found from its id alone. This is what lets a router send hold
+ * operations to the node owning the event, wherever the event has moved.
+ * <p>
+ * Ids of an event are sequential within a block, which keeps them dense for
+ * the {@link HoldRegistry} slab. Id 0 is never handed out.
+ * <p>
+ * <b>Concurrency:</b> taking an id is a CAS on the event's cursor. Only the
+ * first id of a block touches the shared block counter and owner map.
+ */
+public final class HoldIdAllocator {
+
+	private static final int BLOCK_BITS = 8;
+	private static final int BLOCK_MASK = (1 << BLOCK_BITS) - 1;
+	/**
+	 * Cursor value when the current block is used up
+	 */
+	private static final int EXHAUSTED = -1;
+
+	private final AtomicInteger nextBlock = new AtomicInteger();
+	private final ConcurrentMap<Integer, Integer> blockOwners = new ConcurrentHashMap<>();
+	private final ConcurrentMap<Integer, AtomicInteger> cursors = new ConcurrentHashMap<>();
+
+	/**
+	 * @return a new hold id for the event
+	 */
+	public int next(int eventId) {
+		AtomicInteger cursor = cursors.get(eventId);
+		if (cursor == null) {
+			cursor = cursors.computeIfAbsent(eventId, id -> new AtomicInteger(EXHAUSTED));
+		}
+		while (true) {
+			int id = cursor.get();
+			if (id == EXHAUSTED) {
+				int block = nextBlock.getAndIncrement();
+				if (block > (Integer.MAX_VALUE >>> BLOCK_BITS)) {
+					throw new IllegalStateException("Hold ids exhausted");
+				}
+				blockOwners.put(block, eventId);
+				int first = block == 0 ? 1 : block << BLOCK_BITS;
+				// if another thread leased a block first, the rest of ours is wasted
+				cursor.compareAndSet(EXHAUSTED, first + 1);
+				return first;
+			}
+			if (cursor.compareAndSet(id, ((id + 1) & BLOCK_MASK) == 0 ? EXHAUSTED : id + 1)) {
+				return id;
+			}
+		}
+	}
+
+	/**
+	 * @return the event the hold id was handed out for, or -1 if unknown
+	 */
+	public int eventOf(int holdId) {
+		if (holdId <= 0) {
+			return -1;
+		}
+		Integer eventId = blockOwners.get(holdId >>> BLOCK_BITS);
+		return eventId == null ? -1 : eventId;
+	}
+}
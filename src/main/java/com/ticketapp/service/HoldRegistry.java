@@ -0,0 +1,509 @@
+package com.ticketapp.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import com.ticketapp.bean.PriceQuote;
+import com.ticketapp.bean.SeatHold;
+import com.ticketapp.bean.SeatIdentifier;
+import com.ticketapp.service.HoldExpiryWheel.IntList;
+
+/**
+ * Registry of open seat holds keyed by the primitive hold id.
+ * <p>
+ * Holds are short lived and created at a high rate during an on-sale, so
+ * instead of a map of boxed keys to wrapper objects, the registry is a slab of
+ * parallel arrays. Hold ids are handed out sequentially, so a hold lives in
+ * slot <code>holdId &amp; (capacity - 1)</code>. Per hold, the only heap
+ * allocated is the packed seat array (see {@link SeatIdentifier#pack()}) and
+ * the price quote, if any. The email string is the caller's own instance.
+ * <p>
+ * Each hold also carries its creation time and a state word: its expiry
+ * deadline (epoch millis) while the hold is active, or a negative marker once
+ * an operation has claimed it. A hold goes from active to {@link #RESERVING}
+ * to booked, or from active to {@link #EXPIRED} or {@link #RELEASING}, and is
+ * then removed. The claim is a single CAS on the state word, so whichever of
+ * reserve, release or expiry gets there first owns the hold without any lock,
+ * and a reservation and an expiry at the same instant are decided by the
+ * deadline the CAS saw. The deadline can be moved forward in place while the
+ * hold is active, which is what makes extending a hold O(1).
+ * <p>
+ * <b>Concurrency:</b> the id stored in a slot doubles as its generation. A
+ * slot holds <code>0</code> when free, <code>-holdId</code> while being written
+ * or cleared, and <code>holdId</code> once published. Writers claim slots by
+ * CAS. Readers read the id, then the fields, then the id again, and discard
+ * the fields if the slot was recycled in between. The slab only grows, when a
+ * new hold id collides with a live one, and is swapped in whole through a
+ * volatile reference. Reads go through that reference without any lock: a
+ * reader still on the old slab sees it as it was when growing started, as
+ * nothing writes to it any more. Operations which write to a slot share the
+ * read lock of a {@link ReentrantReadWriteLock} and growing takes its write
+ * lock, so that no write lands in a slab while it is copied.
+ * <p>
+ * The slab never shrinks. Its size follows the peak of open holds (or of the
+ * spread of their ids), which an on-sale reaches again, and shrinking would
+ * stall every writer for a copy just before the next peak needs it back.
+ */
+public final class HoldRegistry {
+
+	private static final int DEFAULT_CAPACITY = 1024;
+	private static final int MAX_CAPACITY = 1 << 30;
+	private static final int FREE = 0;
+	/**
+	 * State word of a hold which has been claimed by the expiry sweep
+	 */
+	static final long EXPIRED = Long.MIN_VALUE;
+	/**
+	 * State word of a hold which is being booked
+	 */
+	static final long RESERVING = Long.MIN_VALUE + 1;
+	/**
+	 * State word of a hold which is being released by its customer
+	 */
+	static final long RELEASING = Long.MIN_VALUE + 2;
+
+	private final ReentrantReadWriteLock resizeLock = new ReentrantReadWriteLock();
+	private final LongAdder size = new LongAdder();
+	private volatile Slab slab;
+
+	public HoldRegistry() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * @param initialCapacity
+	 *            expected number of simultaneously open holds, rounded up to a
+	 *            power of two
+	 */
+	public HoldRegistry(int initialCapacity) {
+		if (initialCapacity < 1 || initialCapacity > MAX_CAPACITY) {
+			throw new IllegalArgumentException("Invalid hold registry capacity: " + initialCapacity);
+		}
+		int capacity = 1;
+		while (capacity < initialCapacity) {
+			capacity <<= 1;
+		}
+		this.slab = new Slab(capacity);
+	}
+
+	/**
+	 * Parallel arrays of one slab capacity
+	 */
+	private static final class Slab {
+		private final int mask;
+		private final AtomicIntegerArray holdIds;
+		private final AtomicIntegerArray eventIds;
+		private final AtomicReferenceArray<String> emails;
+		private final AtomicReferenceArray<int[]> seats;
+		private final AtomicLongArray createdTimes;
+		private final AtomicLongArray expiries;
+		private final AtomicReferenceArray<PriceQuote> quotes;
+
+		Slab(int capacity) {
+			this.mask = capacity - 1;
+			this.holdIds = new AtomicIntegerArray(capacity);
+			this.eventIds = new AtomicIntegerArray(capacity);
+			this.emails = new AtomicReferenceArray<>(capacity);
+			this.seats = new AtomicReferenceArray<>(capacity);
+			this.createdTimes = new AtomicLongArray(capacity);
+			this.expiries = new AtomicLongArray(capacity);
+			this.quotes = new AtomicReferenceArray<>(capacity);
+		}
+
+		/**
+		 * @return slot of the hold if it is published in this slab, else -1
+		 */
+		int slotOf(int holdId) {
+			int slot = holdId & mask;
+			return holdId > 0 && holdIds.get(slot) == holdId ? slot : -1;
+		}
+
+		/**
+		 * @return true if the slot still holds the hold, i.e. the fields read
+		 *         from it since {@link #slotOf(int)} are the hold's own
+		 */
+		boolean stillHolds(int slot, int holdId) {
+			return holdIds.get(slot) == holdId;
+		}
+	}
+
+	/**
+	 * Adds a new hold
+	 *
+	 * @param holdId
+	 *            positive, unique hold id
+	 * @param packedSeats
+	 *            seats packed with {@link SeatIdentifier#pack()}. Not copied,
+	 *            the caller must not modify the array afterwards
+	 * @param createdTime
+	 *            creation time in epoch millis
+	 * @param expiry
+	 *            expiry deadline in epoch millis
+	 * @throws IllegalArgumentException
+	 *             if the id is invalid or already present
+	 */
+	void put(int holdId, int eventId, String email, int[] packedSeats, long createdTime, long expiry) {
+		put(holdId, eventId, email, packedSeats, createdTime, expiry, null);
+	}
+
+	/**
+	 * Adds a new hold with the price of its seats
+	 *
+	 * @param quote
+	 *            price of the held seats, may be null
+	 * @see #put(int, int, String, int[], long, long)
+	 */
+	void put(int holdId, int eventId, String email, int[] packedSeats, long createdTime, long expiry,
+			PriceQuote quote) {
+		if (holdId <= 0) {
+			throw new IllegalArgumentException("Invalid hold id: " + holdId);
+		}
+		while (true) {
+			resizeLock.readLock().lock();
+			try {
+				Slab slab = this.slab;
+				int slot = holdId & slab.mask;
+				if (slab.holdIds.compareAndSet(slot, FREE, -holdId)) {
+					slab.eventIds.set(slot, eventId);
+					slab.emails.set(slot, email);
+					slab.seats.set(slot, packedSeats);
+					slab.createdTimes.set(slot, createdTime);
+					slab.expiries.set(slot, expiry);
+					slab.quotes.set(slot, quote);
+					// publish
+					slab.holdIds.set(slot, holdId);
+					size.increment();
+					return;
+				}
+				int current = slab.holdIds.get(slot);
+				if (current == holdId || current == -holdId) {
+					throw new IllegalArgumentException("Hold id already present: " + holdId);
+				}
+			} finally {
+				resizeLock.readLock().unlock();
+			}
+			grow(holdId);
+		}
+	}
+
+	/**
+	 * Doubles the slab until <code>holdId</code> no longer collides with a
+	 * live hold
+	 */
+	private void grow(int holdId) {
+		resizeLock.writeLock().lock();
+		try {
+			Slab old = slab;
+			if (old.holdIds.get(holdId & old.mask) == FREE) {
+				// somebody else already made room
+				return;
+			}
+			int capacity = old.mask + 1;
+			int newCapacity = capacity;
+			do {
+				if (newCapacity >= MAX_CAPACITY) {
+					throw new IllegalStateException("Hold registry is full: " + size.sum() + " open holds");
+				}
+				newCapacity <<= 1;
+			} while (!fits(old.holdIds, capacity, newCapacity - 1, holdId));
+			Slab grown = new Slab(newCapacity);
+			for (int i = 0; i < capacity; i++) {
+				int id = old.holdIds.get(i);
+				// no writer can be mid-operation on a slot while we hold the write lock
+				if (id > 0) {
+					int slot = id & grown.mask;
+					grown.eventIds.set(slot, old.eventIds.get(i));
+					grown.emails.set(slot, old.emails.get(i));
+					grown.seats.set(slot, old.seats.get(i));
+					grown.createdTimes.set(slot, old.createdTimes.get(i));
+					grown.expiries.set(slot, old.expiries.get(i));
+					grown.quotes.set(slot, old.quotes.get(i));
+					grown.holdIds.set(slot, id);
+				}
+			}
+			slab = grown;
+		} finally {
+			resizeLock.writeLock().unlock();
+		}
+	}
+
+	private static boolean fits(AtomicIntegerArray ids, int capacity, int newMask, int newId) {
+		boolean[] used = new boolean[newMask + 1];
+		used[newId & newMask] = true;
+		for (int i = 0; i < capacity; i++) {
+			int id = ids.get(i);
+			if (id > 0) {
+				if (used[id & newMask]) {
+					return false;
+				}
+				used[id & newMask] = true;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return expiry deadline of the hold in epoch millis, its claim marker
+	 *         ({@link #EXPIRED}, {@link #RESERVING} or {@link #RELEASING}) if
+	 *         it is ending or -1 if not present
+	 */
+	long getExpiry(int holdId) {
+		Slab slab = this.slab;
+		int slot = slab.slotOf(holdId);
+		if (slot < 0) {
+			return -1;
+		}
+		long expiry = slab.expiries.get(slot);
+		return slab.stillHolds(slot, holdId) ? expiry : -1;
+	}
+
+	/**
+	 * @return creation time of the hold in epoch millis or -1 if not present
+	 */
+	long getCreatedTime(int holdId) {
+		Slab slab = this.slab;
+		int slot = slab.slotOf(holdId);
+		if (slot < 0) {
+			return -1;
+		}
+		long createdTime = slab.createdTimes.get(slot);
+		return slab.stillHolds(slot, holdId) ? createdTime : -1;
+	}
+
+	/**
+	 * Moves the expiry deadline of a live hold forward. Never moves it back.
+	 *
+	 * @return the resulting deadline, or -1 if the hold is not present, has
+	 *         been claimed or has already expired at <code>now</code>
+	 */
+	long extendExpiry(int holdId, long newExpiry, long now) {
+		resizeLock.readLock().lock();
+		try {
+			Slab slab = this.slab;
+			int slot = holdId & slab.mask;
+			while (holdId > 0 && slab.holdIds.get(slot) == holdId) {
+				long expiry = slab.expiries.get(slot);
+				if (expiry < 0 || expiry <= now) {
+					return -1;
+				}
+				if (newExpiry <= expiry) {
+					return expiry;
+				}
+				if (slab.expiries.compareAndSet(slot, expiry, newExpiry)) {
+					return newExpiry;
+				}
+			}
+			return -1;
+		} finally {
+			resizeLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Claims a hold for expiry if its deadline has passed. The hold stays in
+	 * the registry (it still has to be {@link #remove(int) removed}) but can no
+	 * longer be extended, reserved or released.
+	 *
+	 * @param now
+	 *            current time less any grace period
+	 * @return true if the deadline had passed and this call marked it
+	 */
+	boolean markExpired(int holdId, long now) {
+		return claim(holdId, EXPIRED, now);
+	}
+
+	/**
+	 * Claims a hold for reservation if its deadline has not passed. The other
+	 * side of {@link #markExpired(int, long)}: for the same <code>now</code>
+	 * exactly one of them can succeed.
+	 *
+	 * @param now
+	 *            current time less any grace period
+	 * @return true if this call marked the hold
+	 */
+	boolean markReserving(int holdId, long now) {
+		return claim(holdId, RESERVING, now);
+	}
+
+	/**
+	 * Claims an active hold for release, whatever its deadline
+	 *
+	 * @return true if this call marked the hold
+	 */
+	boolean markReleasing(int holdId) {
+		return claim(holdId, RELEASING, Long.MIN_VALUE);
+	}
+
+	private boolean claim(int holdId, long marker, long now) {
+		resizeLock.readLock().lock();
+		try {
+			Slab slab = this.slab;
+			int slot = holdId & slab.mask;
+			while (holdId > 0 && slab.holdIds.get(slot) == holdId) {
+				long expiry = slab.expiries.get(slot);
+				// expiry needs the deadline passed, the others need it not passed
+				if (expiry < 0 || (marker == EXPIRED) != (expiry <= now)) {
+					return false;
+				}
+				if (slab.expiries.compareAndSet(slot, expiry, marker)) {
+					return true;
+				}
+			}
+			return false;
+		} finally {
+			resizeLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Removes a hold. Only one of several concurrent callers succeeds.
+	 *
+	 * @return true if this call removed the hold
+	 */
+	boolean remove(int holdId) {
+		resizeLock.readLock().lock();
+		try {
+			Slab slab = this.slab;
+			int slot = holdId & slab.mask;
+			if (holdId <= 0 || !slab.holdIds.compareAndSet(slot, holdId, -holdId)) {
+				return false;
+			}
+			// drop references so that the slot does not keep garbage alive
+			slab.emails.set(slot, null);
+			slab.seats.set(slot, null);
+			slab.quotes.set(slot, null);
+			slab.holdIds.set(slot, FREE);
+			size.decrement();
+			return true;
+		} finally {
+			resizeLock.readLock().unlock();
+		}
+	}
+
+	public boolean contains(int holdId) {
+		return slab.slotOf(holdId) >= 0;
+	}
+
+	/**
+	 * @return the event id of the hold or -1 if not present
+	 */
+	int getEventId(int holdId) {
+		Slab slab = this.slab;
+		int slot = slab.slotOf(holdId);
+		if (slot < 0) {
+			return -1;
+		}
+		int eventId = slab.eventIds.get(slot);
+		return slab.stillHolds(slot, holdId) ? eventId : -1;
+	}
+
+	/**
+	 * @return the customer email of the hold or null if not present
+	 */
+	String getEmail(int holdId) {
+		Slab slab = this.slab;
+		int slot = slab.slotOf(holdId);
+		if (slot < 0) {
+			return null;
+		}
+		String email = slab.emails.get(slot);
+		return slab.stillHolds(slot, holdId) ? email : null;
+	}
+
+	/**
+	 * @return packed seats of the hold or null if not present. Must not be
+	 *         modified.
+	 */
+	int[] getPackedSeats(int holdId) {
+		Slab slab = this.slab;
+		int slot = slab.slotOf(holdId);
+		if (slot < 0) {
+			return null;
+		}
+		int[] packed = slab.seats.get(slot);
+		return slab.stillHolds(slot, holdId) ? packed : null;
+	}
+
+	/**
+	 * @return price of the hold's seats or null if not present or not priced
+	 */
+	PriceQuote getQuote(int holdId) {
+		Slab slab = this.slab;
+		int slot = slab.slotOf(holdId);
+		if (slot < 0) {
+			return null;
+		}
+		PriceQuote quote = slab.quotes.get(slot);
+		return slab.stillHolds(slot, holdId) ? quote : null;
+	}
+
+	/**
+	 * Materializes the hold as a {@link SeatHold}. Allocates, so should be
+	 * kept off the hot path.
+	 *
+	 * @return the hold or null if not present
+	 */
+	public SeatHold getHold(int holdId) {
+		Slab slab = this.slab;
+		int slot = slab.slotOf(holdId);
+		if (slot < 0) {
+			return null;
+		}
+		int eventId = slab.eventIds.get(slot);
+		String email = slab.emails.get(slot);
+		int[] packed = slab.seats.get(slot);
+		PriceQuote quote = slab.quotes.get(slot);
+		if (!slab.stillHolds(slot, holdId)) {
+			return null;
+		}
+		return new SeatHold(eventId, holdId, email, unpack(packed), quote);
+	}
+
+	/**
+	 * Adds the ids of all open holds of an event to <code>out</code>. A
+	 * full scan of the slab, meant for rare operations such as moving an
+	 * event.
+	 */
+	void holdIdsOf(int eventId, IntList out) {
+		Slab slab = this.slab;
+		for (int slot = 0; slot <= slab.mask; slot++) {
+			int holdId = slab.holdIds.get(slot);
+			if (holdId > 0 && slab.eventIds.get(slot) == eventId && slab.stillHolds(slot, holdId)) {
+				out.add(holdId);
+			}
+		}
+	}
+
+	public int size() {
+		return size.intValue();
+	}
+
+	public boolean isEmpty() {
+		return size.sum() == 0;
+	}
+
+	int capacity() {
+		return slab.mask + 1;
+	}
+
+	static int[] pack(List<SeatIdentifier> seatIds) {
+		int[] packed = new int[seatIds.size()];
+		for (int i = 0; i < packed.length; i++) {
+			packed[i] = seatIds.get(i).pack();
+		}
+		return packed;
+	}
+
+	static List<SeatIdentifier> unpack(int[] packed) {
+		List<SeatIdentifier> seatIds = new ArrayList<>(packed.length);
+		for (int seat : packed) {
+			seatIds.add(SeatIdentifier.unpack(seat));
+		}
+		return seatIds;
+	}
+}
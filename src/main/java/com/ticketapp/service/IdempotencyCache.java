@@ -0,0 +1,182 @@
+package com.ticketapp.service;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Results of calls made with an idempotency key, per event. A retry with the
+ * same customer and key gets the result of the first call instead of calling
+ * again; a retry while the first call is still running waits for it. Calls
+ * which fail are forgotten, so that they can be retried.
+ * <p>
+ * Results are kept for a fixed time and each event keeps a bounded number of
+ * them, oldest evicted first. Finding a result is a map lookup, no event lock
+ * is involved. Bookkeeping of new results is locked per event, with a
+ * {@link ReentrantLock} so that virtual threads never pin their carrier.
+ *
+ * @param <T>
+ *            result type
+ */
+public final class IdempotencyCache<T> {
+
+	private final long ttlMillis;
+	private final int maxPerEvent;
+	private final LongSupplier clock;
+	private final ConcurrentMap<Integer, EventResults<T>> events = new ConcurrentHashMap<>();
+
+	/**
+	 * @param ttlMillis
+	 *            how long a result is kept
+	 * @param maxPerEvent
+	 *            results kept per event
+	 */
+	public IdempotencyCache(long ttlMillis, int maxPerEvent) {
+		this(ttlMillis, maxPerEvent, System::currentTimeMillis);
+	}
+
+	IdempotencyCache(long ttlMillis, int maxPerEvent, LongSupplier clock) {
+		if (ttlMillis <= 0 || maxPerEvent <= 0) {
+			throw new IllegalArgumentException("Invalid idempotency cache bounds");
+		}
+		this.ttlMillis = ttlMillis;
+		this.maxPerEvent = maxPerEvent;
+		this.clock = clock;
+	}
+
+	/**
+	 * Makes the call, or returns the result of the call made earlier with the
+	 * same key
+	 *
+	 * @param idempotencyKey
+	 *            chosen by the customer, null calls every time
+	 */
+	public T execute(int eventId, String customerEmail, String idempotencyKey, Supplier<T> call) {
+		if (idempotencyKey == null) {
+			return call.get();
+		}
+		EventResults<T> results = events.computeIfAbsent(eventId, id -> new EventResults<>());
+		Key key = new Key(customerEmail, idempotencyKey);
+		long now = clock.getAsLong();
+		Result<T> mine = new Result<>(key, now + ttlMillis);
+		while (true) {
+			Result<T> existing = results.map.putIfAbsent(key, mine);
+			if (existing == null) {
+				break;
+			}
+			if (existing.expiry > now) {
+				return existing.await();
+			}
+			if (results.map.replace(key, existing, mine)) {
+				break;
+			}
+		}
+		T value;
+		try {
+			value = call.get();
+		} catch (Throwable ex) {
+			// errors too, a waiting retry must never be left waiting
+			results.map.remove(key, mine);
+			mine.future.completeExceptionally(ex);
+			throw ex;
+		}
+		mine.future.complete(value);
+		results.added(mine, now, maxPerEvent);
+		return value;
+	}
+
+	/**
+	 * Forgets the results of an event, e.g. once it moved to another node
+	 */
+	public void remove(int eventId) {
+		events.remove(eventId);
+	}
+
+	/**
+	 * @return results kept for the event, including expired ones not yet
+	 *         evicted
+	 */
+	int size(int eventId) {
+		EventResults<T> results = events.get(eventId);
+		return results == null ? 0 : results.map.size();
+	}
+
+	private static final class EventResults<T> {
+		private final ConcurrentMap<Key, Result<T>> map = new ConcurrentHashMap<>();
+		/**
+		 * Completed results from oldest to newest, all share one ttl
+		 */
+		private final ArrayDeque<Result<T>> order = new ArrayDeque<>();
+
+		private final ReentrantLock lock = new ReentrantLock();
+
+		void added(Result<T> result, long now, int max) {
+			lock.lock();
+			try {
+				order.addLast(result);
+				while (!order.isEmpty() && (order.size() > max || order.peekFirst().expiry <= now)) {
+					Result<T> oldest = order.pollFirst();
+					map.remove(oldest.key, oldest);
+				}
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+
+	private static final class Result<T> {
+		private final Key key;
+		private final long expiry;
+		private final CompletableFuture<T> future = new CompletableFuture<>();
+
+		Result(Key key, long expiry) {
+			this.key = key;
+			this.expiry = expiry;
+		}
+
+		T await() {
+			try {
+				return future.join();
+			} catch (CompletionException ex) {
+				// the first call failed, fail as it did
+				if (ex.getCause() instanceof RuntimeException) {
+					throw (RuntimeException) ex.getCause();
+				}
+				if (ex.getCause() instanceof Error) {
+					throw (Error) ex.getCause();
+				}
+				throw ex;
+			}
+		}
+	}
+
+	private static final class Key {
+		private final String customerEmail;
+		private final String idempotencyKey;
+
+		Key(String customerEmail, String idempotencyKey) {
+			this.customerEmail = customerEmail;
+			this.idempotencyKey = idempotencyKey;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return idempotencyKey.equals(other.idempotencyKey)
+					&& (customerEmail == null ? other.customerEmail == null : customerEmail.equals(other.customerEmail));
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * idempotencyKey.hashCode() + (customerEmail == null ? 0 : customerEmail.hashCode());
+		}
+	}
+}
@@ -0,0 +1,107 @@
+package com.ticketapp.service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import com.ticketapp.bean.Availability;
+import com.ticketapp.bean.Event;
+import com.ticketapp.bean.PriceQuote;
+import com.ticketapp.bean.SeatHold;
+import com.ticketapp.bean.SeatIdentifier;
+import com.ticketapp.bean.input.EventInput;
+
+/**
+ * One node of a partitioned deployment. Unlike {@link TicketService} every
+ * call names its event, and event ids are assigned by the caller so that they
+ * are unique across nodes. A node owns the locks and hold expiry of the events
+ * placed on it.
+ *
+ * @see com.ticketapp.service.cluster.TicketRouter
+ */
+public interface TicketNode {
+	/**
+	 * @throws IllegalArgumentException
+	 *             if the node already has an event with the id
+	 */
+	Event createEvent(int eventId, EventInput eventInput);
+	/**
+	 * Creates many events at once
+	 *
+	 * @param eventInputs
+	 *            inputs by event id
+	 * @return the events, in the iteration order of the inputs
+	 * @throws IllegalArgumentException
+	 *             if the node already has an event with one of the ids
+	 */
+	List<Event> createEvents(Map<Integer, EventInput> eventInputs);
+	Event getEvent(Integer id);
+	int numSeatsAvailable(int eventId, Optional<Integer> venueLevel);
+	/**
+	 * Seat counts and current prices per level. Never waits for the event lock.
+	 */
+	Availability getAvailability(int eventId);
+	SeatHold findAndHoldSeats(int eventId, int numSeats, Optional<Integer> minLevel, Optional<Integer> maxLevel,
+			String customerEmail);
+	/**
+	 * Same as {@link #findAndHoldSeats(int, int, Optional, Optional, String)},
+	 * but a retry with the same key returns the hold of the first call
+	 *
+	 * @param idempotencyKey
+	 *            chosen by the customer per attempt, null for none
+	 */
+	SeatHold findAndHoldSeats(int eventId, int numSeats, Optional<Integer> minLevel, Optional<Integer> maxLevel,
+			String customerEmail, String idempotencyKey);
+	/**
+	 * Queues the customer for seats of a sold out event, see
+	 * {@link TicketServiceImpl#joinWaitlist(int, int, Optional, Optional, String)}
+	 */
+	CompletableFuture<SeatHold> joinWaitlist(int eventId, int numSeats, Optional<Integer> minLevel,
+			Optional<Integer> maxLevel, String customerEmail);
+	void releaseHold(int seatHoldId, String customerEmail);
+	long extendHold(int seatHoldId, String customerEmail);
+	String reserveSeats(int seatHoldId, String customerEmail);
+	String reserveSeats(int seatHoldId, String customerEmail, List<SeatIdentifier> seatIds);
+	/**
+	 * Same as {@link #reserveSeats(int, String)}, but a retry with the same key
+	 * returns the reservation of the first call, even though the hold is gone
+	 *
+	 * @param idempotencyKey
+	 *            chosen by the customer per attempt, null for none
+	 */
+	String reserveSeats(int seatHoldId, String customerEmail, String idempotencyKey);
+	/**
+	 * Cancels a reservation of the customer, its seats go back on sale
+	 *
+	 * @param reservationId
+	 *            confirmation code returned by reserveSeats
+	 * @return price of the cancelled seats to refund, null if not priced
+	 * @throws com.ticketapp.service.exception.SeatReservationException
+	 *             if the reservation is someone else's
+	 */
+	PriceQuote cancelReservation(int eventId, String reservationId, String customerEmail);
+	/**
+	 * Cancels some of the seats of a reservation, the rest stays booked under
+	 * the same confirmation code
+	 */
+	PriceQuote cancelReservation(int eventId, String reservationId, String customerEmail,
+			List<SeatIdentifier> seatIds);
+	/**
+	 * Removes the event with its holds and reservations from this node. Calls
+	 * for the event which are in flight, or which arrive later, fail with an
+	 * {@link com.ticketapp.service.exception.EventNotHostedException}. Holds
+	 * claimed by a reservation or release in flight are exported as open
+	 * holds, so that the call can be run again on the new node. Recent hold
+	 * counts used for pricing and results kept for idempotency keys are not
+	 * exported.
+	 */
+	EventSnapshot exportEvent(int eventId);
+	/**
+	 * Places an exported event on this node, holds included
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the node already has an event with the id
+	 */
+	void importEvent(EventSnapshot snapshot);
+}
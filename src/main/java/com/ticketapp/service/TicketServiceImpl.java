@@ -1,36 +1,56 @@
 package com.ticketapp.service;
 
+import java.time.Clock;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock.ReadLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock.WriteLock;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.ticketapp.bean.Availability;
 import com.ticketapp.bean.Event;
+import com.ticketapp.bean.PriceQuote;
 import com.ticketapp.bean.Seat;
 import com.ticketapp.bean.SeatHold;
 import com.ticketapp.bean.SeatIdentifier;
 import com.ticketapp.bean.SeatLevel;
 import com.ticketapp.bean.SeatReservation;
+import com.ticketapp.bean.VenueLayout;
 import com.ticketapp.bean.Seat.SeatState;
 import com.ticketapp.bean.input.EventInput;
+import com.ticketapp.service.audit.AuditLog;
+import com.ticketapp.service.audit.AuditType;
+import com.ticketapp.service.HoldExpiryWheel.IntList;
+import com.ticketapp.service.exception.EventNotHostedException;
 import com.ticketapp.service.exception.NotFoundException;
+import com.ticketapp.service.exception.QuotaExceededException;
 import com.ticketapp.service.exception.SeatHoldException;
 import com.ticketapp.service.exception.SeatReservationException;
+import com.ticketapp.service.pricing.DynamicPricer;
+import com.ticketapp.service.quota.CustomerQuotaLimiter;
 
 /**
  * Implementation of {@link TicketService} which provides concurrent reads and
@@ -63,10 +83,35 @@ import com.ticketapp.service.exception.SeatReservationException;
  * (multiple write locks need to be acquired), but, the chances of that
  * occurring should be less frequent for a hold (depending on usecase).
  * 
+ * <p>
+ * <b>Hold Lifecycle:</b> A hold ends in exactly one of reserve, release or
+ * expiry. Each claims it with a CAS on its state word in the
+ * {@link HoldRegistry} before taking the event lock, so the winner is decided
+ * without a lock and there is no task to cancel. A reservation wins against
+ * expiry until the deadline plus an optional grace period; the loser fails
+ * at once instead of queuing on the event lock. Expiry deadlines are enforced
+ * by a {@link HoldExpiryWheel} which is swept periodically on the hold
+ * scheduler. Extending a hold is a CAS on its deadline.
+ * 
+ * <p>
+ * <b>Customer Quotas:</b> Hold attempts are checked against the
+ * {@link CustomerQuotaLimiter} before any event lock is taken. The quota taken
+ * by a hold is returned when the hold ends, however it ends.
+ * 
+ * <p>
+ * <b>Partitioning:</b> As a {@link TicketNode} the service hosts a share of the
+ * events of a cluster. Event ids are then assigned by the router and hold ids
+ * come from a {@link HoldIdAllocator} shared by all nodes. An event is moved
+ * off a node by exporting it under its write lock; calls which were waiting
+ * on that lock then find the event gone and fail with an
+ * {@link EventNotHostedException}, for the router to retry on the event's new
+ * node. A hold claimed by a reservation or release which is still waiting is
+ * handed over with the event, so that the retry finds it.
+ * 
  * @author peter
  *
  */
-public final class TicketServiceImpl implements TicketService, TicketServiceV2 {
+public final class TicketServiceImpl implements TicketService, TicketServiceV2, TicketNode {
 
 	/**
 	 * Map to hold eventId and corresponding events
@@ -75,7 +120,8 @@ public final class TicketServiceImpl implements TicketService, TicketServiceV2 {
 	/**
 	 * Id generators
 	 */
-	private final AtomicInteger eventIdGen, holdIdGen;
+	private final AtomicInteger eventIdGen;
+	private final HoldIdAllocator holdIdAllocator;
 	/**
 	 * Map of event to {@link SeatLevel}s List. Assumption: seat levels are
 	 * ordered from best to worst
@@ -87,20 +133,80 @@ public final class TicketServiceImpl implements TicketService, TicketServiceV2 {
 	 */
 	private final ScheduledExecutorService holdScheduler;
 	/**
-	 * Map of holdId to object ScheduledHold object to manage hold
+	 * Open holds keyed by holdId, with their expiry deadlines. The
+	 * {@link HoldExpiryWheel} decides when to look at them again.
 	 */
-	private final ConcurrentMap<Integer, ScheduledHold> holdCollection;
+	private final HoldRegistry holdRegistry;
 
 	/**
 	 * Map of reservationid to event reservation object
 	 */
 	private final ConcurrentMap<UUID, SeatReservation> reservations;
 
+	/**
+	 * Decides when holds expire
+	 */
+	private final HoldExpiryWheel holdExpiry;
+	/**
+	 * Per customer hold limits
+	 */
+	private final CustomerQuotaLimiter quotaLimiter;
+	/**
+	 * Shared seat layouts
+	 */
+	private final VenueRegistry venues = new VenueRegistry();
+	/**
+	 * Demand based prices
+	 */
+	private final DynamicPricer pricer;
+	/**
+	 * Told about every committed event state, e.g. read replicas
+	 */
+	private final List<EventCommitListener> listeners = new CopyOnWriteArrayList<>();
+	/**
+	 * Records of the booking path, written off the calling thread
+	 */
+	private final AuditLog audit;
+	/**
+	 * Results of calls retried with an idempotency key
+	 */
+	private final IdempotencyCache<SeatHold> holdResults;
+	private final IdempotencyCache<String> reservationResults;
+	/**
+	 * Customers waiting for seats of sold out events
+	 */
+	private final ConcurrentMap<Integer, Waitlist> waitlists = new ConcurrentHashMap<>();
+	/**
+	 * Time of hold deadlines and expiry, virtual in simulations
+	 */
+	private final Clock clock;
+	/**
+	 * How long after its deadline a hold can still be reserved, and is not
+	 * yet expired
+	 */
+	private final long holdGraceMillis;
+
+	/**
+	 * Resolution of hold expiry. Holds expire at most this much late
+	 */
+	static final long EXPIRY_TICK_MILLIS = 100;
+	private static final int EXPIRY_WHEEL_SIZE = 1024;
+	/**
+	 * A hold can be extended up to this many times the event's hold expiration
+	 * from its creation
+	 */
+	static final int MAX_HOLD_TTL_FACTOR = 3;
+	/**
+	 * How long and how many results of idempotent calls are kept per event
+	 */
+	static final long IDEMPOTENCY_TTL_MILLIS = TimeUnit.MINUTES.toMillis(15);
+	static final int IDEMPOTENCY_RESULTS_PER_EVENT = 10000;
+
 	private static final Logger LOG = LoggerFactory.getLogger(TicketServiceImpl.class);
 
 	/**
 	 * Instantiate as follows: <code>
-	 * TicketService ticketService = new TicketServiceImpl(Executors.newScheduledThreadPool(4), new ConcurrentHashMap<>(), new ConcurrentHashMap<>(), new ConcurrentHashMap<>());
+	 * TicketService ticketService = new TicketServiceImpl(Executors.newScheduledThreadPool(4), new ConcurrentHashMap<>(), new ConcurrentHashMap<>(), new HoldRegistry(), new ConcurrentHashMap<>());
 	 * </code>
 	 * 
 	 * @param holdScheduler
@@ -110,50 +216,238 @@ public final class TicketServiceImpl implements TicketService, TicketServiceV2 {
 	 *            map holding eventid and corresponding events with their locks
 	 * @param seatLevels
 	 *            map holding eventid and corresponding levels
-	 * @param holdCollection
-	 *            map holding holdid and hold object containing ScheduledFuture
-	 *            to control the hold
+	 * @param holdRegistry
+	 *            registry of open holds and their expiry deadlines
+	 * @param reservations
+	 *            map holding reservationid and corresponding reservation
 	 */
 	public TicketServiceImpl(ScheduledExecutorService holdScheduler, ConcurrentMap<Integer, EventSync> events,
-			ConcurrentMap<Integer, List<SeatLevel>> seatLevels, ConcurrentMap<Integer, ScheduledHold> holdCollection,
+			ConcurrentMap<Integer, List<SeatLevel>> seatLevels, HoldRegistry holdRegistry,
 			ConcurrentMap<UUID, SeatReservation> reservations) {
+		this(holdScheduler, events, seatLevels, holdRegistry, reservations, CustomerQuotaLimiter.unlimited());
+	}
+
+	/**
+	 * Same as
+	 * {@link #TicketServiceImpl(ScheduledExecutorService, ConcurrentMap, ConcurrentMap, HoldRegistry, ConcurrentMap)}
+	 * with per customer hold limits
+	 * 
+	 * @param quotaLimiter
+	 *            limits holds per event and customer
+	 */
+	public TicketServiceImpl(ScheduledExecutorService holdScheduler, ConcurrentMap<Integer, EventSync> events,
+			ConcurrentMap<Integer, List<SeatLevel>> seatLevels, HoldRegistry holdRegistry,
+			ConcurrentMap<UUID, SeatReservation> reservations, CustomerQuotaLimiter quotaLimiter) {
+		this(holdScheduler, events, seatLevels, holdRegistry, reservations, quotaLimiter, new HoldIdAllocator());
+	}
+
+	/**
+	 * Constructor for a node of a cluster
+	 * 
+	 * @param holdIdAllocator
+	 *            hold id source shared by all nodes of the cluster
+	 */
+	public TicketServiceImpl(ScheduledExecutorService holdScheduler, ConcurrentMap<Integer, EventSync> events,
+			ConcurrentMap<Integer, List<SeatLevel>> seatLevels, HoldRegistry holdRegistry,
+			ConcurrentMap<UUID, SeatReservation> reservations, CustomerQuotaLimiter quotaLimiter,
+			HoldIdAllocator holdIdAllocator) {
+		this(holdScheduler, events, seatLevels, holdRegistry, reservations, quotaLimiter, holdIdAllocator,
+				DynamicPricer.fixed());
+	}
+
+	/**
+	 * Same as
+	 * {@link #TicketServiceImpl(ScheduledExecutorService, ConcurrentMap, ConcurrentMap, HoldRegistry, ConcurrentMap, CustomerQuotaLimiter, HoldIdAllocator)}
+	 * with demand based prices
+	 * 
+	 * @param pricer
+	 *            prices levels from sell-through and recent holds
+	 */
+	public TicketServiceImpl(ScheduledExecutorService holdScheduler, ConcurrentMap<Integer, EventSync> events,
+			ConcurrentMap<Integer, List<SeatLevel>> seatLevels, HoldRegistry holdRegistry,
+			ConcurrentMap<UUID, SeatReservation> reservations, CustomerQuotaLimiter quotaLimiter,
+			HoldIdAllocator holdIdAllocator, DynamicPricer pricer) {
+		this(holdScheduler, events, seatLevels, holdRegistry, reservations, quotaLimiter, holdIdAllocator, pricer,
+				AuditLog.getDefault());
+	}
+
+	/**
+	 * Same as
+	 * {@link #TicketServiceImpl(ScheduledExecutorService, ConcurrentMap, ConcurrentMap, HoldRegistry, ConcurrentMap, CustomerQuotaLimiter, HoldIdAllocator, DynamicPricer)}
+	 * with its own audit log
+	 * 
+	 * @param audit
+	 *            receives hold and reservation records
+	 */
+	public TicketServiceImpl(ScheduledExecutorService holdScheduler, ConcurrentMap<Integer, EventSync> events,
+			ConcurrentMap<Integer, List<SeatLevel>> seatLevels, HoldRegistry holdRegistry,
+			ConcurrentMap<UUID, SeatReservation> reservations, CustomerQuotaLimiter quotaLimiter,
+			HoldIdAllocator holdIdAllocator, DynamicPricer pricer, AuditLog audit) {
+		this(holdScheduler, events, seatLevels, holdRegistry, reservations, quotaLimiter, holdIdAllocator, pricer,
+				audit, Clock.systemUTC());
+	}
+
+	/**
+	 * Same as
+	 * {@link #TicketServiceImpl(ScheduledExecutorService, ConcurrentMap, ConcurrentMap, HoldRegistry, ConcurrentMap, CustomerQuotaLimiter, HoldIdAllocator, DynamicPricer, AuditLog)}
+	 * on a clock of its own. Given a
+	 * {@link com.ticketapp.util.VirtualTimeScheduler} and its clock, holds expire
+	 * in virtual time.
+	 * 
+	 * @param clock
+	 *            time of hold deadlines, should be the time of the hold
+	 *            scheduler
+	 */
+	public TicketServiceImpl(ScheduledExecutorService holdScheduler, ConcurrentMap<Integer, EventSync> events,
+			ConcurrentMap<Integer, List<SeatLevel>> seatLevels, HoldRegistry holdRegistry,
+			ConcurrentMap<UUID, SeatReservation> reservations, CustomerQuotaLimiter quotaLimiter,
+			HoldIdAllocator holdIdAllocator, DynamicPricer pricer, AuditLog audit, Clock clock) {
+		this(holdScheduler, events, seatLevels, holdRegistry, reservations, quotaLimiter, holdIdAllocator, pricer,
+				audit, clock, 0);
+	}
+
+	/**
+	 * Same as
+	 * {@link #TicketServiceImpl(ScheduledExecutorService, ConcurrentMap, ConcurrentMap, HoldRegistry, ConcurrentMap, CustomerQuotaLimiter, HoldIdAllocator, DynamicPricer, AuditLog, Clock)}
+	 * with a grace period on hold expiry, e.g. for customers whose payment
+	 * completes just after their hold ran out
+	 * 
+	 * @param holdGraceMillis
+	 *            how long after its deadline a hold can still be reserved.
+	 *            Its seats are reclaimed only after the grace period
+	 */
+	public TicketServiceImpl(ScheduledExecutorService holdScheduler, ConcurrentMap<Integer, EventSync> events,
+			ConcurrentMap<Integer, List<SeatLevel>> seatLevels, HoldRegistry holdRegistry,
+			ConcurrentMap<UUID, SeatReservation> reservations, CustomerQuotaLimiter quotaLimiter,
+			HoldIdAllocator holdIdAllocator, DynamicPricer pricer, AuditLog audit, Clock clock, long holdGraceMillis) {
 		if (holdScheduler == null || holdScheduler.isShutdown()) {
 			throw new IllegalArgumentException("Invalid hold scheduler");
 		}
+		if (holdGraceMillis < 0) {
+			throw new IllegalArgumentException("Invalid hold grace period: " + holdGraceMillis);
+		}
 		this.eventIdGen = new AtomicInteger(1);
-		this.holdIdGen = new AtomicInteger(1);
+		this.holdIdAllocator = holdIdAllocator;
 		this.events = events;
 		this.seatLevels = seatLevels;
-		this.holdCollection = holdCollection;
+		this.holdRegistry = holdRegistry;
 		this.holdScheduler = holdScheduler;
 		this.reservations = reservations;
+		this.quotaLimiter = quotaLimiter;
+		this.pricer = pricer;
+		this.audit = audit;
+		this.clock = clock;
+		this.holdGraceMillis = holdGraceMillis;
+		this.holdResults = new IdempotencyCache<>(IDEMPOTENCY_TTL_MILLIS, IDEMPOTENCY_RESULTS_PER_EVENT, clock::millis);
+		this.reservationResults = new IdempotencyCache<>(IDEMPOTENCY_TTL_MILLIS, IDEMPOTENCY_RESULTS_PER_EVENT,
+				clock::millis);
+		this.holdExpiry = new HoldExpiryWheel(EXPIRY_TICK_MILLIS, EXPIRY_WHEEL_SIZE, clock.millis());
+		this.holdScheduler.scheduleWithFixedDelay(this::expireHolds, EXPIRY_TICK_MILLIS, EXPIRY_TICK_MILLIS,
+				TimeUnit.MILLISECONDS);
 	}
 
 	@Override
 	public Event createEvent(EventInput eventInput) {
-		int eventId = eventIdGen.getAndIncrement();
-		List<SeatLevel> seatLevels = new ArrayList<>();
-		AtomicInteger seatLevel = new AtomicInteger(1);
-		seatLevels
-				.addAll(eventInput
-						.getLevels().stream().map(level -> new SeatLevel(seatLevel.getAndIncrement(), level.getName(),
-								level.getPrice(), level.getRows(), level.getSeatsInRow()))
-				.collect(Collectors.toList()));
-		Event event = new Event(eventId, eventInput.getName(), eventInput.getStartDateTime(), eventInput.getDuration(),
-				seatLevels, eventInput.getHoldExpirationSeconds());
-		events.put(eventId, new EventSync(event, new ReentrantReadWriteLock()));
-		this.seatLevels.put(eventId, Collections.unmodifiableList(seatLevels));
+		return createEvent(eventIdGen.getAndIncrement(), eventInput);
+	}
+
+	@Override
+	public Event createEvent(int eventId, EventInput eventInput) {
+		Event event = newEvent(eventId, eventInput);
+		addEvent(event);
 		LOG.info("Event created: {}", event);
 		return event;
 	}
 
+	@Override
+	public List<Event> createEvents(List<EventInput> eventInputs) {
+		Map<Integer, EventInput> byId = new LinkedHashMap<>();
+		for (EventInput eventInput : eventInputs) {
+			byId.put(eventIdGen.getAndIncrement(), eventInput);
+		}
+		return createEvents(byId);
+	}
+
+	/**
+	 * Builds the events on the fork/join pool, then adds them one by one as
+	 * {@link #createEvent(int, EventInput)} does. Each venue is built once,
+	 * before the events, with its levels ranked in parallel; the events of a
+	 * season then share it. Nothing is added if an input is invalid. If an id
+	 * is taken meanwhile, the events before it stay.
+	 */
+	@Override
+	public List<Event> createEvents(Map<Integer, EventInput> eventInputs) {
+		for (Integer eventId : eventInputs.keySet()) {
+			if (events.containsKey(eventId)) {
+				throw new IllegalArgumentException(String.format("Event with id %d already exists", eventId));
+			}
+		}
+		for (EventInput eventInput : eventInputs.values()) {
+			venues.getLayout(eventInput.getLevels(), eventInput.getSeatScorer());
+		}
+		// an array list splits evenly, unlike the iterator of a linked map
+		List<Event> created = new ArrayList<>(eventInputs.entrySet()).parallelStream()
+				.map(entry -> newEvent(entry.getKey(), entry.getValue())).collect(Collectors.toList());
+		created.forEach(this::addEvent);
+		LOG.info("{} events created", created.size());
+		return created;
+	}
+
+	private Event newEvent(int eventId, EventInput eventInput) {
+		// shows in the same venue share one layout
+		VenueLayout layout = venues.getLayout(eventInput.getLevels(), eventInput.getSeatScorer());
+		return new Event(eventId, eventInput.getName(), eventInput.getStartDateTime(), eventInput.getDuration(),
+				layout, eventInput.getHoldExpirationSeconds(), eventInput.getSeatStorage(),
+				eventInput.getAllocationStrategy());
+	}
+
+	private void addEvent(Event event) {
+		int eventId = event.getId();
+		EventSync eventSync = new EventSync(event, new ReentrantReadWriteLock());
+		// locked until listeners know of it, so that they see it before any update
+		eventSync.getWriteLock().lock();
+		try {
+			if (events.putIfAbsent(eventId, eventSync) != null) {
+				throw new IllegalArgumentException(String.format("Event with id %d already exists", eventId));
+			}
+			this.seatLevels.put(eventId, event.getLevels());
+			listeners.forEach(listener -> listener.eventCommitted(event));
+		} finally {
+			eventSync.getWriteLock().unlock();
+		}
+	}
+
+	/**
+	 * Adds a listener and tells it the current state of every event
+	 */
+	public void addCommitListener(EventCommitListener listener) {
+		listeners.add(listener);
+		for (Integer eventId : events.keySet()) {
+			EventSync eventSync;
+			try {
+				eventSync = lockEvent(eventId, true);
+			} catch (NotFoundException ex) {
+				// exported meanwhile
+				continue;
+			}
+			try {
+				listener.eventCommitted(getEventSync(eventId).getEvent());
+				reservations.values().stream().filter(reservation -> reservation.getEventId() == eventId)
+						.forEach(reservation -> listener.seatsBooked(eventId, reservation.getSeatIds(),
+								reservation.getQuote()));
+			} finally {
+				eventSync.getWriteLock().unlock();
+			}
+		}
+	}
+
 	@Override
 	public Event getEvent(Integer id) {
 		EventSync eventSync = getEventSync(id);
 		// read lock
 		eventSync.getReadLock().lock();
 		try {
-			return events.get(id).getEvent();
+			return getEventSync(id).getEvent();
 		} finally {
 			eventSync.getReadLock().unlock();
 		}
@@ -161,17 +455,27 @@ public final class TicketServiceImpl implements TicketService, TicketServiceV2 {
 
 	@Override
 	public int numSeatsAvailable(Optional<Integer> venueLevel) {
-		Event firstEvent = getFirstEvent();
-		EventSync eventSync = events.get(firstEvent.getId());
+		return numSeatsAvailable(getFirstEvent().getId(), venueLevel);
+	}
+
+	@Override
+	public int numSeatsAvailable(int eventId, Optional<Integer> venueLevel) {
+		EventSync eventSync = getEventSync(eventId);
 		// read lock
 		eventSync.getReadLock().lock();
 		try {
-			return firstEvent.getAvailableSeatCount(venueLevel);
+			return getEventSync(eventId).getEvent().getAvailableSeatCount(venueLevel);
 		} finally {
 			eventSync.getReadLock().unlock();
 		}
 	}
 
+	@Override
+	public Availability getAvailability(int eventId) {
+		// no lock, events are immutable and the map always has a complete one
+		return pricer.price(getEventSync(eventId).getEvent());
+	}
+
 	/**
 	 * This method returns the first {@link Event} in the collection. Ideally,
 	 * this method should not exist and we should be getting all events by id.
@@ -214,16 +518,33 @@ public final class TicketServiceImpl implements TicketService, TicketServiceV2 {
 	 * @return
 	 */
 	SeatHold holdSeats(Event event, String emailId, List<Seat> availableSeat) {
-		EventSync eventSync = events.get(event.getId());
-		// read lock
-		eventSync.getReadLock().lock();
+		return holdSeats(event, emailId, availableSeat,
+				HoldRegistry.pack(availableSeat.stream().map(Seat::getId).collect(Collectors.toList())));
+	}
+
+	/**
+	 * Same as {@link #holdSeats(Event, String, List)} with the seat ids
+	 * already packed, so that a caller can pack them before committing the
+	 * seats on hold
+	 */
+	private SeatHold holdSeats(Event event, String emailId, List<Seat> availableSeat, int[] packedSeats) {
+		// reentrant when called with the write lock held
+		EventSync eventSync = lockEvent(event.getId(), false);
 		try {
 			// create new seats and update seats map // need to update Event and Seat constructor
-			SeatHold seatHold = new SeatHold(event.getId(), holdIdGen.getAndIncrement(), emailId, availableSeat.stream().map(seat -> seat.getId()).collect(Collectors.toList()));
-			// schedule task to reclaim held seats if booking doesn't occur in timely manner
-			ScheduledFuture<?> future = this.holdScheduler.schedule(() -> reclaimHold(event.getId(), seatHold.getId()), event.getHoldExpirationSeconds(), TimeUnit.SECONDS);
-			this.holdCollection.putIfAbsent(seatHold.getId(), new ScheduledHold(event.getId(), seatHold.getId(), seatHold, future));
-			LOG.info("Event hold created: {}. Expires in {}s", seatHold, event.getHoldExpirationSeconds());
+			List<SeatIdentifier> seatIds = availableSeat.stream().map(seat -> seat.getId()).collect(Collectors.toList());
+			// priced as the customer saw the event, before the hold
+			PriceQuote quote = pricer.quote(event, seatIds);
+			SeatHold seatHold = new SeatHold(event.getId(), holdIdAllocator.next(event.getId()), emailId, seatIds, quote);
+			long now = clock.millis();
+			this.holdRegistry.put(seatHold.getId(), event.getId(), emailId, packedSeats, now,
+					now + TimeUnit.SECONDS.toMillis(event.getHoldExpirationSeconds()), quote);
+			// reclaim held seats if booking doesn't occur in timely manner
+			this.holdExpiry.schedule(seatHold.getId());
+			pricer.recordHold(event, seatIds);
+			// sampled and never waits, fine under the lock
+			audit.append(AuditType.HOLD_CREATED, event.getId(), seatHold.getId(), seatIds.size(), quote.getTotalCents(),
+					emailId, null);
 			return seatHold;
 		} finally {
 			eventSync.getReadLock().unlock();
@@ -233,6 +554,38 @@ public final class TicketServiceImpl implements TicketService, TicketServiceV2 {
 	@Override
 	public SeatHold findAndHoldSeats(int numSeats, Optional<Integer> minLevel, Optional<Integer> maxLevel,
 			String customerEmail) {
+		return findAndHoldSeats(getFirstEvent().getId(), numSeats, minLevel, maxLevel, customerEmail);
+	}
+
+	@Override
+	public SeatHold findAndHoldSeats(int eventId, int numSeats, Optional<Integer> minLevel, Optional<Integer> maxLevel,
+			String customerEmail, String idempotencyKey) {
+		// unknown events are turned away before anything is cached for them
+		getEventSync(eventId);
+		return holdResults.execute(eventId, customerEmail, idempotencyKey,
+				() -> findAndHoldSeats(eventId, numSeats, minLevel, maxLevel, customerEmail));
+	}
+
+	@Override
+	public SeatHold findAndHoldSeats(int eventId, int numSeats, Optional<Integer> minLevel, Optional<Integer> maxLevel,
+			String customerEmail) {
+		Event event = getEventSync(eventId).getEvent();
+		// turn away customers over their quota before taking any lock
+		quotaLimiter.acquire(event.getId(), customerEmail, numSeats);
+		boolean held = false;
+		try {
+			SeatHold seatHold = findAndHoldSeats(event, numSeats, minLevel, maxLevel, customerEmail);
+			held = true;
+			return seatHold;
+		} finally {
+			if (!held) {
+				quotaLimiter.release(event.getId(), customerEmail, numSeats);
+			}
+		}
+	}
+
+	private SeatHold findAndHoldSeats(Event event, int numSeats, Optional<Integer> minLevel, Optional<Integer> maxLevel,
+			String customerEmail) {
 		/*
 		 * acquire read lock
 		 * check if seats available - List<Seat>
@@ -243,10 +596,9 @@ public final class TicketServiceImpl implements TicketService, TicketServiceV2 {
 		 *  iii. call holdSeat which will 
 		 * holdSeat:
 		 *  i. create SeatHold object and store it
-		 *  ii. add to ScheduledExecutorService to reclaim seats if time expires
+		 *  ii. add to the expiry wheel to reclaim seats if time expires
 		 */
-		Event event = getFirstEvent();
-		EventSync eventSync = events.get(event.getId());
+		EventSync eventSync = getEventSync(event.getId());
 		// read lock, may be we should just acquire a write lock here
 		eventSync.getReadLock().lock();
 		boolean readUnlocked = false, writeLocked = false;
@@ -256,21 +608,18 @@ public final class TicketServiceImpl implements TicketService, TicketServiceV2 {
 			eventSync.getReadLock().unlock();
 			readUnlocked = true;
 
-			eventSync.getWriteLock().lock();
+			eventSync = lockEvent(event.getId(), true);
 			writeLocked = true;
 			// fetch available seats again in case a hold was placed between unlock of read lock and acquire of write lock
 			availableSeats = findSeats(event.getId(), numSeats, minLevel, maxLevel, customerEmail);
+			Event currentEvent = getEventSync(event.getId()).getEvent();
+			// packed before the commit, nothing may fail between the commit and the hold which reclaims the seats
+			int[] packedSeats = HoldRegistry.pack(availableSeats.stream().map(Seat::getId).collect(Collectors.toList()));
 			// update seats to HOLD
 			// update event object (update map)
-			Event updatedEvent = updateEventSeats(event.getId(),
-					Collections.singletonMap(SeatState.ON_HOLD, availableSeats));
-			// update events map
-			EventSync oldEventSync = events.get(event.getId());
-			events.put(updatedEvent.getId(), new EventSync(updatedEvent, oldEventSync.getLock()));
-			eventSync.getWriteLock().unlock();
-			writeLocked = false;
-			// create scheduled hold
-			return holdSeats(updatedEvent, customerEmail, availableSeats);
+			commitEventSeats(event.getId(), Collections.singletonMap(SeatState.ON_HOLD, availableSeats));
+			// create scheduled hold before unlocking, an export in between would take the seats back
+			return holdSeats(currentEvent, customerEmail, availableSeats, packedSeats);
 		} finally {
 			if (!readUnlocked) {
 				eventSync.getReadLock().unlock();
@@ -282,40 +631,374 @@ public final class TicketServiceImpl implements TicketService, TicketServiceV2 {
 	}
 
 	/**
-	 * Called by scheduled executor when time expires
-	 * @param eventId
-	 * @param holdId
+	 * Called periodically by the hold scheduler to reclaim seats of expired
+	 * holds. Must never throw as that would stop the periodic task.
 	 */
-	void reclaimHold(int eventId, int holdId) {
-		ScheduledHold scheduledHold = this.holdCollection.get(holdId);
-		// get seats
-		List<SeatIdentifier> reclaimSeatIds = scheduledHold.getHold().getSeatIds();
-		// set seats to AVAILABLE
-		List<Seat> reclaimSeats = reclaimSeatIds.stream().map(seatId -> new Seat(seatId, SeatState.ON_HOLD)).collect(Collectors.toList());
-		// write lock
-		EventSync eventSync = getEventSync(eventId);
-		eventSync.getWriteLock().lock();
+	void expireHolds() {
+		try {
+			expireHolds(clock.millis());
+		} catch (RuntimeException ex) {
+			LOG.error("Hold expiry failed", ex);
+		}
+	}
+
+	void expireHolds(long now) {
+		IntList expired = new IntList();
+		if (!holdExpiry.advance(now, this::expiryOf, expired) || expired.isEmpty()) {
+			return;
+		}
+		// seats of all holds of an event are reclaimed in a single event update
+		Map<Integer, List<Seat>> reclaimSeats = new HashMap<>();
+		Map<Integer, IntList> reclaimHolds = new HashMap<>();
+		// lock of each event when its first hold was claimed, a different lock later means the event was exported
+		Map<Integer, ReentrantReadWriteLock> eventLocks = new HashMap<>();
+		for (int i = 0; i < expired.size(); i++) {
+			int holdId = expired.get(i);
+			int holdEventId = holdRegistry.getEventId(holdId);
+			if (holdEventId >= 0 && !eventLocks.containsKey(holdEventId)) {
+				EventSync eventSync = events.get(holdEventId);
+				eventLocks.put(holdEventId, eventSync == null ? null : eventSync.getLock());
+			}
+			if (!holdRegistry.markExpired(holdId, now - holdGraceMillis)) {
+				if (holdRegistry.getExpiry(holdId) >= 0) {
+					// extended after the wheel read its deadline
+					holdExpiry.schedule(holdId);
+				}
+				continue;
+			}
+			int eventId = holdRegistry.getEventId(holdId);
+			String email = holdRegistry.getEmail(holdId);
+			int[] packedSeats = holdRegistry.getPackedSeats(holdId);
+			// the hold may have been reserved or released in the meantime
+			if (packedSeats != null && holdRegistry.remove(holdId)) {
+				quotaLimiter.release(eventId, email, packedSeats.length);
+				audit.append(AuditType.HOLD_EXPIRED, eventId, holdId, packedSeats.length, -1, email, null);
+				reclaimSeats.computeIfAbsent(eventId, id -> new ArrayList<>()).addAll(toSeats(packedSeats, SeatState.ON_HOLD));
+				reclaimHolds.computeIfAbsent(eventId, id -> new IntList()).add(holdId);
+			}
+		}
+		for (Map.Entry<Integer, List<Seat>> entry : reclaimSeats.entrySet()) {
+			int eventId = entry.getKey();
+			EventSync eventSync = events.get(eventId);
+			ReentrantReadWriteLock claimLock = eventLocks.get(eventId);
+			if (eventSync == null || eventSync.getLock() != claimLock) {
+				// moved since the holds were claimed, the export already returned these seats
+				continue;
+			}
+			eventSync.getWriteLock().lock();
+			try {
+				EventSync current = events.get(eventId);
+				if (current == null || current.getLock() != claimLock) {
+					continue;
+				}
+				commitFreedSeats(eventId, Collections.emptyMap(), entry.getValue());
+				LOG.debug("Reclaimed {} seats from {} expired holds for eventId {}", entry.getValue().size(),
+						reclaimHolds.get(eventId).size(), eventId);
+			} finally {
+				eventSync.getWriteLock().unlock();
+			}
+		}
+	}
+
+	/**
+	 * When a hold expires, its deadline plus the grace period. Negative once
+	 * it has been claimed.
+	 */
+	private long expiryOf(int holdId) {
+		long expiry = holdRegistry.getExpiry(holdId);
+		return expiry < 0 ? expiry : expiry + holdGraceMillis;
+	}
+
+	private static List<Seat> toSeats(int[] packedSeats, SeatState state) {
+		List<Seat> seats = new ArrayList<>(packedSeats.length);
+		for (int packed : packedSeats) {
+			seats.add(new Seat(SeatIdentifier.unpack(packed), state));
+		}
+		return seats;
+	}
+
+	/**
+	 * Checks that the hold exists and belongs to the customer
+	 * 
+	 * @return event id of the hold
+	 */
+	private int getHoldEventId(int seatHoldId, String customerEmail, ReentrantReadWriteLock hostLock,
+			Function<String, RuntimeException> notFound) {
+		String holdEmail = holdRegistry.getEmail(seatHoldId);
+		int eventId = holdRegistry.getEventId(seatHoldId);
+		if (holdEmail == null || eventId < 0) {
+			checkNotMoved(seatHoldId, hostLock);
+			throw notFound.apply(String.format("SeatHoldId %d not found", seatHoldId));
+		}
+		if (!holdEmail.equals(customerEmail)) {
+			throw new NotFoundException(String.format("Invalid seatHoldId %d", seatHoldId));
+		}
+		return eventId;
+	}
+
+	/**
+	 * @return lock of the event the hold was handed out for, as this node has
+	 *         it now, or null if the event is not here
+	 */
+	private ReentrantReadWriteLock hostLockOf(int seatHoldId) {
+		EventSync eventSync = events.get(holdIdAllocator.eventOf(seatHoldId));
+		return eventSync == null ? null : eventSync.getLock();
+	}
+
+	/**
+	 * Tells a hold which is missing because its event moved from one which is
+	 * really gone. A hold is exported with its event, so if the event left
+	 * this node, or left and came back, since {@link #hostLockOf(int)}
+	 * returned <code>hostLock</code>, the call has to go to the event's node.
+	 * An export takes the holds before the event, so this waits for one in
+	 * progress on the event lock. Only called once a hold was not found.
+	 * <p>
+	 * A hold whose event is not on this node at all fails the same way,
+	 * which is also what a hold of an archived event gets.
+	 * 
+	 * @throws EventNotHostedException
+	 *             if the event moved
+	 */
+	private void checkNotMoved(int seatHoldId, ReentrantReadWriteLock hostLock) {
+		int eventId = holdIdAllocator.eventOf(seatHoldId);
+		if (eventId < 0) {
+			return;
+		}
+		if (hostLock == null) {
+			// not here to begin with, e.g. moved just before the call arrived
+			throw new EventNotHostedException(eventId);
+		}
+		EventSync eventSync = lockEvent(eventId, false);
+		try {
+			if (eventSync.getLock() != hostLock) {
+				throw new EventNotHostedException(eventId);
+			}
+		} finally {
+			eventSync.getReadLock().unlock();
+		}
+	}
+
+	@Override
+	public void releaseHold(int seatHoldId, String customerEmail) {
+		ReentrantReadWriteLock hostLock = hostLockOf(seatHoldId);
+		int eventId = getHoldEventId(seatHoldId, customerEmail, hostLock, SeatHoldException::new);
+		int[] packedSeats = holdRegistry.getPackedSeats(seatHoldId);
+		// claim the hold, expiry or reservation may have beaten us to it
+		if (packedSeats == null || !holdRegistry.markReleasing(seatHoldId)) {
+			checkNotMoved(seatHoldId, hostLock);
+			throw new SeatHoldException(String.format("SeatHoldId %d not found", seatHoldId));
+		}
+		EventSync eventSync = lockEvent(eventId, true);
 		try {
-			// update event
-			Event updatedEvent = this.updateEventSeats(eventId, Collections.singletonMap(SeatState.AVAILABLE, reclaimSeats));
-			// TODO: why was this fetched again?
-			EventSync oldEventSync = getEventSync(eventId);
-			events.put(updatedEvent.getId(), new EventSync(updatedEvent, oldEventSync.getLock()));
-			this.holdCollection.remove(holdId);
-			LOG.info("Reclaimed seats {} from holdId {} for eventId {}", reclaimSeatIds, holdId, eventId);
+			// an export hands a claimed hold over to the event's new node, to be released there
+			if (!holdRegistry.remove(seatHoldId)) {
+				throw new EventNotHostedException(eventId);
+			}
+			quotaLimiter.release(eventId, customerEmail, packedSeats.length);
+			commitFreedSeats(eventId, Collections.emptyMap(), toSeats(packedSeats, SeatState.ON_HOLD));
+			audit.append(AuditType.HOLD_RELEASED, eventId, seatHoldId, packedSeats.length, -1, customerEmail, null);
 		} finally {
 			eventSync.getWriteLock().unlock();
 		}
 	}
 
+	@Override
+	public long extendHold(int seatHoldId, String customerEmail) {
+		ReentrantReadWriteLock hostLock = hostLockOf(seatHoldId);
+		int eventId = getHoldEventId(seatHoldId, customerEmail, hostLock, SeatHoldException::new);
+		long ttl = TimeUnit.SECONDS.toMillis(getEventSync(eventId).getEvent().getHoldExpirationSeconds());
+		long createdTime = holdRegistry.getCreatedTime(seatHoldId);
+		long now = clock.millis();
+		// no lock required, the wheel picks up the new deadline when the old one comes around
+		long expiry = createdTime < 0 ? -1
+				: holdRegistry.extendExpiry(seatHoldId, Math.min(now + ttl, createdTime + ttl * MAX_HOLD_TTL_FACTOR), now);
+		if (expiry < 0) {
+			checkNotMoved(seatHoldId, hostLock);
+			throw new SeatHoldException(String.format("SeatHoldId %d not found or expired", seatHoldId));
+		}
+		return expiry;
+	}
+
+	/**
+	 * Locks the event. An event which was exported while we waited for its
+	 * lock is gone, or has a new lock if it was imported again, so the lock is
+	 * checked to still be the event's once acquired.
+	 * 
+	 * @return the event sync, locked
+	 */
+	private EventSync lockEvent(int eventId, boolean write) {
+		while (true) {
+			EventSync eventSync = getEventSync(eventId);
+			Lock lock = write ? eventSync.getWriteLock() : eventSync.getReadLock();
+			lock.lock();
+			EventSync current = events.get(eventId);
+			if (current != null && current.getLock() == eventSync.getLock()) {
+				return eventSync;
+			}
+			lock.unlock();
+		}
+	}
+
 	private EventSync getEventSync(int eventId) {
 		EventSync eventSync = events.get(eventId);
 		if (eventSync == null) {
-			throw new NotFoundException(String.format("Event with id %d not found", eventId));
+			throw new EventNotHostedException(eventId);
 		}
 		return eventSync;
 	}
 
+	/**
+	 * Creates the updated event and makes it current. Caller must hold the
+	 * event write lock.
+	 */
+	private Event commitEventSeats(int eventId, Map<SeatState, List<Seat>> updatedSeats) {
+		return commitEvent(updateEventSeats(eventId, updatedSeats), updatedSeats);
+	}
+
+	/**
+	 * Makes the updated event current. Caller must hold the event write lock.
+	 *
+	 * @param updatedSeats
+	 *            what changed since the current event, for the listeners
+	 */
+	private Event commitEvent(Event updatedEvent, Map<SeatState, List<Seat>> updatedSeats) {
+		events.put(updatedEvent.getId(), new EventSync(updatedEvent, getEventSync(updatedEvent.getId()).getLock()));
+		listeners.forEach(listener -> listener.seatsCommitted(updatedEvent, updatedSeats));
+		return updatedEvent;
+	}
+
+	/**
+	 * Commits the updates and returns the freed seats to the pool, offering
+	 * them to the waitlist first. Seats freed and taken by a waiting customer
+	 * stay on hold, so nobody polling ever sees them available. The updates
+	 * and the holds of every customer served are applied to a single copy of
+	 * the event. Caller must hold the event write lock.
+	 * 
+	 * @param freedSeats
+	 *            seats going back to the pool, in their current state
+	 */
+	private void commitFreedSeats(int eventId, Map<SeatState, List<Seat>> updatedSeats, List<Seat> freedSeats) {
+		Map<SeatState, List<Seat>> updates = new EnumMap<>(SeatState.class);
+		updates.putAll(updatedSeats);
+		if (!freedSeats.isEmpty()) {
+			updates.put(SeatState.AVAILABLE, freedSeats);
+		}
+		Waitlist waitlist = waitlists.get(eventId);
+		if (waitlist == null || waitlist.isEmpty()) {
+			if (!updates.isEmpty()) {
+				commitEventSeats(eventId, updates);
+			}
+			return;
+		}
+		Event current = getEventSync(eventId).getEvent();
+		// the state as if everything was committed, waiting customers are served from it
+		Event.Draft draft = new Event.Draft(current);
+		draft.update(updates);
+		List<Waitlist.Offer> offers = waitlist.match(draft, entry -> admit(eventId, entry));
+		if (!offers.isEmpty()) {
+			Map<SeatIdentifier, Seat> freedById = freedSeats.stream()
+					.collect(Collectors.toMap(Seat::getId, Function.identity()));
+			Set<SeatIdentifier> offeredIds = new HashSet<>();
+			List<Seat> newlyHeld = new ArrayList<>();
+			for (Waitlist.Offer offer : offers) {
+				for (Seat seat : offer.getSeats()) {
+					offeredIds.add(seat.getId());
+					Seat freedSeat = freedById.get(seat.getId());
+					if (freedSeat == null) {
+						newlyHeld.add(seat);
+					} else if (freedSeat.getState() != SeatState.ON_HOLD) {
+						// e.g. cancelled, straight from booked to held
+						newlyHeld.add(freedSeat);
+					}
+				}
+			}
+			updates.remove(SeatState.AVAILABLE);
+			List<Seat> stillFreed = freedSeats.stream().filter(seat -> !offeredIds.contains(seat.getId()))
+					.collect(Collectors.toList());
+			if (!stillFreed.isEmpty()) {
+				updates.put(SeatState.AVAILABLE, stillFreed);
+			}
+			if (!newlyHeld.isEmpty()) {
+				updates.put(SeatState.ON_HOLD, newlyHeld);
+			}
+		}
+		if (!updates.isEmpty()) {
+			// the draft went through the same changes
+			commitEvent(draft.done(), updates);
+		}
+		for (Waitlist.Offer offer : offers) {
+			Waitlist.Entry entry = offer.getEntry();
+			// priced as the event was before the seats came back
+			SeatHold hold = holdSeats(current, entry.getEmail(), offer.getSeats());
+			// told off the lock, the customer may call straight back
+			holdScheduler.execute(() -> {
+				if (!entry.getFuture().complete(hold)) {
+					// gave up meanwhile
+					try {
+						releaseHold(hold.getId(), entry.getEmail());
+					} catch (SeatHoldException | NotFoundException ex) {
+						// already ended
+					}
+				}
+			});
+		}
+	}
+
+	/**
+	 * Takes quota for a waiting customer about to be served
+	 */
+	private boolean admit(int eventId, Waitlist.Entry entry) {
+		try {
+			quotaLimiter.acquire(eventId, entry.getEmail(), entry.getNumSeats());
+			return true;
+		} catch (QuotaExceededException ex) {
+			holdScheduler.execute(() -> entry.getFuture().completeExceptionally(ex));
+			return false;
+		}
+	}
+
+	/**
+	 * Queues the customer for seats of the event. The customer is served as
+	 * soon as enough seats between the levels are free, right away if they
+	 * are, and told through the returned future, which completes with a hold
+	 * like one of {@link #findAndHoldSeats(int, int, Optional, Optional, String)}.
+	 * Cancelling the future leaves the waitlist.
+	 */
+	@Override
+	public CompletableFuture<SeatHold> joinWaitlist(int eventId, int numSeats, Optional<Integer> minLevel,
+			Optional<Integer> maxLevel, String customerEmail) {
+		if (numSeats < 1) {
+			throw new IllegalArgumentException("Invalid seats requested: " + numSeats);
+		}
+		CompletableFuture<SeatHold> future = new CompletableFuture<>();
+		EventSync eventSync = lockEvent(eventId, true);
+		try {
+			waitlists.computeIfAbsent(eventId, id -> new Waitlist())
+					.add(new Waitlist.Entry(numSeats, minLevel, maxLevel, customerEmail, future));
+			// served now if the seats are there
+			commitFreedSeats(eventId, Collections.emptyMap(), Collections.emptyList());
+		} finally {
+			eventSync.getWriteLock().unlock();
+		}
+		return future;
+	}
+
+	/**
+	 * @return customers waiting for seats of the event
+	 */
+	public int getWaitlistSize(int eventId) {
+		Waitlist waitlist = waitlists.get(eventId);
+		if (waitlist == null) {
+			return 0;
+		}
+		EventSync eventSync = lockEvent(eventId, true);
+		try {
+			return waitlist.isEmpty() ? 0 : waitlist.size();
+		} finally {
+			eventSync.getWriteLock().unlock();
+		}
+	}
+
 	Event updateEventSeats(int eventId, Map<SeatState, List<Seat>> updatedSeats) {
 		EventSync eventSync = getEventSync(eventId);
 		// write lock
@@ -331,36 +1014,254 @@ public final class TicketServiceImpl implements TicketService, TicketServiceV2 {
 
 	@Override
 	public String reserveSeats(int seatHoldId, String customerEmail) {
-		// check if holdId exists in collection, if not throw exception
-		ScheduledHold hold = holdCollection.get(seatHoldId);
-		if (hold == null) {
+		return reserveSeats(seatHoldId, customerEmail, Optional.empty());
+	}
+
+	@Override
+	public String reserveSeats(int seatHoldId, String customerEmail, String idempotencyKey) {
+		// a retry comes after the hold is gone, its event is known from its id
+		int eventId = holdIdAllocator.eventOf(seatHoldId);
+		if (eventId < 0) {
 			throw new SeatReservationException(String.format("SeatHoldId %d not found", seatHoldId));
 		}
-		if (!hold.getHold().getEmailId().equals(customerEmail)) {
-			throw new NotFoundException(String.format("Invalid seatHoldId %d", seatHoldId));
+		if (!events.containsKey(eventId)) {
+			throw new EventNotHostedException(eventId);
+		}
+		return reservationResults.execute(eventId, customerEmail, idempotencyKey,
+				() -> reserveSeats(seatHoldId, customerEmail));
+	}
+
+	@Override
+	public String reserveSeats(int seatHoldId, String customerEmail, List<SeatIdentifier> seatIds) {
+		if (seatIds == null || seatIds.isEmpty()) {
+			throw new IllegalArgumentException("No seats to reserve for seatHoldId " + seatHoldId);
+		}
+		return reserveSeats(seatHoldId, customerEmail, Optional.of(seatIds));
+	}
+
+	/**
+	 * Books all or some of the held seats. Seats of the hold which are not
+	 * booked are returned to the pool in the same event update.
+	 */
+	private String reserveSeats(int seatHoldId, String customerEmail, Optional<List<SeatIdentifier>> subset) {
+		// check if holdId exists in registry, if not throw exception
+		ReentrantReadWriteLock hostLock = hostLockOf(seatHoldId);
+		int eventId = getHoldEventId(seatHoldId, customerEmail, hostLock, SeatReservationException::new);
+		// the seats and price of a hold never change, they can be read before claiming it
+		int[] packedSeats = holdRegistry.getPackedSeats(seatHoldId);
+		PriceQuote holdQuote = holdRegistry.getQuote(seatHoldId);
+		List<SeatIdentifier> heldSeatIds = packedSeats == null ? Collections.emptyList() : HoldRegistry.unpack(packedSeats);
+		List<SeatIdentifier> seatIds = subset.orElse(heldSeatIds);
+		Set<SeatIdentifier> remaining = new HashSet<>(heldSeatIds);
+		for (SeatIdentifier seatId : seatIds) {
+			if (packedSeats != null && !remaining.remove(seatId)) {
+				throw new IllegalArgumentException(String.format("%s is not held by seatHoldId %d", seatId, seatHoldId));
+			}
+		}
+		// claim the hold, if expiry already did, reservation fails without waiting for the event
+		if (packedSeats == null || !holdRegistry.markReserving(seatHoldId, clock.millis() - holdGraceMillis)) {
+			checkNotMoved(seatHoldId, hostLock);
+			throw new SeatReservationException(String.format("SeatHoldId %d for eventId %d has expired.", seatHoldId, eventId));
 		}
-		// cancel scheduled task
 		// write lock
-		EventSync eventSync = getEventSync(hold.getEventId());
-		eventSync.getWriteLock().lock();
+		EventSync eventSync = lockEvent(eventId, true);
+		SeatReservation reservation;
 		try {
-			// if future is being executed by executor, it's expired, so, reservation fails
-			if (!hold.getScheduledFuture().cancel(false)) {
-				throw new SeatReservationException(String.format("SeatHoldId %d for eventId %d was not cancelled properly.", seatHoldId, hold.getEventId()));
+			// an export hands a claimed hold over to the event's new node, to be booked there
+			if (!holdRegistry.remove(seatHoldId)) {
+				throw new EventNotHostedException(eventId);
 			}
-	
+			quotaLimiter.release(eventId, customerEmail, packedSeats.length);
+
 			// updateEvent
-			List<Seat> heldSeats = hold.getHold().getSeatIds().stream().map(seatId -> new Seat(seatId, SeatState.ON_HOLD)).collect(Collectors.toList());
-			Event updatedEvent = updateEventSeats(hold.getEventId(), Collections.singletonMap(SeatState.BOOKED, heldSeats));
-			events.put(hold.getEventId(), new EventSync(updatedEvent, eventSync.getLock()));
-			// remove from hold
-			holdCollection.remove(seatHoldId);
+			Map<SeatState, List<Seat>> updates = Collections.singletonMap(SeatState.BOOKED,
+					seatIds.stream().map(seatId -> new Seat(seatId, SeatState.ON_HOLD)).collect(Collectors.toList()));
+			commitFreedSeats(eventId, updates,
+					remaining.stream().map(seatId -> new Seat(seatId, SeatState.ON_HOLD)).collect(Collectors.toList()));
 			// add to reserved list
 			UUID reservationId = UUID.randomUUID();
-			SeatReservation reservation = new SeatReservation(reservationId, hold.getEventId(), hold.getHold().getSeatIds());
+			// booked at the prices of the hold
+			PriceQuote quote = holdQuote == null ? null : pricer.requote(holdQuote, seatIds);
+			List<SeatIdentifier> bookedIds = new ArrayList<>(seatIds);
+			reservation = new SeatReservation(reservationId, eventId, customerEmail, bookedIds, quote);
 			reservations.put(reservationId, reservation);
-			LOG.info("Reservation complete {}", reservation);
-			return reservationId.toString();
+			listeners.forEach(listener -> listener.seatsBooked(eventId, bookedIds, quote));
+		} finally {
+			eventSync.getWriteLock().unlock();
+		}
+		// never sampled, may wait for the audit writer so not under the lock
+		audit.append(AuditType.RESERVED, eventId, seatHoldId, reservation.getSeatIds().size(),
+				reservation.getQuote() == null ? -1 : reservation.getQuote().getTotalCents(), customerEmail,
+				reservation.getId());
+		return reservation.getId().toString();
+	}
+
+	@Override
+	public PriceQuote cancelReservation(int eventId, String reservationId, String customerEmail) {
+		return cancelReservation(eventId, reservationId, customerEmail, Optional.empty());
+	}
+
+	@Override
+	public PriceQuote cancelReservation(int eventId, String reservationId, String customerEmail,
+			List<SeatIdentifier> seatIds) {
+		if (seatIds == null || seatIds.isEmpty()) {
+			throw new IllegalArgumentException("No seats to cancel for reservation " + reservationId);
+		}
+		return cancelReservation(eventId, reservationId, customerEmail, Optional.of(seatIds));
+	}
+
+	/**
+	 * Cancels all or some of the booked seats, which go back to the pool, or
+	 * to the waitlist, in one event update. What is left of the reservation
+	 * keeps its code, and the per order fee until its last seat is cancelled,
+	 * see {@link DynamicPricer#refund(PriceQuote, List)}. O(seats of the
+	 * reservation).
+	 * 
+	 * @return price of the cancelled seats as they were booked, to refund,
+	 *         null if the reservation was not priced
+	 */
+	private PriceQuote cancelReservation(int eventId, String reservationId, String customerEmail,
+			Optional<List<SeatIdentifier>> subset) {
+		UUID id = UUID.fromString(reservationId);
+		EventSync eventSync = lockEvent(eventId, true);
+		List<SeatIdentifier> seatIds;
+		PriceQuote refund;
+		try {
+			// read under the lock, so that cancels of the same reservation line up
+			SeatReservation reservation = reservations.get(id);
+			if (reservation == null || reservation.getEventId() != eventId) {
+				throw new NotFoundException(String.format("Reservation %s for eventId %d not found", reservationId, eventId));
+			}
+			if (reservation.getCustomerEmail() == null || !reservation.getCustomerEmail().equals(customerEmail)) {
+				throw new SeatReservationException(
+						String.format("Reservation %s does not belong to %s", reservationId, customerEmail));
+			}
+			seatIds = subset.orElse(reservation.getSeatIds());
+			Set<SeatIdentifier> remaining = new LinkedHashSet<>(reservation.getSeatIds());
+			for (SeatIdentifier seatId : seatIds) {
+				if (!remaining.remove(seatId)) {
+					throw new IllegalArgumentException(
+							String.format("%s is not booked by reservation %s", seatId, reservationId));
+				}
+			}
+			commitFreedSeats(eventId, Collections.emptyMap(),
+					seatIds.stream().map(seatId -> new Seat(seatId, SeatState.BOOKED)).collect(Collectors.toList()));
+			PriceQuote quote = reservation.getQuote();
+			if (remaining.isEmpty()) {
+				reservations.remove(id);
+				refund = quote;
+			} else {
+				List<SeatIdentifier> kept = new ArrayList<>(remaining);
+				refund = quote == null ? null : pricer.refund(quote, seatIds);
+				// keeps the order fee, and what was paid for the kept seats
+				reservations.put(id, new SeatReservation(id, eventId, customerEmail, kept,
+						quote == null ? null : quote.without(refund)));
+			}
+			PriceQuote refunded = refund;
+			List<SeatIdentifier> cancelledIds = seatIds;
+			listeners.forEach(listener -> listener.seatsCancelled(eventId, cancelledIds, refunded));
+		} finally {
+			eventSync.getWriteLock().unlock();
+		}
+		// never sampled, like the reservation it undoes
+		audit.append(AuditType.CANCELLED, eventId, -1, seatIds.size(), refund == null ? -1 : refund.getTotalCents(),
+				customerEmail, id);
+		return refund;
+	}
+
+	@Override
+	public EventSnapshot exportEvent(int eventId) {
+		EventSync eventSync = lockEvent(eventId, true);
+		try {
+			Event event = getEventSync(eventId).getEvent();
+			IntList holdIds = new IntList();
+			holdRegistry.holdIdsOf(eventId, holdIds);
+			List<EventSnapshot.Hold> holds = new ArrayList<>(holdIds.size());
+			Set<SeatIdentifier> heldSeats = new HashSet<>();
+			for (int i = 0; i < holdIds.size(); i++) {
+				int holdId = holdIds.get(i);
+				String email = holdRegistry.getEmail(holdId);
+				int[] packedSeats = holdRegistry.getPackedSeats(holdId);
+				long createdTime = holdRegistry.getCreatedTime(holdId);
+				long expiry = holdRegistry.getExpiry(holdId);
+				PriceQuote quote = holdRegistry.getQuote(holdId);
+				if (email == null || packedSeats == null || createdTime < 0 || !holdRegistry.remove(holdId)) {
+					continue;
+				}
+				quotaLimiter.release(eventId, email, packedSeats.length);
+				if (expiry == HoldRegistry.EXPIRED) {
+					// its seats are returned below
+					continue;
+				}
+				if (expiry < 0) {
+					/*
+					 * claimed by a reservation or release still waiting for the
+					 * lock, which will find the event gone and be retried on the
+					 * new node. The claim replaced the deadline, the hold gets
+					 * a fresh one there.
+					 */
+					expiry = clock.millis() + TimeUnit.SECONDS.toMillis(event.getHoldExpirationSeconds());
+				}
+				holds.add(new EventSnapshot.Hold(holdId, email, packedSeats, createdTime, expiry, quote));
+				heldSeats.addAll(HoldRegistry.unpack(packedSeats));
+			}
+			// seats on hold without a hold are mid expiry, whose commit will now find the event gone
+			List<Seat> orphanSeats = event.getChangedSeats().values().stream()
+					.filter(seat -> seat.getState() == SeatState.ON_HOLD && !heldSeats.contains(seat.getId()))
+					.collect(Collectors.toList());
+			if (!orphanSeats.isEmpty()) {
+				event = new Event(event, Collections.singletonMap(SeatState.AVAILABLE, orphanSeats));
+			}
+			List<SeatReservation> eventReservations = reservations.values().stream()
+					.filter(reservation -> reservation.getEventId() == eventId).collect(Collectors.toList());
+			eventReservations.forEach(reservation -> reservations.remove(reservation.getId()));
+			events.remove(eventId);
+			listeners.forEach(listener -> listener.eventRemoved(eventId));
+			pricer.remove(eventId);
+			holdResults.remove(eventId);
+			Waitlist waitlist = waitlists.remove(eventId);
+			if (waitlist != null) {
+				// waiting customers do not move along, they join again wherever the event went
+				NotFoundException gone = new EventNotHostedException(eventId);
+				waitlist.clear().forEach(entry -> holdScheduler.execute(() -> entry.getFuture().completeExceptionally(gone)));
+			}
+			reservationResults.remove(eventId);
+			List<SeatLevel> levels = seatLevels.remove(eventId);
+			EventSnapshot snapshot = new EventSnapshot(event, levels, holds, eventReservations);
+			LOG.info("Event exported: {}", snapshot);
+			return snapshot;
+		} finally {
+			eventSync.getWriteLock().unlock();
+		}
+	}
+
+	@Override
+	public void importEvent(EventSnapshot snapshot) {
+		Event event = snapshot.getEvent();
+		EventSync eventSync = new EventSync(event, new ReentrantReadWriteLock());
+		eventSync.getWriteLock().lock();
+		try {
+			// moves of an event are serialized, nobody else adds it meanwhile
+			if (events.containsKey(event.getId())) {
+				throw new IllegalArgumentException(String.format("Event with id %d already exists", event.getId()));
+			}
+			// holds are read without the event lock, they must be there once the event is
+			for (EventSnapshot.Hold hold : snapshot.getHolds()) {
+				holdRegistry.put(hold.getId(), event.getId(), hold.getEmail(), hold.getPackedSeats(),
+						hold.getCreatedTime(), hold.getExpiry(), hold.getQuote());
+				quotaLimiter.restore(event.getId(), hold.getEmail(), hold.getPackedSeats().length);
+			}
+			events.put(event.getId(), eventSync);
+			seatLevels.put(event.getId(), snapshot.getSeatLevels());
+			snapshot.getReservations().forEach(reservation -> reservations.put(reservation.getId(), reservation));
+			// a hold past its deadline expires on the next tick
+			snapshot.getHolds().forEach(hold -> holdExpiry.schedule(hold.getId()));
+			listeners.forEach(listener -> {
+				listener.eventCommitted(event);
+				snapshot.getReservations().forEach(reservation -> listener.seatsBooked(event.getId(),
+						reservation.getSeatIds(), reservation.getQuote()));
+			});
+			LOG.info("Event imported: {}", snapshot);
 		} finally {
 			eventSync.getWriteLock().unlock();
 		}
@@ -400,34 +1301,4 @@ public final class TicketServiceImpl implements TicketService, TicketServiceV2 {
 			return lock.writeLock();
 		}
 	}
-	/**
-	 * Internal/helper class to track seats hold. We can move this class out if required, but don't want it to
-	 * be public
-	 * @author peter
-	 *
-	 */
-	static final class ScheduledHold {
-		private final Integer eventId;
-		private final Integer holdId;
-		private final SeatHold hold;
-		private final ScheduledFuture<?> scheduledFuture;
-		public ScheduledHold(Integer eventId, Integer holdId, SeatHold hold, ScheduledFuture<?> scheduledFuture) {
-			this.eventId = eventId;
-			this.holdId = holdId;
-			this.hold = hold;
-			this.scheduledFuture = scheduledFuture;
-		}
-		public Integer getEventId() {
-			return eventId;
-		}
-		public SeatHold getHold() {
-			return hold;
-		}
-		public Integer getHoldId() {
-			return holdId;
-		}
-		public ScheduledFuture<?> getScheduledFuture() {
-			return scheduledFuture;
-		}
-	}
 }
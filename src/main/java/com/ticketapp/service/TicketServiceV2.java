@@ -1,6 +1,9 @@
 package com.ticketapp.service;
 
+import java.util.List;
+
 import com.ticketapp.bean.Event;
+import com.ticketapp.bean.SeatIdentifier;
 import com.ticketapp.bean.input.EventInput;
 
 /**
@@ -10,5 +13,41 @@ import com.ticketapp.bean.input.EventInput;
  */
 public interface TicketServiceV2 {
 	Event createEvent(EventInput eventInput);
+	/**
+	 * Creates many events at once, e.g. the shows of a season
+	 *
+	 * @return the events, in the order of their inputs
+	 */
+	List<Event> createEvents(List<EventInput> eventInputs);
 	Event getEvent(Integer id);
+	/**
+	* Release a seat hold before it expires, returning its seats to the pool
+	*
+	* @param seatHoldId the seat hold identifier
+	* @param customerEmail the email address of the customer to which the seat hold
+	is assigned
+	*/
+	void releaseHold(int seatHoldId, String customerEmail);
+	/**
+	* Renew a seat hold for another hold expiration period of its event. A hold
+	* cannot be extended beyond a fixed multiple of the hold expiration period
+	* from its creation
+	*
+	* @param seatHoldId the seat hold identifier
+	* @param customerEmail the email address of the customer to which the seat hold
+	is assigned
+	* @return the new expiry time of the hold in epoch milliseconds
+	*/
+	long extendHold(int seatHoldId, String customerEmail);
+	/**
+	* Commit some of the seats held for a specific customer. The remaining seats
+	* of the hold are returned to the pool
+	*
+	* @param seatHoldId the seat hold identifier
+	* @param customerEmail the email address of the customer to which the seat hold
+	is assigned
+	* @param seatIds the held seats to reserve
+	* @return a reservation confirmation code
+	*/
+	String reserveSeats(int seatHoldId, String customerEmail, List<SeatIdentifier> seatIds);
 }
@@ -0,0 +1,101 @@
+package com.ticketapp.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.ticketapp.bean.SeatLevel;
+import com.ticketapp.bean.SeatScorer;
+import com.ticketapp.bean.VenueLayout;
+import com.ticketapp.bean.input.LevelInput;
+
+/**
+ * Registry of venue layouts, so that every event with the same levels shares
+ * one {@link VenueLayout}. Layouts are keyed by their level inputs, in order,
+ * and their {@link SeatScorer} instance, as a seat ranking costs a sort of the
+ * whole venue. Levels get ids <code>1..n</code> in that order.
+ */
+public final class VenueRegistry {
+
+	private final ConcurrentMap<Key, VenueLayout> layouts = new ConcurrentHashMap<>();
+
+	/**
+	 * @return the shared layout for the levels in seat number order, created
+	 *         on first use
+	 */
+	public VenueLayout getLayout(List<LevelInput> levels) {
+		return getLayout(levels, SeatScorer.NATURAL);
+	}
+
+	/**
+	 * @param scorer
+	 *            seat ranking of the layout, null for seat number order
+	 * @return the shared layout for the levels, created on first use
+	 */
+	public VenueLayout getLayout(List<LevelInput> levels, SeatScorer scorer) {
+		if (levels == null || levels.isEmpty()) {
+			throw new IllegalArgumentException("A venue needs at least one level");
+		}
+		SeatScorer layoutScorer = scorer == null ? SeatScorer.NATURAL : scorer;
+		VenueLayout layout = layouts.get(new Key(levels, layoutScorer));
+		if (layout != null) {
+			return layout;
+		}
+		// key on a copy, the caller's list may change
+		Key key = new Key(new ArrayList<>(levels), layoutScorer);
+		/*
+		 * built outside the map, as a large layout ranks its levels on the
+		 * fork/join pool and a pool thread waiting for them may run a task
+		 * which needs another layout. Two threads creating the same venue for
+		 * the first time both build it, the first one put is shared.
+		 */
+		layout = createLayout(key);
+		VenueLayout existing = layouts.putIfAbsent(key, layout);
+		return existing != null ? existing : layout;
+	}
+
+	/**
+	 * @return number of distinct layouts
+	 */
+	public int size() {
+		return layouts.size();
+	}
+
+	private static VenueLayout createLayout(Key key) {
+		List<SeatLevel> seatLevels = new ArrayList<>(key.levels.size());
+		int levelId = 1;
+		for (LevelInput level : key.levels) {
+			seatLevels.add(new SeatLevel(levelId++, level.getName(), level.getPriceCents(), level.getRows(),
+					level.getSeatsInRow()));
+		}
+		return new VenueLayout(seatLevels, key.scorer);
+	}
+
+	private static final class Key {
+		private final List<LevelInput> levels;
+		private final SeatScorer scorer;
+
+		Key(List<LevelInput> levels, SeatScorer scorer) {
+			this.levels = levels;
+			this.scorer = scorer;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * levels.hashCode() + System.identityHashCode(scorer);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (obj == null || obj.getClass() != getClass()) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return scorer == other.scorer && levels.equals(other.levels);
+		}
+	}
+}
@@ -0,0 +1,240 @@
+package com.ticketapp.service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Predicate;
+
+import com.ticketapp.bean.Event;
+import com.ticketapp.bean.Seat;
+import com.ticketapp.bean.Seat.SeatState;
+import com.ticketapp.bean.SeatHold;
+import com.ticketapp.bean.SeatLevel;
+
+/**
+ * Customers of one event waiting for seats, in arrival order. Only used under
+ * the event write lock, so it needs no synchronization of its own.
+ * <p>
+ * Customers are served first come first served, but one who cannot be served
+ * keeps their place without blocking those behind them, e.g. when they want
+ * more seats or another level than was freed. A customer gives up their place
+ * by cancelling their future.
+ * <p>
+ * Customers are queued by what they ask for, the levels and the number of
+ * seats, so a match looks at the first customer of each queue and checks the
+ * per level available counts, whatever the number of customers waiting.
+ * Those who gave up are dropped as they reach the front of their queue.
+ */
+final class Waitlist {
+
+	private final Map<Request, Queue<Entry>> queues = new LinkedHashMap<>();
+	/** arrival order of the next customer */
+	private long nextSequence;
+
+	void add(Entry entry) {
+		entry.sequence = nextSequence++;
+		queues.computeIfAbsent(entry.request, request -> new ArrayDeque<>()).add(entry);
+	}
+
+	/**
+	 * @return true if nobody is waiting, forgetting those who gave up at the
+	 *         front of their queue
+	 */
+	boolean isEmpty() {
+		Iterator<Queue<Entry>> it = queues.values().iterator();
+		while (it.hasNext()) {
+			Queue<Entry> queue = it.next();
+			dropGivenUp(queue);
+			if (queue.isEmpty()) {
+				it.remove();
+			}
+		}
+		return queues.isEmpty();
+	}
+
+	/**
+	 * O(customers waiting)
+	 */
+	int size() {
+		int size = 0;
+		for (Queue<Entry> queue : queues.values()) {
+			for (Entry entry : queue) {
+				size += entry.future.isDone() ? 0 : 1;
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Takes available seats of the draft for waiting customers, holding them
+	 * in the draft. Served customers leave the list.
+	 *
+	 * @param admit
+	 *            last check of a customer who can be served, one who is not
+	 *            admitted leaves the list
+	 * @return seats for each served customer, in order
+	 */
+	List<Offer> match(Event.Draft draft, Predicate<Entry> admit) {
+		List<Offer> offers = new ArrayList<>();
+		// seats only get fewer, a request which cannot be served stays so
+		Set<Request> unserved = new HashSet<>();
+		while (true) {
+			Event state = draft.getEvent();
+			Entry first = null;
+			Iterator<Map.Entry<Request, Queue<Entry>>> it = queues.entrySet().iterator();
+			while (it.hasNext()) {
+				Map.Entry<Request, Queue<Entry>> queue = it.next();
+				dropGivenUp(queue.getValue());
+				if (queue.getValue().isEmpty()) {
+					it.remove();
+					continue;
+				}
+				Entry head = queue.getValue().peek();
+				if (unserved.contains(queue.getKey()) || (first != null && first.sequence < head.sequence)) {
+					continue;
+				}
+				if (queue.getKey().availableIn(state) < queue.getKey().numSeats) {
+					unserved.add(queue.getKey());
+					continue;
+				}
+				first = head;
+			}
+			if (first == null) {
+				return offers;
+			}
+			List<Seat> seats = state.getBestAvailableSeats(first.request.minLevel, first.request.maxLevel,
+					first.request.numSeats);
+			if (seats.size() < first.request.numSeats) {
+				unserved.add(first.request);
+				continue;
+			}
+			queues.get(first.request).remove();
+			if (admit.test(first)) {
+				draft.update(Collections.singletonMap(SeatState.ON_HOLD, seats));
+				offers.add(new Offer(first, seats));
+			}
+		}
+	}
+
+	/**
+	 * Removes everybody, e.g. when the event leaves the node
+	 */
+	List<Entry> clear() {
+		List<Entry> all = new ArrayList<>();
+		queues.values().forEach(all::addAll);
+		all.sort(Comparator.comparingLong(entry -> entry.sequence));
+		queues.clear();
+		return all;
+	}
+
+	private static void dropGivenUp(Queue<Entry> queue) {
+		while (!queue.isEmpty() && queue.peek().future.isDone()) {
+			queue.remove();
+		}
+	}
+
+	/**
+	 * What a customer asks for, customers asking the same are served in
+	 * arrival order among themselves
+	 */
+	private static final class Request {
+		private final int numSeats;
+		private final Optional<Integer> minLevel;
+		private final Optional<Integer> maxLevel;
+
+		Request(int numSeats, Optional<Integer> minLevel, Optional<Integer> maxLevel) {
+			this.numSeats = numSeats;
+			this.minLevel = minLevel;
+			this.maxLevel = maxLevel;
+		}
+
+		/**
+		 * O(levels)
+		 */
+		int availableIn(Event state) {
+			int available = 0;
+			for (SeatLevel level : state.getLevels()) {
+				if (level.getId() >= minLevel.orElse(Integer.MIN_VALUE)
+						&& level.getId() <= maxLevel.orElse(Integer.MAX_VALUE)) {
+					available += state.getAvailableSeatCount(Optional.of(level.getId()));
+				}
+			}
+			return available;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(numSeats, minLevel, maxLevel);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Request)) {
+				return false;
+			}
+			Request other = (Request) obj;
+			return numSeats == other.numSeats && minLevel.equals(other.minLevel) && maxLevel.equals(other.maxLevel);
+		}
+	}
+
+	static final class Entry {
+		private final Request request;
+		private final String email;
+		private final CompletableFuture<SeatHold> future;
+		private long sequence;
+
+		Entry(int numSeats, Optional<Integer> minLevel, Optional<Integer> maxLevel, String email,
+				CompletableFuture<SeatHold> future) {
+			this.request = new Request(numSeats, minLevel, maxLevel);
+			this.email = email;
+			this.future = future;
+		}
+
+		int getNumSeats() {
+			return request.numSeats;
+		}
+
+		String getEmail() {
+			return email;
+		}
+
+		CompletableFuture<SeatHold> getFuture() {
+			return future;
+		}
+	}
+
+	/**
+	 * Seats taken for a waiting customer
+	 */
+	static final class Offer {
+		private final Entry entry;
+		private final List<Seat> seats;
+
+		Offer(Entry entry, List<Seat> seats) {
+			this.entry = entry;
+			this.seats = seats;
+		}
+
+		Entry getEntry() {
+			return entry;
+		}
+
+		/**
+		 * @return the seats as they were available
+		 */
+		List<Seat> getSeats() {
+			return seats;
+		}
+	}
+}
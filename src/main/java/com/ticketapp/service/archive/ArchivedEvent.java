@@ -0,0 +1,368 @@
+package com.ticketapp.service.archive;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import com.ticketapp.bean.Event;
+import com.ticketapp.bean.PriceQuote;
+import com.ticketapp.bean.Seat;
+import com.ticketapp.bean.Seat.SeatState;
+import com.ticketapp.bean.SeatIdentifier;
+import com.ticketapp.bean.SeatLevel;
+import com.ticketapp.bean.SeatReservation;
+import com.ticketapp.bean.VenueLayout;
+import com.ticketapp.service.EventSnapshot;
+
+/**
+ * Frozen state of an event which has ended. Object is immutable.
+ * <p>
+ * Once an event is over its seats are either booked or free, so the seat
+ * states are kept as one bit per seat number, deflated. Reservations are an
+ * index of parallel arrays sorted by reservation id, their seats are seat
+ * numbers of the layout. Nothing is materialized until asked for.
+ */
+public final class ArchivedEvent {
+
+	private static final int FORMAT = 1;
+
+	private final int id;
+	private final String name;
+	private final ZonedDateTime startDateTime;
+	private final long duration;
+	private final long holdExpirationSeconds;
+	private final List<SeatLevel> levels;
+	private final int seatCount;
+	private final int bookedCount;
+	/**
+	 * Deflated bitmap of booked seat numbers
+	 */
+	private final byte[] booked;
+	private final long[] reservationMsbs;
+	private final long[] reservationLsbs;
+	/**
+	 * Seats of reservation i are
+	 * <code>reservationSeats[reservationStarts[i]..reservationStarts[i + 1]]</code>
+	 */
+	private final int[] reservationStarts;
+	private final int[] reservationSeats;
+	private final PriceQuote[] quotes;
+
+	private ArchivedEvent(int id, String name, ZonedDateTime startDateTime, long duration, long holdExpirationSeconds,
+			List<SeatLevel> levels, int seatCount, int bookedCount, byte[] booked, long[] reservationMsbs,
+			long[] reservationLsbs, int[] reservationStarts, int[] reservationSeats, PriceQuote[] quotes) {
+		this.id = id;
+		this.name = name;
+		this.startDateTime = startDateTime;
+		this.duration = duration;
+		this.holdExpirationSeconds = holdExpirationSeconds;
+		this.levels = Collections.unmodifiableList(levels);
+		this.seatCount = seatCount;
+		this.bookedCount = bookedCount;
+		this.booked = booked;
+		this.reservationMsbs = reservationMsbs;
+		this.reservationLsbs = reservationLsbs;
+		this.reservationStarts = reservationStarts;
+		this.reservationSeats = reservationSeats;
+		this.quotes = quotes;
+	}
+
+	/**
+	 * Freezes an exported event. Holds of the snapshot are dropped, their
+	 * seats are free.
+	 */
+	public static ArchivedEvent of(EventSnapshot snapshot) {
+		Event event = snapshot.getEvent();
+		VenueLayout layout = event.getLayout();
+		long[] bits = new long[(layout.size() + Long.SIZE - 1) / Long.SIZE];
+		int bookedCount = 0;
+		for (int i = 0; i < layout.size(); i++) {
+			if (event.getSeatState(i) == SeatState.BOOKED) {
+				bits[i / Long.SIZE] |= 1L << i;
+				bookedCount++;
+			}
+		}
+		List<SeatReservation> reservations = new ArrayList<>(snapshot.getReservations());
+		reservations.sort((a, b) -> a.getId().compareTo(b.getId()));
+		int n = reservations.size();
+		long[] msbs = new long[n];
+		long[] lsbs = new long[n];
+		int[] starts = new int[n + 1];
+		PriceQuote[] quotes = new PriceQuote[n];
+		for (int r = 0; r < n; r++) {
+			starts[r + 1] = starts[r] + reservations.get(r).getSeatIds().size();
+		}
+		int[] seats = new int[starts[n]];
+		for (int r = 0; r < n; r++) {
+			SeatReservation reservation = reservations.get(r);
+			msbs[r] = reservation.getId().getMostSignificantBits();
+			lsbs[r] = reservation.getId().getLeastSignificantBits();
+			quotes[r] = reservation.getQuote();
+			List<SeatIdentifier> seatIds = reservation.getSeatIds();
+			for (int s = 0; s < seatIds.size(); s++) {
+				seats[starts[r] + s] = layout.seatIndex(seatIds.get(s));
+			}
+		}
+		return new ArchivedEvent(event.getId(), event.getName(), event.getStartDateTime(), event.getDuration(),
+				event.getHoldExpirationSeconds(), layout.getLevels(), layout.size(), bookedCount, deflate(bits), msbs,
+				lsbs, starts, seats, quotes);
+	}
+
+	public int getId() {
+		return id;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public ZonedDateTime getStartDateTime() {
+		return startDateTime;
+	}
+
+	public long getDuration() {
+		return duration;
+	}
+
+	public List<SeatLevel> getLevels() {
+		return levels;
+	}
+
+	public int getSeatCount() {
+		return seatCount;
+	}
+
+	public int getBookedSeatCount() {
+		return bookedCount;
+	}
+
+	public int getReservationCount() {
+		return reservationMsbs.length;
+	}
+
+	/**
+	 * @return size of the compressed seat states in bytes
+	 */
+	public int getCompressedSize() {
+		return booked.length;
+	}
+
+	/**
+	 * Rebuilds the final event state in a layout of its own
+	 */
+	public Event toEvent() {
+		VenueLayout layout = new VenueLayout(levels);
+		Event event = new Event(id, name, startDateTime, duration, layout, holdExpirationSeconds);
+		long[] bits = inflate(booked, (seatCount + Long.SIZE - 1) / Long.SIZE);
+		List<Seat> bookedSeats = new ArrayList<>(bookedCount);
+		for (int i = 0; i < seatCount; i++) {
+			if ((bits[i / Long.SIZE] & 1L << i) != 0) {
+				bookedSeats.add(new Seat(layout.seatId(i), SeatState.AVAILABLE));
+			}
+		}
+		return bookedSeats.isEmpty() ? event
+				: new Event(event, Collections.singletonMap(SeatState.BOOKED, bookedSeats));
+	}
+
+	/**
+	 * @return the reservation or null if the event has no such reservation
+	 */
+	public SeatReservation getReservation(UUID reservationId) {
+		long msb = reservationId.getMostSignificantBits();
+		long lsb = reservationId.getLeastSignificantBits();
+		// same order as UUID.compareTo
+		int low = 0, high = reservationMsbs.length - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int cmp = reservationMsbs[mid] != msb ? Long.compare(reservationMsbs[mid], msb)
+					: Long.compare(reservationLsbs[mid], lsb);
+			if (cmp == 0) {
+				return reservation(mid, new VenueLayout(levels));
+			}
+			if (cmp < 0) {
+				low = mid + 1;
+			} else {
+				high = mid - 1;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return every reservation, by reservation id
+	 */
+	public List<SeatReservation> getReservations() {
+		VenueLayout layout = new VenueLayout(levels);
+		List<SeatReservation> reservations = new ArrayList<>(reservationMsbs.length);
+		for (int r = 0; r < reservationMsbs.length; r++) {
+			reservations.add(reservation(r, layout));
+		}
+		return reservations;
+	}
+
+	private SeatReservation reservation(int r, VenueLayout layout) {
+		List<SeatIdentifier> seatIds = new ArrayList<>(reservationStarts[r + 1] - reservationStarts[r]);
+		for (int s = reservationStarts[r]; s < reservationStarts[r + 1]; s++) {
+			seatIds.add(layout.seatId(reservationSeats[s]));
+		}
+		return new SeatReservation(new UUID(reservationMsbs[r], reservationLsbs[r]), id, seatIds, quotes[r]);
+	}
+
+	void writeTo(DataOutput out) throws IOException {
+		out.writeInt(FORMAT);
+		out.writeInt(id);
+		out.writeUTF(name);
+		out.writeUTF(startDateTime.toString());
+		out.writeLong(duration);
+		out.writeLong(holdExpirationSeconds);
+		out.writeInt(levels.size());
+		for (SeatLevel level : levels) {
+			out.writeInt(level.getId());
+			out.writeUTF(level.getName());
+			out.writeLong(level.getPriceCents());
+			out.writeInt(level.getRows());
+			out.writeInt(level.getSeats());
+		}
+		out.writeInt(seatCount);
+		out.writeInt(bookedCount);
+		out.writeInt(booked.length);
+		out.write(booked);
+		out.writeInt(reservationMsbs.length);
+		for (int r = 0; r < reservationMsbs.length; r++) {
+			out.writeLong(reservationMsbs[r]);
+			out.writeLong(reservationLsbs[r]);
+			out.writeInt(reservationStarts[r + 1]);
+			writeQuote(out, quotes[r]);
+		}
+		for (int seat : reservationSeats) {
+			out.writeInt(seat);
+		}
+	}
+
+	static ArchivedEvent readFrom(DataInput in) throws IOException {
+		int format = in.readInt();
+		if (format != FORMAT) {
+			throw new IOException("Unknown archive format " + format);
+		}
+		int id = in.readInt();
+		String name = in.readUTF();
+		ZonedDateTime startDateTime = ZonedDateTime.parse(in.readUTF());
+		long duration = in.readLong();
+		long holdExpirationSeconds = in.readLong();
+		List<SeatLevel> levels = new ArrayList<>();
+		for (int l = in.readInt(); l > 0; l--) {
+			levels.add(new SeatLevel(in.readInt(), in.readUTF(), in.readLong(), in.readInt(), in.readInt()));
+		}
+		int seatCount = in.readInt();
+		int bookedCount = in.readInt();
+		byte[] booked = new byte[in.readInt()];
+		in.readFully(booked);
+		int n = in.readInt();
+		long[] msbs = new long[n];
+		long[] lsbs = new long[n];
+		int[] starts = new int[n + 1];
+		PriceQuote[] quotes = new PriceQuote[n];
+		for (int r = 0; r < n; r++) {
+			msbs[r] = in.readLong();
+			lsbs[r] = in.readLong();
+			starts[r + 1] = in.readInt();
+			quotes[r] = readQuote(in);
+		}
+		int[] seats = new int[starts[n]];
+		for (int s = 0; s < seats.length; s++) {
+			seats[s] = in.readInt();
+		}
+		return new ArchivedEvent(id, name, startDateTime, duration, holdExpirationSeconds, levels, seatCount,
+				bookedCount, booked, msbs, lsbs, starts, seats, quotes);
+	}
+
+	private static void writeQuote(DataOutput out, PriceQuote quote) throws IOException {
+		if (quote == null) {
+			out.writeInt(-1);
+			return;
+		}
+		out.writeInt(quote.getLevelCount());
+		for (int q = 0; q < quote.getLevelCount(); q++) {
+			out.writeInt(quote.getLevelId(q));
+			out.writeInt(quote.getSeatCount(q));
+			out.writeLong(quote.getUnitPriceCents(q));
+		}
+		out.writeLong(quote.getFeeCents());
+	}
+
+	private static PriceQuote readQuote(DataInput in) throws IOException {
+		int count = in.readInt();
+		if (count < 0) {
+			return null;
+		}
+		int[] levelIds = new int[count];
+		int[] seatCounts = new int[count];
+		long[] unitPriceCents = new long[count];
+		for (int q = 0; q < count; q++) {
+			levelIds[q] = in.readInt();
+			seatCounts[q] = in.readInt();
+			unitPriceCents[q] = in.readLong();
+		}
+		return new PriceQuote(levelIds, seatCounts, unitPriceCents, in.readLong());
+	}
+
+	private static byte[] deflate(long[] bits) {
+		byte[] raw = new byte[bits.length * Long.BYTES];
+		for (int i = 0; i < raw.length; i++) {
+			raw[i] = (byte) (bits[i / Long.BYTES] >>> ((i % Long.BYTES) * Byte.SIZE));
+		}
+		Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+		try {
+			deflater.setInput(raw);
+			deflater.finish();
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[512];
+			while (!deflater.finished()) {
+				out.write(buffer, 0, deflater.deflate(buffer));
+			}
+			return out.toByteArray();
+		} finally {
+			deflater.end();
+		}
+	}
+
+	private static long[] inflate(byte[] compressed, int words) {
+		byte[] raw = new byte[words * Long.BYTES];
+		Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(compressed);
+			int read = 0;
+			while (read < raw.length && !inflater.finished()) {
+				read += inflater.inflate(raw, read, raw.length - read);
+			}
+			if (read != raw.length) {
+				throw new IllegalStateException("Seat states are truncated");
+			}
+		} catch (DataFormatException e) {
+			throw new IllegalStateException("Seat states are corrupt", e);
+		} finally {
+			inflater.end();
+		}
+		long[] bits = new long[words];
+		for (int i = 0; i < raw.length; i++) {
+			bits[i / Long.BYTES] |= (raw[i] & 0xffL) << ((i % Long.BYTES) * Byte.SIZE);
+		}
+		return bits;
+	}
+
+	@Override
+	public String toString() {
+		return new StringBuilder("ArchivedEvent[id: ").append(id).append(", name: ").append(name)
+				.append(", booked: ").append(bookedCount).append("/").append(seatCount).append(", reservations: ")
+				.append(reservationMsbs.length).append("]").toString();
+	}
+}
@@ -0,0 +1,154 @@
+package com.ticketapp.service.archive;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.SoftReference;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.ticketapp.bean.Event;
+import com.ticketapp.bean.SeatReservation;
+import com.ticketapp.service.EventSnapshot;
+import com.ticketapp.service.exception.NotFoundException;
+
+/**
+ * Store of ended events, see {@link ArchivedEvent}.
+ * <p>
+ * Without a directory archived events stay on the heap in their compact form.
+ * With one, each is written to its own file and only kept softly referenced
+ * once read back, so the heap no longer grows with the number of past events.
+ */
+public final class EventArchive {
+
+	private static final Logger LOG = LoggerFactory.getLogger(EventArchive.class);
+
+	private final Path directory;
+	private final ConcurrentMap<Integer, Entry> entries = new ConcurrentHashMap<>();
+
+	/**
+	 * Keeps archived events on the heap
+	 */
+	public EventArchive() {
+		this.directory = null;
+	}
+
+	/**
+	 * Offloads archived events to files in the directory
+	 */
+	public EventArchive(Path directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * Archives an exported event
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the event is already archived
+	 * @throws UncheckedIOException
+	 *             if the event could not be written
+	 */
+	public ArchivedEvent archive(EventSnapshot snapshot) {
+		ArchivedEvent archived = ArchivedEvent.of(snapshot);
+		int eventId = archived.getId();
+		if (entries.containsKey(eventId)) {
+			throw new IllegalArgumentException(String.format("Event with id %d is already archived", eventId));
+		}
+		Entry entry = directory == null ? new Entry(archived, null) : new Entry(null, write(archived));
+		if (entries.putIfAbsent(eventId, entry) != null) {
+			throw new IllegalArgumentException(String.format("Event with id %d is already archived", eventId));
+		}
+		LOG.info("Event archived: {}, holds dropped: {}", archived, snapshot.getHoldCount());
+		return archived;
+	}
+
+	public boolean contains(int eventId) {
+		return entries.containsKey(eventId);
+	}
+
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * @return the archived event, read from its file if needed
+	 */
+	public ArchivedEvent get(int eventId) {
+		Entry entry = entries.get(eventId);
+		if (entry == null) {
+			throw new NotFoundException(String.format("Archived eventId %d not found", eventId));
+		}
+		if (entry.archived != null) {
+			return entry.archived;
+		}
+		ArchivedEvent archived = entry.loaded.get();
+		if (archived == null) {
+			// racing readers may both read the file, either copy will do
+			archived = read(entry.file);
+			entry.loaded = new SoftReference<>(archived);
+		}
+		return archived;
+	}
+
+	/**
+	 * @return final state of the event
+	 */
+	public Event getEvent(int eventId) {
+		return get(eventId).toEvent();
+	}
+
+	public SeatReservation getReservation(int eventId, UUID reservationId) {
+		SeatReservation reservation = get(eventId).getReservation(reservationId);
+		if (reservation == null) {
+			throw new NotFoundException(
+					String.format("Reservation %s not found for archived eventId %d", reservationId, eventId));
+		}
+		return reservation;
+	}
+
+	private Path write(ArchivedEvent archived) {
+		Path file = directory.resolve("event-" + archived.getId() + ".archive");
+		Path tmp = directory.resolve("event-" + archived.getId() + ".archive.tmp");
+		try {
+			Files.createDirectories(directory);
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+				archived.writeTo(out);
+			}
+			return Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Could not archive eventId " + archived.getId(), e);
+		}
+	}
+
+	private static ArchivedEvent read(Path file) {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+			return ArchivedEvent.readFrom(in);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Could not read archive " + file, e);
+		}
+	}
+
+	private static final class Entry {
+		/**
+		 * Set when kept on the heap
+		 */
+		private final ArchivedEvent archived;
+		private final Path file;
+		private volatile SoftReference<ArchivedEvent> loaded = new SoftReference<>(null);
+
+		private Entry(ArchivedEvent archived, Path file) {
+			this.archived = archived;
+			this.file = file;
+		}
+	}
+}
@@ -0,0 +1,128 @@
+package com.ticketapp.service.archive;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.ticketapp.bean.Event;
+import com.ticketapp.service.EventCommitListener;
+import com.ticketapp.service.EventSnapshot;
+import com.ticketapp.service.TicketNode;
+import com.ticketapp.service.exception.NotFoundException;
+
+/**
+ * Moves events which have ended off a {@link TicketNode} into an
+ * {@link EventArchive}. An event ends {@link Event#getDuration()} minutes
+ * after its start, and is archived once it has been over for the retention
+ * period.
+ * <p>
+ * Archiving exports the event, so its open holds are cancelled and its seat
+ * states, levels and reservations leave the maps of the node. The lifecycle
+ * learns of events as a commit listener and only keeps their end times.
+ * <p>
+ * Usage: <code>
+ * EventLifecycle lifecycle = new EventLifecycle(scheduler, ticketService, archive, TimeUnit.DAYS.toMillis(1));
+ * ticketService.addCommitListener(lifecycle);
+ * </code>
+ */
+public final class EventLifecycle implements EventCommitListener {
+
+	private static final Logger LOG = LoggerFactory.getLogger(EventLifecycle.class);
+
+	/**
+	 * How often ended events are looked for
+	 */
+	static final long SWEEP_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+	private final TicketNode node;
+	private final EventArchive archive;
+	private final long retentionMillis;
+	private final LongSupplier clock;
+	/**
+	 * End time of every event of the node, epoch millis
+	 */
+	private final ConcurrentMap<Integer, Long> endTimes = new ConcurrentHashMap<>();
+
+	/**
+	 * @param retentionMillis
+	 *            how long an event stays on the node after it ended
+	 */
+	public EventLifecycle(ScheduledExecutorService scheduler, TicketNode node, EventArchive archive,
+			long retentionMillis) {
+		this(node, archive, retentionMillis, System::currentTimeMillis);
+		scheduler.scheduleWithFixedDelay(this::sweep, SWEEP_MILLIS, SWEEP_MILLIS, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Not scheduled, archiving happens on {@link #archiveEnded()}
+	 */
+	EventLifecycle(TicketNode node, EventArchive archive, long retentionMillis, LongSupplier clock) {
+		if (retentionMillis < 0) {
+			throw new IllegalArgumentException("Invalid retention " + retentionMillis);
+		}
+		this.node = node;
+		this.archive = archive;
+		this.retentionMillis = retentionMillis;
+		this.clock = clock;
+	}
+
+	@Override
+	public void eventCommitted(Event event) {
+		// the schedule of an event never changes, only look at it once
+		endTimes.computeIfAbsent(event.getId(), id -> event.getStartDateTime().toInstant().toEpochMilli()
+				+ TimeUnit.MINUTES.toMillis(event.getDuration()));
+	}
+
+	@Override
+	public void eventRemoved(int eventId) {
+		endTimes.remove(eventId);
+	}
+
+	/**
+	 * Archives every event which has been over for the retention period
+	 *
+	 * @return number of events archived
+	 */
+	public int archiveEnded() {
+		long now = clock.getAsLong();
+		int archived = 0;
+		for (Map.Entry<Integer, Long> entry : endTimes.entrySet()) {
+			if (entry.getValue() + retentionMillis > now) {
+				continue;
+			}
+			int eventId = entry.getKey();
+			EventSnapshot snapshot;
+			try {
+				snapshot = node.exportEvent(eventId);
+			} catch (NotFoundException ex) {
+				// moved or archived meanwhile
+				endTimes.remove(eventId, entry.getValue());
+				continue;
+			}
+			try {
+				archive.archive(snapshot);
+			} catch (RuntimeException ex) {
+				// back on the node, so that the next sweep tries again
+				node.importEvent(snapshot);
+				throw ex;
+			}
+			archived++;
+		}
+		return archived;
+	}
+
+	private void sweep() {
+		try {
+			archiveEnded();
+		} catch (RuntimeException ex) {
+			// keep the schedule alive, the event is retried on the next sweep
+			LOG.error("Event archiving failed", ex);
+		}
+	}
+}
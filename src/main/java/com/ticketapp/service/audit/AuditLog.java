@@ -0,0 +1,299 @@
+package com.ticketapp.service.audit;
+
+import java.time.Clock;
+import java.util.UUID;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Audit log of the booking path. Callers append fixed-shape records to a
+ * bounded lock-free ring, a single daemon thread drains the ring in order into
+ * an {@link AuditSink}. Appending never formats, never does I/O and allocates
+ * nothing, so records may be appended under an event lock. An idle writer
+ * parks until the next record is published.
+ * <p>
+ * Records of a {@link AuditType#isSampled() sampled} type are kept one in
+ * <code>sampleEvery</code> and dropped when the ring is full. For other
+ * records the caller waits for the writer to make room, but no longer than
+ * <code>fullWaitMillis</code>, so a stuck sink cannot stall the booking path.
+ * Either way a dropped record is counted, see {@link #getDropped()}.
+ * <p>
+ * The ring is a sequence claimed with a CAS per record, the record fields are
+ * parallel primitive arrays indexed by <code>sequence & mask</code>, and a slot
+ * is published by storing its sequence once its fields are written. Record
+ * times are taken from the {@link Clock} of the log.
+ */
+public final class AuditLog implements AutoCloseable {
+
+	private static final Logger LOG = LoggerFactory.getLogger(AuditLog.class);
+
+	private static final AuditType[] TYPES = AuditType.values();
+	private static final long FULL_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(200);
+	private static final long DEFAULT_FULL_WAIT_MILLIS = 10;
+	/**
+	 * Sampling of the default log: one in that many hold records is kept
+	 */
+	static final int DEFAULT_SAMPLE_EVERY = 10;
+
+	private final int mask;
+	private final int sampleEvery;
+	private final AuditSink sink;
+	private final Clock clock;
+	private final long fullWaitNanos;
+
+	/** next sequence to claim */
+	private final AtomicLong claimed = new AtomicLong();
+	/** next sequence to drain, written by the writer only */
+	private final AtomicLong drained = new AtomicLong();
+	/** sequence last published in each slot, -1 before the first */
+	private final AtomicLongArray published;
+	private final AtomicLong dropped = new AtomicLong();
+
+	private final int[] types;
+	private final long[] times;
+	private final int[] eventIds;
+	private final int[] holdIds;
+	private final int[] seats;
+	private final long[] amountCents;
+	private final String[] emails;
+	private final long[] reservationMsbs;
+	private final long[] reservationLsbs;
+
+	private final Thread writer;
+	/** set by the writer before it parks for want of records */
+	private volatile boolean writerIdle;
+	private volatile boolean closed;
+
+	/**
+	 * Starts the writer thread
+	 *
+	 * @param capacity
+	 *            records the ring holds, a power of two
+	 * @param sampleEvery
+	 *            keeps one in that many sampled records, 1 keeps them all
+	 */
+	public AuditLog(int capacity, int sampleEvery, AuditSink sink) {
+		this(capacity, sampleEvery, sink, runnable -> {
+			Thread thread = new Thread(runnable, "audit-writer");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Same as {@link #AuditLog(int, int, AuditSink)} with the writer made by
+	 * the factory, e.g. a virtual thread, see
+	 * {@link com.ticketapp.util.ThreadMode}
+	 */
+	public AuditLog(int capacity, int sampleEvery, AuditSink sink, ThreadFactory writerFactory) {
+		this(capacity, sampleEvery, sink, writerFactory, Clock.systemUTC(), DEFAULT_FULL_WAIT_MILLIS);
+	}
+
+	/**
+	 * Same as {@link #AuditLog(int, int, AuditSink, ThreadFactory)}
+	 *
+	 * @param clock
+	 *            time of the records
+	 * @param fullWaitMillis
+	 *            longest an audited record waits for room in a full ring
+	 *            before it is dropped
+	 */
+	public AuditLog(int capacity, int sampleEvery, AuditSink sink, ThreadFactory writerFactory, Clock clock,
+			long fullWaitMillis) {
+		if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+			throw new IllegalArgumentException("Capacity must be a power of two");
+		}
+		if (sampleEvery < 1) {
+			throw new IllegalArgumentException("Invalid sampling " + sampleEvery);
+		}
+		this.mask = capacity - 1;
+		this.sampleEvery = sampleEvery;
+		this.sink = sink;
+		this.clock = clock;
+		this.fullWaitNanos = TimeUnit.MILLISECONDS.toNanos(fullWaitMillis);
+		this.published = new AtomicLongArray(capacity);
+		for (int i = 0; i < capacity; i++) {
+			published.set(i, -1);
+		}
+		this.types = new int[capacity];
+		this.times = new long[capacity];
+		this.eventIds = new int[capacity];
+		this.holdIds = new int[capacity];
+		this.seats = new int[capacity];
+		this.amountCents = new long[capacity];
+		this.emails = new String[capacity];
+		this.reservationMsbs = new long[capacity];
+		this.reservationLsbs = new long[capacity];
+		this.writer = writerFactory.newThread(this::drain);
+		writer.start();
+	}
+
+	/**
+	 * Log shared by services which are not given one, writing to
+	 * {@link LoggingAuditSink} every reservation and cancellation record but
+	 * only one in {@link #DEFAULT_SAMPLE_EVERY} hold records. It is made, and
+	 * its writer started, by the first call, and is never closed.
+	 */
+	public static AuditLog getDefault() {
+		return DefaultHolder.DEFAULT;
+	}
+
+	private static final class DefaultHolder {
+		static final AuditLog DEFAULT = new AuditLog(1 << 14, DEFAULT_SAMPLE_EVERY, new LoggingAuditSink());
+	}
+
+	/**
+	 * Appends a record
+	 *
+	 * @param holdId
+	 *            -1 if none
+	 * @param seatCount
+	 *            -1 if none
+	 * @param cents
+	 *            -1 if none
+	 * @param reservationId
+	 *            null if none
+	 * @return false if the record was sampled out, dropped or the log is
+	 *         closed
+	 */
+	public boolean append(AuditType type, int eventId, int holdId, int seatCount, long cents, String email,
+			UUID reservationId) {
+		if (closed) {
+			return false;
+		}
+		boolean sampled = type.isSampled();
+		if (sampled && sampleEvery > 1 && ThreadLocalRandom.current().nextInt(sampleEvery) != 0) {
+			return false;
+		}
+		long sequence = claim(!sampled);
+		if (sequence < 0) {
+			dropped.incrementAndGet();
+			return false;
+		}
+		int slot = (int) sequence & mask;
+		types[slot] = type.ordinal();
+		times[slot] = clock.millis();
+		eventIds[slot] = eventId;
+		holdIds[slot] = holdId;
+		seats[slot] = seatCount;
+		amountCents[slot] = cents;
+		emails[slot] = email;
+		reservationMsbs[slot] = reservationId == null ? 0 : reservationId.getMostSignificantBits();
+		reservationLsbs[slot] = reservationId == null ? 0 : reservationId.getLeastSignificantBits();
+		// orders the field writes before the writer sees the slot, and before
+		// the idle flag is read so that a parking writer is always woken
+		published.set(slot, sequence);
+		if (writerIdle) {
+			LockSupport.unpark(writer);
+		}
+		return true;
+	}
+
+	private long claim(boolean wait) {
+		long deadline = 0;
+		while (true) {
+			long sequence = claimed.get();
+			if (sequence - drained.get() > mask) {
+				if (!wait || closed) {
+					return -1;
+				}
+				if (deadline == 0) {
+					deadline = System.nanoTime() + fullWaitNanos;
+				} else if (System.nanoTime() - deadline > 0) {
+					return -1;
+				}
+				LockSupport.parkNanos(FULL_PARK_NANOS);
+				continue;
+			}
+			if (claimed.compareAndSet(sequence, sequence + 1)) {
+				return sequence;
+			}
+		}
+	}
+
+	/**
+	 * @return one in that many sampled records is kept
+	 */
+	public int getSampleEvery() {
+		return sampleEvery;
+	}
+
+	/**
+	 * @return records dropped because the ring was full, sampled ones at once
+	 *         and others after waiting <code>fullWaitMillis</code>
+	 */
+	public long getDropped() {
+		return dropped.get();
+	}
+
+	/**
+	 * Waits until every record appended before the call is written
+	 *
+	 * @return false if they were not written in time
+	 */
+	public boolean flush(long timeout, TimeUnit unit) {
+		long target = claimed.get();
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		while (drained.get() < target) {
+			if (!writer.isAlive() || System.nanoTime() - deadline > 0) {
+				return false;
+			}
+			LockSupport.parkNanos(FULL_PARK_NANOS);
+		}
+		return true;
+	}
+
+	/**
+	 * Stops accepting records, writes the pending ones and stops the writer
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		LockSupport.unpark(writer);
+		try {
+			writer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void drain() {
+		AuditRecord record = new AuditRecord();
+		long next = 0;
+		while (true) {
+			int slot = (int) next & mask;
+			if (published.get(slot) != next) {
+				// a claimed slot is always published shortly, only stop when
+				// nothing is claimed
+				if (closed && claimed.get() == next) {
+					return;
+				}
+				// the flag is set before the slot is looked at again, so a
+				// record published after the look finds the flag and unparks
+				writerIdle = true;
+				if (published.get(slot) != next && !closed) {
+					LockSupport.park(this);
+				}
+				writerIdle = false;
+				continue;
+			}
+			record.set(TYPES[types[slot]], next, times[slot], eventIds[slot], holdIds[slot], seats[slot],
+					amountCents[slot], emails[slot], reservationMsbs[slot], reservationLsbs[slot],
+					reservationMsbs[slot] != 0 || reservationLsbs[slot] != 0);
+			emails[slot] = null;
+			try {
+				sink.write(record);
+			} catch (RuntimeException e) {
+				LOG.error("Audit sink failed on " + record, e);
+			}
+			drained.lazySet(++next);
+		}
+	}
+}
@@ -0,0 +1,115 @@
+package com.ticketapp.service.audit;
+
+import java.util.UUID;
+
+/**
+ * One audit record as seen by an {@link AuditSink}. Every record has the same
+ * fields, fields which do not apply are -1 or null.
+ * <p>
+ * The writer reuses a single instance for every record it drains, so a sink
+ * must copy whatever it keeps past {@link AuditSink#write(AuditRecord)}.
+ */
+public final class AuditRecord {
+
+	private AuditType type;
+	private long sequence;
+	private long time;
+	private int eventId;
+	private int holdId;
+	private int seats;
+	private long amountCents;
+	private String email;
+	private long reservationMsb;
+	private long reservationLsb;
+	private boolean hasReservation;
+
+	void set(AuditType type, long sequence, long time, int eventId, int holdId, int seats, long amountCents,
+			String email, long reservationMsb, long reservationLsb, boolean hasReservation) {
+		this.type = type;
+		this.sequence = sequence;
+		this.time = time;
+		this.eventId = eventId;
+		this.holdId = holdId;
+		this.seats = seats;
+		this.amountCents = amountCents;
+		this.email = email;
+		this.reservationMsb = reservationMsb;
+		this.reservationLsb = reservationLsb;
+		this.hasReservation = hasReservation;
+	}
+
+	public AuditType getType() {
+		return type;
+	}
+
+	/**
+	 * @return position of the record in the log, gaps are sampled out or
+	 *         dropped records
+	 */
+	public long getSequence() {
+		return sequence;
+	}
+
+	/**
+	 * @return epoch millis
+	 */
+	public long getTime() {
+		return time;
+	}
+
+	public int getEventId() {
+		return eventId;
+	}
+
+	public int getHoldId() {
+		return holdId;
+	}
+
+	public int getSeats() {
+		return seats;
+	}
+
+	public long getAmountCents() {
+		return amountCents;
+	}
+
+	public String getEmail() {
+		return email;
+	}
+
+	/**
+	 * Allocates, meant for sinks which keep the id
+	 */
+	public UUID getReservationId() {
+		return hasReservation ? new UUID(reservationMsb, reservationLsb) : null;
+	}
+
+	/**
+	 * Appends the record as <code>key=value</code> pairs
+	 */
+	public StringBuilder appendTo(StringBuilder builder) {
+		builder.append("type=").append(type).append(" seq=").append(sequence).append(" time=").append(time)
+				.append(" eventId=").append(eventId);
+		if (holdId >= 0) {
+			builder.append(" holdId=").append(holdId);
+		}
+		if (seats >= 0) {
+			builder.append(" seats=").append(seats);
+		}
+		if (amountCents >= 0) {
+			builder.append(" amountCents=").append(amountCents);
+		}
+		if (email != null) {
+			builder.append(" email=").append(email);
+		}
+		if (hasReservation) {
+			builder.append(" reservationId=").append(new UUID(reservationMsb, reservationLsb));
+		}
+		return builder;
+	}
+
+	@Override
+	public String toString() {
+		return appendTo(new StringBuilder("AuditRecord[")).append("]").toString();
+	}
+}
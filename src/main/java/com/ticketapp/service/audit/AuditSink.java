@@ -0,0 +1,15 @@
+package com.ticketapp.service.audit;
+
+/**
+ * Destination of audit records, called by the single writer thread of an
+ * {@link AuditLog} in record order
+ */
+@FunctionalInterface
+public interface AuditSink {
+
+	/**
+	 * @param record
+	 *            reused for the next record once this call returns
+	 */
+	void write(AuditRecord record);
+}
@@ -0,0 +1,27 @@
+package com.ticketapp.service.audit;
+
+/**
+ * Kinds of booking path records. High volume kinds are sampled, the others
+ * are always recorded.
+ */
+public enum AuditType {
+	HOLD_CREATED(true),
+	HOLD_RELEASED(true),
+	HOLD_EXPIRED(true),
+	RESERVED(false),
+	CANCELLED(false);
+
+	private final boolean sampled;
+
+	AuditType(boolean sampled) {
+		this.sampled = sampled;
+	}
+
+	/**
+	 * @return true if records of this kind may be sampled or dropped under
+	 *         load, false if every one of them is kept
+	 */
+	public boolean isSampled() {
+		return sampled;
+	}
+}
@@ -0,0 +1,25 @@
+package com.ticketapp.service.audit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes records as <code>key=value</code> lines to the
+ * <code>com.ticketapp.audit</code> logger. The line is only built if the
+ * logger is enabled, and on the writer thread, never on the booking path.
+ */
+public final class LoggingAuditSink implements AuditSink {
+
+	private static final Logger LOG = LoggerFactory.getLogger("com.ticketapp.audit");
+
+	private final StringBuilder line = new StringBuilder(256);
+
+	@Override
+	public void write(AuditRecord record) {
+		if (!LOG.isInfoEnabled()) {
+			return;
+		}
+		line.setLength(0);
+		LOG.info(record.appendTo(line).toString());
+	}
+}
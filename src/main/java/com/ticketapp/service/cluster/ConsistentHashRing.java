@@ -0,0 +1,78 @@
+package com.ticketapp.service.cluster;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Consistent hash ring of node names. Each node is placed on the ring at a
+ * number of virtual points so that keys spread evenly, and adding or removing
+ * a node only remaps the keys next to its points. Object is immutable.
+ * <p>
+ * The ring is kept as a sorted array of points with a parallel array of
+ * owners, a lookup is a binary search.
+ */
+public final class ConsistentHashRing {
+
+	private final int[] points;
+	private final String[] owners;
+	private final List<String> nodes;
+
+	/**
+	 * @param nodes
+	 *            unique node names
+	 * @param virtualNodes
+	 *            points per node on the ring
+	 */
+	public ConsistentHashRing(Collection<String> nodes, int virtualNodes) {
+		if (nodes == null || nodes.isEmpty() || virtualNodes < 1) {
+			throw new IllegalArgumentException("Ring needs at least one node and one point per node");
+		}
+		this.nodes = Collections.unmodifiableList(new ArrayList<>(nodes));
+		long[] entries = new long[nodes.size() * virtualNodes];
+		int i = 0;
+		for (int n = 0; n < this.nodes.size(); n++) {
+			for (int v = 0; v < virtualNodes; v++) {
+				int point = mix(this.nodes.get(n).hashCode() * 31 + mix(v));
+				// sort by point, keep the node index in the low bits
+				entries[i++] = ((long) point << 32) | n;
+			}
+		}
+		Arrays.sort(entries);
+		points = new int[entries.length];
+		owners = new String[entries.length];
+		for (i = 0; i < entries.length; i++) {
+			points[i] = (int) (entries[i] >> 32);
+			owners[i] = this.nodes.get((int) entries[i]);
+		}
+	}
+
+	/**
+	 * @return the node owning the key, the first point at or after its hash
+	 */
+	public String get(int key) {
+		int idx = Arrays.binarySearch(points, mix(key));
+		if (idx < 0) {
+			idx = -idx - 1;
+		}
+		return owners[idx == points.length ? 0 : idx];
+	}
+
+	public List<String> getNodes() {
+		return nodes;
+	}
+
+	/**
+	 * murmur3 finalizer, spreads sequential ids over the ring
+	 */
+	private static int mix(int h) {
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		h *= 0xc2b2ae35;
+		h ^= h >>> 16;
+		return h;
+	}
+}
@@ -0,0 +1,327 @@
+package com.ticketapp.service.cluster;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.ticketapp.bean.Availability;
+import com.ticketapp.bean.Event;
+import com.ticketapp.bean.PriceQuote;
+import com.ticketapp.bean.SeatHold;
+import com.ticketapp.bean.SeatIdentifier;
+import com.ticketapp.bean.input.EventInput;
+import com.ticketapp.service.EventSnapshot;
+import com.ticketapp.service.HoldIdAllocator;
+import com.ticketapp.service.TicketNode;
+import com.ticketapp.service.TicketService;
+import com.ticketapp.service.TicketServiceV2;
+import com.ticketapp.service.exception.EventNotHostedException;
+import com.ticketapp.service.exception.SeatHoldException;
+import com.ticketapp.service.exception.SeatReservationException;
+
+/**
+ * Thin {@link TicketService} in front of a set of {@link TicketNode}s which
+ * partition events between them. The router keeps no event state, it only
+ * decides which node a call goes to:
+ * <ul>
+ * <li>events are placed by a {@link ConsistentHashRing} on the event id,
+ * unless they have been moved with {@link #moveEvent(int, String)}</li>
+ * <li>holds are routed to the node of their event, which the shared
+ * {@link HoldIdAllocator} knows from the hold id</li>
+ * </ul>
+ * Event ids are assigned here so that they are unique across nodes.
+ * <p>
+ * <b>Moving events:</b> a hot event can be moved to a node of its own by
+ * exporting it from its node and importing the snapshot on the target. Calls
+ * for the event wait while it moves, and a call which reached the old node
+ * just before the move is retried on the new one.
+ * <p>
+ * Nodes are plain objects here, i.e. in-process. A remote node would implement
+ * {@link TicketNode} over whatever transport connects the nodes.
+ */
+public final class TicketRouter implements TicketService, TicketServiceV2 {
+
+	private static final int VIRTUAL_NODES = 128;
+
+	private final Map<String, TicketNode> nodes;
+	private final ConsistentHashRing ring;
+	private final HoldIdAllocator holdIdAllocator;
+	/**
+	 * Events placed elsewhere than their ring owner
+	 */
+	private final ConcurrentMap<Integer, String> placements = new ConcurrentHashMap<>();
+	/**
+	 * Events being moved, released once the move is done
+	 */
+	private final ConcurrentMap<Integer, CountDownLatch> moving = new ConcurrentHashMap<>();
+	/**
+	 * Completed moves per event, tells a failed call whether its event moved
+	 * under it
+	 */
+	private final ConcurrentMap<Integer, Integer> moveGenerations = new ConcurrentHashMap<>();
+	private final ReentrantLock moveLock = new ReentrantLock();
+	private final AtomicInteger eventIdGen = new AtomicInteger(1);
+	private final AtomicInteger firstEventId = new AtomicInteger(-1);
+
+	private static final Logger LOG = LoggerFactory.getLogger(TicketRouter.class);
+
+	/**
+	 * @param nodes
+	 *            nodes by name, the node set is fixed
+	 * @param holdIdAllocator
+	 *            the hold id allocator shared by all the nodes
+	 */
+	public TicketRouter(Map<String, ? extends TicketNode> nodes, HoldIdAllocator holdIdAllocator) {
+		if (nodes == null || nodes.isEmpty() || holdIdAllocator == null) {
+			throw new IllegalArgumentException("Router needs nodes and their hold id allocator");
+		}
+		this.nodes = Collections.unmodifiableMap(new LinkedHashMap<>(nodes));
+		this.ring = new ConsistentHashRing(this.nodes.keySet(), VIRTUAL_NODES);
+		this.holdIdAllocator = holdIdAllocator;
+	}
+
+	/**
+	 * @return name of the node currently owning the event
+	 */
+	public String getOwner(int eventId) {
+		String node = placements.get(eventId);
+		return node != null ? node : ring.get(eventId);
+	}
+
+	@Override
+	public Event createEvent(EventInput eventInput) {
+		int eventId = eventIdGen.getAndIncrement();
+		Event event = nodes.get(getOwner(eventId)).createEvent(eventId, eventInput);
+		firstEventId.compareAndSet(-1, eventId);
+		return event;
+	}
+
+	/**
+	 * Assigns the ids, then each node creates its share of the events in one
+	 * call
+	 */
+	@Override
+	public List<Event> createEvents(List<EventInput> eventInputs) {
+		int[] eventIds = new int[eventInputs.size()];
+		Map<String, Map<Integer, EventInput>> byNode = new LinkedHashMap<>();
+		for (int i = 0; i < eventInputs.size(); i++) {
+			eventIds[i] = eventIdGen.getAndIncrement();
+			byNode.computeIfAbsent(getOwner(eventIds[i]), node -> new LinkedHashMap<>()).put(eventIds[i],
+					eventInputs.get(i));
+		}
+		Map<Integer, Event> created = new HashMap<>();
+		for (Map.Entry<String, Map<Integer, EventInput>> entry : byNode.entrySet()) {
+			nodes.get(entry.getKey()).createEvents(entry.getValue())
+					.forEach(event -> created.put(event.getId(), event));
+		}
+		if (eventIds.length > 0) {
+			firstEventId.compareAndSet(-1, eventIds[0]);
+		}
+		List<Event> events = new ArrayList<>(eventIds.length);
+		for (int eventId : eventIds) {
+			events.add(created.get(eventId));
+		}
+		return events;
+	}
+
+	@Override
+	public Event getEvent(Integer id) {
+		return route(id, node -> node.getEvent(id));
+	}
+
+	/**
+	 * Works on the first event created, see {@link TicketService}
+	 */
+	@Override
+	public int numSeatsAvailable(Optional<Integer> venueLevel) {
+		return numSeatsAvailable(getFirstEventId(), venueLevel);
+	}
+
+	public int numSeatsAvailable(int eventId, Optional<Integer> venueLevel) {
+		return route(eventId, node -> node.numSeatsAvailable(eventId, venueLevel));
+	}
+
+	public Availability getAvailability(int eventId) {
+		return route(eventId, node -> node.getAvailability(eventId));
+	}
+
+	/**
+	 * Works on the first event created, see {@link TicketService}
+	 */
+	@Override
+	public SeatHold findAndHoldSeats(int numSeats, Optional<Integer> minLevel, Optional<Integer> maxLevel,
+			String customerEmail) {
+		return findAndHoldSeats(getFirstEventId(), numSeats, minLevel, maxLevel, customerEmail);
+	}
+
+	public SeatHold findAndHoldSeats(int eventId, int numSeats, Optional<Integer> minLevel,
+			Optional<Integer> maxLevel, String customerEmail) {
+		return route(eventId, node -> node.findAndHoldSeats(eventId, numSeats, minLevel, maxLevel, customerEmail));
+	}
+
+	public SeatHold findAndHoldSeats(int eventId, int numSeats, Optional<Integer> minLevel,
+			Optional<Integer> maxLevel, String customerEmail, String idempotencyKey) {
+		return route(eventId,
+				node -> node.findAndHoldSeats(eventId, numSeats, minLevel, maxLevel, customerEmail, idempotencyKey));
+	}
+
+	public CompletableFuture<SeatHold> joinWaitlist(int eventId, int numSeats, Optional<Integer> minLevel,
+			Optional<Integer> maxLevel, String customerEmail) {
+		return route(eventId, node -> node.joinWaitlist(eventId, numSeats, minLevel, maxLevel, customerEmail));
+	}
+
+	@Override
+	public void releaseHold(int seatHoldId, String customerEmail) {
+		route(getHoldEventId(seatHoldId, SeatHoldException::new), node -> {
+			node.releaseHold(seatHoldId, customerEmail);
+			return null;
+		});
+	}
+
+	@Override
+	public long extendHold(int seatHoldId, String customerEmail) {
+		return route(getHoldEventId(seatHoldId, SeatHoldException::new),
+				node -> node.extendHold(seatHoldId, customerEmail));
+	}
+
+	@Override
+	public String reserveSeats(int seatHoldId, String customerEmail) {
+		return route(getHoldEventId(seatHoldId, SeatReservationException::new),
+				node -> node.reserveSeats(seatHoldId, customerEmail));
+	}
+
+	@Override
+	public String reserveSeats(int seatHoldId, String customerEmail, List<SeatIdentifier> seatIds) {
+		return route(getHoldEventId(seatHoldId, SeatReservationException::new),
+				node -> node.reserveSeats(seatHoldId, customerEmail, seatIds));
+	}
+
+	public String reserveSeats(int seatHoldId, String customerEmail, String idempotencyKey) {
+		return route(getHoldEventId(seatHoldId, SeatReservationException::new),
+				node -> node.reserveSeats(seatHoldId, customerEmail, idempotencyKey));
+	}
+
+	public PriceQuote cancelReservation(int eventId, String reservationId, String customerEmail) {
+		return route(eventId, node -> node.cancelReservation(eventId, reservationId, customerEmail));
+	}
+
+	public PriceQuote cancelReservation(int eventId, String reservationId, String customerEmail,
+			List<SeatIdentifier> seatIds) {
+		return route(eventId, node -> node.cancelReservation(eventId, reservationId, customerEmail, seatIds));
+	}
+
+	/**
+	 * Moves an event with its holds and reservations to another node. Moves
+	 * are serialized, calls for other events are not affected.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if there is no such node
+	 */
+	public void moveEvent(int eventId, String nodeName) {
+		// not synchronized, a move blocks on event locks and must not pin a virtual thread
+		moveLock.lock();
+		try {
+			TicketNode target = nodes.get(nodeName);
+			if (target == null) {
+				throw new IllegalArgumentException("Unknown node: " + nodeName);
+			}
+			String sourceName = getOwner(eventId);
+			if (sourceName.equals(nodeName)) {
+				return;
+			}
+			TicketNode source = nodes.get(sourceName);
+			CountDownLatch done = new CountDownLatch(1);
+			moving.put(eventId, done);
+			try {
+				EventSnapshot snapshot = source.exportEvent(eventId);
+				try {
+					target.importEvent(snapshot);
+				} catch (RuntimeException ex) {
+					// put it back where it was
+					source.importEvent(snapshot);
+					throw ex;
+				}
+				if (ring.get(eventId).equals(nodeName)) {
+					placements.remove(eventId);
+				} else {
+					placements.put(eventId, nodeName);
+				}
+				LOG.info("Moved eventId {} from {} to {}", eventId, sourceName, nodeName);
+			} finally {
+				moveGenerations.merge(eventId, 1, Integer::sum);
+				moving.remove(eventId);
+				done.countDown();
+			}
+		} finally {
+			moveLock.unlock();
+		}
+	}
+
+	/**
+	 * Calls the node owning the event. If the node no longer has the event
+	 * because it moved while the call was in flight, the call is retried on
+	 * the current owner. The event may even have moved away and back. Any
+	 * other failure is the caller's, the call is not run again.
+	 */
+	private <T> T route(int eventId, Function<TicketNode, T> call) {
+		while (true) {
+			awaitMove(eventId);
+			int generation = moveGeneration(eventId);
+			try {
+				return call.apply(nodes.get(getOwner(eventId)));
+			} catch (EventNotHostedException ex) {
+				awaitMove(eventId);
+				if (ex.getEventId() != eventId || generation == moveGeneration(eventId)) {
+					throw ex;
+				}
+			}
+		}
+	}
+
+	private int moveGeneration(int eventId) {
+		return moveGenerations.getOrDefault(eventId, 0);
+	}
+
+	private void awaitMove(int eventId) {
+		CountDownLatch done = moving.get(eventId);
+		if (done == null) {
+			return;
+		}
+		try {
+			done.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(String.format("Interrupted while eventId %d was moving", eventId), e);
+		}
+	}
+
+	private int getHoldEventId(int seatHoldId, Function<String, RuntimeException> notFound) {
+		int eventId = holdIdAllocator.eventOf(seatHoldId);
+		if (eventId < 0) {
+			throw notFound.apply(String.format("SeatHoldId %d not found", seatHoldId));
+		}
+		return eventId;
+	}
+
+	private int getFirstEventId() {
+		int eventId = firstEventId.get();
+		if (eventId < 0) {
+			throw new IllegalStateException("no events present");
+		}
+		return eventId;
+	}
+}
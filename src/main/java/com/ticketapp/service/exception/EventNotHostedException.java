@@ -0,0 +1,22 @@
+package com.ticketapp.service.exception;
+
+/**
+ * Thrown by a node for an event it does not have: the event never existed,
+ * or it was moved to another node while the call was on its way. A router
+ * retries the call on the event's new node if the event moved.
+ */
+public class EventNotHostedException extends NotFoundException {
+
+	private static final long serialVersionUID = 6120348570926133711L;
+
+	private final int eventId;
+
+	public EventNotHostedException(int eventId) {
+		super(String.format("Event with id %d not found", eventId));
+		this.eventId = eventId;
+	}
+
+	public int getEventId() {
+		return eventId;
+	}
+}
@@ -0,0 +1,14 @@
+package com.ticketapp.service.exception;
+
+/**
+ * Thrown when a customer exceeds the hold quota of an event. It is a
+ * {@link SeatHoldException} since the hold could not be placed.
+ */
+public class QuotaExceededException extends SeatHoldException {
+
+	private static final long serialVersionUID = -3409816032570163641L;
+
+	public QuotaExceededException(String message) {
+		super(message);
+	}
+}
@@ -0,0 +1,242 @@
+package com.ticketapp.service.pricing;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.LongSupplier;
+
+import com.ticketapp.bean.Availability;
+import com.ticketapp.bean.Availability.LevelAvailability;
+import com.ticketapp.bean.Event;
+import com.ticketapp.bean.PriceQuote;
+import com.ticketapp.bean.SeatIdentifier;
+import com.ticketapp.bean.SeatLevel;
+import com.ticketapp.bean.VenueLayout;
+import com.ticketapp.util.Money;
+
+/**
+ * Prices the levels of an event from its demand, see {@link PricingPolicy},
+ * and quotes orders at those prices plus a {@link FeeSchedule}.
+ * <p>
+ * Pricing only reads O(1) counters: the per level seat counts kept by the
+ * immutable {@link Event} and a {@link HoldRateWindow} of recent holds per
+ * event. It needs no event lock, any {@link Event} state will do, and a price
+ * is at most one update behind. Prices are fixed-point cents, summing an
+ * order allocates nothing per seat.
+ */
+public final class DynamicPricer {
+
+	private final PricingPolicy defaultPolicy;
+	private final FeeSchedule fees;
+	private final ConcurrentMap<Integer, PricingPolicy> eventPolicies = new ConcurrentHashMap<>();
+	private final ConcurrentMap<Integer, HoldRateWindow> holdRates = new ConcurrentHashMap<>();
+	private final LongSupplier clock;
+
+	public DynamicPricer(PricingPolicy defaultPolicy) {
+		this(defaultPolicy, FeeSchedule.NONE);
+	}
+
+	public DynamicPricer(PricingPolicy defaultPolicy, FeeSchedule fees) {
+		this(defaultPolicy, fees, System::currentTimeMillis);
+	}
+
+	/**
+	 * Prices on the given clock, e.g. a virtual one in simulations
+	 */
+	public DynamicPricer(PricingPolicy defaultPolicy, FeeSchedule fees, Clock clock) {
+		this(defaultPolicy, fees, clock::millis);
+	}
+
+	DynamicPricer(PricingPolicy defaultPolicy, FeeSchedule fees, LongSupplier clock) {
+		this.defaultPolicy = defaultPolicy;
+		this.fees = fees;
+		this.clock = clock;
+	}
+
+	/**
+	 * Pricer which keeps base prices
+	 */
+	public static DynamicPricer fixed() {
+		return new DynamicPricer(PricingPolicy.FIXED);
+	}
+
+	/**
+	 * Overrides the default policy for an event. Recent holds are forgotten.
+	 */
+	public void setPolicy(int eventId, PricingPolicy policy) {
+		eventPolicies.put(eventId, policy);
+		holdRates.remove(eventId);
+	}
+
+	public PricingPolicy getPolicy(int eventId) {
+		return eventPolicies.getOrDefault(eventId, defaultPolicy);
+	}
+
+	/**
+	 * Counts newly held seats towards hold pressure
+	 */
+	public void recordHold(Event event, List<SeatIdentifier> seatIds) {
+		PricingPolicy policy = getPolicy(event.getId());
+		if (policy.getHoldPressureWeight() == 0) {
+			return;
+		}
+		VenueLayout layout = event.getLayout();
+		HoldRateWindow holdRate = holdRates.computeIfAbsent(event.getId(),
+				id -> new HoldRateWindow(layout.getLevels().size(), policy.getHoldWindowMillis()));
+		long now = clock.getAsLong();
+		// seats of a hold mostly share a level, count them per run
+		int levelId = -1, seats = 0;
+		for (SeatIdentifier seatId : seatIds) {
+			if (seatId.getLevel() != levelId) {
+				if (seats > 0) {
+					holdRate.add(layout.levelIndex(levelId), seats, now);
+				}
+				levelId = seatId.getLevel();
+				seats = 0;
+			}
+			seats++;
+		}
+		if (seats > 0) {
+			holdRate.add(layout.levelIndex(levelId), seats, now);
+		}
+	}
+
+	/**
+	 * @return seat counts and current prices of every level of the event
+	 */
+	public Availability price(Event event) {
+		PricingPolicy policy = getPolicy(event.getId());
+		HoldRateWindow holdRate = holdRates.get(event.getId());
+		long now = clock.getAsLong();
+		List<SeatLevel> levels = event.getLevels();
+		List<LevelAvailability> levelAvailabilities = new ArrayList<>(levels.size());
+		for (int i = 0; i < levels.size(); i++) {
+			SeatLevel level = levels.get(i);
+			levelAvailabilities.add(new LevelAvailability(level.getId(),
+					event.getTotalSeatCount(Optional.of(level.getId())),
+					event.getAvailableSeatCount(Optional.of(level.getId())), level.getPriceCents(),
+					priceCents(event, i, policy, holdRate, now)));
+		}
+		return new Availability(event.getId(), now, levelAvailabilities);
+	}
+
+	/**
+	 * Prices seats of the event at the current level prices
+	 *
+	 * @param seatIds
+	 *            seats of the event
+	 */
+	public PriceQuote quote(Event event, List<SeatIdentifier> seatIds) {
+		VenueLayout layout = event.getLayout();
+		int[] counts = new int[layout.getLevels().size()];
+		int levelsWithSeats = 0;
+		for (int s = 0; s < seatIds.size(); s++) {
+			if (counts[layout.levelIndex(seatIds.get(s).getLevel())]++ == 0) {
+				levelsWithSeats++;
+			}
+		}
+		PricingPolicy policy = getPolicy(event.getId());
+		HoldRateWindow holdRate = holdRates.get(event.getId());
+		long now = clock.getAsLong();
+		int[] levelIds = new int[levelsWithSeats];
+		int[] seatCounts = new int[levelsWithSeats];
+		long[] unitPrices = new long[levelsWithSeats];
+		long subtotal = 0;
+		for (int i = 0, q = 0; i < counts.length; i++) {
+			if (counts[i] > 0) {
+				levelIds[q] = layout.getLevels().get(i).getId();
+				seatCounts[q] = counts[i];
+				unitPrices[q] = priceCents(event, i, policy, holdRate, now);
+				subtotal += seatCounts[q] * unitPrices[q];
+				q++;
+			}
+		}
+		return new PriceQuote(levelIds, seatCounts, unitPrices, fees.feeCents(subtotal, seatIds.size()));
+	}
+
+	/**
+	 * Prices some of the seats of a quote at the quote's prices, e.g. the seats
+	 * of a hold which are booked
+	 *
+	 * @param seatIds
+	 *            seats covered by the quote
+	 */
+	public PriceQuote requote(PriceQuote quote, List<SeatIdentifier> seatIds) {
+		return subquote(quote, seatIds, true);
+	}
+
+	/**
+	 * Prices some of the booked seats of a quote to refund them, at the
+	 * quote's prices with their seat fees. The per order fee is not refunded
+	 * while seats are left: it stays with the rest of the order,
+	 * <code>quote.without(refund)</code>, and is refunded with its last seat,
+	 * so the refunds of an order add up to what was paid.
+	 *
+	 * @param seatIds
+	 *            seats covered by the quote
+	 */
+	public PriceQuote refund(PriceQuote quote, List<SeatIdentifier> seatIds) {
+		return subquote(quote, seatIds, false);
+	}
+
+	private PriceQuote subquote(PriceQuote quote, List<SeatIdentifier> seatIds, boolean orderFee) {
+		int[] counts = new int[quote.getLevelCount()];
+		for (int s = 0; s < seatIds.size(); s++) {
+			int q = quote.indexOf(seatIds.get(s).getLevel());
+			if (q < 0) {
+				throw new IllegalArgumentException(String.format("%s is not covered by %s", seatIds.get(s), quote));
+			}
+			counts[q]++;
+		}
+		int levelsWithSeats = 0;
+		boolean same = true;
+		for (int q = 0; q < counts.length; q++) {
+			levelsWithSeats += counts[q] > 0 ? 1 : 0;
+			same &= counts[q] == quote.getSeatCount(q);
+		}
+		if (same) {
+			return quote;
+		}
+		int[] levelIds = new int[levelsWithSeats];
+		int[] seatCounts = new int[levelsWithSeats];
+		long[] unitPrices = new long[levelsWithSeats];
+		long subtotal = 0;
+		for (int q = 0, r = 0; q < counts.length; q++) {
+			if (counts[q] > 0) {
+				levelIds[r] = quote.getLevelId(q);
+				seatCounts[r] = counts[q];
+				unitPrices[r] = quote.getUnitPriceCents(q);
+				subtotal += seatCounts[r] * unitPrices[r];
+				r++;
+			}
+		}
+		long feeCents = orderFee ? fees.feeCents(subtotal, seatIds.size())
+				// rounding of percentage fees seat by seat may add up to more than the order's
+				: Math.min(fees.seatFeeCents(subtotal, seatIds.size()), quote.getFeeCents());
+		return new PriceQuote(levelIds, seatCounts, unitPrices, feeCents);
+	}
+
+	private static long priceCents(Event event, int levelIndex, PricingPolicy policy, HoldRateWindow holdRate,
+			long now) {
+		SeatLevel level = event.getLevels().get(levelIndex);
+		if (policy == PricingPolicy.FIXED) {
+			return level.getPriceCents();
+		}
+		int total = event.getTotalSeatCount(Optional.of(level.getId()));
+		int available = event.getAvailableSeatCount(Optional.of(level.getId()));
+		double sellThrough = total == 0 ? 1 : (double) (total - available) / total;
+		long recentlyHeld = holdRate == null ? 0 : holdRate.sum(levelIndex, now);
+		double holdPressure = (double) recentlyHeld / Math.max(available, 1);
+		return Money.multiply(level.getPriceCents(), policy.multiplier(sellThrough, holdPressure));
+	}
+
+	/**
+	 * Forgets the event's recent holds, e.g. once it moved to another node
+	 */
+	public void remove(int eventId) {
+		holdRates.remove(eventId);
+	}
+}
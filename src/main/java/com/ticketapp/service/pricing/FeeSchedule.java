@@ -0,0 +1,63 @@
+package com.ticketapp.service.pricing;
+
+import com.ticketapp.util.Money;
+
+/**
+ * Fees added to the price of an order: a flat fee per order, a fee per seat
+ * and a share of the seat prices. Amounts are cents. Object is immutable.
+ */
+public final class FeeSchedule {
+
+	/**
+	 * No fees
+	 */
+	public static final FeeSchedule NONE = new FeeSchedule(0, 0, 0);
+
+	private final long perOrderCents;
+	private final long perSeatCents;
+	private final int basisPoints;
+
+	/**
+	 * @param perOrderCents
+	 *            flat fee of an order
+	 * @param perSeatCents
+	 *            fee of each seat
+	 * @param basisPoints
+	 *            share of the seat prices, in hundredths of a percent
+	 */
+	public FeeSchedule(long perOrderCents, long perSeatCents, int basisPoints) {
+		if (perOrderCents < 0 || perSeatCents < 0 || basisPoints < 0) {
+			throw new IllegalArgumentException("Invalid fee schedule");
+		}
+		this.perOrderCents = perOrderCents;
+		this.perSeatCents = perSeatCents;
+		this.basisPoints = basisPoints;
+	}
+
+	/**
+	 * @return fees of an order of <code>seats</code> seats costing
+	 *         <code>subtotalCents</code>, 0 for no seats
+	 */
+	public long feeCents(long subtotalCents, int seats) {
+		if (seats == 0) {
+			return 0;
+		}
+		return perOrderCents + seatFeeCents(subtotalCents, seats);
+	}
+
+	/**
+	 * @return fees of <code>seats</code> seats costing
+	 *         <code>subtotalCents</code> within an order, i.e. without the
+	 *         per order fee
+	 */
+	public long seatFeeCents(long subtotalCents, int seats) {
+		return perSeatCents * seats + Money.percentOf(subtotalCents, basisPoints);
+	}
+
+	@Override
+	public String toString() {
+		return new StringBuilder("FeeSchedule[perOrder: ").append(Money.format(perOrderCents)).append(", perSeat: ")
+				.append(Money.format(perSeatCents)).append(", basisPoints: ").append(basisPoints).append("]")
+				.toString();
+	}
+}
@@ -0,0 +1,64 @@
+package com.ticketapp.service.pricing;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Seats held over a sliding window, one counter per level. The window is a
+ * ring of buckets, each stamped with the time slice it counts, so a stale
+ * bucket is recognised and reset by the first add of a new slice. An add is
+ * O(1) unless it resets a bucket, a sum is O(buckets). Neither takes a lock.
+ * <p>
+ * A hold which races with a bucket reset may be lost. The counts feed
+ * pricing, where that is good enough.
+ */
+final class HoldRateWindow {
+
+	private static final int BUCKETS = 16;
+
+	private final long bucketMillis;
+	private final int levels;
+	/**
+	 * Time slice of each bucket, <code>now / bucketMillis</code>
+	 */
+	private final AtomicLongArray stamps = new AtomicLongArray(BUCKETS);
+	/**
+	 * Seats held per bucket and level, bucket major
+	 */
+	private final AtomicLongArray counts;
+
+	HoldRateWindow(int levels, long windowMillis) {
+		this.levels = levels;
+		this.bucketMillis = Math.max(1, windowMillis / BUCKETS);
+		this.counts = new AtomicLongArray(BUCKETS * levels);
+		for (int b = 0; b < BUCKETS; b++) {
+			stamps.set(b, Long.MIN_VALUE);
+		}
+	}
+
+	void add(int levelIndex, int seats, long now) {
+		long slice = now / bucketMillis;
+		int bucket = (int) (slice % BUCKETS);
+		long stamp = stamps.get(bucket);
+		if (stamp < slice && stamps.compareAndSet(bucket, stamp, slice)) {
+			for (int l = 0; l < levels; l++) {
+				counts.set(bucket * levels + l, 0);
+			}
+		}
+		counts.addAndGet(bucket * levels + levelIndex, seats);
+	}
+
+	/**
+	 * @return seats held on the level during the window
+	 */
+	long sum(int levelIndex, long now) {
+		long slice = now / bucketMillis;
+		long sum = 0;
+		for (int b = 0; b < BUCKETS; b++) {
+			long stamp = stamps.get(b);
+			if (stamp > slice - BUCKETS && stamp <= slice) {
+				sum += counts.get(b * levels + levelIndex);
+			}
+		}
+		return sum;
+	}
+}
@@ -0,0 +1,100 @@
+package com.ticketapp.service.pricing;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How the price of a level follows demand. Object is immutable.
+ * <p>
+ * The base price of the level is multiplied by:
+ * <ul>
+ * <li>a tier multiplier picked by sell-through, the share of the level's seats
+ * which are on hold or booked</li>
+ * <li><code>1 + holdPressureWeight * pressure</code> where pressure is the
+ * number of seats of the level held during the last
+ * <code>holdWindowMillis</code> over its available seats, capped at 1</li>
+ * </ul>
+ * The result is capped at <code>maxMultiplier</code>.
+ */
+public final class PricingPolicy {
+
+	/**
+	 * Base prices, whatever the demand
+	 */
+	public static final PricingPolicy FIXED = new PricingPolicy(new double[] { 0 }, new double[] { 1 }, 0,
+			TimeUnit.MINUTES.toMillis(1), 1);
+
+	private final double[] sellThroughTiers;
+	private final double[] tierMultipliers;
+	private final double holdPressureWeight;
+	private final long holdWindowMillis;
+	private final double maxMultiplier;
+
+	/**
+	 * @param sellThroughTiers
+	 *            ascending sell-through at which each tier starts, the first
+	 *            must be 0
+	 * @param tierMultipliers
+	 *            multiplier of each tier
+	 * @param holdPressureWeight
+	 *            extra multiplier at full hold pressure, 0 to ignore holds
+	 * @param holdWindowMillis
+	 *            window over which recent holds are counted
+	 * @param maxMultiplier
+	 *            highest multiplier of the base price
+	 */
+	public PricingPolicy(double[] sellThroughTiers, double[] tierMultipliers, double holdPressureWeight,
+			long holdWindowMillis, double maxMultiplier) {
+		if (sellThroughTiers == null || tierMultipliers == null || sellThroughTiers.length == 0
+				|| sellThroughTiers.length != tierMultipliers.length || sellThroughTiers[0] != 0
+				|| holdPressureWeight < 0 || holdWindowMillis <= 0 || maxMultiplier <= 0) {
+			throw new IllegalArgumentException("Invalid pricing policy");
+		}
+		for (int i = 0; i < sellThroughTiers.length; i++) {
+			if ((i > 0 && sellThroughTiers[i] <= sellThroughTiers[i - 1]) || tierMultipliers[i] <= 0) {
+				throw new IllegalArgumentException("Invalid pricing policy");
+			}
+		}
+		this.sellThroughTiers = sellThroughTiers.clone();
+		this.tierMultipliers = tierMultipliers.clone();
+		this.holdPressureWeight = holdPressureWeight;
+		this.holdWindowMillis = holdWindowMillis;
+		this.maxMultiplier = maxMultiplier;
+	}
+
+	public double getHoldPressureWeight() {
+		return holdPressureWeight;
+	}
+
+	public long getHoldWindowMillis() {
+		return holdWindowMillis;
+	}
+
+	public double getMaxMultiplier() {
+		return maxMultiplier;
+	}
+
+	/**
+	 * @param sellThrough
+	 *            share of seats on hold or booked, 0 to 1
+	 * @param holdPressure
+	 *            seats held in the window over available seats
+	 * @return multiplier of the base price
+	 */
+	public double multiplier(double sellThrough, double holdPressure) {
+		int tier = Arrays.binarySearch(sellThroughTiers, sellThrough);
+		if (tier < 0) {
+			tier = -tier - 2;
+		}
+		double multiplier = tierMultipliers[tier] * (1 + holdPressureWeight * Math.min(holdPressure, 1));
+		return Math.min(multiplier, maxMultiplier);
+	}
+
+	@Override
+	public String toString() {
+		return new StringBuilder("PricingPolicy[tiers: ").append(Arrays.toString(sellThroughTiers))
+				.append(", multipliers: ").append(Arrays.toString(tierMultipliers)).append(", holdPressureWeight: ")
+				.append(holdPressureWeight).append(", holdWindowMillis: ").append(holdWindowMillis)
+				.append(", maxMultiplier: ").append(maxMultiplier).append("]").toString();
+	}
+}
@@ -0,0 +1,332 @@
+package com.ticketapp.service.quota;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import com.ticketapp.service.exception.QuotaExceededException;
+
+/**
+ * Enforces {@link QuotaPolicy} per event and customer: open holds, held seats
+ * and hold attempt rate. Meant to be checked before any event lock is taken,
+ * so that a customer hammering the service is turned away cheaply.
+ * <p>
+ * <b>Concurrency:</b> customers are spread over a fixed number of stripes,
+ * each a {@link ConcurrentHashMap}. A customer's state needs no locks:
+ * <ul>
+ * <li>open holds and held seats are packed into a single {@link AtomicLong}
+ * so both limits are checked and updated with one CAS</li>
+ * <li>the token bucket is kept as a theoretical arrival time (GCRA) which is
+ * also updated with one CAS</li>
+ * </ul>
+ * Customers with no open holds are evicted once idle for the policy TTL. The
+ * sweep is amortized over calls, one stripe at a time. An entry being evicted
+ * is first marked so that a concurrent acquire retries on a fresh entry
+ * instead of updating a dead one.
+ */
+public final class CustomerQuotaLimiter {
+
+	private static final int STRIPES = 16;
+	/**
+	 * A stripe is swept for idle customers every this many acquires
+	 */
+	private static final int EVICT_EVERY = 1024;
+	private static final long EVICTED = -1L;
+
+	private final QuotaPolicy defaultPolicy;
+	private final ConcurrentMap<Integer, QuotaPolicy> eventPolicies = new ConcurrentHashMap<>();
+	private final List<ConcurrentMap<Key, CustomerQuota>> stripes = new ArrayList<>(STRIPES);
+	private final AtomicInteger acquireCount = new AtomicInteger();
+	private final AtomicInteger nextStripe = new AtomicInteger();
+	private final LongSupplier nanoClock;
+
+	public CustomerQuotaLimiter(QuotaPolicy defaultPolicy) {
+		this(defaultPolicy, System::nanoTime);
+	}
+
+	/**
+	 * Refills on the given clock, e.g. a virtual one in simulations
+	 */
+	public CustomerQuotaLimiter(QuotaPolicy defaultPolicy, Clock clock) {
+		this(defaultPolicy, () -> TimeUnit.MILLISECONDS.toNanos(clock.millis()));
+	}
+
+	CustomerQuotaLimiter(QuotaPolicy defaultPolicy, LongSupplier nanoClock) {
+		this.defaultPolicy = defaultPolicy;
+		this.nanoClock = nanoClock;
+		for (int i = 0; i < STRIPES; i++) {
+			stripes.add(new ConcurrentHashMap<>());
+		}
+	}
+
+	/**
+	 * Limiter which never rejects anything
+	 */
+	public static CustomerQuotaLimiter unlimited() {
+		return new CustomerQuotaLimiter(QuotaPolicy.UNLIMITED);
+	}
+
+	/**
+	 * Overrides the default policy for an event
+	 */
+	public void setPolicy(int eventId, QuotaPolicy policy) {
+		eventPolicies.put(eventId, policy);
+	}
+
+	public QuotaPolicy getPolicy(int eventId) {
+		return eventPolicies.getOrDefault(eventId, defaultPolicy);
+	}
+
+	/**
+	 * Takes a hold attempt token and reserves quota for a hold of
+	 * <code>numSeats</code>. Must be followed by {@link #release} once the
+	 * hold ends or if it could not be placed.
+	 *
+	 * @throws QuotaExceededException
+	 *             if the customer is over any of the limits
+	 */
+	public void acquire(int eventId, String customerEmail, int numSeats) {
+		QuotaPolicy policy = getPolicy(eventId);
+		if (policy == QuotaPolicy.UNLIMITED) {
+			return;
+		}
+		long now = nanoClock.getAsLong();
+		if ((acquireCount.incrementAndGet() & (EVICT_EVERY - 1)) == 0) {
+			evictIdle(stripes.get(nextStripe.getAndIncrement() & (STRIPES - 1)), now);
+		}
+		Key key = new Key(eventId, customerEmail);
+		ConcurrentMap<Key, CustomerQuota> stripe = stripe(key);
+		while (true) {
+			CustomerQuota quota = stripe.computeIfAbsent(key, k -> new CustomerQuota());
+			if (quota.tryAcquire(policy, numSeats, now, eventId, customerEmail)) {
+				return;
+			}
+			// evicted under us
+			stripe.remove(key, quota);
+		}
+	}
+
+	/**
+	 * Returns the quota taken by {@link #acquire} for a hold which has ended
+	 * (reserved, released or expired) or could not be placed
+	 */
+	public void release(int eventId, String customerEmail, int numSeats) {
+		Key key = new Key(eventId, customerEmail);
+		CustomerQuota quota = stripe(key).get(key);
+		if (quota != null) {
+			quota.release(numSeats, nanoClock.getAsLong());
+		}
+	}
+
+	/**
+	 * Counts a hold which was placed elsewhere, e.g. on another node before
+	 * its event moved here. No limit is checked, the hold already exists.
+	 */
+	public void restore(int eventId, String customerEmail, int numSeats) {
+		if (getPolicy(eventId) == QuotaPolicy.UNLIMITED) {
+			return;
+		}
+		Key key = new Key(eventId, customerEmail);
+		ConcurrentMap<Key, CustomerQuota> stripe = stripe(key);
+		while (true) {
+			CustomerQuota quota = stripe.computeIfAbsent(key, k -> new CustomerQuota());
+			if (quota.restore(numSeats, nanoClock.getAsLong())) {
+				return;
+			}
+			// evicted under us
+			stripe.remove(key, quota);
+		}
+	}
+
+	/**
+	 * @return open holds of the customer on the event as seen by the limiter
+	 */
+	public int getActiveHolds(int eventId, String customerEmail) {
+		Key key = new Key(eventId, customerEmail);
+		CustomerQuota quota = stripe(key).get(key);
+		long counters = quota == null ? 0 : quota.counters.get();
+		return counters == EVICTED ? 0 : holds(counters);
+	}
+
+	/**
+	 * @return seats on hold by the customer on the event as seen by the limiter
+	 */
+	public int getHeldSeats(int eventId, String customerEmail) {
+		Key key = new Key(eventId, customerEmail);
+		CustomerQuota quota = stripe(key).get(key);
+		long counters = quota == null ? 0 : quota.counters.get();
+		return counters == EVICTED ? 0 : seats(counters);
+	}
+
+	/**
+	 * Evicts every idle customer now
+	 */
+	public void evictIdle() {
+		long now = nanoClock.getAsLong();
+		for (ConcurrentMap<Key, CustomerQuota> stripe : stripes) {
+			evictIdle(stripe, now);
+		}
+	}
+
+	/**
+	 * @return number of customers tracked
+	 */
+	public int size() {
+		int size = 0;
+		for (ConcurrentMap<Key, CustomerQuota> stripe : stripes) {
+			size += stripe.size();
+		}
+		return size;
+	}
+
+	private void evictIdle(ConcurrentMap<Key, CustomerQuota> stripe, long now) {
+		for (Iterator<Map.Entry<Key, CustomerQuota>> it = stripe.entrySet().iterator(); it.hasNext();) {
+			Map.Entry<Key, CustomerQuota> entry = it.next();
+			CustomerQuota quota = entry.getValue();
+			long ttl = TimeUnit.MILLISECONDS.toNanos(getPolicy(entry.getKey().eventId).getIdleTtlMillis());
+			if (now - quota.lastAccessNanos > ttl && quota.counters.compareAndSet(0, EVICTED)) {
+				it.remove();
+			}
+		}
+	}
+
+	private ConcurrentMap<Key, CustomerQuota> stripe(Key key) {
+		int h = key.hashCode();
+		return stripes.get((h ^ (h >>> 16)) & (STRIPES - 1));
+	}
+
+	private static int holds(long counters) {
+		return (int) (counters >>> 32);
+	}
+
+	private static int seats(long counters) {
+		return (int) counters;
+	}
+
+	private static long counters(int holds, int seats) {
+		return ((long) holds << 32) | (seats & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Lock free state of one customer on one event
+	 */
+	private static final class CustomerQuota {
+		/**
+		 * open holds (high 32 bits) and held seats (low 32 bits), or EVICTED
+		 */
+		private final AtomicLong counters = new AtomicLong();
+		/**
+		 * GCRA theoretical arrival time of the next attempt
+		 */
+		private final AtomicLong theoreticalArrival = new AtomicLong(Long.MIN_VALUE);
+		private volatile long lastAccessNanos;
+
+		/**
+		 * @return false if this entry has been evicted and must be replaced
+		 */
+		boolean tryAcquire(QuotaPolicy policy, int numSeats, long now, int eventId, String customerEmail) {
+			if (counters.get() == EVICTED) {
+				return false;
+			}
+			lastAccessNanos = now;
+			if (policy.isRateLimited()) {
+				long interval = policy.emissionIntervalNanos();
+				long tolerance = interval * policy.getBurst();
+				while (true) {
+					long tat = theoreticalArrival.get();
+					long newTat = (tat == Long.MIN_VALUE || tat < now ? now : tat) + interval;
+					if (newTat - now > tolerance) {
+						throw new QuotaExceededException(String.format(
+								"Customer %s exceeded %s hold attempts per second on eventId %d", customerEmail,
+								policy.getHoldsPerSecond(), eventId));
+					}
+					if (theoreticalArrival.compareAndSet(tat, newTat)) {
+						break;
+					}
+				}
+			}
+			while (true) {
+				long current = counters.get();
+				if (current == EVICTED) {
+					return false;
+				}
+				int holds = holds(current) + 1;
+				int seats = seats(current) + numSeats;
+				if (holds > policy.getMaxActiveHolds()) {
+					throw new QuotaExceededException(String.format("Customer %s already has %d open holds on eventId %d",
+							customerEmail, holds - 1, eventId));
+				}
+				if (seats > policy.getMaxHeldSeats()) {
+					throw new QuotaExceededException(String.format(
+							"Customer %s cannot hold more than %d seats on eventId %d", customerEmail,
+							policy.getMaxHeldSeats(), eventId));
+				}
+				if (counters.compareAndSet(current, counters(holds, seats))) {
+					return true;
+				}
+			}
+		}
+
+		boolean restore(int numSeats, long now) {
+			lastAccessNanos = now;
+			while (true) {
+				long current = counters.get();
+				if (current == EVICTED) {
+					return false;
+				}
+				if (counters.compareAndSet(current, counters(holds(current) + 1, seats(current) + numSeats))) {
+					return true;
+				}
+			}
+		}
+
+		void release(int numSeats, long now) {
+			lastAccessNanos = now;
+			while (true) {
+				long current = counters.get();
+				if (current == EVICTED) {
+					return;
+				}
+				long updated = counters(Math.max(holds(current) - 1, 0), Math.max(seats(current) - numSeats, 0));
+				if (counters.compareAndSet(current, updated)) {
+					return;
+				}
+			}
+		}
+	}
+
+	private static final class Key {
+		private final int eventId;
+		private final String email;
+
+		Key(int eventId, String email) {
+			this.eventId = eventId;
+			this.email = email;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * eventId + (email == null ? 0 : email.hashCode());
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (obj == null || obj.getClass() != getClass()) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return eventId == other.eventId && (email == null ? other.email == null : email.equals(other.email));
+		}
+	}
+}
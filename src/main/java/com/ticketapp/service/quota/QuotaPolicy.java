@@ -0,0 +1,88 @@
+package com.ticketapp.service.quota;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per customer hold limits of an event. Object is immutable.
+ * <p>
+ * The rate limit is a token bucket of <code>burst</code> tokens refilled at
+ * <code>holdsPerSecond</code>. Every hold attempt takes a token, including
+ * attempts rejected for lack of seats, since those still cost lock time.
+ */
+public final class QuotaPolicy {
+
+	/**
+	 * No limits at all
+	 */
+	public static final QuotaPolicy UNLIMITED = new QuotaPolicy(Integer.MAX_VALUE, Integer.MAX_VALUE, 0, 0,
+			TimeUnit.MINUTES.toMillis(10));
+
+	private final int maxActiveHolds;
+	private final int maxHeldSeats;
+	private final double holdsPerSecond;
+	private final int burst;
+	private final long idleTtlMillis;
+
+	/**
+	 * @param maxActiveHolds
+	 *            holds a customer may have open at a time
+	 * @param maxHeldSeats
+	 *            seats a customer may have on hold at a time, across holds
+	 * @param holdsPerSecond
+	 *            sustained hold attempts per second, 0 to disable rate
+	 *            limiting
+	 * @param burst
+	 *            attempts allowed back to back before the rate applies
+	 * @param idleTtlMillis
+	 *            customers with no open holds are forgotten after this long
+	 */
+	public QuotaPolicy(int maxActiveHolds, int maxHeldSeats, double holdsPerSecond, int burst, long idleTtlMillis) {
+		if (maxActiveHolds < 1 || maxHeldSeats < 1 || holdsPerSecond < 0 || burst < 0 || idleTtlMillis <= 0
+				|| (holdsPerSecond > 0 && burst < 1)) {
+			throw new IllegalArgumentException("Invalid quota policy");
+		}
+		this.maxActiveHolds = maxActiveHolds;
+		this.maxHeldSeats = maxHeldSeats;
+		this.holdsPerSecond = holdsPerSecond;
+		this.burst = burst;
+		this.idleTtlMillis = idleTtlMillis;
+	}
+
+	public int getMaxActiveHolds() {
+		return maxActiveHolds;
+	}
+
+	public int getMaxHeldSeats() {
+		return maxHeldSeats;
+	}
+
+	public double getHoldsPerSecond() {
+		return holdsPerSecond;
+	}
+
+	public int getBurst() {
+		return burst;
+	}
+
+	public long getIdleTtlMillis() {
+		return idleTtlMillis;
+	}
+
+	boolean isRateLimited() {
+		return holdsPerSecond > 0;
+	}
+
+	/**
+	 * Nanoseconds between two tokens
+	 */
+	long emissionIntervalNanos() {
+		return (long) (TimeUnit.SECONDS.toNanos(1) / holdsPerSecond);
+	}
+
+	@Override
+	public String toString() {
+		return new StringBuilder("QuotaPolicy[maxActiveHolds: ").append(maxActiveHolds).append(", maxHeldSeats: ")
+				.append(maxHeldSeats).append(", holdsPerSecond: ").append(holdsPerSecond).append(", burst: ")
+				.append(burst).append("]").toString();
+	}
+}
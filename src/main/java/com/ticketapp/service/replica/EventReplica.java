@@ -0,0 +1,152 @@
+package com.ticketapp.service.replica;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.ticketapp.bean.Event;
+import com.ticketapp.bean.Seat;
+import com.ticketapp.bean.Seat.SeatState;
+import com.ticketapp.bean.SeatIdentifier;
+import com.ticketapp.bean.SeatLevel;
+import com.ticketapp.bean.VenueLayout;
+import com.ticketapp.service.EventCommitListener;
+import com.ticketapp.service.TicketServiceImpl;
+import com.ticketapp.service.exception.NotFoundException;
+
+/**
+ * Read replica of the events of a {@link TicketServiceImpl}. It subscribes to
+ * committed event states and answers availability and seat map queries from
+ * its own copy, so that readers never touch the writer's maps or locks.
+ * <p>
+ * Each committed state becomes an immutable {@link ReplicaView}, published
+ * with a single volatile write. A query reads the current view of its event
+ * and works on it alone, so its answers are consistent with one committed
+ * state, at most one commit behind. Views are shared read only by all reader
+ * threads, so reads scale with cores without per thread copies. A view is
+ * made from the previous one by applying the seats changed by the commit, so
+ * a commit costs O(seats changed), not O(seats), see {@link ReplicaView}.
+ * <p>
+ * Usage: <code>
+ * EventReplica replica = new EventReplica();
+ * ticketService.addCommitListener(replica);
+ * </code>
+ */
+public final class EventReplica implements EventCommitListener {
+
+	private final ConcurrentMap<Integer, ReplicaView> views = new ConcurrentHashMap<>();
+
+	@Override
+	public void eventCommitted(Event event) {
+		// commits of an event are serialized by its write lock
+		ReplicaView current = views.get(event.getId());
+		views.put(event.getId(), new ReplicaView(event, current == null ? 1 : current.getVersion() + 1));
+	}
+
+	@Override
+	public void seatsCommitted(Event event, Map<SeatState, List<Seat>> updatedSeats) {
+		ReplicaView current = views.get(event.getId());
+		if (current == null) {
+			eventCommitted(event);
+			return;
+		}
+		views.put(event.getId(), current.next(event, updatedSeats));
+	}
+
+	@Override
+	public void eventRemoved(int eventId) {
+		views.remove(eventId);
+	}
+
+	/**
+	 * @return number of commits of the event seen by the replica
+	 */
+	public long getVersion(int eventId) {
+		return getView(eventId).getVersion();
+	}
+
+	/**
+	 * @return the replicated event state
+	 */
+	public Event getEvent(int eventId) {
+		return getView(eventId).getEvent();
+	}
+
+	/**
+	 * Same as {@link TicketServiceImpl#numSeatsAvailable(int, Optional)}
+	 */
+	public int numSeatsAvailable(int eventId, Optional<Integer> venueLevel) {
+		ReplicaView view = getView(eventId);
+		VenueLayout layout = view.getEvent().getLayout();
+		if (venueLevel.isPresent()) {
+			int levelIndex = layout.levelIndex(venueLevel.get());
+			return levelIndex < 0 ? 0 : view.getAvailableCount(levelIndex);
+		}
+		int available = 0;
+		for (int i = 0; i < layout.getLevels().size(); i++) {
+			available += view.getAvailableCount(i);
+		}
+		return available;
+	}
+
+	/**
+	 * Seat map of the event as a bitmap: bit <code>n % 8</code> of byte
+	 * <code>n / 8</code> is set if seat number <code>n</code> is available.
+	 * Seat numbers are those of {@link VenueLayout#seatIndex(SeatIdentifier)}.
+	 *
+	 * @return read only buffer over the bitmap
+	 */
+	public ByteBuffer getSeatMap(int eventId) {
+		return ByteBuffer.wrap(getView(eventId).seatMap()).asReadOnlyBuffer();
+	}
+
+	/**
+	 * Finds <code>numSeats</code> adjacent available seats in one row, best
+	 * level and front row first. The free run index of the event tells which
+	 * rows have enough adjacent seats without looking at their seats.
+	 *
+	 * @return the lowest seat of the run or null if no row has enough adjacent
+	 *         seats
+	 */
+	public SeatIdentifier findAdjacentSeats(int eventId, Optional<Integer> minLevel, Optional<Integer> maxLevel,
+			int numSeats) {
+		if (numSeats < 1) {
+			throw new IllegalArgumentException("Invalid number of seats: " + numSeats);
+		}
+		ReplicaView view = getView(eventId);
+		VenueLayout layout = view.getEvent().getLayout();
+		List<SeatLevel> levels = layout.getLevels();
+		for (int i = 0; i < levels.size(); i++) {
+			SeatLevel level = levels.get(i);
+			boolean inRange = level.getId() >= minLevel.orElse(Integer.MIN_VALUE)
+					&& level.getId() <= maxLevel.orElse(Integer.MAX_VALUE);
+			if (!inRange || numSeats > level.getSeats() || view.getAvailableCount(i) < numSeats) {
+				continue;
+			}
+			for (int row = layout.levelRowStart(i); row < layout.levelRowStart(i + 1); row++) {
+				if (view.getEvent().getLongestFreeRun(row) < numSeats) {
+					continue;
+				}
+				int rowStart = layout.rowStart(row);
+				for (int s = 0, run = 0; s < level.getSeats(); s++) {
+					run = view.isAvailable(rowStart + s) ? run + 1 : 0;
+					if (run == numSeats) {
+						return layout.seatId(rowStart + s - numSeats + 1);
+					}
+				}
+			}
+		}
+		return null;
+	}
+
+	private ReplicaView getView(int eventId) {
+		ReplicaView view = views.get(eventId);
+		if (view == null) {
+			throw new NotFoundException(String.format("Event with id %d not found", eventId));
+		}
+		return view;
+	}
+}
@@ -0,0 +1,143 @@
+package com.ticketapp.service.replica;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Optional;
+
+import com.ticketapp.bean.Event;
+import com.ticketapp.bean.Seat;
+import com.ticketapp.bean.Seat.SeatState;
+import com.ticketapp.bean.SeatLevel;
+import com.ticketapp.bean.VenueLayout;
+
+/**
+ * Query copy of one committed {@link Event} state. Object is immutable, so
+ * any number of reader threads share it without coordination.
+ * <p>
+ * Availability is kept as a bitmap split in pages of {@link #PAGE_SEATS}
+ * seats. The view of a commit is made from the previous one by copying the
+ * page table and only the pages of the seats which changed, so a commit
+ * costs O(seats changed + seats / PAGE_SEATS) instead of O(seats). Untouched
+ * pages are shared between views, which is fine as no view writes to a page
+ * once published.
+ */
+final class ReplicaView {
+
+	private static final int PAGE_SHIFT = 12;
+	static final int PAGE_SEATS = 1 << PAGE_SHIFT;
+	private static final int WORDS_PER_PAGE = PAGE_SEATS / Long.SIZE;
+
+	private final Event event;
+	private final long version;
+	private final int[] availableCounts;
+	/**
+	 * One bit per seat number, set if the seat is available
+	 */
+	private final long[][] pages;
+	/**
+	 * The bitmap as bytes, built by the first query which needs it. Two
+	 * readers racing to build it both build it, and either result is kept.
+	 */
+	private volatile byte[] seatMap;
+
+	/**
+	 * Full view of the event, O(seats)
+	 */
+	ReplicaView(Event event, long version) {
+		this(event, version, newPages(event.getLayout().size()));
+		for (int seatIndex = 0; seatIndex < event.getLayout().size(); seatIndex++) {
+			if (event.getSeatState(seatIndex) == SeatState.AVAILABLE) {
+				setAvailable(pages, seatIndex, true);
+			}
+		}
+	}
+
+	private ReplicaView(Event event, long version, long[][] pages) {
+		this.event = event;
+		this.version = version;
+		this.pages = pages;
+		List<SeatLevel> levels = event.getLevels();
+		this.availableCounts = new int[levels.size()];
+		for (int i = 0; i < levels.size(); i++) {
+			availableCounts[i] = event.getAvailableSeatCount(Optional.of(levels.get(i).getId()));
+		}
+	}
+
+	/**
+	 * View of the next commit of the event, made from this one
+	 *
+	 * @param updatedSeats
+	 *            seats of the commit by their new state
+	 */
+	ReplicaView next(Event event, Map<SeatState, List<Seat>> updatedSeats) {
+		long[][] nextPages = pages.clone();
+		boolean[] copied = new boolean[pages.length];
+		VenueLayout layout = event.getLayout();
+		for (Entry<SeatState, List<Seat>> entry : updatedSeats.entrySet()) {
+			boolean available = entry.getKey() == SeatState.AVAILABLE;
+			for (Seat seat : entry.getValue()) {
+				int seatIndex = layout.seatIndex(seat.getId());
+				int page = seatIndex >>> PAGE_SHIFT;
+				if (!copied[page]) {
+					nextPages[page] = nextPages[page].clone();
+					copied[page] = true;
+				}
+				setAvailable(nextPages, seatIndex, available);
+			}
+		}
+		return new ReplicaView(event, version + 1, nextPages);
+	}
+
+	Event getEvent() {
+		return event;
+	}
+
+	long getVersion() {
+		return version;
+	}
+
+	int getAvailableCount(int levelIndex) {
+		return availableCounts[levelIndex];
+	}
+
+	boolean isAvailable(int seatIndex) {
+		return (pages[seatIndex >>> PAGE_SHIFT][(seatIndex >>> 6) & (WORDS_PER_PAGE - 1)] & (1L << seatIndex)) != 0;
+	}
+
+	/**
+	 * Not copied, must not be modified. O(seats) the first time.
+	 */
+	byte[] seatMap() {
+		byte[] map = seatMap;
+		if (map == null) {
+			int size = event.getLayout().size();
+			map = new byte[(size + Byte.SIZE - 1) / Byte.SIZE];
+			for (int i = 0; i < map.length; i++) {
+				int seatIndex = i * Byte.SIZE;
+				long word = pages[seatIndex >>> PAGE_SHIFT][(seatIndex >>> 6) & (WORDS_PER_PAGE - 1)];
+				map[i] = (byte) (word >>> (seatIndex & 63));
+			}
+			seatMap = map;
+		}
+		return map;
+	}
+
+	private static long[][] newPages(int seats) {
+		long[][] pages = new long[(seats + PAGE_SEATS - 1) >>> PAGE_SHIFT][];
+		for (int i = 0; i < pages.length; i++) {
+			pages[i] = new long[WORDS_PER_PAGE];
+		}
+		return pages;
+	}
+
+	private static void setAvailable(long[][] pages, int seatIndex, boolean available) {
+		long[] page = pages[seatIndex >>> PAGE_SHIFT];
+		int word = (seatIndex >>> 6) & (WORDS_PER_PAGE - 1);
+		if (available) {
+			page[word] |= 1L << seatIndex;
+		} else {
+			page[word] &= ~(1L << seatIndex);
+		}
+	}
+}
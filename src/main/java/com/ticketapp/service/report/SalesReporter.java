@@ -0,0 +1,241 @@
+package com.ticketapp.service.report;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.ticketapp.bean.Event;
+import com.ticketapp.bean.PriceQuote;
+import com.ticketapp.bean.SalesReport;
+import com.ticketapp.bean.SalesReport.LevelSales;
+import com.ticketapp.bean.SeatIdentifier;
+import com.ticketapp.bean.SeatLevel;
+import com.ticketapp.bean.VenueLayout;
+import com.ticketapp.service.EventCommitListener;
+import com.ticketapp.service.exception.NotFoundException;
+
+/**
+ * Running sales aggregates of the events of a node, for dashboards which ask
+ * often. Sold and held per level come straight from the per level counts of
+ * the last committed {@link Event}; seats put on hold and seats sold per time
+ * bucket are accumulated from the difference between one commit and the
+ * next, which costs O(levels) per commit. Revenue is accumulated from the
+ * quotes seats are booked at and the refunds of cancelled seats, so it
+ * follows dynamic prices and fees, at O(levels of the quote) per booking. A
+ * report costs O(levels + buckets) and never scans seats or reservations.
+ * Seats booked without a quote count at the price of their level.
+ * <p>
+ * Commits are counted net per level: seats freed and held again by the same
+ * commit, e.g. handed to the waitlist, are not counted as a new hold, and
+ * cancelled seats count against the bucket they were cancelled in. An
+ * event imported from another node starts with its sold and held seats as if
+ * they had been held here, but they do not count as sales of any bucket.
+ * <p>
+ * Usage: <code>
+ * SalesReporter reporter = new SalesReporter();
+ * ticketService.addCommitListener(reporter);
+ * </code>
+ */
+public final class SalesReporter implements EventCommitListener {
+
+	private final long bucketMillis;
+	private final int buckets;
+	private final Clock clock;
+	private final ConcurrentMap<Integer, EventSales> events = new ConcurrentHashMap<>();
+
+	/**
+	 * Sales velocity of the last hour, minute by minute
+	 */
+	public SalesReporter() {
+		this(TimeUnit.MINUTES.toMillis(1), 60);
+	}
+
+	/**
+	 * @param bucketMillis
+	 *            time span of a sales velocity bucket
+	 * @param buckets
+	 *            number of buckets reported
+	 */
+	public SalesReporter(long bucketMillis, int buckets) {
+		this(bucketMillis, buckets, Clock.systemUTC());
+	}
+
+	public SalesReporter(long bucketMillis, int buckets, Clock clock) {
+		if (bucketMillis <= 0 || buckets <= 0) {
+			throw new IllegalArgumentException("Invalid sales buckets");
+		}
+		this.bucketMillis = bucketMillis;
+		this.buckets = buckets;
+		this.clock = clock;
+	}
+
+	@Override
+	public void eventCommitted(Event event) {
+		// commits of an event are serialized by its write lock
+		EventSales sales = events.get(event.getId());
+		if (sales == null) {
+			events.put(event.getId(), new EventSales(event, buckets));
+		} else {
+			sales.committed(event, clock.millis() / bucketMillis);
+		}
+	}
+
+	@Override
+	public void seatsBooked(int eventId, List<SeatIdentifier> seatIds, PriceQuote quote) {
+		EventSales sales = events.get(eventId);
+		if (sales != null) {
+			sales.addRevenue(seatIds, quote, 1);
+		}
+	}
+
+	@Override
+	public void seatsCancelled(int eventId, List<SeatIdentifier> seatIds, PriceQuote refund) {
+		EventSales sales = events.get(eventId);
+		if (sales != null) {
+			sales.addRevenue(seatIds, refund, -1);
+		}
+	}
+
+	@Override
+	public void eventRemoved(int eventId) {
+		events.remove(eventId);
+	}
+
+	/**
+	 * @return sales of the event as of its last commit
+	 */
+	public SalesReport getReport(int eventId) {
+		EventSales sales = events.get(eventId);
+		if (sales == null) {
+			throw new NotFoundException(String.format("Event with id %d not found", eventId));
+		}
+		return sales.report(clock.millis());
+	}
+
+	/**
+	 * Sales of one event. Written by commits of the event only, read by any
+	 * thread.
+	 */
+	private final class EventSales {
+		private volatile Event event;
+		/**
+		 * Booked and held seats per level as of the last commit, only read by
+		 * commits
+		 */
+		private final int[] booked;
+		private final int[] held;
+		private final AtomicLongArray seatsHeldTotal;
+		/**
+		 * Seat prices as booked per level, net of refunds
+		 */
+		private final AtomicLongArray revenueCents;
+		private final AtomicLong feeCents = new AtomicLong();
+		/**
+		 * Ring of buckets, each with the number of the time bucket it counts
+		 */
+		private final AtomicLongArray bucketIds;
+		private final AtomicLongArray soldPerBucket;
+
+		EventSales(Event event, int buckets) {
+			int levels = event.getLevels().size();
+			this.booked = new int[levels];
+			this.held = new int[levels];
+			this.seatsHeldTotal = new AtomicLongArray(levels);
+			this.revenueCents = new AtomicLongArray(levels);
+			for (int i = 0; i < levels; i++) {
+				booked[i] = event.getBookedSeatCount(i);
+				held[i] = event.getUnavailableSeatCount(i) - booked[i];
+				seatsHeldTotal.set(i, booked[i] + held[i]);
+			}
+			this.bucketIds = new AtomicLongArray(buckets);
+			this.soldPerBucket = new AtomicLongArray(buckets);
+			for (int i = 0; i < buckets; i++) {
+				bucketIds.set(i, -1);
+			}
+			this.event = event;
+		}
+
+		void committed(Event event, long bucketId) {
+			for (int i = 0; i < booked.length; i++) {
+				int nowBooked = event.getBookedSeatCount(i);
+				int nowHeld = event.getUnavailableSeatCount(i) - nowBooked;
+				int sold = nowBooked - booked[i];
+				// booked seats were all held first
+				int newlyHeld = nowHeld - held[i] + sold;
+				if (newlyHeld > 0) {
+					seatsHeldTotal.addAndGet(i, newlyHeld);
+				}
+				if (sold != 0) {
+					addSold(bucketId, sold);
+				}
+				booked[i] = nowBooked;
+				held[i] = nowHeld;
+			}
+			this.event = event;
+		}
+
+		/**
+		 * @param sign
+		 *            1 for a booking, -1 for a refund
+		 */
+		void addRevenue(List<SeatIdentifier> seatIds, PriceQuote quote, int sign) {
+			VenueLayout layout = event.getLayout();
+			if (quote == null) {
+				for (SeatIdentifier seatId : seatIds) {
+					int levelIndex = layout.levelIndex(seatId.getLevel());
+					revenueCents.addAndGet(levelIndex, sign * layout.getLevels().get(levelIndex).getPriceCents());
+				}
+				return;
+			}
+			for (int i = 0; i < quote.getLevelCount(); i++) {
+				revenueCents.addAndGet(layout.levelIndex(quote.getLevelId(i)), sign * quote.getLevelSubtotalCents(i));
+			}
+			feeCents.addAndGet(sign * quote.getFeeCents());
+		}
+
+		private void addSold(long bucketId, int sold) {
+			int slot = (int) (bucketId % buckets);
+			if (bucketIds.get(slot) != bucketId) {
+				// reset before it is claimed, so readers never add the old count to the new bucket
+				soldPerBucket.set(slot, 0);
+				bucketIds.set(slot, bucketId);
+			}
+			soldPerBucket.addAndGet(slot, sold);
+		}
+
+		SalesReport report(long now) {
+			Event current = event;
+			List<SeatLevel> seatLevels = current.getLevels();
+			List<LevelSales> levels = new ArrayList<>(seatLevels.size());
+			for (int i = 0; i < seatLevels.size(); i++) {
+				SeatLevel level = seatLevels.get(i);
+				int sold = current.getBookedSeatCount(i);
+				levels.add(new LevelSales(level.getId(), current.getLayout().getLevelSeatCount(i), sold,
+						current.getUnavailableSeatCount(i) - sold, seatsHeldTotal.get(i), revenueCents.get(i)));
+			}
+			long currentBucket = now / bucketMillis;
+			long[] velocity = new long[buckets];
+			for (int i = 0; i < buckets; i++) {
+				long bucketId = currentBucket - buckets + 1 + i;
+				if (bucketId < 0) {
+					continue;
+				}
+				int slot = (int) (bucketId % buckets);
+				if (bucketIds.get(slot) != bucketId) {
+					continue;
+				}
+				long sold = soldPerBucket.get(slot);
+				// a bucket recycled meanwhile counts nothing
+				if (bucketIds.get(slot) == bucketId) {
+					velocity[i] = sold;
+				}
+			}
+			return new SalesReport(current.getId(), now, levels, feeCents.get(), bucketMillis, velocity);
+		}
+	}
+}
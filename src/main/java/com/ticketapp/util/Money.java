@@ -0,0 +1,67 @@
+package com.ticketapp.util;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Fixed-point money: amounts are <code>long</code> cents, so sums are exact
+ * and need no boxing. Rounding is half up, amounts are expected to be
+ * positive.
+ */
+public final class Money {
+
+	private static final long CENTS_PER_UNIT = 100;
+	private static final long BASIS_POINTS = 10000;
+
+	private Money() {
+	}
+
+	/**
+	 * @return cents of a decimal amount, 0 for null. Allocates, meant for
+	 *         input conversion only.
+	 */
+	public static long toCents(Double amount) {
+		if (amount == null) {
+			return 0;
+		}
+		// through the decimal string, 1.005 is 1.01 and not 1.00
+		return BigDecimal.valueOf(amount).setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+	}
+
+	/**
+	 * @return the amount in currency units, for display
+	 */
+	public static double toDecimal(long cents) {
+		return (double) cents / CENTS_PER_UNIT;
+	}
+
+	/**
+	 * @return <code>cents * multiplier</code> rounded to the cent
+	 */
+	public static long multiply(long cents, double multiplier) {
+		return Math.round(cents * multiplier);
+	}
+
+	/**
+	 * @param basisPoints
+	 *            hundredths of a percent
+	 * @return the share of the amount rounded to the cent
+	 */
+	public static long percentOf(long cents, int basisPoints) {
+		return Math.floorDiv(cents * basisPoints + BASIS_POINTS / 2, BASIS_POINTS);
+	}
+
+	/**
+	 * @return the amount as <code>units.cents</code>, e.g. <code>12.05</code>
+	 */
+	public static String format(long cents) {
+		StringBuilder builder = new StringBuilder();
+		if (cents < 0) {
+			builder.append('-');
+		}
+		long abs = Math.abs(cents);
+		long fraction = abs % CENTS_PER_UNIT;
+		return builder.append(abs / CENTS_PER_UNIT).append('.').append(fraction < 10 ? "0" : "").append(fraction)
+				.toString();
+	}
+}
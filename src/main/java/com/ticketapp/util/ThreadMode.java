@@ -0,0 +1,127 @@
+package com.ticketapp.util;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Kind of threads a deployment runs requests, hold expiry and audit writing
+ * on.
+ * <p>
+ * {@link #PLATFORM} is a bounded pool of daemon threads. {@link #VIRTUAL} runs
+ * one virtual thread per request and needs JDK 21 at run time; the service
+ * still builds for JDK 8, so virtual threads are created through method
+ * handles. The request path of the service only blocks on
+ * {@link java.util.concurrent.locks.ReentrantReadWriteLock event locks} and
+ * other <code>java.util.concurrent</code> locks, never inside a
+ * <code>synchronized</code> block, so a virtual thread waiting for an event
+ * never pins its carrier.
+ * <p>
+ * Usage: <code>
+ * ThreadMode mode = ThreadMode.VIRTUAL;
+ * ExecutorService requests = mode.newRequestExecutor(0);
+ * TicketServiceImpl ticketService = new TicketServiceImpl(mode.newScheduler(4), ...);
+ * </code>
+ */
+public enum ThreadMode {
+	PLATFORM,
+	VIRTUAL;
+
+	/**
+	 * <code>Thread.ofVirtual()</code>, null before JDK 21
+	 */
+	private static final MethodHandle OF_VIRTUAL;
+	private static final MethodHandle NAME;
+	private static final MethodHandle FACTORY;
+	private static final MethodHandle THREAD_PER_TASK_EXECUTOR;
+
+	static {
+		MethodHandle ofVirtual = null, name = null, factory = null, threadPerTask = null;
+		try {
+			MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+			Class<?> builder = Class.forName("java.lang.Thread$Builder$OfVirtual");
+			ofVirtual = lookup.findStatic(Thread.class, "ofVirtual", MethodType.methodType(builder));
+			name = lookup.findVirtual(builder, "name", MethodType.methodType(builder, String.class, long.class));
+			factory = lookup.findVirtual(builder, "factory", MethodType.methodType(ThreadFactory.class));
+			threadPerTask = lookup.findStatic(Executors.class, "newThreadPerTaskExecutor",
+					MethodType.methodType(ExecutorService.class, ThreadFactory.class));
+		} catch (ReflectiveOperationException e) {
+			// before JDK 21
+			ofVirtual = null;
+		}
+		OF_VIRTUAL = ofVirtual;
+		NAME = name;
+		FACTORY = factory;
+		THREAD_PER_TASK_EXECUTOR = threadPerTask;
+	}
+
+	/**
+	 * @return true if threads of this mode can be created on the running JVM
+	 */
+	public boolean isAvailable() {
+		return this == PLATFORM || OF_VIRTUAL != null;
+	}
+
+	/**
+	 * @param prefix
+	 *            thread names, numbered from 0
+	 * @throws UnsupportedOperationException
+	 *             if the mode is not available
+	 */
+	public ThreadFactory newThreadFactory(String prefix) {
+		if (this == PLATFORM) {
+			AtomicInteger count = new AtomicInteger();
+			return runnable -> {
+				Thread thread = new Thread(runnable, prefix + count.getAndIncrement());
+				thread.setDaemon(true);
+				return thread;
+			};
+		}
+		checkAvailable();
+		try {
+			return (ThreadFactory) FACTORY.invoke(NAME.invoke(OF_VIRTUAL.invoke(), prefix, 0L));
+		} catch (Throwable e) {
+			throw new IllegalStateException("Cannot create virtual threads", e);
+		}
+	}
+
+	/**
+	 * Executor for customer requests. Platform threads are a fixed pool,
+	 * virtual threads are one per request, as many as are submitted.
+	 *
+	 * @param platformThreads
+	 *            pool size of {@link #PLATFORM}, ignored by {@link #VIRTUAL}
+	 */
+	public ExecutorService newRequestExecutor(int platformThreads) {
+		if (this == PLATFORM) {
+			return Executors.newFixedThreadPool(platformThreads, newThreadFactory("request-"));
+		}
+		ThreadFactory factory = newThreadFactory("request-");
+		try {
+			return (ExecutorService) THREAD_PER_TASK_EXECUTOR.invoke(factory);
+		} catch (Throwable e) {
+			throw new IllegalStateException("Cannot create virtual threads", e);
+		}
+	}
+
+	/**
+	 * Scheduler for hold expiry and other timed work, e.g. the hold scheduler
+	 * of {@link com.ticketapp.service.TicketServiceImpl}
+	 */
+	public ScheduledExecutorService newScheduler(int threads) {
+		return new ScheduledThreadPoolExecutor(threads, newThreadFactory("scheduler-"));
+	}
+
+	private void checkAvailable() {
+		if (!isAvailable()) {
+			throw new UnsupportedOperationException(this + " threads need JDK 21, running on "
+					+ System.getProperty("java.version"));
+		}
+	}
+}
@@ -0,0 +1,270 @@
+package com.ticketapp.util;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RunnableScheduledFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scheduler running on virtual time, for deterministic simulations and tests.
+ * Nothing runs on its own: time only moves when {@link #advance(long, TimeUnit)}
+ * is called, which runs every task falling due on the calling thread, in
+ * order of due time and then of submission. Tasks take no virtual time.
+ * <p>
+ * {@link #getClock()} reads the same virtual time, so that a service given
+ * both sees holds expire exactly when the simulation says so. Hours of
+ * activity then take as long as the work itself.
+ * <p>
+ * Submitting is thread-safe, but only one thread should advance time.
+ */
+public final class VirtualTimeScheduler extends AbstractExecutorService implements ScheduledExecutorService {
+
+	private final long startMillis;
+	private final PriorityQueue<Task<?>> queue = new PriorityQueue<>();
+	private final Clock clock;
+	/**
+	 * Nanos since start
+	 */
+	private volatile long now;
+	private long sequence;
+	private volatile boolean shutdown;
+
+	/**
+	 * @param startMillis
+	 *            virtual epoch millis to start from
+	 */
+	public VirtualTimeScheduler(long startMillis) {
+		this.startMillis = startMillis;
+		this.clock = new VirtualClock(ZoneOffset.UTC);
+	}
+
+	/**
+	 * @return clock reading the virtual time
+	 */
+	public Clock getClock() {
+		return clock;
+	}
+
+	/**
+	 * @return virtual epoch millis
+	 */
+	public long currentTimeMillis() {
+		return startMillis + TimeUnit.NANOSECONDS.toMillis(now);
+	}
+
+	/**
+	 * Moves time forward, running every task due on the way
+	 *
+	 * @return number of tasks run
+	 */
+	public int advance(long duration, TimeUnit unit) {
+		if (duration < 0) {
+			throw new IllegalArgumentException("Time only moves forward");
+		}
+		long target = now + unit.toNanos(duration);
+		int ran = 0;
+		while (true) {
+			Task<?> task;
+			synchronized (this) {
+				task = queue.peek();
+				if (task == null || task.time > target) {
+					break;
+				}
+				queue.poll();
+				now = Math.max(now, task.time);
+			}
+			task.run();
+			ran++;
+		}
+		now = target;
+		return ran;
+	}
+
+	/**
+	 * Runs the tasks due now, e.g. those just {@link #execute(Runnable)
+	 * executed}
+	 */
+	public int runPending() {
+		return advance(0, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * @return tasks waiting to fall due, periodic ones included
+	 */
+	public synchronized int getQueueSize() {
+		return queue.size();
+	}
+
+	private synchronized <V> Task<V> enqueue(Task<V> task) {
+		if (shutdown) {
+			throw new RejectedExecutionException("Scheduler is shut down");
+		}
+		task.sequence = sequence++;
+		queue.add(task);
+		return task;
+	}
+
+	private synchronized void requeue(Task<?> task) {
+		if (!shutdown) {
+			queue.add(task);
+		}
+	}
+
+	@Override
+	public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+		return enqueue(new Task<Void>(Executors.callable(command, null), now + unit.toNanos(Math.max(delay, 0)), 0));
+	}
+
+	@Override
+	public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+		return enqueue(new Task<>(callable, now + unit.toNanos(Math.max(delay, 0)), 0));
+	}
+
+	@Override
+	public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit) {
+		if (period <= 0) {
+			throw new IllegalArgumentException("Invalid period " + period);
+		}
+		return enqueue(new Task<Void>(Executors.callable(command, null), now + unit.toNanos(Math.max(initialDelay, 0)),
+				unit.toNanos(period)));
+	}
+
+	@Override
+	public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay, TimeUnit unit) {
+		// tasks take no time, fixed delay and fixed rate are the same
+		return scheduleAtFixedRate(command, initialDelay, delay, unit);
+	}
+
+	@Override
+	public void execute(Runnable command) {
+		schedule(command, 0, TimeUnit.NANOSECONDS);
+	}
+
+	@Override
+	public void shutdown() {
+		shutdown = true;
+	}
+
+	@Override
+	public synchronized List<Runnable> shutdownNow() {
+		shutdown = true;
+		List<Runnable> pending = new ArrayList<>(queue);
+		queue.clear();
+		return pending;
+	}
+
+	@Override
+	public boolean isShutdown() {
+		return shutdown;
+	}
+
+	@Override
+	public synchronized boolean isTerminated() {
+		return shutdown && queue.isEmpty();
+	}
+
+	/**
+	 * Never waits, nothing runs unless time is advanced
+	 */
+	@Override
+	public boolean awaitTermination(long timeout, TimeUnit unit) {
+		return isTerminated();
+	}
+
+	private final class Task<V> extends FutureTask<V> implements RunnableScheduledFuture<V> {
+		private long time;
+		private final long period;
+		private long sequence;
+
+		Task(Callable<V> callable, long time, long period) {
+			super(callable);
+			this.time = time;
+			this.period = period;
+		}
+
+		@Override
+		public boolean isPeriodic() {
+			return period > 0;
+		}
+
+		@Override
+		public long getDelay(TimeUnit unit) {
+			return unit.convert(time - now, TimeUnit.NANOSECONDS);
+		}
+
+		@Override
+		public int compareTo(Delayed other) {
+			if (other == this) {
+				return 0;
+			}
+			if (other instanceof Task) {
+				Task<?> task = (Task<?>) other;
+				int cmp = Long.compare(time, task.time);
+				return cmp != 0 ? cmp : Long.compare(sequence, task.sequence);
+			}
+			return Long.compare(getDelay(TimeUnit.NANOSECONDS), other.getDelay(TimeUnit.NANOSECONDS));
+		}
+
+		@Override
+		public boolean cancel(boolean mayInterruptIfRunning) {
+			boolean cancelled = super.cancel(mayInterruptIfRunning);
+			if (cancelled) {
+				synchronized (VirtualTimeScheduler.this) {
+					queue.remove(this);
+				}
+			}
+			return cancelled;
+		}
+
+		@Override
+		public void run() {
+			if (!isPeriodic()) {
+				super.run();
+			} else if (runAndReset()) {
+				time += period;
+				requeue(this);
+			}
+		}
+	}
+
+	private final class VirtualClock extends Clock {
+		private final ZoneId zone;
+
+		VirtualClock(ZoneId zone) {
+			this.zone = zone;
+		}
+
+		@Override
+		public ZoneId getZone() {
+			return zone;
+		}
+
+		@Override
+		public Clock withZone(ZoneId zone) {
+			return new VirtualClock(zone);
+		}
+
+		@Override
+		public long millis() {
+			return currentTimeMillis();
+		}
+
+		@Override
+		public Instant instant() {
+			return Instant.ofEpochMilli(startMillis).plusNanos(now);
+		}
+	}
+}
@@ -0,0 +1,133 @@
+package com.ticketapp.bean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ticketapp.bean.Seat.SeatState;
+
+public class AllocationStrategyTest {
+
+	private Event event;
+
+	@Before
+	public void before() {
+		// 10 seats at 100, 20 at 50 and 12 at 80
+		VenueLayout layout = new VenueLayout(Arrays.asList(new SeatLevel(1, "Front", 100.0, 2, 5),
+				new SeatLevel(2, "Middle", 50.0, 2, 10), new SeatLevel(3, "Back", 80.0, 3, 4)));
+		event = new Event(1, "strategies", ZonedDateTime.now(), 120, layout, 10, SeatStorage.HEAP);
+		// 2 seats left in the front, the middle seat of each row
+		List<Seat> front = seats(1, 1, 1, 2, 4, 5);
+		front.addAll(seats(1, 2, 1, 2, 4, 5));
+		event = hold(event, front);
+	}
+
+	@Test
+	public void testBestAvailableShouldSpillIntoNextLevel() {
+		List<Seat> seats = event.getBestAvailableSeats(Optional.empty(), Optional.empty(), 4,
+				AllocationStrategy.BEST_AVAILABLE);
+		assertEquals(Arrays.asList(1, 1, 2, 2), levels(seats));
+		// the default of an event
+		assertEquals(ids(seats), ids(event.getBestAvailableSeats(Optional.empty(), Optional.empty(), 4)));
+	}
+
+	@Test
+	public void testBestSingleLevelShouldKeepGroupTogether() {
+		assertEquals(Arrays.asList(2, 2, 2, 2), levels(event.getBestAvailableSeats(Optional.empty(), Optional.empty(),
+				4, AllocationStrategy.BEST_SINGLE_LEVEL)));
+		// fits in the front
+		assertEquals(Arrays.asList(1, 1), levels(event.getBestAvailableSeats(Optional.empty(), Optional.empty(), 2,
+				AllocationStrategy.BEST_SINGLE_LEVEL)));
+		// only the back accepted, all it has
+		assertEquals(12, event.getBestAvailableSeats(Optional.of(3), Optional.of(3), 13,
+				AllocationStrategy.BEST_SINGLE_LEVEL).size());
+	}
+
+	@Test
+	public void testCheapestShouldTakeLowestPriceFirst() {
+		assertEquals(Collections.nCopies(20, 2), levels(event.getBestAvailableSeats(Optional.empty(),
+				Optional.empty(), 20, AllocationStrategy.CHEAPEST)));
+		List<Seat> seats = event.getBestAvailableSeats(Optional.empty(), Optional.empty(), 24,
+				AllocationStrategy.CHEAPEST);
+		// then the 80 level before the 100 one
+		assertEquals(Arrays.asList(3, 3, 3, 3), levels(seats).subList(20, 24));
+	}
+
+	@Test
+	public void testContiguousFirstShouldSeatGroupSideBySide() {
+		// the front has 2 seats left, but not next to each other
+		List<Seat> seats = event.getBestAvailableSeats(Optional.empty(), Optional.empty(), 2,
+				AllocationStrategy.CONTIGUOUS_FIRST);
+		assertEquals(Arrays.asList(new SeatIdentifier(2, 1, 5), new SeatIdentifier(2, 1, 6)), ids(seats));
+
+		// in the middle of the run left in the row
+		event = hold(event, seats(2, 1, 1, 2, 3, 4, 5, 6));
+		seats = event.getBestAvailableSeats(Optional.empty(), Optional.empty(), 3, AllocationStrategy.CONTIGUOUS_FIRST);
+		assertEquals(Arrays.asList(new SeatIdentifier(2, 1, 7), new SeatIdentifier(2, 1, 8),
+				new SeatIdentifier(2, 1, 9)), ids(seats));
+		seats = event.getBestAvailableSeats(Optional.empty(), Optional.empty(), 5, AllocationStrategy.CONTIGUOUS_FIRST);
+		assertEquals(Arrays.asList(new SeatIdentifier(2, 2, 3), new SeatIdentifier(2, 2, 4),
+				new SeatIdentifier(2, 2, 5), new SeatIdentifier(2, 2, 6), new SeatIdentifier(2, 2, 7)), ids(seats));
+	}
+
+	@Test
+	public void testContiguousFirstShouldSeeFreedRuns() {
+		assertTrue(event.getAdjacentAvailableSeats(0, 2).isEmpty());
+		// seat 4 of the front row is freed, next to the free seat 3
+		event = new Event(event, Collections.singletonMap(SeatState.AVAILABLE,
+				Arrays.asList(new Seat(new SeatIdentifier(1, 1, 4), SeatState.ON_HOLD))));
+		assertEquals(Arrays.asList(new SeatIdentifier(1, 1, 3), new SeatIdentifier(1, 1, 4)),
+				ids(event.getAdjacentAvailableSeats(0, 2)));
+		// no row is wide enough, falls back to a single level
+		assertEquals(Collections.nCopies(11, 2), levels(event.getBestAvailableSeats(Optional.empty(),
+				Optional.empty(), 11, AllocationStrategy.CONTIGUOUS_FIRST)));
+	}
+
+	@Test
+	public void testFewestLevelsShouldTakeLargestLevelsFirst() {
+		// 2 front, 20 middle and 12 back seats left, 25 need two levels at least
+		List<Seat> seats = event.getBestAvailableSeats(Optional.empty(), Optional.empty(), 25,
+				AllocationStrategy.FEWEST_LEVELS);
+		assertEquals(25, seats.size());
+		assertEquals(Arrays.asList(2, 3), levels(seats).stream().distinct().collect(Collectors.toList()));
+		// best available would use all three
+		assertEquals(3, levels(event.getBestAvailableSeats(Optional.empty(), Optional.empty(), 25,
+				AllocationStrategy.BEST_AVAILABLE)).stream().distinct().count());
+	}
+
+	@Test
+	public void testShouldKeepStrategyAcrossUpdates() {
+		Event cheapest = new Event(2, "cheap", ZonedDateTime.now(), 120, event.getLayout(), 10, SeatStorage.HEAP,
+				AllocationStrategy.CHEAPEST);
+		Event held = hold(cheapest, seats(2, 2, 1));
+		assertEquals(AllocationStrategy.CHEAPEST, held.getAllocationStrategy());
+		assertEquals(Arrays.asList(2), levels(held.getBestAvailableSeats(Optional.empty(), Optional.empty(), 1)));
+		assertEquals(0, held.getBestAvailableSeats(Optional.of(3), Optional.of(2), 1).size());
+	}
+
+	private static Event hold(Event event, List<Seat> seats) {
+		return new Event(event, Collections.singletonMap(SeatState.ON_HOLD, seats));
+	}
+
+	private static List<Seat> seats(int level, int row, int... seats) {
+		return Arrays.stream(seats).mapToObj(seat -> new Seat(new SeatIdentifier(level, row, seat)))
+				.collect(Collectors.toList());
+	}
+
+	private static List<Integer> levels(List<Seat> seats) {
+		return seats.stream().map(seat -> seat.getId().getLevel()).collect(Collectors.toList());
+	}
+
+	private static List<SeatIdentifier> ids(List<Seat> seats) {
+		return seats.stream().map(Seat::getId).collect(Collectors.toList());
+	}
+}
@@ -0,0 +1,42 @@
+package com.ticketapp.bean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class DirectBufferPoolTest {
+
+	@Test
+	public void testShouldCutBuffersFromChunks() {
+		DirectBufferPool pool = new DirectBufferPool();
+		List<LongBuffer> buffers = new ArrayList<>();
+		for (int i = 0; i < DirectBufferPool.BUFFERS_PER_CHUNK + 1; i++) {
+			buffers.add(pool.take(100));
+		}
+		assertEquals(2, pool.getChunks());
+		assertEquals(100, buffers.get(0).capacity());
+		// buffers of one chunk do not overlap
+		buffers.get(0).put(99, 1);
+		assertEquals(0, buffers.get(1).get(0));
+	}
+
+	@Test
+	public void testShouldReuseBuffersOfCollectedViews() throws Exception {
+		DirectBufferPool pool = new DirectBufferPool();
+		int rounds = 50;
+		for (int round = 0; round < rounds; round++) {
+			// dropped at once, like versions nobody reads any more
+			for (int i = 0; i < DirectBufferPool.BUFFERS_PER_CHUNK; i++) {
+				pool.take(100);
+			}
+			System.gc();
+			Thread.sleep(10);
+		}
+		assertTrue(pool.getChunks() + " chunks", pool.getChunks() < rounds / 2);
+	}
+}
@@ -2,6 +2,8 @@ package com.ticketapp.bean;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
@@ -208,4 +210,125 @@ public class EventTest {
 		assertEquals(1, newEvent.getTotalSeatCount(Optional.of(4)));
 		assertEquals(0, newEvent.getTotalSeatCount(Optional.of(5)));
 	}
+
+	@Test
+	public void testShouldNotMaterializeSeats() {
+		// 10 million seats
+		List<SeatLevel> seatLevels = Arrays.asList(new SeatLevel(1, "Floor", 100.0, 2500, 2000),
+				new SeatLevel(2, "Stands", 50.0, 2500, 2000));
+		Event bigEvent = new Event(2, eventName, ZonedDateTime.now(), eventDuration, seatLevels, 10);
+		assertEquals(10000000, bigEvent.getAvailableSeatCount(Optional.empty()));
+		assertTrue(bigEvent.getChangedSeats().isEmpty());
+		assertEquals(SeatState.AVAILABLE, bigEvent.getSeat(new SeatIdentifier(2, 2500, 2000)).getState());
+		assertNull(bigEvent.getSeat(new SeatIdentifier(2, 2501, 1)));
+		assertNull(bigEvent.getSeat(new SeatIdentifier(3, 1, 1)));
+		List<Seat> seats = bigEvent.getBestAvailableSeats(Optional.of(2), Optional.empty(), 3);
+		assertEquals(new SeatIdentifier(2, 1, 3), seats.get(2).getId());
+	}
+
+	@Test
+	public void testShouldOnlyKeepChangedSeats() {
+		SeatIdentifier seatId = new SeatIdentifier(1, 1, 1);
+		Event held = new Event(event, Collections.singletonMap(SeatState.ON_HOLD,
+				Collections.singletonList(new Seat(seatId, SeatState.AVAILABLE))));
+		assertEquals(1, held.getChangedSeats().size());
+		assertEquals(SeatState.ON_HOLD, held.getSeats().get(seatId).getState());
+		assertEquals(6249, held.getAvailableSeatCount(Optional.empty()));
+		assertEquals(new SeatIdentifier(1, 1, 2), held.getBestAvailableSeats(Optional.empty(), Optional.empty(), 1).get(0).getId());
+
+		Event released = new Event(held, Collections.singletonMap(SeatState.AVAILABLE,
+				Collections.singletonList(new Seat(seatId, SeatState.ON_HOLD))));
+		assertTrue(released.getChangedSeats().isEmpty());
+		assertEquals(1250, released.getAvailableSeatCount(Optional.of(1)));
+		// the original is untouched
+		assertEquals(SeatState.AVAILABLE, event.getSeat(seatId).getState());
+	}
+
+	@Test
+	public void testShouldKeepSeatStatesOffHeap() {
+		Event direct = new Event(3, eventName, ZonedDateTime.now(), eventDuration, event.getLayout(), 10,
+				SeatStorage.DIRECT);
+		assertEquals(SeatStorage.DIRECT, direct.getSeatStorage());
+		List<Seat> best = direct.getBestAvailableSeats(Optional.of(2), Optional.empty(), 40);
+		Event held = new Event(direct, Collections.singletonMap(SeatState.ON_HOLD, best));
+		Event heapHeld = new Event(event, Collections.singletonMap(SeatState.ON_HOLD, best));
+		// updates stay off the heap and answer as the heap does
+		assertEquals(SeatStorage.DIRECT, held.getSeatStorage());
+		assertEquals(heapHeld.getChangedSeats().keySet(), held.getChangedSeats().keySet());
+		assertEquals(heapHeld.getAvailableSeatCount(Optional.of(2)), held.getAvailableSeatCount(Optional.of(2)));
+		assertEquals(heapHeld.getBestAvailableSeats(Optional.empty(), Optional.empty(), 50).stream()
+				.map(Seat::getId).collect(Collectors.toList()),
+				held.getBestAvailableSeats(Optional.empty(), Optional.empty(), 50).stream().map(Seat::getId)
+						.collect(Collectors.toList()));
+		for (Seat seat : best) {
+			assertEquals(SeatState.ON_HOLD, held.getSeat(seat.getId()).getState());
+			// the version updated is untouched
+			assertEquals(SeatState.AVAILABLE, direct.getSeat(seat.getId()).getState());
+		}
+		Event booked = new Event(held, Collections.singletonMap(SeatState.BOOKED,
+				Collections.singletonList(new Seat(best.get(0).getId(), SeatState.ON_HOLD))));
+		assertEquals(SeatState.BOOKED, booked.getSeatState(booked.getLayout().seatIndex(best.get(0).getId())));
+		assertEquals(SeatState.ON_HOLD, held.getSeat(best.get(0).getId()).getState());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testShouldNotUpdateUnknownSeat() {
+		new Event(event, Collections.singletonMap(SeatState.ON_HOLD,
+				Collections.singletonList(new Seat(new SeatIdentifier(1, 26, 1), SeatState.AVAILABLE))));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testShouldNotUpdateSeatFromWrongState() {
+		new Event(event, Collections.singletonMap(SeatState.BOOKED,
+				Collections.singletonList(new Seat(new SeatIdentifier(1, 1, 1), SeatState.ON_HOLD))));
+	}
+
+	@Test
+	public void testSeatViewShouldListAllSeats() {
+		Map<SeatIdentifier, Seat> seats = event.getSeats();
+		assertEquals(6250, seats.size());
+		assertEquals(6250, seats.values().stream().filter(Seat::isAvailable).count());
+	}
+
+	@Test
+	public void testShouldOfferCenterSeatsFirst() {
+		Event centered = new Event(2, eventName, ZonedDateTime.now(), eventDuration,
+				new VenueLayout(Arrays.asList(new SeatLevel(1, "Orchestra", 100.0, 2, 5)), SeatScorer.CENTER), 10);
+		List<SeatIdentifier> seatIds = centered.getBestAvailableSeats(Optional.empty(), Optional.empty(), 3).stream()
+				.map(Seat::getId).collect(Collectors.toList());
+		assertEquals(Arrays.asList(new SeatIdentifier(1, 1, 3), new SeatIdentifier(1, 1, 2), new SeatIdentifier(1, 1, 4)),
+				seatIds);
+
+		// taken seats are skipped, the next best is the aisle of the first row
+		Event held = new Event(centered, Collections.singletonMap(SeatState.ON_HOLD, seatIds.stream()
+				.map(seatId -> new Seat(seatId, SeatState.AVAILABLE)).collect(Collectors.toList())));
+		seatIds = held.getBestAvailableSeats(Optional.empty(), Optional.empty(), 3).stream().map(Seat::getId)
+				.collect(Collectors.toList());
+		assertEquals(Arrays.asList(new SeatIdentifier(1, 1, 1), new SeatIdentifier(1, 1, 5), new SeatIdentifier(1, 2, 3)),
+				seatIds);
+	}
+
+	@Test
+	public void testDraftShouldApplyStepsToOneCopy() {
+		Seat first = new Seat(new SeatIdentifier(1, 1, 1), SeatState.AVAILABLE);
+		Event.Draft draft = new Event.Draft(event);
+		draft.update(Collections.singletonMap(SeatState.ON_HOLD, Collections.singletonList(first)));
+		// the second step sees the first
+		draft.update(Collections.singletonMap(SeatState.BOOKED,
+				Collections.singletonList(new Seat(first.getId(), SeatState.ON_HOLD))));
+		Event done = draft.done();
+		assertEquals(SeatState.BOOKED, done.getSeat(first.getId()).getState());
+		assertEquals(6249, done.getAvailableSeatCount(Optional.empty()));
+		assertEquals(1, done.getBookedSeatCount(Optional.empty()));
+		assertEquals(49, done.getLongestFreeRun(0));
+		assertEquals(6250, event.getAvailableSeatCount(Optional.empty()));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testDraftShouldNotUpdateOnceDone() {
+		Event.Draft draft = new Event.Draft(event);
+		draft.done();
+		draft.update(Collections.singletonMap(SeatState.ON_HOLD,
+				Collections.singletonList(new Seat(new SeatIdentifier(1, 1, 1), SeatState.AVAILABLE))));
+	}
 }
@@ -0,0 +1,156 @@
+package com.ticketapp.bean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.ticketapp.bean.Seat.SeatState;
+import com.ticketapp.bean.SeatMapCodec.DecodedSeatMap;
+import com.ticketapp.bean.SeatMapCodec.Encoding;
+
+public class SeatMapCodecTest {
+
+	@Test
+	public void testShouldEncodeLargeVenueInFewBytes() {
+		// 100k seats, the best 30k sold and 500 on hold
+		Event event = event(1, SeatStorage.HEAP, Arrays.asList(new SeatLevel(1, "Floor", 100.0, 200, 250),
+				new SeatLevel(2, "Balcony", 50.0, 100, 500)));
+		event = new Event(event, update(SeatState.BOOKED,
+				event.getBestAvailableSeats(Optional.empty(), Optional.empty(), 30000)));
+		event = new Event(event, update(SeatState.ON_HOLD,
+				event.getBestAvailableSeats(Optional.empty(), Optional.empty(), 500)));
+		ByteBuffer map = SeatMapCodec.encode(event);
+		assertTrue("Seat map of " + map.remaining() + " bytes", map.remaining() < 4096);
+
+		DecodedSeatMap decoded = SeatMapCodec.decode(map);
+		assertEquals(0, map.remaining());
+		assertEquals(Encoding.RUN_LENGTH, decoded.getEncoding());
+		assertSameSeats(event, decoded);
+		assertEquals(100000 - 30500, decoded.getAvailableSeatCount());
+	}
+
+	@Test
+	public void testShouldFallBackToPackedStates() {
+		Event event = scattered(SeatStorage.HEAP);
+		ByteBuffer map = SeatMapCodec.encode(event);
+		// 2 bits a seat beats a run a seat
+		assertEquals(SeatMapCodec.maxEncodedSize(event), map.remaining());
+		DecodedSeatMap decoded = SeatMapCodec.decode(map);
+		assertEquals(Encoding.PACKED, decoded.getEncoding());
+		assertSameSeats(event, decoded);
+	}
+
+	@Test
+	public void testShouldEncodeDirectStorageWithEitherEncoding() {
+		Event event = scattered(SeatStorage.DIRECT);
+		for (Encoding encoding : Encoding.values()) {
+			// written after other data, into a direct buffer of the other byte order
+			ByteBuffer out = ByteBuffer.allocateDirect(1 << 16).order(ByteOrder.BIG_ENDIAN);
+			out.putInt(42);
+			SeatMapCodec.encode(event, encoding, out);
+			out.flip();
+			assertEquals(42, out.getInt());
+			DecodedSeatMap decoded = SeatMapCodec.decode(out);
+			assertEquals(encoding, decoded.getEncoding());
+			assertEquals(ByteOrder.BIG_ENDIAN, out.order());
+			assertEquals(0, out.remaining());
+			assertSameSeats(event, decoded);
+		}
+	}
+
+	@Test
+	public void testShouldKeepLevelDimensions() {
+		Event event = event(7, SeatStorage.HEAP,
+				Arrays.asList(new SeatLevel(3, "Box", 200.0, 2, 3), new SeatLevel(1, "Stalls", 80.0, 5, 7)));
+		DecodedSeatMap decoded = SeatMapCodec.decode(SeatMapCodec.encode(event));
+		assertEquals(7, decoded.getEventId());
+		assertEquals(event.getLevels().size(), decoded.getLayout().getLevels().size());
+		for (int i = 0; i < event.getLevels().size(); i++) {
+			SeatLevel level = event.getLevels().get(i);
+			SeatLevel decodedLevel = decoded.getLayout().getLevels().get(i);
+			assertEquals(level.getId(), decodedLevel.getId());
+			assertEquals(level.getRows(), decodedLevel.getRows());
+			assertEquals(level.getSeats(), decodedLevel.getSeats());
+		}
+		assertEquals(SeatState.AVAILABLE, decoded.getSeatState(new SeatIdentifier(3, 2, 3)));
+		assertNull(decoded.getSeatState(new SeatIdentifier(3, 3, 1)));
+		assertEquals(41, decoded.getAvailableSeatCount());
+	}
+
+	@Test
+	public void testShouldRejectCorruptMaps() {
+		Event event = scattered(SeatStorage.HEAP);
+		ByteBuffer map = SeatMapCodec.encode(event);
+		map.put(0, (byte) 0);
+		try {
+			SeatMapCodec.decode(map);
+			fail();
+		} catch (IllegalArgumentException ex) {
+			// bad magic
+		}
+		ByteBuffer truncated = SeatMapCodec.encode(event);
+		truncated.limit(truncated.limit() - 1);
+		try {
+			SeatMapCodec.decode(truncated);
+			fail();
+		} catch (IllegalArgumentException ex) {
+			// body cut short
+		}
+	}
+
+	/**
+	 * Seats in a random state each, which no run length encoding shrinks
+	 */
+	private static Event scattered(SeatStorage storage) {
+		Event event = event(2, storage,
+				Arrays.asList(new SeatLevel(1, "Floor", 100.0, 30, 33), new SeatLevel(2, "Balcony", 50.0, 7, 11)));
+		Random random = new Random(47);
+		List<Seat> held = new ArrayList<>();
+		List<Seat> booked = new ArrayList<>();
+		for (int seatIndex = 0; seatIndex < event.getLayout().size(); seatIndex++) {
+			Seat seat = new Seat(event.getLayout().seatId(seatIndex), SeatState.AVAILABLE);
+			int state = random.nextInt(3);
+			if (state == 1) {
+				held.add(seat);
+			} else if (state == 2) {
+				booked.add(seat);
+			}
+		}
+		Map<SeatState, List<Seat>> updates = new EnumMap<>(SeatState.class);
+		updates.put(SeatState.ON_HOLD, held);
+		updates.put(SeatState.BOOKED, booked);
+		return new Event(event, updates);
+	}
+
+	private static Event event(int id, SeatStorage storage, List<SeatLevel> levels) {
+		return new Event(id, "codec", ZonedDateTime.now(), 120, new VenueLayout(levels), 10, storage);
+	}
+
+	private static Map<SeatState, List<Seat>> update(SeatState state, List<Seat> seats) {
+		Map<SeatState, List<Seat>> updates = new EnumMap<>(SeatState.class);
+		updates.put(state, seats);
+		return updates;
+	}
+
+	private static void assertSameSeats(Event event, DecodedSeatMap decoded) {
+		assertEquals(event.getLayout().size(), decoded.getLayout().size());
+		for (int seatIndex = 0; seatIndex < event.getLayout().size(); seatIndex++) {
+			assertEquals(event.getSeatState(seatIndex), decoded.getSeatState(seatIndex));
+		}
+		assertEquals(event.getAvailableSeatCount(Optional.empty()), decoded.getAvailableSeatCount());
+	}
+}
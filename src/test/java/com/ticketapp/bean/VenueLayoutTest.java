@@ -0,0 +1,151 @@
+package com.ticketapp.bean;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class VenueLayoutTest {
+
+	private VenueLayout layout;
+
+	@Before
+	public void before() {
+		// deliberately out of order, with an empty level in the middle
+		layout = new VenueLayout(Arrays.asList(new SeatLevel(3, "Balcony", 40.0, 2, 3),
+				new SeatLevel(1, "Orchestra", 100.0, 2, 2), new SeatLevel(2, "Empty", 50.0, 0, 5)));
+	}
+
+	@Test
+	public void testShouldOrderLevels() {
+		assertEquals(10, layout.size());
+		assertEquals(1, layout.getLevels().get(0).getId());
+		assertEquals(0, layout.levelIndex(1));
+		assertEquals(2, layout.levelIndex(3));
+		assertEquals(-1, layout.levelIndex(4));
+		assertEquals(4, layout.getLevelSeatCount(0));
+		assertEquals(0, layout.getLevelSeatCount(1));
+		assertEquals(4, layout.levelStart(2));
+	}
+
+	@Test
+	public void testShouldMapSeatsBothWays() {
+		for (int seatIndex = 0; seatIndex < layout.size(); seatIndex++) {
+			SeatIdentifier seatId = layout.seatId(seatIndex);
+			assertEquals(seatIndex, layout.seatIndex(seatId));
+		}
+		assertEquals(0, layout.seatIndex(new SeatIdentifier(1, 1, 1)));
+		assertEquals(3, layout.seatIndex(new SeatIdentifier(1, 2, 2)));
+		assertEquals(new SeatIdentifier(3, 1, 1), layout.seatId(4));
+		assertEquals(2, layout.levelIndexOf(4));
+		assertEquals(new SeatIdentifier(3, 2, 3), layout.seatId(9));
+	}
+
+	@Test
+	public void testShouldNotFindUnknownSeats() {
+		assertEquals(-1, layout.seatIndex(new SeatIdentifier(1, 3, 1)));
+		assertEquals(-1, layout.seatIndex(new SeatIdentifier(1, 1, 3)));
+		assertEquals(-1, layout.seatIndex(new SeatIdentifier(1, 0, 1)));
+		assertEquals(-1, layout.seatIndex(new SeatIdentifier(2, 1, 1)));
+		assertEquals(-1, layout.seatIndex(new SeatIdentifier(5, 1, 1)));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testShouldRejectNoLevels() {
+		new VenueLayout(Arrays.asList());
+	}
+
+	@Test
+	public void testShouldKeepNoRankingForSeatNumberOrder() {
+		assertNull(layout.ranking(0));
+		assertNull(layout.ranking(2));
+	}
+
+	@Test
+	public void testShouldRankSeatsPerLevel() {
+		VenueLayout centered = new VenueLayout(layout.getLevels(), SeatScorer.CENTER);
+		// seat numbers stay the same whatever the ranking
+		assertEquals(layout.seatIndex(new SeatIdentifier(3, 2, 2)), centered.seatIndex(new SeatIdentifier(3, 2, 2)));
+		// 2 seats per row in level 1, no center seat so seat number breaks ties
+		assertArrayEquals(new int[] { 0, 1, 2, 3 }, centered.ranking(0));
+		assertEquals(0, centered.ranking(1).length);
+		// 3 seats per row in level 3, starting at seat number 4
+		assertArrayEquals(new int[] { 5, 4, 6, 8, 7, 9 }, centered.ranking(2));
+	}
+
+	@Test
+	public void testShouldRankBySightline() {
+		VenueLayout sightline = new VenueLayout(Arrays.asList(new SeatLevel(1, "Orchestra", 100.0, 7, 5)),
+				SeatScorer.SIGHTLINE);
+		// the middle of the third row beats the aisle of the first
+		assertEquals(new SeatIdentifier(1, 3, 3), sightline.seatId(sightline.ranking(0)[0]));
+		int[] ranks = new int[sightline.size()];
+		for (int r = 0; r < ranks.length; r++) {
+			ranks[sightline.ranking(0)[r]] = r;
+		}
+		assertTrue(ranks[sightline.seatIndex(new SeatIdentifier(1, 4, 3))] < ranks[sightline
+				.seatIndex(new SeatIdentifier(1, 1, 1))]);
+	}
+
+	@Test
+	public void testShouldRankLargeLevelsInParallel() {
+		// the first level is ranked in parallel, the second is not
+		SeatLevel arena = new SeatLevel(1, "Arena", 80.0, 150, 250);
+		SeatLevel box = new SeatLevel(2, "Box", 200.0, 4, 6);
+		assertTrue(arena.getRows() * arena.getSeats() >= VenueLayout.PARALLEL_RANKING_SEATS);
+		VenueLayout centered = new VenueLayout(Arrays.asList(arena, box), SeatScorer.CENTER);
+		for (int levelIndex = 0; levelIndex < 2; levelIndex++) {
+			SeatLevel level = centered.getLevels().get(levelIndex);
+			int[] ranking = centered.ranking(levelIndex);
+			assertEquals(level.getRows() * level.getSeats(), ranking.length);
+			for (int r = 1; r < ranking.length; r++) {
+				SeatIdentifier before = centered.seatId(ranking[r - 1]);
+				SeatIdentifier after = centered.seatId(ranking[r]);
+				int scoreBefore = SeatScorer.CENTER.score(level, before.getRow(), before.getSeat());
+				int scoreAfter = SeatScorer.CENTER.score(level, after.getRow(), after.getSeat());
+				// by score, then seat number
+				assertTrue(scoreBefore < scoreAfter || scoreBefore == scoreAfter && ranking[r - 1] < ranking[r]);
+			}
+		}
+		assertEquals(new SeatIdentifier(1, 1, 125), centered.seatId(centered.ranking(0)[0]));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testShouldRejectNegativeScoresOfLargeLevels() {
+		new VenueLayout(Arrays.asList(new SeatLevel(1, "Arena", 80.0, 200, 200)),
+				(level, row, seat) -> row == 150 ? -1 : 0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testShouldRejectNegativeScores() {
+		new VenueLayout(layout.getLevels(), (level, row, seat) -> -1);
+	}
+
+	@Test
+	public void testShouldAcceptLevelsUpToPackableSize() {
+		VenueLayout largest = new VenueLayout(Arrays.asList(new SeatLevel(127, "Wide", 10.0, 1, 4095),
+				new SeatLevel(1, "Deep", 10.0, 4095, 1)));
+		assertEquals(2 * 4095, largest.size());
+		assertEquals(new SeatIdentifier(127, 1, 4095), largest.seatId(largest.size() - 1));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testShouldRejectRowsTooLongToPack() {
+		new VenueLayout(Arrays.asList(new SeatLevel(1, "Wide", 10.0, 1, 4096)));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testShouldRejectLevelsWithTooManyRowsToPack() {
+		new VenueLayout(Arrays.asList(new SeatLevel(1, "Deep", 10.0, 4096, 1)));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testShouldRejectLevelIdsTooLargeToPack() {
+		new VenueLayout(Arrays.asList(new SeatLevel(128, "High", 10.0, 1, 1)));
+	}
+}
@@ -0,0 +1,385 @@
+package com.ticketapp.loadtest;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import com.ticketapp.bean.Event;
+import com.ticketapp.bean.Seat;
+import com.ticketapp.bean.Seat.SeatState;
+import com.ticketapp.bean.SeatHold;
+import com.ticketapp.bean.SeatIdentifier;
+import com.ticketapp.bean.SeatReservation;
+import com.ticketapp.bean.input.EventInput;
+import com.ticketapp.bean.input.LevelInput;
+import com.ticketapp.service.HoldRegistry;
+import com.ticketapp.service.TicketService;
+import com.ticketapp.service.TicketServiceImpl;
+import com.ticketapp.service.exception.SeatHoldException;
+import com.ticketapp.service.exception.SeatReservationException;
+
+/**
+ * In-process load generator which replays on-sale traffic described by a
+ * {@link TrafficProfile} against a fresh {@link TicketServiceImpl}.
+ * <p>
+ * The generator is open loop: arrivals are dispatched on schedule regardless
+ * of how fast the service answers, so a slow service shows up as growing
+ * end-to-end latency (<code>hold-e2e</code>) instead of silently lowering the
+ * offered load. After the run, outstanding holds are left to expire and the
+ * final {@link Event} is checked for oversell and lost reclaims.
+ * <p>
+ * Run from the command line with <code>key=value</code> overrides, for
+ * example: <code>LoadGenerator duration=60 spikeRate=5000 abandon=0.5</code>
+ */
+public final class LoadGenerator {
+
+	/**
+	 * Dispatcher resolution. Arrivals within a tick are released together
+	 */
+	private static final long TICK_MILLIS = 5;
+	/**
+	 * One out of this many service calls is sampled for lock contention since
+	 * reading thread info is not free
+	 */
+	private static final int CONTENTION_SAMPLE_RATE = 8;
+
+	private final TrafficProfile profile;
+	private final EventInput venue;
+	private final ThreadMXBean threadMXBean;
+	private final boolean contentionSupported;
+
+	private final LatencyHistogram holdLatency = new LatencyHistogram();
+	private final LatencyHistogram holdE2eLatency = new LatencyHistogram();
+	private final LatencyHistogram reserveLatency = new LatencyHistogram();
+	private final LatencyHistogram rejectLatency = new LatencyHistogram();
+	private final Counters counters = new Counters();
+	private final AtomicInteger pending = new AtomicInteger();
+
+	/**
+	 * Counters shared by all load threads
+	 */
+	static final class Counters {
+		final LongAdder holdRequests = new LongAdder();
+		final LongAdder holdsCreated = new LongAdder();
+		final LongAdder holdsRejected = new LongAdder();
+		final LongAdder holdsAbandoned = new LongAdder();
+		final LongAdder reservesAttempted = new LongAdder();
+		final LongAdder reservesCompleted = new LongAdder();
+		final LongAdder reservesFailed = new LongAdder();
+		final LongAdder errors = new LongAdder();
+		final LongAdder seatsReserved = new LongAdder();
+		final LongAdder lockWaitMillis = new LongAdder();
+		final LongAdder contendedCalls = new LongAdder();
+		final LongAdder sampledCalls = new LongAdder();
+	}
+
+	/**
+	 * Pre-drawn behaviour of one customer, so that a run is reproducible for
+	 * a given seed irrespective of thread scheduling
+	 */
+	private static final class Arrival {
+		final long intendedStartNanos;
+		final int seats;
+		final TrafficProfile.LevelPreference preference;
+		final boolean abandon;
+		final long reserveDelayMillis;
+		final boolean sampleContention;
+		final String email;
+
+		Arrival(long intendedStartNanos, int seats, TrafficProfile.LevelPreference preference, boolean abandon,
+				long reserveDelayMillis, boolean sampleContention, String email) {
+			this.intendedStartNanos = intendedStartNanos;
+			this.seats = seats;
+			this.preference = preference;
+			this.abandon = abandon;
+			this.reserveDelayMillis = reserveDelayMillis;
+			this.sampleContention = sampleContention;
+			this.email = email;
+		}
+	}
+
+	public LoadGenerator(TrafficProfile profile, EventInput venue) {
+		this.profile = profile;
+		this.venue = venue;
+		this.threadMXBean = ManagementFactory.getThreadMXBean();
+		this.contentionSupported = threadMXBean.isThreadContentionMonitoringSupported();
+		if (contentionSupported) {
+			threadMXBean.setThreadContentionMonitoringEnabled(true);
+		}
+	}
+
+	public LoadReport run() throws InterruptedException {
+		ScheduledExecutorService holdScheduler = Executors.newScheduledThreadPool(4);
+		ExecutorService workers = Executors.newFixedThreadPool(profile.getWorkerThreads());
+		ScheduledExecutorService reserveTimer = Executors.newSingleThreadScheduledExecutor();
+		ConcurrentMap<UUID, SeatReservation> reservations = new ConcurrentHashMap<>();
+		TicketServiceImpl ticketService = new TicketServiceImpl(holdScheduler, new ConcurrentHashMap<>(),
+				new ConcurrentHashMap<>(), new HoldRegistry(), reservations);
+		Event event = ticketService.createEvent(venue);
+		long start = System.nanoTime();
+		try {
+			dispatch(ticketService, workers, reserveTimer, start);
+			while (pending.get() > 0) {
+				Thread.sleep(TICK_MILLIS);
+			}
+		} finally {
+			reserveTimer.shutdownNow();
+			workers.shutdown();
+			workers.awaitTermination(1, TimeUnit.MINUTES);
+		}
+		long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		List<String> violations = new ArrayList<>();
+		checkInvariants(ticketService.getEvent(event.getId()), reservations.values(), false, violations);
+		// let every abandoned hold expire and check nothing was lost on reclaim
+		Thread.sleep(TimeUnit.SECONDS.toMillis(venue.getHoldExpirationSeconds()) + 500);
+		checkInvariants(ticketService.getEvent(event.getId()), reservations.values(), true, violations);
+		holdScheduler.shutdownNow();
+
+		List<LoadReport.OperationStats> operations = Arrays.asList(
+				new LoadReport.OperationStats("hold", holdLatency),
+				new LoadReport.OperationStats("hold-e2e", holdE2eLatency),
+				new LoadReport.OperationStats("rejected", rejectLatency),
+				new LoadReport.OperationStats("reserve", reserveLatency));
+		return new LoadReport(elapsedMillis, counters, operations, violations);
+	}
+
+	private void dispatch(TicketService ticketService, ExecutorService workers,
+			ScheduledExecutorService reserveTimer, long start) throws InterruptedException {
+		Random random = new Random(profile.getSeed());
+		long end = start + TimeUnit.SECONDS.toNanos(profile.getDurationSeconds());
+		double owed = 0;
+		long last = start;
+		long customer = 0;
+		while (true) {
+			long now = System.nanoTime();
+			if (now >= end) {
+				break;
+			}
+			double second = (now - start) / 1e9;
+			owed += profile.rateAt(second) * (now - last) / 1e9;
+			last = now;
+			for (; owed >= 1; owed--) {
+				customer++;
+				Arrival arrival = new Arrival(now, profile.nextSeatCount(random), profile.nextLevelPreference(random),
+						profile.nextAbandon(random), profile.nextReserveDelayMillis(random),
+						customer % CONTENTION_SAMPLE_RATE == 0, "customer" + customer + "@loadtest.com");
+				pending.incrementAndGet();
+				workers.execute(() -> hold(ticketService, workers, reserveTimer, arrival));
+			}
+			Thread.sleep(TICK_MILLIS);
+		}
+	}
+
+	private void hold(TicketService ticketService, ExecutorService workers, ScheduledExecutorService reserveTimer,
+			Arrival arrival) {
+		boolean handedOff = false;
+		try {
+			counters.holdRequests.increment();
+			long begin = System.nanoTime();
+			SeatHold hold;
+			try {
+				hold = measure(arrival.sampleContention, () -> ticketService.findAndHoldSeats(arrival.seats,
+						arrival.preference.getMinLevel(), arrival.preference.getMaxLevel(), arrival.email));
+			} catch (SeatHoldException ex) {
+				counters.holdsRejected.increment();
+				rejectLatency.record(System.nanoTime() - begin);
+				return;
+			}
+			long done = System.nanoTime();
+			holdLatency.record(done - begin);
+			holdE2eLatency.record(done - arrival.intendedStartNanos);
+			counters.holdsCreated.increment();
+			if (arrival.abandon) {
+				counters.holdsAbandoned.increment();
+				return;
+			}
+			reserveTimer.schedule(() -> workers.execute(() -> reserve(ticketService, arrival, hold)),
+					arrival.reserveDelayMillis, TimeUnit.MILLISECONDS);
+			handedOff = true;
+		} catch (RuntimeException ex) {
+			counters.errors.increment();
+		} finally {
+			if (!handedOff) {
+				pending.decrementAndGet();
+			}
+		}
+	}
+
+	private void reserve(TicketService ticketService, Arrival arrival, SeatHold hold) {
+		try {
+			counters.reservesAttempted.increment();
+			long begin = System.nanoTime();
+			measure(arrival.sampleContention, () -> ticketService.reserveSeats(hold.getId(), arrival.email));
+			reserveLatency.record(System.nanoTime() - begin);
+			counters.reservesCompleted.increment();
+			counters.seatsReserved.add(hold.getSeatIds().size());
+		} catch (SeatReservationException ex) {
+			counters.reservesFailed.increment();
+		} catch (RuntimeException ex) {
+			counters.errors.increment();
+		} finally {
+			pending.decrementAndGet();
+		}
+	}
+
+	/**
+	 * Runs the call and, if sampled, accounts for the time the thread spent
+	 * blocked or waiting (i.e. parked on an event lock) while inside it
+	 */
+	private <T> T measure(boolean sample, Supplier<T> call) {
+		if (!sample || !contentionSupported) {
+			return call.get();
+		}
+		long threadId = Thread.currentThread().getId();
+		long before = lockTimeMillis(threadMXBean.getThreadInfo(threadId));
+		try {
+			return call.get();
+		} finally {
+			long waited = lockTimeMillis(threadMXBean.getThreadInfo(threadId)) - before;
+			counters.sampledCalls.increment();
+			if (waited > 0) {
+				counters.contendedCalls.increment();
+				counters.lockWaitMillis.add(waited);
+			}
+		}
+	}
+
+	private static long lockTimeMillis(ThreadInfo info) {
+		return info == null ? 0 : Math.max(info.getBlockedTime(), 0) + Math.max(info.getWaitedTime(), 0);
+	}
+
+	/**
+	 * Oversell and accounting checks on the final event state
+	 *
+	 * @param drained
+	 *            true once all holds had a chance to expire, in which case no
+	 *            seat may be left on hold
+	 */
+	static void checkInvariants(Event event, Iterable<SeatReservation> reservations, boolean drained,
+			List<String> violations) {
+		String phase = drained ? "after expiry: " : "after run: ";
+		Map<SeatState, Integer> byState = new EnumMap<>(SeatState.class);
+		for (SeatState state : SeatState.values()) {
+			byState.put(state, 0);
+		}
+		for (Seat seat : event.getSeats().values()) {
+			byState.merge(seat.getState(), 1, Integer::sum);
+		}
+		int total = event.getTotalSeatCount(Optional.empty());
+		int counted = byState.values().stream().mapToInt(Integer::intValue).sum();
+		if (counted != total) {
+			violations.add(phase + "booked + held + available = " + counted + " but venue has " + total);
+		}
+		if (byState.get(SeatState.AVAILABLE) != event.getAvailableSeatCount(Optional.empty())) {
+			violations.add(phase + "available count " + event.getAvailableSeatCount(Optional.empty())
+					+ " does not match seat map " + byState.get(SeatState.AVAILABLE));
+		}
+		Set<SeatIdentifier> reserved = new HashSet<>();
+		for (SeatReservation reservation : reservations) {
+			for (SeatIdentifier seatId : reservation.getSeatIds()) {
+				if (!reserved.add(seatId)) {
+					violations.add(phase + seatId + " reserved more than once");
+				}
+				Seat seat = event.getSeats().get(seatId);
+				if (seat == null || seat.getState() != SeatState.BOOKED) {
+					violations.add(phase + seatId + " reserved but not booked");
+				}
+			}
+		}
+		if (reserved.size() != byState.get(SeatState.BOOKED)) {
+			violations.add(phase + byState.get(SeatState.BOOKED) + " seats booked but " + reserved.size()
+					+ " seats reserved");
+		}
+		if (drained && byState.get(SeatState.ON_HOLD) != 0) {
+			violations.add(phase + byState.get(SeatState.ON_HOLD) + " seats never reclaimed");
+		}
+	}
+
+	/**
+	 * 4 level, 6250 seat venue
+	 */
+	static EventInput defaultVenue(long holdExpirationSeconds) {
+		List<LevelInput> levels = Arrays.asList(new LevelInput("Orchestra", 100.0, 25, 50),
+				new LevelInput("Main", 75.0, 20, 100), new LevelInput("Balcony 1", 50.0, 15, 100),
+				new LevelInput("Balcony 2", 40.0, 15, 100));
+		return new EventInput("Load test", ZonedDateTime.now().plusDays(30), 120, levels, holdExpirationSeconds);
+	}
+
+	public static void main(String[] args) throws InterruptedException {
+		TrafficProfile.Builder builder = TrafficProfile.builder()
+				.levelPreference(Optional.of(1), Optional.of(1), 4)
+				.levelPreference(Optional.of(2), Optional.of(3), 3)
+				.levelPreference(Optional.empty(), Optional.empty(), 3);
+		long holdExpirationSeconds = 10;
+		double spikeRate = 2000;
+		int spikeStart = 5, spikeDuration = 10;
+		for (String arg : args) {
+			String[] kv = arg.split("=", 2);
+			if (kv.length != 2) {
+				throw new IllegalArgumentException("Expected key=value: " + arg);
+			}
+			switch (kv[0]) {
+			case "duration":
+				builder.durationSeconds(Integer.parseInt(kv[1]));
+				break;
+			case "baseRate":
+				builder.baseRate(Double.parseDouble(kv[1]));
+				break;
+			case "spikeRate":
+				spikeRate = Double.parseDouble(kv[1]);
+				break;
+			case "spikeStart":
+				spikeStart = Integer.parseInt(kv[1]);
+				break;
+			case "spikeDuration":
+				spikeDuration = Integer.parseInt(kv[1]);
+				break;
+			case "abandon":
+				builder.holdAbandonRatio(Double.parseDouble(kv[1]));
+				break;
+			case "reserveMedianMs":
+				builder.reserveDelay(Long.parseLong(kv[1]), 0.75);
+				break;
+			case "maxSeats":
+				builder.maxSeatsPerRequest(Integer.parseInt(kv[1]));
+				break;
+			case "workers":
+				builder.workerThreads(Integer.parseInt(kv[1]));
+				break;
+			case "holdExpiration":
+				holdExpirationSeconds = Long.parseLong(kv[1]);
+				break;
+			case "seed":
+				builder.seed(Long.parseLong(kv[1]));
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown option: " + kv[0]);
+			}
+		}
+		TrafficProfile profile = builder.spike(spikeStart, spikeDuration, 2, spikeRate).build();
+		System.out.println(profile);
+		LoadReport report = new LoadGenerator(profile, defaultVenue(holdExpirationSeconds)).run();
+		System.out.println(report);
+		System.exit(report.isOversold() ? 1 : 0);
+	}
+}
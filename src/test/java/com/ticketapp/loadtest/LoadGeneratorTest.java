@@ -0,0 +1,73 @@
+package com.ticketapp.loadtest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.Optional;
+
+import org.junit.Test;
+
+import com.ticketapp.bean.input.EventInput;
+import com.ticketapp.bean.input.LevelInput;
+import com.ticketapp.util.ThreadMode;
+
+public class LoadGeneratorTest {
+
+	private static final long TIMEOUT = 60000;
+
+	@Test
+	public void testTrafficProfileShouldRampSpike() {
+		TrafficProfile profile = TrafficProfile.builder().baseRate(10).spike(10, 10, 2, 110).build();
+		assertEquals(10, profile.rateAt(5), 0.001);
+		assertEquals(10, profile.rateAt(10), 0.001);
+		assertEquals(60, profile.rateAt(11), 0.001);
+		assertEquals(110, profile.rateAt(15), 0.001);
+		assertEquals(60, profile.rateAt(19), 0.001);
+		assertEquals(10, profile.rateAt(20), 0.001);
+	}
+
+	@Test
+	public void testHistogramPercentiles() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (int i = 1; i <= 1000; i++) {
+			histogram.record(i * 1000000L);
+		}
+		assertEquals(1000, histogram.getCount());
+		assertEquals(500, histogram.getPercentileMillis(50), 500 * 0.07);
+		assertEquals(990, histogram.getPercentileMillis(99), 990 * 0.07);
+		assertEquals(500.5, histogram.getMeanMillis(), 0.001);
+	}
+
+	@Test(timeout = TIMEOUT)
+	public void testOnSaleSpikeShouldNotOversell() throws InterruptedException {
+		TrafficProfile profile = TrafficProfile.builder().durationSeconds(3).baseRate(100).spike(1, 1, 0, 1000)
+				.holdAbandonRatio(0.3).reserveDelay(50, 0.5).maxSeatsPerRequest(4)
+				.levelPreference(Optional.of(1), Optional.of(1), 1)
+				.levelPreference(Optional.empty(), Optional.empty(), 1).workerThreads(8).build();
+		EventInput venue = new EventInput("load", ZonedDateTime.now(), 60,
+				Arrays.asList(new LevelInput("l1", 10.0, 10, 10), new LevelInput("l2", 5.0, 10, 20)), 1);
+		LoadReport report = new LoadGenerator(profile, venue).run();
+		assertFalse(report.toString(), report.isOversold());
+		assertEquals(0, report.getErrors());
+		assertTrue(report.getHoldsCreated() > 0);
+		assertTrue(report.getReservesCompleted() > 0);
+		assertTrue(report.getSeatsReserved() <= 300);
+		assertEquals(report.getHoldRequests(), report.getHoldsCreated() + report.getHoldsRejected());
+	}
+
+	@Test(timeout = TIMEOUT)
+	public void testThreadModeBenchmarkShouldNotOversell() throws InterruptedException {
+		for (ThreadMode mode : ThreadMode.values()) {
+			if (!mode.isAvailable()) {
+				continue;
+			}
+			ThreadModeBenchmark.Result result = new ThreadModeBenchmark(mode, 500, 50, 2, 5).run();
+			assertTrue(result.toString(), result.getViolations().isEmpty());
+			assertEquals(0, result.getErrors());
+			assertEquals(1000, result.getReserved());
+		}
+	}
+}
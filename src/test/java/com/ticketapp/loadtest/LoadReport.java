@@ -0,0 +1,209 @@
+package com.ticketapp.loadtest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Result of a {@link LoadGenerator} run. Object is immutable.
+ */
+public final class LoadReport {
+
+	/**
+	 * Latency summary of a single operation type
+	 */
+	public static final class OperationStats {
+		private final String name;
+		private final long count;
+		private final double meanMillis;
+		private final double p50Millis;
+		private final double p90Millis;
+		private final double p99Millis;
+		private final double p999Millis;
+		private final double maxMillis;
+
+		OperationStats(String name, LatencyHistogram histogram) {
+			this.name = name;
+			this.count = histogram.getCount();
+			this.meanMillis = histogram.getMeanMillis();
+			this.p50Millis = histogram.getPercentileMillis(50);
+			this.p90Millis = histogram.getPercentileMillis(90);
+			this.p99Millis = histogram.getPercentileMillis(99);
+			this.p999Millis = histogram.getPercentileMillis(99.9);
+			this.maxMillis = histogram.getPercentileMillis(100);
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public long getCount() {
+			return count;
+		}
+
+		public double getMeanMillis() {
+			return meanMillis;
+		}
+
+		public double getP50Millis() {
+			return p50Millis;
+		}
+
+		public double getP90Millis() {
+			return p90Millis;
+		}
+
+		public double getP99Millis() {
+			return p99Millis;
+		}
+
+		public double getP999Millis() {
+			return p999Millis;
+		}
+
+		public double getMaxMillis() {
+			return maxMillis;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%-10s n=%-8d mean=%8.3fms p50=%8.3fms p90=%8.3fms p99=%8.3fms p99.9=%8.3fms max=%8.3fms",
+					name, count, meanMillis, p50Millis, p90Millis, p99Millis, p999Millis, maxMillis);
+		}
+	}
+
+	private final long elapsedMillis;
+	private final long holdRequests;
+	private final long holdsCreated;
+	private final long holdsRejected;
+	private final long holdsAbandoned;
+	private final long reservesAttempted;
+	private final long reservesCompleted;
+	private final long reservesFailed;
+	private final long errors;
+	private final long seatsReserved;
+	private final List<OperationStats> operations;
+	private final long lockWaitMillis;
+	private final long contendedCalls;
+	private final long sampledCalls;
+	private final List<String> invariantViolations;
+
+	LoadReport(long elapsedMillis, LoadGenerator.Counters counters, List<OperationStats> operations,
+			List<String> invariantViolations) {
+		this.elapsedMillis = elapsedMillis;
+		this.holdRequests = counters.holdRequests.sum();
+		this.holdsCreated = counters.holdsCreated.sum();
+		this.holdsRejected = counters.holdsRejected.sum();
+		this.holdsAbandoned = counters.holdsAbandoned.sum();
+		this.reservesAttempted = counters.reservesAttempted.sum();
+		this.reservesCompleted = counters.reservesCompleted.sum();
+		this.reservesFailed = counters.reservesFailed.sum();
+		this.errors = counters.errors.sum();
+		this.seatsReserved = counters.seatsReserved.sum();
+		this.lockWaitMillis = counters.lockWaitMillis.sum();
+		this.contendedCalls = counters.contendedCalls.sum();
+		this.sampledCalls = counters.sampledCalls.sum();
+		this.operations = Collections.unmodifiableList(new ArrayList<>(operations));
+		this.invariantViolations = Collections.unmodifiableList(new ArrayList<>(invariantViolations));
+	}
+
+	public long getElapsedMillis() {
+		return elapsedMillis;
+	}
+
+	public long getHoldRequests() {
+		return holdRequests;
+	}
+
+	public long getHoldsCreated() {
+		return holdsCreated;
+	}
+
+	public long getHoldsRejected() {
+		return holdsRejected;
+	}
+
+	public long getHoldsAbandoned() {
+		return holdsAbandoned;
+	}
+
+	public long getReservesAttempted() {
+		return reservesAttempted;
+	}
+
+	public long getReservesCompleted() {
+		return reservesCompleted;
+	}
+
+	public long getReservesFailed() {
+		return reservesFailed;
+	}
+
+	public long getErrors() {
+		return errors;
+	}
+
+	public long getSeatsReserved() {
+		return seatsReserved;
+	}
+
+	public List<OperationStats> getOperations() {
+		return operations;
+	}
+
+	/**
+	 * Total time the calling threads spent blocked or waiting inside service
+	 * calls. The service does not sleep, so this is time spent on event locks.
+	 */
+	public long getLockWaitMillis() {
+		return lockWaitMillis;
+	}
+
+	/**
+	 * Fraction of sampled service calls which had to wait for a lock at least
+	 * once, -1 if the JVM does not support thread contention monitoring
+	 */
+	public double getContendedRatio() {
+		return sampledCalls == 0 ? -1 : contendedCalls / (double) sampledCalls;
+	}
+
+	/**
+	 * Completed operations (holds + reserves + rejections) per second
+	 */
+	public double getThroughput() {
+		long ops = holdRequests + reservesAttempted;
+		return elapsedMillis == 0 ? 0 : ops * 1000.0 / elapsedMillis;
+	}
+
+	public List<String> getInvariantViolations() {
+		return invariantViolations;
+	}
+
+	public boolean isOversold() {
+		return !invariantViolations.isEmpty();
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder("LoadReport\n");
+		builder.append(String.format("  elapsed: %dms, throughput: %.1f ops/s%n", elapsedMillis, getThroughput()));
+		builder.append(String.format("  holds: requested=%d created=%d rejected=%d abandoned=%d%n", holdRequests,
+				holdsCreated, holdsRejected, holdsAbandoned));
+		builder.append(String.format("  reserves: attempted=%d completed=%d failed=%d seats=%d, errors=%d%n",
+				reservesAttempted, reservesCompleted, reservesFailed, seatsReserved, errors));
+		for (OperationStats stats : operations) {
+			builder.append("  ").append(stats).append("\n");
+		}
+		builder.append(String.format("  lock contention: wait=%dms contended=%.2f%%%n", lockWaitMillis,
+				getContendedRatio() * 100));
+		if (invariantViolations.isEmpty()) {
+			builder.append("  invariants: OK");
+		} else {
+			builder.append("  invariants: VIOLATED");
+			for (String violation : invariantViolations) {
+				builder.append("\n    ").append(violation);
+			}
+		}
+		return builder.toString();
+	}
+}
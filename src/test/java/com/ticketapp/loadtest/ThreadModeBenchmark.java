@@ -0,0 +1,245 @@
+package com.ticketapp.loadtest;
+
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.ticketapp.bean.SeatHold;
+import com.ticketapp.bean.SeatReservation;
+import com.ticketapp.bean.input.EventInput;
+import com.ticketapp.bean.input.LevelInput;
+import com.ticketapp.service.HoldIdAllocator;
+import com.ticketapp.service.HoldRegistry;
+import com.ticketapp.service.TicketServiceImpl;
+import com.ticketapp.service.audit.AuditLog;
+import com.ticketapp.service.audit.AuditSink;
+import com.ticketapp.service.exception.SeatHoldException;
+import com.ticketapp.service.exception.SeatReservationException;
+import com.ticketapp.service.pricing.DynamicPricer;
+import com.ticketapp.service.quota.CustomerQuotaLimiter;
+import com.ticketapp.util.ThreadMode;
+
+/**
+ * Closed loop comparison of {@link ThreadMode}s: every caller is started at
+ * once and makes a few hold, wait, reserve rounds. The wait stands for the
+ * blocking part of a real request, e.g. a payment or persistence call, during
+ * which a platform thread is lost to everyone else while a virtual thread
+ * gives its carrier back. Latency is measured from the moment all callers
+ * are released, so time queued for a platform thread counts. Callers are
+ * spread over events of {@value #CALLERS_PER_EVENT}, as on a node hosting many
+ * shows, so that no single event lock is the bottleneck.
+ * <p>
+ * Needs JDK 21 for the virtual mode. Run from the command line with
+ * <code>key=value</code> overrides, for example:
+ * <code>ThreadModeBenchmark callers=20000 platformThreads=200 waitMillis=50</code>
+ */
+public final class ThreadModeBenchmark {
+
+	static final int CALLERS_PER_EVENT = 100;
+
+	private final ThreadMode mode;
+	private final int callers;
+	private final int platformThreads;
+	private final int rounds;
+	private final long waitMillis;
+
+	private final LatencyHistogram roundLatency = new LatencyHistogram();
+	private final LongAdder holds = new LongAdder();
+	private final LongAdder rejected = new LongAdder();
+	private final LongAdder reserved = new LongAdder();
+	private final LongAdder errors = new LongAdder();
+	/**
+	 * When the callers were released, seen by them through the start latch
+	 */
+	private long startedAt;
+
+	public ThreadModeBenchmark(ThreadMode mode, int callers, int platformThreads, int rounds, long waitMillis) {
+		this.mode = mode;
+		this.callers = callers;
+		this.platformThreads = platformThreads;
+		this.rounds = rounds;
+		this.waitMillis = waitMillis;
+	}
+
+	public Result run() throws InterruptedException {
+		ScheduledExecutorService holdScheduler = mode.newScheduler(4);
+		ExecutorService requests = mode.newRequestExecutor(platformThreads);
+		// the writer waits like a persistence thread would, records are not kept
+		AuditSink discard = record -> {
+		};
+		AuditLog audit = new AuditLog(1 << 16, 1, discard, mode.newThreadFactory("audit-writer-"));
+		ConcurrentMap<UUID, SeatReservation> reservations = new ConcurrentHashMap<>();
+		TicketServiceImpl ticketService = new TicketServiceImpl(holdScheduler, new ConcurrentHashMap<>(),
+				new ConcurrentHashMap<>(), new HoldRegistry(), reservations, CustomerQuotaLimiter.unlimited(),
+				new HoldIdAllocator(), DynamicPricer.fixed(), audit);
+		int[] eventIds = new int[(callers + CALLERS_PER_EVENT - 1) / CALLERS_PER_EVENT];
+		for (int e = 0; e < eventIds.length; e++) {
+			eventIds[e] = ticketService.createEvent(venue(CALLERS_PER_EVENT * rounds * 2)).getId();
+		}
+		CountDownLatch start = new CountDownLatch(1);
+		CountDownLatch done = new CountDownLatch(callers);
+		long begin;
+		try {
+			for (int c = 0; c < callers; c++) {
+				String email = "caller" + c + "@benchmark.com";
+				int eventId = eventIds[c / CALLERS_PER_EVENT];
+				requests.execute(() -> {
+					try {
+						start.await();
+						call(ticketService, eventId, email);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					} finally {
+						done.countDown();
+					}
+				});
+			}
+			begin = System.nanoTime();
+			startedAt = begin;
+			start.countDown();
+			done.await();
+		} finally {
+			requests.shutdownNow();
+			holdScheduler.shutdownNow();
+			audit.close();
+		}
+		long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin);
+		List<String> violations = new ArrayList<>();
+		for (int eventId : eventIds) {
+			LoadGenerator.checkInvariants(ticketService.getEvent(eventId),
+					reservations.values().stream().filter(reservation -> reservation.getEventId() == eventId)::iterator,
+					false, violations);
+		}
+		return new Result(elapsedMillis, violations);
+	}
+
+	private void call(TicketServiceImpl ticketService, int eventId, String email) throws InterruptedException {
+		long roundStart = startedAt;
+		for (int r = 0; r < rounds; r++) {
+			try {
+				SeatHold hold = ticketService.findAndHoldSeats(eventId, 2, Optional.empty(), Optional.empty(), email);
+				holds.increment();
+				Thread.sleep(waitMillis);
+				ticketService.reserveSeats(hold.getId(), email);
+				reserved.increment();
+			} catch (SeatHoldException | SeatReservationException ex) {
+				rejected.increment();
+			} catch (RuntimeException ex) {
+				errors.increment();
+			}
+			long now = System.nanoTime();
+			roundLatency.record(now - roundStart);
+			roundStart = now;
+		}
+	}
+
+	/**
+	 * Two levels of rows of 50, at least the given seats
+	 */
+	private static EventInput venue(int seats) {
+		int rows = (seats + 99) / 100;
+		return new EventInput("benchmark", ZonedDateTime.now().plusDays(30), 120,
+				Arrays.asList(new LevelInput("l1", 50.0, rows, 50), new LevelInput("l2", 25.0, rows, 50)), 60);
+	}
+
+	public final class Result {
+		private final long elapsedMillis;
+		private final List<String> violations;
+
+		Result(long elapsedMillis, List<String> violations) {
+			this.elapsedMillis = elapsedMillis;
+			this.violations = violations;
+		}
+
+		public long getElapsedMillis() {
+			return elapsedMillis;
+		}
+
+		public long getReserved() {
+			return reserved.sum();
+		}
+
+		public long getErrors() {
+			return errors.sum();
+		}
+
+		public List<String> getViolations() {
+			return violations;
+		}
+
+		/**
+		 * @return rounds completed per second
+		 */
+		public double getThroughput() {
+			return roundLatency.getCount() * 1000.0 / Math.max(elapsedMillis, 1);
+		}
+
+		public double getP99Millis() {
+			return roundLatency.getPercentileMillis(99);
+		}
+
+		@Override
+		public String toString() {
+			return new StringBuilder(mode.toString()).append(": callers: ").append(callers).append(", rounds: ")
+					.append(roundLatency.getCount()).append(", elapsed: ").append(elapsedMillis).append("ms, throughput: ")
+					.append(String.format("%.0f/s", getThroughput())).append(", round p50: ")
+					.append(roundLatency.getPercentileMillis(50)).append("ms, p99: ").append(getP99Millis())
+					.append("ms, max: ").append(roundLatency.getPercentileMillis(100)).append("ms, holds: ")
+					.append(holds.sum()).append(", reserved: ").append(reserved.sum()).append(", rejected: ")
+					.append(rejected.sum()).append(", errors: ").append(errors.sum()).append(", violations: ")
+					.append(violations).toString();
+		}
+	}
+
+	public static void main(String[] args) throws InterruptedException {
+		int callers = 10000, platformThreads = 200, rounds = 3;
+		long waitMillis = 20;
+		List<ThreadMode> modes = Arrays.asList(ThreadMode.values());
+		for (String arg : args) {
+			String[] kv = arg.split("=", 2);
+			if (kv.length != 2) {
+				throw new IllegalArgumentException("Expected key=value: " + arg);
+			}
+			switch (kv[0]) {
+			case "callers":
+				callers = Integer.parseInt(kv[1]);
+				break;
+			case "platformThreads":
+				platformThreads = Integer.parseInt(kv[1]);
+				break;
+			case "rounds":
+				rounds = Integer.parseInt(kv[1]);
+				break;
+			case "waitMillis":
+				waitMillis = Long.parseLong(kv[1]);
+				break;
+			case "mode":
+				modes = Arrays.asList(ThreadMode.valueOf(kv[1].toUpperCase()));
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown option: " + kv[0]);
+			}
+		}
+		boolean failed = false;
+		for (ThreadMode mode : modes) {
+			if (!mode.isAvailable()) {
+				System.out.println(mode + ": not available on JDK " + System.getProperty("java.version"));
+				continue;
+			}
+			Result result = new ThreadModeBenchmark(mode, callers, platformThreads, rounds, waitMillis).run();
+			System.out.println(result);
+			failed |= !result.getViolations().isEmpty();
+		}
+		System.exit(failed ? 1 : 0);
+	}
+}
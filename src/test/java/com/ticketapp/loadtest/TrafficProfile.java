@@ -0,0 +1,266 @@
+package com.ticketapp.loadtest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+/**
+ * Describes the shape of the traffic replayed by {@link LoadGenerator}. Object
+ * is immutable, use {@link Builder} to create one.
+ * <p>
+ * <b>Arrival rate:</b> requests arrive at <code>baseRate</code> per second
+ * except during the on-sale spike, which ramps linearly up to
+ * <code>spikeRate</code> over <code>spikeRampSeconds</code>, stays there and
+ * then ramps back down over the same period.
+ * <p>
+ * <b>Customer behaviour:</b> every arrival is one customer asking for
+ * 1..<code>maxSeatsPerRequest</code> seats within one of the weighted
+ * {@link LevelPreference}s. A successful hold is abandoned with probability
+ * <code>holdAbandonRatio</code>, otherwise it is reserved after a delay drawn
+ * from a log-normal distribution (checkout time is long tailed).
+ */
+public final class TrafficProfile {
+
+	private final int durationSeconds;
+	private final double baseRate;
+	private final int spikeStartSecond;
+	private final int spikeDurationSeconds;
+	private final int spikeRampSeconds;
+	private final double spikeRate;
+	private final double holdAbandonRatio;
+	private final long reserveDelayMedianMillis;
+	private final double reserveDelaySigma;
+	private final int maxSeatsPerRequest;
+	private final List<LevelPreference> levelPreferences;
+	private final int totalPreferenceWeight;
+	private final int workerThreads;
+	private final long seed;
+
+	private TrafficProfile(Builder builder) {
+		this.durationSeconds = builder.durationSeconds;
+		this.baseRate = builder.baseRate;
+		this.spikeStartSecond = builder.spikeStartSecond;
+		this.spikeDurationSeconds = builder.spikeDurationSeconds;
+		this.spikeRampSeconds = builder.spikeRampSeconds;
+		this.spikeRate = builder.spikeRate;
+		this.holdAbandonRatio = builder.holdAbandonRatio;
+		this.reserveDelayMedianMillis = builder.reserveDelayMedianMillis;
+		this.reserveDelaySigma = builder.reserveDelaySigma;
+		this.maxSeatsPerRequest = builder.maxSeatsPerRequest;
+		this.workerThreads = builder.workerThreads;
+		this.seed = builder.seed;
+		List<LevelPreference> prefs = new ArrayList<>(builder.levelPreferences);
+		if (prefs.isEmpty()) {
+			prefs.add(new LevelPreference(Optional.empty(), Optional.empty(), 1));
+		}
+		this.levelPreferences = Collections.unmodifiableList(prefs);
+		this.totalPreferenceWeight = prefs.stream().mapToInt(LevelPreference::getWeight).sum();
+	}
+
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * Arrival rate (requests per second) at the given offset from the start of
+	 * the run
+	 */
+	public double rateAt(double second) {
+		double spikeEnd = spikeStartSecond + spikeDurationSeconds;
+		if (spikeDurationSeconds <= 0 || second < spikeStartSecond || second >= spikeEnd) {
+			return baseRate;
+		}
+		double ramp = Math.max(spikeRampSeconds, 0);
+		double factor = 1.0;
+		if (ramp > 0) {
+			double sinceStart = second - spikeStartSecond;
+			double untilEnd = spikeEnd - second;
+			factor = Math.min(1.0, Math.min(sinceStart, untilEnd) / ramp);
+		}
+		return baseRate + (spikeRate - baseRate) * factor;
+	}
+
+	int nextSeatCount(Random random) {
+		return 1 + random.nextInt(maxSeatsPerRequest);
+	}
+
+	LevelPreference nextLevelPreference(Random random) {
+		int pick = random.nextInt(totalPreferenceWeight);
+		for (LevelPreference preference : levelPreferences) {
+			pick -= preference.getWeight();
+			if (pick < 0) {
+				return preference;
+			}
+		}
+		return levelPreferences.get(levelPreferences.size() - 1);
+	}
+
+	boolean nextAbandon(Random random) {
+		return random.nextDouble() < holdAbandonRatio;
+	}
+
+	long nextReserveDelayMillis(Random random) {
+		if (reserveDelayMedianMillis <= 0) {
+			return 0;
+		}
+		return Math.round(reserveDelayMedianMillis * Math.exp(reserveDelaySigma * random.nextGaussian()));
+	}
+
+	public int getDurationSeconds() {
+		return durationSeconds;
+	}
+
+	public double getBaseRate() {
+		return baseRate;
+	}
+
+	public double getSpikeRate() {
+		return spikeRate;
+	}
+
+	public double getHoldAbandonRatio() {
+		return holdAbandonRatio;
+	}
+
+	public List<LevelPreference> getLevelPreferences() {
+		return levelPreferences;
+	}
+
+	public int getWorkerThreads() {
+		return workerThreads;
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+
+	@Override
+	public String toString() {
+		return new StringBuilder("TrafficProfile[duration: ").append(durationSeconds).append("s, baseRate: ")
+				.append(baseRate).append("/s, spike: ").append(spikeRate).append("/s @").append(spikeStartSecond)
+				.append("s for ").append(spikeDurationSeconds).append("s, abandon: ").append(holdAbandonRatio)
+				.append(", reserveDelayMedian: ").append(reserveDelayMedianMillis).append("ms, workers: ")
+				.append(workerThreads).append("]").toString();
+	}
+
+	/**
+	 * A weighted level range a customer is interested in. Empty bounds mean no
+	 * restriction, same as {@link com.ticketapp.service.TicketService}
+	 */
+	public static final class LevelPreference {
+		private final Optional<Integer> minLevel;
+		private final Optional<Integer> maxLevel;
+		private final int weight;
+
+		public LevelPreference(Optional<Integer> minLevel, Optional<Integer> maxLevel, int weight) {
+			if (weight <= 0) {
+				throw new IllegalArgumentException("Level preference weight should be > 0: " + weight);
+			}
+			this.minLevel = minLevel;
+			this.maxLevel = maxLevel;
+			this.weight = weight;
+		}
+
+		public Optional<Integer> getMinLevel() {
+			return minLevel;
+		}
+
+		public Optional<Integer> getMaxLevel() {
+			return maxLevel;
+		}
+
+		public int getWeight() {
+			return weight;
+		}
+	}
+
+	public static final class Builder {
+		private int durationSeconds = 30;
+		private double baseRate = 50;
+		private int spikeStartSecond = 5;
+		private int spikeDurationSeconds = 10;
+		private int spikeRampSeconds = 2;
+		private double spikeRate = 2000;
+		private double holdAbandonRatio = 0.3;
+		private long reserveDelayMedianMillis = 500;
+		private double reserveDelaySigma = 0.75;
+		private int maxSeatsPerRequest = 4;
+		private final List<LevelPreference> levelPreferences = new ArrayList<>();
+		private int workerThreads = Runtime.getRuntime().availableProcessors() * 4;
+		private long seed = 42;
+
+		private Builder() {
+		}
+
+		public Builder durationSeconds(int durationSeconds) {
+			this.durationSeconds = durationSeconds;
+			return this;
+		}
+
+		public Builder baseRate(double baseRate) {
+			this.baseRate = baseRate;
+			return this;
+		}
+
+		/**
+		 * On-sale spike: ramps up from the base rate to <code>rate</code> in
+		 * <code>rampSeconds</code> starting at <code>startSecond</code>
+		 */
+		public Builder spike(int startSecond, int durationSeconds, int rampSeconds, double rate) {
+			this.spikeStartSecond = startSecond;
+			this.spikeDurationSeconds = durationSeconds;
+			this.spikeRampSeconds = rampSeconds;
+			this.spikeRate = rate;
+			return this;
+		}
+
+		public Builder noSpike() {
+			this.spikeDurationSeconds = 0;
+			return this;
+		}
+
+		public Builder holdAbandonRatio(double holdAbandonRatio) {
+			this.holdAbandonRatio = holdAbandonRatio;
+			return this;
+		}
+
+		/**
+		 * Log-normal time between hold and reserve
+		 */
+		public Builder reserveDelay(long medianMillis, double sigma) {
+			this.reserveDelayMedianMillis = medianMillis;
+			this.reserveDelaySigma = sigma;
+			return this;
+		}
+
+		public Builder maxSeatsPerRequest(int maxSeatsPerRequest) {
+			this.maxSeatsPerRequest = maxSeatsPerRequest;
+			return this;
+		}
+
+		public Builder levelPreference(Optional<Integer> minLevel, Optional<Integer> maxLevel, int weight) {
+			this.levelPreferences.add(new LevelPreference(minLevel, maxLevel, weight));
+			return this;
+		}
+
+		public Builder workerThreads(int workerThreads) {
+			this.workerThreads = workerThreads;
+			return this;
+		}
+
+		public Builder seed(long seed) {
+			this.seed = seed;
+			return this;
+		}
+
+		public TrafficProfile build() {
+			if (durationSeconds <= 0 || baseRate < 0 || spikeRate < 0 || maxSeatsPerRequest < 1 || workerThreads < 1
+					|| holdAbandonRatio < 0 || holdAbandonRatio > 1) {
+				throw new IllegalArgumentException("Invalid traffic profile");
+			}
+			return new TrafficProfile(this);
+		}
+	}
+}
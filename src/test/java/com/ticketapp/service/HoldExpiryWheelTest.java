@@ -0,0 +1,89 @@
+package com.ticketapp.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ticketapp.service.HoldExpiryWheel.IntList;
+
+public class HoldExpiryWheelTest {
+
+	private static final long START = 1000000;
+	private HoldExpiryWheel wheel;
+	private Map<Integer, Long> deadlines;
+
+	@Before
+	public void before() {
+		wheel = new HoldExpiryWheel(100, 8, START);
+		deadlines = new HashMap<>();
+	}
+
+	private IntList advance(long now) {
+		IntList expired = new IntList();
+		assertTrue(wheel.advance(now, holdId -> deadlines.getOrDefault(holdId, -1L), expired));
+		return expired;
+	}
+
+	private void schedule(int holdId, long deadline) {
+		deadlines.put(holdId, deadline);
+		wheel.schedule(holdId);
+	}
+
+	@Test
+	public void testShouldExpireAtDeadline() {
+		schedule(1, START + 250);
+		assertEquals(0, advance(START + 200).size());
+		assertEquals(0, advance(START + 299).size());
+		IntList expired = advance(START + 300);
+		assertEquals(1, expired.size());
+		assertEquals(1, expired.get(0));
+		assertEquals(0, advance(START + 1000).size());
+	}
+
+	@Test
+	public void testShouldExpireImmediatelyIfPastDeadline() {
+		advance(START + 500);
+		schedule(1, START + 100);
+		assertEquals(1, advance(START + 500).size());
+	}
+
+	@Test
+	public void testShouldNotExpireExtendedHold() {
+		schedule(1, START + 200);
+		deadlines.put(1, START + 600);
+		assertEquals(0, advance(START + 500).size());
+		assertEquals(1, advance(START + 600).size());
+	}
+
+	@Test
+	public void testShouldDropRemovedHold() {
+		schedule(1, START + 200);
+		deadlines.remove(1);
+		assertEquals(0, advance(START + 500).size());
+	}
+
+	@Test
+	public void testShouldHandleDeadlinesBeyondOneRevolution() {
+		// 8 buckets of 100ms, so a revolution is 800ms
+		schedule(1, START + 2000);
+		schedule(2, START + 300);
+		IntList expired = advance(START + 1000);
+		assertEquals(1, expired.size());
+		assertEquals(2, expired.get(0));
+		assertEquals(0, advance(START + 1900).size());
+		assertEquals(1, advance(START + 2000).size());
+	}
+
+	@Test
+	public void testShouldCatchUpAfterLongPause() {
+		for (int i = 1; i <= 20; i++) {
+			schedule(i, START + i * 100);
+		}
+		assertEquals(20, advance(START + 100000).size());
+	}
+}
@@ -0,0 +1,64 @@
+package com.ticketapp.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+public class HoldIdAllocatorTest {
+
+	@Test
+	public void testShouldHandOutSequentialIds() {
+		HoldIdAllocator allocator = new HoldIdAllocator();
+		assertEquals(1, allocator.next(1));
+		assertEquals(2, allocator.next(1));
+		assertEquals(1, allocator.eventOf(2));
+		assertEquals(-1, allocator.eventOf(0));
+		assertEquals(-1, allocator.eventOf(100000));
+	}
+
+	@Test
+	public void testShouldTrackEventAcrossBlocks() {
+		HoldIdAllocator allocator = new HoldIdAllocator();
+		for (int i = 0; i < 1000; i++) {
+			int eventId = i % 3 + 1;
+			int holdId = allocator.next(eventId);
+			assertTrue(holdId > 0);
+			assertEquals(eventId, allocator.eventOf(holdId));
+		}
+	}
+
+	@Test
+	public void testConcurrentIdsShouldBeUnique() throws Exception {
+		HoldIdAllocator allocator = new HoldIdAllocator();
+		Set<Integer> ids = ConcurrentHashMap.newKeySet();
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int t = 0; t < 4; t++) {
+				int eventId = t % 2 + 1;
+				futures.add(executor.submit(() -> {
+					for (int i = 0; i < 10000; i++) {
+						int holdId = allocator.next(eventId);
+						assertTrue(ids.add(holdId));
+						assertEquals(eventId, allocator.eventOf(holdId));
+					}
+				}));
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} finally {
+			executor.shutdown();
+		}
+		assertEquals(40000, ids.size());
+	}
+}
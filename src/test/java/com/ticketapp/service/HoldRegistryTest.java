@@ -0,0 +1,216 @@
+package com.ticketapp.service;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.ticketapp.bean.SeatHold;
+import com.ticketapp.bean.SeatIdentifier;
+
+public class HoldRegistryTest {
+
+	@Test
+	public void testShouldPackSeatIdentifier() {
+		SeatIdentifier seatId = new SeatIdentifier(127, 4095, 4095);
+		assertEquals(seatId, SeatIdentifier.unpack(seatId.pack()));
+		assertTrue(seatId.pack() >= 0);
+		seatId = new SeatIdentifier(3, 17, 250);
+		assertEquals(seatId, SeatIdentifier.unpack(seatId.pack()));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testShouldNotPackLargeLevel() {
+		new SeatIdentifier(128, 1, 1).pack();
+	}
+
+	@Test
+	public void testShouldPutAndGetHold() {
+		HoldRegistry registry = new HoldRegistry(4);
+		List<SeatIdentifier> seatIds = Arrays.asList(new SeatIdentifier(1, 1, 1), new SeatIdentifier(2, 3, 4));
+		registry.put(1, 7, "a@b.com", HoldRegistry.pack(seatIds), 0, 1000);
+		assertTrue(registry.contains(1));
+		assertEquals(1, registry.size());
+		assertEquals(7, registry.getEventId(1));
+		assertEquals("a@b.com", registry.getEmail(1));
+		SeatHold hold = registry.getHold(1);
+		assertEquals(1, hold.getId());
+		assertEquals(7, hold.getEventId());
+		assertEquals(seatIds, hold.getSeatIds());
+	}
+
+	@Test
+	public void testShouldRemoveHoldOnlyOnce() {
+		HoldRegistry registry = new HoldRegistry(4);
+		registry.put(1, 1, "a@b.com", new int[] { 1 }, 0, 1000);
+		assertTrue(registry.remove(1));
+		assertFalse(registry.remove(1));
+		assertFalse(registry.contains(1));
+		assertNull(registry.getHold(1));
+		assertNull(registry.getPackedSeats(1));
+		assertEquals(-1, registry.getEventId(1));
+		assertTrue(registry.isEmpty());
+	}
+
+	@Test
+	public void testShouldNotReturnRecycledSlot() {
+		HoldRegistry registry = new HoldRegistry(4);
+		registry.put(1, 1, "a@b.com", new int[] { 1 }, 0, 1000);
+		registry.remove(1);
+		// same slot, next generation
+		registry.put(5, 2, "b@c.com", new int[] { 2 }, 0, 1000);
+		assertEquals(4, registry.capacity());
+		assertFalse(registry.contains(1));
+		assertNull(registry.getEmail(1));
+		assertArrayEquals(new int[] { 2 }, registry.getPackedSeats(5));
+	}
+
+	@Test
+	public void testShouldGrowOnCollision() {
+		HoldRegistry registry = new HoldRegistry(4);
+		registry.put(1, 1, "a@b.com", new int[] { 1 }, 0, 1000);
+		registry.extendExpiry(1, 2000, 0);
+		registry.put(5, 1, "b@c.com", new int[] { 5 }, 0, 1000);
+		assertEquals(8, registry.capacity());
+		assertEquals(2, registry.size());
+		assertEquals(2000, registry.getExpiry(1));
+		assertEquals(1000, registry.getExpiry(5));
+		assertArrayEquals(new int[] { 1 }, registry.getPackedSeats(1));
+		assertArrayEquals(new int[] { 5 }, registry.getPackedSeats(5));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testShouldRejectDuplicateHold() {
+		HoldRegistry registry = new HoldRegistry(4);
+		registry.put(1, 1, "a@b.com", new int[] { 1 }, 0, 1000);
+		registry.put(1, 1, "a@b.com", new int[] { 1 }, 0, 1000);
+	}
+
+	@Test
+	public void testConcurrentPutAndRemove() throws Exception {
+		HoldRegistry registry = new HoldRegistry(2);
+		AtomicInteger idGen = new AtomicInteger(1);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int t = 0; t < 4; t++) {
+				futures.add(executor.submit(() -> {
+					for (int i = 0; i < 10000; i++) {
+						int holdId = idGen.getAndIncrement();
+						registry.put(holdId, 1, "a@b.com", new int[] { holdId }, 0, 1000);
+						assertArrayEquals(new int[] { holdId }, registry.getPackedSeats(holdId));
+						if (i % 3 != 0) {
+							assertTrue(registry.remove(holdId));
+						}
+					}
+				}));
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} finally {
+			executor.shutdown();
+		}
+		int open = 0;
+		for (int holdId = 1; holdId < idGen.get(); holdId++) {
+			if (registry.contains(holdId)) {
+				open++;
+				assertArrayEquals(new int[] { holdId }, registry.getPackedSeats(holdId));
+			}
+		}
+		assertEquals(registry.size(), open);
+		assertEquals(4 * 3334, open);
+	}
+
+	@Test
+	public void testShouldExtendAndExpire() {
+		HoldRegistry registry = new HoldRegistry(4);
+		registry.put(1, 1, "a@b.com", new int[] { 1 }, 0, 1000);
+		assertEquals(1000, registry.extendExpiry(1, 500, 100));
+		assertEquals(1500, registry.extendExpiry(1, 1500, 100));
+		assertFalse(registry.markExpired(1, 1499));
+		assertTrue(registry.markExpired(1, 1500));
+		assertFalse(registry.markExpired(1, 1500));
+		assertEquals(HoldRegistry.EXPIRED, registry.getExpiry(1));
+		// can't extend once claimed by expiry
+		assertEquals(-1, registry.extendExpiry(1, 5000, 1500));
+		assertTrue(registry.contains(1));
+	}
+
+	@Test
+	public void testShouldClaimHoldForOneOperationOnly() {
+		HoldRegistry registry = new HoldRegistry(4);
+		registry.put(1, 1, "a@b.com", new int[] { 1 }, 0, 1000);
+		registry.put(2, 1, "a@b.com", new int[] { 2 }, 0, 1000);
+		// a reservation claims a hold until its deadline, expiry from then on
+		assertFalse(registry.markReserving(2, 1000));
+		assertTrue(registry.markReserving(1, 999));
+		assertEquals(HoldRegistry.RESERVING, registry.getExpiry(1));
+		assertFalse(registry.markExpired(1, 5000));
+		assertFalse(registry.markReleasing(1));
+		assertEquals(-1, registry.extendExpiry(1, 5000, 0));
+		assertTrue(registry.markExpired(2, 1000));
+		assertFalse(registry.markReleasing(2));
+		// still registered until removed by the owner of the claim
+		assertTrue(registry.contains(1));
+		assertTrue(registry.remove(1));
+	}
+
+	@Test
+	public void testShouldLetExactlyOneOfReserveAndExpiryWin() throws Exception {
+		HoldRegistry registry = new HoldRegistry(1024);
+		int holds = 20000;
+		for (int holdId = 1; holdId <= holds; holdId++) {
+			registry.put(holdId, 1, "a@b.com", new int[] { holdId }, 0, 1000);
+		}
+		AtomicInteger reserved = new AtomicInteger();
+		AtomicInteger expired = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			// a reservation just before the deadline and an expiry sweep just after it
+			Future<?> reserve = executor.submit(() -> {
+				for (int holdId = 1; holdId <= holds; holdId++) {
+					if (registry.markReserving(holdId, 999)) {
+						reserved.incrementAndGet();
+					}
+				}
+			});
+			Future<?> expire = executor.submit(() -> {
+				for (int holdId = holds; holdId >= 1; holdId--) {
+					if (registry.markExpired(holdId, 1000)) {
+						expired.incrementAndGet();
+					}
+				}
+			});
+			reserve.get();
+			expire.get();
+		} finally {
+			executor.shutdownNow();
+		}
+		// each hold claimed once, by whichever thread came first
+		assertEquals(holds, reserved.get() + expired.get());
+		for (int holdId = 1; holdId <= holds; holdId++) {
+			assertTrue(registry.getExpiry(holdId) == HoldRegistry.RESERVING
+					|| registry.getExpiry(holdId) == HoldRegistry.EXPIRED);
+		}
+	}
+
+	@Test
+	public void testShouldNotExtendPastDeadline() {
+		HoldRegistry registry = new HoldRegistry(4);
+		registry.put(1, 1, "a@b.com", new int[] { 1 }, 0, 1000);
+		assertEquals(-1, registry.extendExpiry(1, 5000, 1000));
+		assertEquals(-1, registry.extendExpiry(2, 5000, 0));
+	}
+}
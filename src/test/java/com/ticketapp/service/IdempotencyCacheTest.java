@@ -0,0 +1,132 @@
+package com.ticketapp.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+public class IdempotencyCacheTest {
+
+	private final AtomicLong now = new AtomicLong(1000);
+	private final AtomicInteger calls = new AtomicInteger();
+	private final IdempotencyCache<String> cache = new IdempotencyCache<>(100, 2, now::get);
+
+	private String call() {
+		return "result " + calls.incrementAndGet();
+	}
+
+	@Test
+	public void testShouldReturnFirstResultForSameKey() {
+		assertEquals("result 1", cache.execute(1, "a@b.com", "k1", this::call));
+		assertEquals("result 1", cache.execute(1, "a@b.com", "k1", this::call));
+		// keys are per customer and per event
+		assertEquals("result 2", cache.execute(1, "c@d.com", "k1", this::call));
+		assertEquals("result 3", cache.execute(2, "a@b.com", "k1", this::call));
+		// no key, no caching
+		assertEquals("result 4", cache.execute(1, "a@b.com", null, this::call));
+		assertEquals("result 5", cache.execute(1, "a@b.com", null, this::call));
+	}
+
+	@Test
+	public void testShouldExpireAndEvictResults() {
+		cache.execute(1, "a@b.com", "k1", this::call);
+		now.addAndGet(100);
+		assertEquals("result 2", cache.execute(1, "a@b.com", "k1", this::call));
+		cache.execute(1, "a@b.com", "k2", this::call);
+		cache.execute(1, "a@b.com", "k3", this::call);
+		// k1 was the oldest of three
+		assertEquals(2, cache.size(1));
+		assertEquals("result 5", cache.execute(1, "a@b.com", "k1", this::call));
+		cache.remove(1);
+		assertEquals(0, cache.size(1));
+	}
+
+	@Test
+	public void testShouldForgetFailedCalls() {
+		try {
+			cache.execute(1, "a@b.com", "k1", () -> {
+				throw new IllegalStateException("failed");
+			});
+			fail();
+		} catch (IllegalStateException expected) {
+		}
+		assertEquals("result 1", cache.execute(1, "a@b.com", "k1", this::call));
+	}
+
+	@Test
+	public void testShouldMakeConcurrentRetryWaitForFirstCall() throws Exception {
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			Future<String> first = executor.submit(() -> cache.execute(1, "a@b.com", "k1", () -> {
+				started.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return call();
+			}));
+			started.await();
+			Future<String> retry = executor.submit(() -> cache.execute(1, "a@b.com", "k1", this::call));
+			release.countDown();
+			assertSame(first.get(5, TimeUnit.SECONDS), retry.get(5, TimeUnit.SECONDS));
+			assertEquals(1, calls.get());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testShouldReleaseWaitingRetryWhenFirstCallThrowsError() throws Exception {
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			executor.submit(() -> cache.execute(1, "a@b.com", "k1", () -> {
+				started.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				throw new AssertionError("boom");
+			}));
+			started.await();
+			AtomicReference<Thread> retryThread = new AtomicReference<>();
+			Future<String> retry = executor.submit(() -> {
+				retryThread.set(Thread.currentThread());
+				return cache.execute(1, "a@b.com", "k1", this::call);
+			});
+			// the retry waits for the first call
+			while (retryThread.get() == null || retryThread.get().getState() != Thread.State.WAITING) {
+				Thread.sleep(1);
+			}
+			release.countDown();
+			try {
+				retry.get(5, TimeUnit.SECONDS);
+				fail();
+			} catch (ExecutionException ex) {
+				assertTrue(ex.getCause() instanceof AssertionError);
+			}
+			assertEquals(0, calls.get());
+			// forgotten, so it can be retried
+			assertEquals("result 1", cache.execute(1, "a@b.com", "k1", this::call));
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+}
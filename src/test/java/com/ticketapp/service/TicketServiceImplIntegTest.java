@@ -1,45 +1,65 @@
 package com.ticketapp.service;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
-import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
+import java.util.Random;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import com.ticketapp.bean.AllocationStrategy;
 import com.ticketapp.bean.Event;
+import com.ticketapp.bean.PriceQuote;
+import com.ticketapp.bean.Seat.SeatState;
 import com.ticketapp.bean.SeatHold;
+import com.ticketapp.bean.SeatIdentifier;
 import com.ticketapp.bean.SeatReservation;
+import com.ticketapp.bean.SeatScorer;
+import com.ticketapp.bean.SeatStorage;
 import com.ticketapp.bean.input.EventInput;
 import com.ticketapp.bean.input.LevelInput;
-import com.ticketapp.service.TicketServiceImpl.ScheduledHold;
+import com.ticketapp.service.audit.AuditLog;
+import com.ticketapp.service.exception.NotFoundException;
 import com.ticketapp.service.exception.SeatHoldException;
 import com.ticketapp.service.exception.SeatReservationException;
+import com.ticketapp.service.pricing.DynamicPricer;
+import com.ticketapp.service.pricing.FeeSchedule;
+import com.ticketapp.service.pricing.PricingPolicy;
+import com.ticketapp.service.quota.CustomerQuotaLimiter;
+import com.ticketapp.util.VirtualTimeScheduler;
 
 public class TicketServiceImplIntegTest {
 
 	private TicketService ticketService;
 	private TicketServiceV2 ticketServiceV2;
+	private TicketServiceImpl ticketServiceImpl;
 	private int eventId;
-	private ScheduledExecutorService executorService;
+	private VirtualTimeScheduler scheduler;
 	private static final long TIMEOUT = 30000;
-	private ConcurrentHashMap<Integer, ScheduledHold> holdCollection = new ConcurrentHashMap<>();
+	private HoldRegistry holdRegistry = new HoldRegistry();
 	private ConcurrentHashMap<UUID, SeatReservation> reservations = new ConcurrentHashMap<>();
 	@Before
 	public void before() {
-		executorService = Executors.newScheduledThreadPool(4);
-		TicketServiceImpl ticketServiceImpl = new TicketServiceImpl(Executors.newScheduledThreadPool(4), new ConcurrentHashMap<>(), new ConcurrentHashMap<>(), holdCollection, reservations);
+		// holds expire in virtual time, advanced by the tests
+		scheduler = new VirtualTimeScheduler(System.currentTimeMillis());
+		ticketServiceImpl = new TicketServiceImpl(scheduler, new ConcurrentHashMap<>(),
+				new ConcurrentHashMap<>(), holdRegistry, reservations, CustomerQuotaLimiter.unlimited(),
+				new HoldIdAllocator(), DynamicPricer.fixed(), AuditLog.getDefault(), scheduler.getClock());
 		ticketService = ticketServiceImpl;
 		ticketServiceV2 = ticketServiceImpl;
 		EventInput ei = new EventInput("test", ZonedDateTime.now(), 5, Arrays.asList(new LevelInput("l1", 5.0, 2, 2)), 10);
@@ -48,22 +68,21 @@ public class TicketServiceImplIntegTest {
 	}
 
 	@After
-	public void after() throws InterruptedException {
-		executorService.shutdown();
-		executorService.awaitTermination(20, TimeUnit.SECONDS);
+	public void after() {
+		scheduler.shutdownNow();
 	}
 
 	@Test(timeout = TIMEOUT)
 	public void testSeatsShouldBeReclaimedAfterTimeout() throws InterruptedException {
 		SeatHold hold = ticketService.findAndHoldSeats(2, Optional.empty(), Optional.empty(), "a@b.com");
 		assertEquals(1, hold.getId());
-		ScheduledHold shold = holdCollection.get(hold.getId());
+		SeatHold shold = holdRegistry.getHold(hold.getId());
 		assertNotNull(shold);
-		assertSame(shold.getHold(), hold);
-		executorService.awaitTermination(20, TimeUnit.SECONDS);
-		executorService.shutdown();
+		assertEquals(hold.getSeatIds(), shold.getSeatIds());
+		assertEquals(hold.getEmailId(), shold.getEmailId());
+		scheduler.advance(20, TimeUnit.SECONDS);
 		assertEquals(4, ticketService.numSeatsAvailable(Optional.empty()));
-		assertTrue(holdCollection.isEmpty());
+		assertTrue(holdRegistry.isEmpty());
 	}
 
 	@Test(timeout = TIMEOUT)
@@ -85,18 +104,14 @@ public class TicketServiceImplIntegTest {
 	@Test(timeout = TIMEOUT)
 	public void testShouldReserveSeats() throws InterruptedException {
 		SeatHold hold = ticketService.findAndHoldSeats(2, Optional.empty(), Optional.empty(), "a@b.com");
-		ScheduledHold scheduledHold = holdCollection.get(hold.getId());
 		String reservationCode = ticketService.reserveSeats(hold.getId(), "a@b.com");
-		// hold should be gone and ScheduledFuture cancelled
-		assertTrue(holdCollection.isEmpty());
-		assertTrue(scheduledHold.getScheduledFuture().isCancelled());
-		assertTrue(scheduledHold.getScheduledFuture().isDone());
+		// hold should be gone, so expiry has nothing left to reclaim
+		assertTrue(holdRegistry.isEmpty());
 		// check reservation
 		SeatReservation reservation = reservations.get(UUID.fromString(reservationCode));
 		assertNotNull(reservation);
 		assertEquals(reservation.getSeatIds(), hold.getSeatIds());
-		executorService.awaitTermination(20, TimeUnit.SECONDS);
-		executorService.shutdown();
+		scheduler.advance(20, TimeUnit.SECONDS);
 		// check persistence, ensure that seats are not reclaimed after hold timeout
 		assertEquals(2, ticketService.numSeatsAvailable(Optional.empty()));
 	}
@@ -105,8 +120,300 @@ public class TicketServiceImplIntegTest {
 	public void testReserveSeatsShouldFailDueToHoldExpiration() throws InterruptedException {
 		SeatHold hold = ticketService.findAndHoldSeats(2, Optional.empty(), Optional.empty(), "a@b.com");
 		assertEquals(1, hold.getId());
-		ScheduledHold shold = holdCollection.get(hold.getId());
-		executorService.awaitTermination(20, TimeUnit.SECONDS);
+		scheduler.advance(20, TimeUnit.SECONDS);
 		ticketService.reserveSeats(hold.getId(), "a@b.com");
 	}
+
+	@Test(timeout = TIMEOUT)
+	public void testShouldReserveHoldWithinGracePeriod() {
+		TicketServiceImpl graceService = new TicketServiceImpl(scheduler, new ConcurrentHashMap<>(),
+				new ConcurrentHashMap<>(), new HoldRegistry(), new ConcurrentHashMap<>(), CustomerQuotaLimiter.unlimited(),
+				new HoldIdAllocator(), DynamicPricer.fixed(), AuditLog.getDefault(), scheduler.getClock(),
+				TimeUnit.SECONDS.toMillis(5));
+		int graceEventId = graceService.createEvent(new EventInput("grace", ZonedDateTime.now(), 5,
+				Arrays.asList(new LevelInput("l1", 5.0, 2, 2)), 10)).getId();
+		SeatHold late = graceService.findAndHoldSeats(graceEventId, 2, Optional.empty(), Optional.empty(), "a@b.com");
+		SeatHold later = graceService.findAndHoldSeats(graceEventId, 2, Optional.empty(), Optional.empty(), "b@c.com");
+		// past the 10s deadline, within the grace period: nothing is reclaimed yet
+		scheduler.advance(12, TimeUnit.SECONDS);
+		assertEquals(0, graceService.numSeatsAvailable(graceEventId, Optional.empty()));
+		assertNotNull(graceService.reserveSeats(late.getId(), "a@b.com"));
+		// extensions still end at the deadline
+		try {
+			graceService.extendHold(later.getId(), "b@c.com");
+			fail();
+		} catch (SeatHoldException ex) {
+			// expired
+		}
+		scheduler.advance(4, TimeUnit.SECONDS);
+		assertEquals(2, graceService.numSeatsAvailable(graceEventId, Optional.empty()));
+		try {
+			graceService.reserveSeats(later.getId(), "b@c.com");
+			fail();
+		} catch (SeatReservationException ex) {
+			// grace is over
+		}
+	}
+
+	@Test(timeout = TIMEOUT)
+	public void testShouldOfferExpiredSeatsToWaitlist() {
+		List<Integer> available = new ArrayList<>();
+		ticketServiceImpl.addCommitListener(new EventCommitListener() {
+			@Override
+			public void eventCommitted(Event event) {
+				available.add(event.getAvailableSeatCount(Optional.empty()));
+			}
+
+			@Override
+			public void eventRemoved(int eventId) {
+			}
+		});
+		ticketService.findAndHoldSeats(4, Optional.empty(), Optional.empty(), "a@b.com");
+		available.clear();
+		CompletableFuture<SeatHold> waiting = ticketServiceImpl.joinWaitlist(eventId, 2, Optional.empty(),
+				Optional.empty(), "b@c.com");
+		scheduler.runPending();
+		assertFalse(waiting.isDone());
+		assertEquals(1, ticketServiceImpl.getWaitlistSize(eventId));
+		scheduler.advance(20, TimeUnit.SECONDS);
+		assertTrue(waiting.isDone());
+		SeatHold hold = waiting.join();
+		assertEquals("b@c.com", hold.getEmailId());
+		assertEquals(2, hold.getSeatIds().size());
+		assertEquals(0, ticketServiceImpl.getWaitlistSize(eventId));
+		// the offered seats never showed as available
+		assertTrue(available.toString(), available.stream().allMatch(count -> count <= 2));
+		assertEquals(2, ticketService.numSeatsAvailable(Optional.empty()));
+		ticketService.reserveSeats(hold.getId(), "b@c.com");
+	}
+
+	@Test(timeout = TIMEOUT)
+	public void testShouldServeWaitlistInArrivalOrder() {
+		SeatHold held = ticketService.findAndHoldSeats(4, Optional.empty(), Optional.empty(), "a@b.com");
+		CompletableFuture<SeatHold> first = ticketServiceImpl.joinWaitlist(eventId, 3, Optional.empty(),
+				Optional.empty(), "b@c.com");
+		CompletableFuture<SeatHold> second = ticketServiceImpl.joinWaitlist(eventId, 1, Optional.empty(),
+				Optional.empty(), "c@d.com");
+		CompletableFuture<SeatHold> third = ticketServiceImpl.joinWaitlist(eventId, 1, Optional.empty(),
+				Optional.empty(), "d@e.com");
+		// two seats freed, not enough for the first, who keeps their place
+		ticketServiceImpl.reserveSeats(held.getId(), "a@b.com", held.getSeatIds().subList(0, 2));
+		scheduler.runPending();
+		assertFalse(first.isDone());
+		assertEquals("c@d.com", second.join().getEmailId());
+		assertEquals("d@e.com", third.join().getEmailId());
+		assertEquals(0, ticketService.numSeatsAvailable(Optional.empty()));
+		assertEquals(1, ticketServiceImpl.getWaitlistSize(eventId));
+	}
+
+	@Test(timeout = TIMEOUT)
+	public void testShouldServeWaitlistInOneCommit() {
+		SeatHold held = ticketService.findAndHoldSeats(4, Optional.empty(), Optional.empty(), "a@b.com");
+		CompletableFuture<SeatHold> pair = ticketServiceImpl.joinWaitlist(eventId, 2, Optional.empty(),
+				Optional.empty(), "b@c.com");
+		CompletableFuture<SeatHold> tooMany = ticketServiceImpl.joinWaitlist(eventId, 5, Optional.empty(),
+				Optional.empty(), "c@d.com");
+		CompletableFuture<SeatHold> single = ticketServiceImpl.joinWaitlist(eventId, 1, Optional.empty(),
+				Optional.empty(), "d@e.com");
+		List<Integer> available = new ArrayList<>();
+		ticketServiceImpl.addCommitListener(new EventCommitListener() {
+			@Override
+			public void eventCommitted(Event event) {
+				available.add(event.getAvailableSeatCount(Optional.empty()));
+			}
+
+			@Override
+			public void eventRemoved(int eventId) {
+			}
+		});
+		available.clear();
+		ticketServiceV2.releaseHold(held.getId(), "a@b.com");
+		scheduler.runPending();
+		// the release and both holds of the served customers
+		assertEquals(Collections.singletonList(1), available);
+		assertEquals(2, pair.join().getSeatIds().size());
+		assertEquals(1, single.join().getSeatIds().size());
+		assertFalse(tooMany.isDone());
+		assertEquals(1, ticketServiceImpl.getWaitlistSize(eventId));
+	}
+
+	@Test(timeout = TIMEOUT)
+	public void testShouldServeWaitlistAtOnceIfSeatsAvailable() {
+		CompletableFuture<SeatHold> waiting = ticketServiceImpl.joinWaitlist(eventId, 3, Optional.empty(),
+				Optional.empty(), "b@c.com");
+		scheduler.runPending();
+		assertEquals(3, waiting.join().getSeatIds().size());
+		assertEquals(1, ticketService.numSeatsAvailable(Optional.empty()));
+	}
+
+	@Test(timeout = TIMEOUT)
+	public void testShouldReturnSeatsOfCancelledWaiter() {
+		SeatHold held = ticketService.findAndHoldSeats(4, Optional.empty(), Optional.empty(), "a@b.com");
+		CompletableFuture<SeatHold> waiting = ticketServiceImpl.joinWaitlist(eventId, 2, Optional.empty(),
+				Optional.empty(), "b@c.com");
+		waiting.cancel(false);
+		ticketServiceV2.releaseHold(held.getId(), "a@b.com");
+		scheduler.runPending();
+		assertEquals(4, ticketService.numSeatsAvailable(Optional.empty()));
+		assertEquals(0, ticketServiceImpl.getWaitlistSize(eventId));
+		assertTrue(holdRegistry.isEmpty());
+	}
+
+	@Test(timeout = TIMEOUT)
+	public void testShouldCancelReservation() {
+		SeatHold hold = ticketService.findAndHoldSeats(3, Optional.empty(), Optional.empty(), "a@b.com");
+		String code = ticketService.reserveSeats(hold.getId(), "a@b.com");
+		PriceQuote refund = ticketServiceImpl.cancelReservation(eventId, code, "a@b.com");
+		assertEquals(1500, refund.getSubtotalCents());
+		assertTrue(reservations.isEmpty());
+		assertEquals(4, ticketService.numSeatsAvailable(Optional.empty()));
+		// the freed seats are the best again
+		assertEquals(hold.getSeatIds(), ticketService.findAndHoldSeats(3, Optional.empty(), Optional.empty(), "b@c.com")
+				.getSeatIds());
+	}
+
+	@Test(timeout = TIMEOUT)
+	public void testShouldCancelPartOfReservation() {
+		SeatHold hold = ticketService.findAndHoldSeats(3, Optional.empty(), Optional.empty(), "a@b.com");
+		String code = ticketService.reserveSeats(hold.getId(), "a@b.com");
+		SeatIdentifier cancelled = hold.getSeatIds().get(1);
+		PriceQuote refund = ticketServiceImpl.cancelReservation(eventId, code, "a@b.com",
+				Collections.singletonList(cancelled));
+		assertEquals(500, refund.getSubtotalCents());
+		SeatReservation kept = reservations.get(UUID.fromString(code));
+		assertEquals(Arrays.asList(hold.getSeatIds().get(0), hold.getSeatIds().get(2)), kept.getSeatIds());
+		assertEquals(1000, kept.getQuote().getSubtotalCents());
+		Event event = ticketServiceV2.getEvent(eventId);
+		assertEquals(SeatState.AVAILABLE, event.getSeat(cancelled).getState());
+		assertEquals(2, event.getBookedSeatCount(Optional.empty()));
+		try {
+			ticketServiceImpl.cancelReservation(eventId, code, "a@b.com", Collections.singletonList(cancelled));
+			fail();
+		} catch (IllegalArgumentException ex) {
+			// already cancelled
+		}
+	}
+
+	@Test(timeout = TIMEOUT)
+	public void testShouldRefundWhatWasPaidSeatBySeat() {
+		// 3.33% of a 5.00 seat rounds up, seat by seat it adds up to more than on the order
+		TicketServiceImpl feeService = new TicketServiceImpl(scheduler, new ConcurrentHashMap<>(),
+				new ConcurrentHashMap<>(), new HoldRegistry(), new ConcurrentHashMap<>(), CustomerQuotaLimiter.unlimited(),
+				new HoldIdAllocator(), new DynamicPricer(PricingPolicy.FIXED, new FeeSchedule(250, 50, 333)),
+				AuditLog.getDefault(), scheduler.getClock());
+		int feeEventId = feeService.createEvent(new EventInput("fees", ZonedDateTime.now(), 5,
+				Arrays.asList(new LevelInput("l1", 5.0, 2, 2)), 10)).getId();
+		SeatHold hold = feeService.findAndHoldSeats(feeEventId, 3, Optional.empty(), Optional.empty(), "a@b.com");
+		String code = feeService.reserveSeats(hold.getId(), "a@b.com");
+		// 15.00 of seats, 2.50 order fee, 3 x 0.50 seat fees and 0.50 of percentage fee
+		long paid = 1500 + 250 + 150 + 50;
+		long refunded = 0;
+		for (SeatIdentifier seatId : hold.getSeatIds()) {
+			PriceQuote refund = feeService.cancelReservation(feeEventId, code, "a@b.com",
+					Collections.singletonList(seatId));
+			assertTrue(refund.getFeeCents() >= 0);
+			refunded += refund.getTotalCents();
+			if (refunded < paid) {
+				// the order fee stays with the seats left
+				assertTrue(refund.getFeeCents() < 250);
+			}
+		}
+		assertEquals(paid, refunded);
+	}
+
+	@Test(timeout = TIMEOUT)
+	public void testShouldNotCancelReservationOfSomeoneElse() {
+		SeatHold hold = ticketService.findAndHoldSeats(2, Optional.empty(), Optional.empty(), "a@b.com");
+		String code = ticketService.reserveSeats(hold.getId(), "a@b.com");
+		try {
+			ticketServiceImpl.cancelReservation(eventId, code, "b@c.com");
+			fail();
+		} catch (SeatReservationException ex) {
+			// not theirs
+		}
+		try {
+			ticketServiceImpl.cancelReservation(eventId, UUID.randomUUID().toString(), "a@b.com");
+			fail();
+		} catch (NotFoundException ex) {
+			// no such reservation
+		}
+		assertEquals(2, ticketService.numSeatsAvailable(Optional.empty()));
+		assertEquals(1, reservations.size());
+	}
+
+	@Test(timeout = TIMEOUT)
+	public void testShouldOfferCancelledSeatsToWaitlist() {
+		SeatHold hold = ticketService.findAndHoldSeats(4, Optional.empty(), Optional.empty(), "a@b.com");
+		String code = ticketService.reserveSeats(hold.getId(), "a@b.com");
+		CompletableFuture<SeatHold> waiting = ticketServiceImpl.joinWaitlist(eventId, 2, Optional.empty(),
+				Optional.empty(), "b@c.com");
+		ticketServiceImpl.cancelReservation(eventId, code, "a@b.com", hold.getSeatIds().subList(0, 3));
+		scheduler.runPending();
+		SeatHold offered = waiting.join();
+		Event event = ticketServiceV2.getEvent(eventId);
+		offered.getSeatIds().forEach(seatId -> assertEquals(SeatState.ON_HOLD, event.getSeat(seatId).getState()));
+		assertEquals(1, ticketService.numSeatsAvailable(Optional.empty()));
+		assertEquals(1, event.getBookedSeatCount(Optional.empty()));
+	}
+
+	@Test(timeout = TIMEOUT)
+	public void testShouldBookEventStoredOffHeap() {
+		EventInput ei = new EventInput("off heap", ZonedDateTime.now(), 120, Arrays.asList(new LevelInput("l1", 5.0, 10, 10)),
+				10, SeatScorer.NATURAL, SeatStorage.DIRECT);
+		int offHeap = ticketServiceV2.createEvent(ei).getId();
+		SeatHold hold = ticketServiceImpl.findAndHoldSeats(offHeap, 5, Optional.empty(), Optional.empty(), "a@b.com");
+		ticketServiceImpl.reserveSeats(hold.getId(), "a@b.com", hold.getSeatIds().subList(0, 3));
+		Event event = ticketServiceV2.getEvent(offHeap);
+		assertEquals(SeatStorage.DIRECT, event.getSeatStorage());
+		assertEquals(97, event.getAvailableSeatCount(Optional.empty()));
+		assertEquals(3, event.getChangedSeats().size());
+	}
+
+	@Test(timeout = TIMEOUT)
+	public void testShouldHoldSeatsWithAllocationStrategyOfEvent() {
+		EventInput ei = new EventInput("together", ZonedDateTime.now(), 120,
+				Arrays.asList(new LevelInput("l1", 50.0, 1, 3), new LevelInput("l2", 25.0, 2, 6)), 10,
+				SeatScorer.NATURAL, SeatStorage.HEAP, AllocationStrategy.CONTIGUOUS_FIRST);
+		int together = ticketServiceV2.createEvent(ei).getId();
+		ticketServiceImpl.findAndHoldSeats(together, 2, Optional.empty(), Optional.empty(), "a@b.com");
+		// one seat left in the first level, the group sits together in the second
+		SeatHold hold = ticketServiceImpl.findAndHoldSeats(together, 3, Optional.empty(), Optional.empty(), "b@c.com");
+		assertEquals(Arrays.asList(new SeatIdentifier(2, 1, 2), new SeatIdentifier(2, 1, 3), new SeatIdentifier(2, 1, 4)),
+				hold.getSeatIds());
+	}
+
+	@Test(timeout = TIMEOUT)
+	public void testShouldSimulateOnSaleInVirtualTime() {
+		// a venue of 40000 seats with 10s holds
+		EventInput ei = new EventInput("on sale", ZonedDateTime.now(), 120,
+				Arrays.asList(new LevelInput("l1", 50.0, 100, 200), new LevelInput("l2", 25.0, 100, 200)), 10);
+		int onSale = ticketServiceV2.createEvent(ei).getId();
+		Random random = new Random(42);
+		int reserved = 0, abandoned = 0;
+		// an hour of arrivals, 5 a second
+		for (int second = 0; second < 3600; second++) {
+			for (int i = 0; i < 5; i++) {
+				String email = "c" + random.nextInt(1000) + "@d.com";
+				SeatHold hold;
+				try {
+					hold = ticketServiceImpl.findAndHoldSeats(onSale, 1 + random.nextInt(4), Optional.empty(),
+							Optional.empty(), email);
+				} catch (SeatHoldException ex) {
+					continue;
+				}
+				if (random.nextInt(3) == 0) {
+					abandoned += hold.getSeatIds().size();
+				} else {
+					ticketServiceImpl.reserveSeats(hold.getId(), email);
+					reserved += hold.getSeatIds().size();
+				}
+			}
+			scheduler.advance(1, TimeUnit.SECONDS);
+		}
+		scheduler.advance(20, TimeUnit.SECONDS);
+		assertTrue(abandoned > 0);
+		assertTrue(holdRegistry.isEmpty());
+		// every abandoned seat came back
+		assertEquals(40000 - reserved, ticketServiceImpl.numSeatsAvailable(onSale, Optional.empty()));
+	}
 }
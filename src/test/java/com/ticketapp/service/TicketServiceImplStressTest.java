@@ -0,0 +1,277 @@
+package com.ticketapp.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ticketapp.bean.Event;
+import com.ticketapp.bean.Seat.SeatState;
+import com.ticketapp.bean.SeatHold;
+import com.ticketapp.bean.SeatIdentifier;
+import com.ticketapp.bean.SeatReservation;
+import com.ticketapp.bean.input.EventInput;
+import com.ticketapp.bean.input.LevelInput;
+import com.ticketapp.service.HoldExpiryWheel.IntList;
+import com.ticketapp.service.exception.SeatHoldException;
+import com.ticketapp.service.exception.SeatReservationException;
+
+/**
+ * Hammers holds, reserves, releases and expiry from many threads. Invariants
+ * are checked on every committed event state, under the event write lock, and
+ * once more on the final state after every hold ended.
+ */
+public class TicketServiceImplStressTest {
+
+	private static final long TIMEOUT = 60000;
+	private static final int THREADS = 8;
+	private static final long RUN_MILLIS = 3000;
+	/**
+	 * Holds per thread reserved around their deadline, one after the other
+	 */
+	private static final int BOUNDARY_HOLDS = 5;
+
+	private ScheduledExecutorService scheduler;
+	private ExecutorService clients;
+	private HoldRegistry holdRegistry;
+	private ConcurrentHashMap<UUID, SeatReservation> reservations;
+	private TicketServiceImpl ticketService;
+	private InvariantChecker checker;
+
+	@Before
+	public void before() {
+		scheduler = Executors.newScheduledThreadPool(2);
+		clients = Executors.newFixedThreadPool(THREADS);
+		holdRegistry = new HoldRegistry();
+		reservations = new ConcurrentHashMap<>();
+		ticketService = new TicketServiceImpl(scheduler, new ConcurrentHashMap<>(), new ConcurrentHashMap<>(),
+				holdRegistry, reservations);
+		checker = new InvariantChecker();
+		ticketService.addCommitListener(checker);
+	}
+
+	@After
+	public void after() {
+		clients.shutdownNow();
+		scheduler.shutdownNow();
+	}
+
+	private Event createEvent(List<LevelInput> levels) {
+		// the shortest hold there is, so that expiry races with everything else
+		return ticketService.createEvent(new EventInput("stress", ZonedDateTime.now(), 60, levels, 1));
+	}
+
+	@Test(timeout = TIMEOUT)
+	public void testShouldNotOversellUnderContention() throws Exception {
+		Event event = createEvent(Arrays.asList(new LevelInput("l1", 3.0, 4, 10), new LevelInput("l2", 2.0, 4, 10),
+				new LevelInput("l3", 1.0, 4, 10)));
+		Set<String> booked = ConcurrentHashMap.newKeySet();
+		long end = System.currentTimeMillis() + RUN_MILLIS;
+		List<Future<?>> futures = new ArrayList<>();
+		for (int t = 0; t < THREADS; t++) {
+			String email = "c" + t + "@d.com";
+			futures.add(clients.submit(() -> {
+				ThreadLocalRandom random = ThreadLocalRandom.current();
+				while (System.currentTimeMillis() < end) {
+					Optional<Integer> minLevel = random.nextBoolean() ? Optional.empty() : Optional.of(1 + random.nextInt(3));
+					SeatHold hold;
+					try {
+						hold = ticketService.findAndHoldSeats(event.getId(), 1 + random.nextInt(4), minLevel,
+								Optional.empty(), email);
+					} catch (SeatHoldException ex) {
+						// sold out for now
+						Thread.yield();
+						continue;
+					}
+					try {
+						int action = random.nextInt(100);
+						if (action < 40) {
+							booked.add(ticketService.reserveSeats(hold.getId(), email));
+						} else if (action < 55) {
+							List<SeatIdentifier> seatIds = hold.getSeatIds();
+							booked.add(ticketService.reserveSeats(hold.getId(), email,
+									seatIds.subList(0, (seatIds.size() + 1) / 2)));
+						} else if (action < 70) {
+							ticketService.releaseHold(hold.getId(), email);
+						} else if (action < 80) {
+							ticketService.extendHold(hold.getId(), email);
+							booked.add(ticketService.reserveSeats(hold.getId(), email));
+						}
+						// otherwise abandoned, left to expire
+					} catch (SeatHoldException | SeatReservationException ex) {
+						// expired first
+					}
+				}
+			}));
+		}
+		for (Future<?> future : futures) {
+			future.get(TIMEOUT, TimeUnit.MILLISECONDS);
+		}
+		awaitAllHoldsEnded();
+		assertFinalState(event.getId(), booked);
+	}
+
+	@Test(timeout = TIMEOUT)
+	public void testShouldSettleReservesAtExpiryBoundary() throws Exception {
+		Event event = createEvent(Arrays.asList(new LevelInput("l1", 1.0, 10, 20)));
+		Map<Integer, Boolean> outcomes = new ConcurrentHashMap<>();
+		Map<Integer, List<SeatIdentifier>> heldSeats = new ConcurrentHashMap<>();
+		Set<String> booked = ConcurrentHashMap.newKeySet();
+		List<Future<?>> futures = new ArrayList<>();
+		for (int t = 0; t < THREADS; t++) {
+			String email = "c" + t + "@d.com";
+			futures.add(clients.submit(() -> {
+				ThreadLocalRandom random = ThreadLocalRandom.current();
+				for (int i = 0; i < BOUNDARY_HOLDS; i++) {
+					SeatHold hold = ticketService.findAndHoldSeats(event.getId(), 2, Optional.empty(),
+							Optional.empty(), email);
+					long heldAt = System.currentTimeMillis();
+					heldSeats.put(hold.getId(), hold.getSeatIds());
+					// around the deadline, give or take an expiry tick
+					long reserveAt = heldAt + TimeUnit.SECONDS.toMillis(1)
+							+ random.nextLong(-TicketServiceImpl.EXPIRY_TICK_MILLIS, 2 * TicketServiceImpl.EXPIRY_TICK_MILLIS);
+					sleepUntil(reserveAt);
+					try {
+						booked.add(ticketService.reserveSeats(hold.getId(), email));
+						outcomes.put(hold.getId(), true);
+					} catch (SeatReservationException ex) {
+						outcomes.put(hold.getId(), false);
+					}
+				}
+			}));
+		}
+		for (Future<?> future : futures) {
+			future.get(TIMEOUT, TimeUnit.MILLISECONDS);
+		}
+		awaitAllHoldsEnded();
+		assertFinalState(event.getId(), booked);
+		// a hold was either booked or reclaimed, never both
+		Event last = ticketService.getEvent(event.getId());
+		for (Map.Entry<Integer, Boolean> outcome : outcomes.entrySet()) {
+			if (outcome.getValue()) {
+				heldSeats.get(outcome.getKey())
+						.forEach(seatId -> assertEquals(SeatState.BOOKED, last.getSeat(seatId).getState()));
+			}
+		}
+		assertEquals(THREADS * BOUNDARY_HOLDS, outcomes.size());
+	}
+
+	private static void sleepUntil(long time) {
+		long delay = time - System.currentTimeMillis();
+		if (delay > 0) {
+			try {
+				Thread.sleep(delay);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	private void awaitAllHoldsEnded() throws InterruptedException {
+		while (!holdRegistry.isEmpty()) {
+			Thread.sleep(TicketServiceImpl.EXPIRY_TICK_MILLIS);
+		}
+		// the last reclaim commits after its holds left the registry
+		Thread.sleep(2 * TicketServiceImpl.EXPIRY_TICK_MILLIS);
+	}
+
+	private void assertFinalState(int eventId, Set<String> booked) {
+		assertTrue(checker.violations.toString(), checker.violations.isEmpty());
+		assertTrue(checker.commits > 1);
+		Event event = ticketService.getEvent(eventId);
+		int total = event.getTotalSeatCount(Optional.empty());
+		// every reservation handed out was kept, and nothing else
+		Set<String> kept = new HashSet<>();
+		reservations.keySet().forEach(id -> kept.add(id.toString()));
+		assertEquals(booked, kept);
+		// no seat sold twice, every sold seat booked
+		Set<SeatIdentifier> sold = new HashSet<>();
+		for (SeatReservation reservation : reservations.values()) {
+			for (SeatIdentifier seatId : reservation.getSeatIds()) {
+				assertTrue(seatId + " sold twice", sold.add(seatId));
+				assertEquals(SeatState.BOOKED, event.getSeat(seatId).getState());
+			}
+		}
+		// no hold left behind, no reclaim lost
+		int[] counts = checker.countStates(event);
+		assertEquals(0, counts[SeatState.ON_HOLD.ordinal()]);
+		assertEquals(sold.size(), counts[SeatState.BOOKED.ordinal()]);
+		assertEquals(total - sold.size(), event.getAvailableSeatCount(Optional.empty()));
+	}
+
+	/**
+	 * Checks each committed state. Commits run under the event write lock, as
+	 * do hold creation and claims by reserve and release, so open holds in the
+	 * registry are stable apart from expiry claims, which only remove.
+	 */
+	private final class InvariantChecker implements EventCommitListener {
+		private final Queue<String> violations = new ConcurrentLinkedQueue<>();
+		private volatile int commits;
+
+		@Override
+		public void eventCommitted(Event event) {
+			commits++;
+			int total = event.getTotalSeatCount(Optional.empty());
+			int[] counts = countStates(event);
+			if (counts[SeatState.AVAILABLE.ordinal()] + counts[SeatState.ON_HOLD.ordinal()]
+					+ counts[SeatState.BOOKED.ordinal()] != total) {
+				violations.add("States do not add up to " + total + ": " + Arrays.toString(counts));
+			}
+			if (counts[SeatState.AVAILABLE.ordinal()] != event.getAvailableSeatCount(Optional.empty())) {
+				violations.add("Available count " + event.getAvailableSeatCount(Optional.empty()) + " but "
+						+ counts[SeatState.AVAILABLE.ordinal()] + " seats available");
+			}
+			IntList holdIds = new IntList();
+			holdRegistry.holdIdsOf(event.getId(), holdIds);
+			Set<SeatIdentifier> held = new HashSet<>();
+			for (int i = 0; i < holdIds.size(); i++) {
+				int[] packedSeats = holdRegistry.getPackedSeats(holdIds.get(i));
+				if (packedSeats == null) {
+					continue;
+				}
+				for (SeatIdentifier seatId : HoldRegistry.unpack(packedSeats)) {
+					if (!held.add(seatId)) {
+						violations.add(seatId + " in two holds");
+					}
+					if (event.getSeat(seatId).getState() != SeatState.ON_HOLD) {
+						violations.add(seatId + " of holdId " + holdIds.get(i) + " is "
+								+ event.getSeat(seatId).getState());
+					}
+				}
+			}
+		}
+
+		@Override
+		public void eventRemoved(int eventId) {
+		}
+
+		int[] countStates(Event event) {
+			int[] counts = new int[SeatState.values().length];
+			for (int i = 0; i < event.getLayout().size(); i++) {
+				counts[event.getSeatState(i).ordinal()]++;
+			}
+			return counts;
+		}
+	}
+}
@@ -1,17 +1,23 @@
 package com.ticketapp.service;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
@@ -21,32 +27,45 @@ import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 
+import com.ticketapp.bean.Availability;
 import com.ticketapp.bean.Event;
+import com.ticketapp.bean.PriceQuote;
 import com.ticketapp.bean.Seat;
 import com.ticketapp.bean.SeatHold;
 import com.ticketapp.bean.SeatIdentifier;
+import com.ticketapp.bean.SeatReservation;
+import com.ticketapp.bean.SeatScorer;
 import com.ticketapp.bean.Seat.SeatState;
 import com.ticketapp.bean.input.EventInput;
 import com.ticketapp.bean.input.LevelInput;
-import com.ticketapp.service.TicketServiceImpl.ScheduledHold;
+import com.ticketapp.service.audit.AuditLog;
+import com.ticketapp.service.audit.AuditType;
 import com.ticketapp.service.exception.NotFoundException;
 import com.ticketapp.service.exception.SeatHoldException;
+import com.ticketapp.service.exception.QuotaExceededException;
 import com.ticketapp.service.exception.SeatReservationException;
+import com.ticketapp.service.quota.CustomerQuotaLimiter;
+import com.ticketapp.service.pricing.DynamicPricer;
+import com.ticketapp.service.pricing.FeeSchedule;
+import com.ticketapp.service.pricing.PricingPolicy;
+import com.ticketapp.service.quota.QuotaPolicy;
 
 public class TicketServiceImplTest {
 
 	private TicketServiceImpl ticketServiceImpl;
 	private ScheduledExecutorService mockExecutor;
-	private ConcurrentHashMap<Integer, ScheduledHold> holdCollection = new ConcurrentHashMap<>();
+	private HoldRegistry holdRegistry = new HoldRegistry();
 	@Rule public JUnitRuleMockery context = new JUnitRuleMockery();
 	@Before
 	public void before() {
 		mockExecutor = context.mock(ScheduledExecutorService.class);
 		context.checking(new Expectations() {{
 			oneOf(mockExecutor).isShutdown();will(returnValue(false));
+			oneOf(mockExecutor).scheduleWithFixedDelay(with(any(Runnable.class)), with(equal(TicketServiceImpl.EXPIRY_TICK_MILLIS)),
+					with(equal(TicketServiceImpl.EXPIRY_TICK_MILLIS)), with(equal(TimeUnit.MILLISECONDS)));
 		}});
 		ticketServiceImpl = new TicketServiceImpl(mockExecutor, new ConcurrentHashMap<>(), new ConcurrentHashMap<>(),
-				holdCollection, new ConcurrentHashMap<>());
+				holdRegistry, new ConcurrentHashMap<>());
 	}
 
 	@Test(expected = IllegalStateException.class)
@@ -64,6 +83,29 @@ public class TicketServiceImplTest {
 		assertEquals(name, firstEvent.getName());
 	}
 
+	@Test
+	public void testShouldHoldEverySeatOfTheWidestPackableRow() {
+		Event event = ticketServiceImpl.createEvent(new EventInput("wide", ZonedDateTime.now(), 1l,
+				Collections.singletonList(new LevelInput("l1", 2.0, 1, 4095)), 10));
+		SeatHold hold = ticketServiceImpl.findAndHoldSeats(event.getId(), 4095, Optional.empty(), Optional.empty(),
+				"a@b.com");
+		assertEquals(4095, holdRegistry.getPackedSeats(hold.getId()).length);
+		assertEquals(0, ticketServiceImpl.numSeatsAvailable(event.getId(), Optional.empty()));
+		ticketServiceImpl.releaseHold(hold.getId(), "a@b.com");
+		assertEquals(4095, ticketServiceImpl.numSeatsAvailable(event.getId(), Optional.empty()));
+	}
+
+	@Test
+	public void testShouldRejectRowsTooWideToHold() {
+		try {
+			ticketServiceImpl.createEvent(new EventInput("too wide", ZonedDateTime.now(), 1l,
+					Collections.singletonList(new LevelInput("l1", 2.0, 1, 4096)), 10));
+			fail();
+		} catch (IllegalArgumentException ex) {
+			// seat 4096 could not be packed into a hold
+		}
+	}
+
 	private EventInput createEventInput(String name) {
 		return new EventInput(name, ZonedDateTime.now(), 1l,
 				Collections.singletonList(new LevelInput("l1", 2.0, 1, 1)), 10);
@@ -105,6 +147,66 @@ public class TicketServiceImplTest {
 		assertEquals(1, seat.getId().getSeat());
 	}
 
+	@Test
+	public void testShouldShareVenueLayout() {
+		Event first = ticketServiceImpl.createEvent(createEventInput("first"));
+		Event second = ticketServiceImpl.createEvent(createEventInput("second"));
+		assertSame(first.getLayout(), second.getLayout());
+		// a different seat ranking is a different layout
+		Event centered = ticketServiceImpl.createEvent(new EventInput("centered", ZonedDateTime.now(), 1l,
+				Collections.singletonList(new LevelInput("l1", 2.0, 1, 1)), 10, SeatScorer.CENTER));
+		assertNotSame(first.getLayout(), centered.getLayout());
+		SeatHold hold = ticketServiceImpl.findAndHoldSeats(second.getId(), 1, Optional.empty(), Optional.empty(),
+				"a@b.com");
+		assertEquals(1, hold.getSeatIds().size());
+		// the first event's seats are its own
+		assertEquals(1, ticketServiceImpl.getEvent(first.getId()).getAvailableSeatCount(Optional.empty()));
+		assertEquals(0, ticketServiceImpl.getEvent(second.getId()).getAvailableSeatCount(Optional.empty()));
+	}
+
+	@Test
+	public void testShouldCreateSeason() {
+		ticketServiceImpl.createEvent(createEventInput("opening"));
+		List<EventInput> season = new ArrayList<>();
+		for (int i = 0; i < 20; i++) {
+			season.add(createEventInput("show" + i, Arrays.asList(new LevelInput("l1", 2.0, 3, 4))));
+		}
+		List<Event> events = ticketServiceImpl.createEvents(season);
+		assertEquals(20, events.size());
+		for (int i = 0; i < events.size(); i++) {
+			Event event = events.get(i);
+			// ids follow the single event, in input order
+			assertEquals(i + 2, event.getId());
+			assertEquals("show" + i, event.getName());
+			assertSame(events.get(0).getLayout(), event.getLayout());
+			assertSame(event, ticketServiceImpl.getEvent(event.getId()));
+			assertEquals(12, ticketServiceImpl.numSeatsAvailable(event.getId(), Optional.empty()));
+		}
+		assertEquals(1, ticketServiceImpl.getFirstEvent().getId());
+		assertEquals(22, ticketServiceImpl.createEvent(createEventInput("closing")).getId());
+	}
+
+	@Test
+	public void testCreateEventsShouldRejectExistingIds() {
+		ticketServiceImpl.createEvent(2, createEventInput("taken"));
+		Map<Integer, EventInput> inputs = new LinkedHashMap<>();
+		inputs.put(1, createEventInput("one"));
+		inputs.put(2, createEventInput("two"));
+		try {
+			ticketServiceImpl.createEvents(inputs);
+			fail();
+		} catch (IllegalArgumentException ex) {
+			// nothing added
+		}
+		assertEquals("taken", ticketServiceImpl.getEvent(2).getName());
+		try {
+			ticketServiceImpl.getEvent(1);
+			fail();
+		} catch (NotFoundException ex) {
+			// not created
+		}
+	}
+
 	@Test(expected = SeatHoldException.class)
 	public void testFindAvailableSeatsShouldThrowException() throws SeatHoldException {
 		String name = "hello";
@@ -148,13 +250,13 @@ public class TicketServiceImplTest {
 		EventInput event = new EventInput(name, ZonedDateTime.now(), 1l, Collections.unmodifiableList(lis), 10);
 		Event createdEvent = ticketServiceImpl.createEvent(event);
 		List<Seat> availableSeats = Arrays.asList(new Seat(new SeatIdentifier(1, 1, 1), SeatState.AVAILABLE), new Seat(new SeatIdentifier(2, 1, 2), SeatState.AVAILABLE));
-		ScheduledFuture<?> mockFuture = context.mock(ScheduledFuture.class);
-		context.checking(new Expectations() {{
-			oneOf(mockExecutor).schedule(with(any(Runnable.class)), with(equal(event.getHoldExpirationSeconds())), with(equal(TimeUnit.SECONDS)));will(returnValue(mockFuture));
-		}});
+		long before = System.currentTimeMillis();
 		SeatHold seatHold = ticketServiceImpl.holdSeats(createdEvent, "a@b.com", availableSeats);
 		assertEquals(1, seatHold.getId());
 		assertEquals(availableSeats.stream().map(seat -> seat.getId()).collect(Collectors.toList()), seatHold.getSeatIds());
+		long expiry = holdRegistry.getExpiry(seatHold.getId());
+		assertTrue(expiry >= before + TimeUnit.SECONDS.toMillis(event.getHoldExpirationSeconds()));
+		assertTrue(expiry <= System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(event.getHoldExpirationSeconds()));
 		context.assertIsSatisfied();
 	}
 
@@ -165,7 +267,220 @@ public class TicketServiceImplTest {
 
 	@Test(expected = NotFoundException.class)
 	public void testShouldThrowNotFoundExceptionForIncorrectCustomer() {
-		holdCollection.put(1, new ScheduledHold(1, 1, new SeatHold(1, 1, "a@b.com", null), null));
+		holdRegistry.put(1, 1, "a@b.com", new int[0], 0, Long.MAX_VALUE);
 		ticketServiceImpl.reserveSeats(1, "b@c.com");
 	}
+
+	private SeatHold createEventAndHold(int numSeats) {
+		List<LevelInput> lis = new ArrayList<>();
+		lis.add(new LevelInput("l1", 2.0, 1, 2));
+		lis.add(new LevelInput("l2", 3.0, 1, 2));
+		ticketServiceImpl.createEvent(createEventInput("hello", lis));
+		return ticketServiceImpl.findAndHoldSeats(numSeats, Optional.empty(), Optional.empty(), "a@b.com");
+	}
+
+	@Test
+	public void testShouldReleaseHold() {
+		SeatHold hold = createEventAndHold(3);
+		assertEquals(1, ticketServiceImpl.numSeatsAvailable(Optional.empty()));
+		ticketServiceImpl.releaseHold(hold.getId(), "a@b.com");
+		assertEquals(4, ticketServiceImpl.numSeatsAvailable(Optional.empty()));
+		assertTrue(holdRegistry.isEmpty());
+	}
+
+	@Test(expected = SeatReservationException.class)
+	public void testShouldNotReserveReleasedHold() {
+		SeatHold hold = createEventAndHold(3);
+		ticketServiceImpl.releaseHold(hold.getId(), "a@b.com");
+		ticketServiceImpl.reserveSeats(hold.getId(), "a@b.com");
+	}
+
+	@Test(expected = NotFoundException.class)
+	public void testShouldNotReleaseOtherCustomersHold() {
+		SeatHold hold = createEventAndHold(3);
+		ticketServiceImpl.releaseHold(hold.getId(), "b@c.com");
+	}
+
+	@Test(expected = SeatHoldException.class)
+	public void testShouldNotReleaseUnknownHold() {
+		ticketServiceImpl.releaseHold(5, "a@b.com");
+	}
+
+	@Test
+	public void testShouldExtendHoldUpToMaxTtl() {
+		SeatHold hold = createEventAndHold(1);
+		long createdTime = holdRegistry.getCreatedTime(hold.getId());
+		long ttl = TimeUnit.SECONDS.toMillis(10);
+		long expiry = ticketServiceImpl.extendHold(hold.getId(), "a@b.com");
+		assertTrue(expiry >= createdTime + ttl);
+		assertEquals(expiry, holdRegistry.getExpiry(hold.getId()));
+		// already extended up to the max TTL, renewing doesn't move it
+		long maxExpiry = createdTime + ttl * TicketServiceImpl.MAX_HOLD_TTL_FACTOR;
+		holdRegistry.extendExpiry(hold.getId(), maxExpiry, System.currentTimeMillis());
+		assertEquals(maxExpiry, ticketServiceImpl.extendHold(hold.getId(), "a@b.com"));
+	}
+
+	@Test
+	public void testShouldExpireHolds() {
+		SeatHold hold = createEventAndHold(3);
+		long expiry = holdRegistry.getExpiry(hold.getId());
+		ticketServiceImpl.expireHolds(expiry - 1);
+		assertEquals(1, ticketServiceImpl.numSeatsAvailable(Optional.empty()));
+		ticketServiceImpl.expireHolds(expiry + TicketServiceImpl.EXPIRY_TICK_MILLIS);
+		assertEquals(4, ticketServiceImpl.numSeatsAvailable(Optional.empty()));
+		assertTrue(holdRegistry.isEmpty());
+	}
+
+	@Test
+	public void testShouldNotExpireExtendedHold() {
+		SeatHold hold = createEventAndHold(3);
+		long expiry = holdRegistry.getExpiry(hold.getId());
+		holdRegistry.extendExpiry(hold.getId(), expiry + 5000, System.currentTimeMillis());
+		ticketServiceImpl.expireHolds(expiry + TicketServiceImpl.EXPIRY_TICK_MILLIS);
+		assertEquals(1, ticketServiceImpl.numSeatsAvailable(Optional.empty()));
+		ticketServiceImpl.expireHolds(expiry + 5000 + TicketServiceImpl.EXPIRY_TICK_MILLIS);
+		assertEquals(4, ticketServiceImpl.numSeatsAvailable(Optional.empty()));
+	}
+
+	@Test
+	public void testShouldReserveSubsetOfHold() {
+		SeatHold hold = createEventAndHold(3);
+		List<SeatIdentifier> subset = hold.getSeatIds().subList(0, 2);
+		ticketServiceImpl.reserveSeats(hold.getId(), "a@b.com", subset);
+		assertEquals(2, ticketServiceImpl.numSeatsAvailable(Optional.empty()));
+		Event event = ticketServiceImpl.getFirstEvent();
+		assertEquals(SeatState.BOOKED, event.getSeats().get(subset.get(0)).getState());
+		assertEquals(SeatState.BOOKED, event.getSeats().get(subset.get(1)).getState());
+		assertEquals(SeatState.AVAILABLE, event.getSeats().get(hold.getSeatIds().get(2)).getState());
+		assertTrue(holdRegistry.isEmpty());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testShouldNotReserveSeatsOutsideHold() {
+		SeatHold hold = createEventAndHold(1);
+		ticketServiceImpl.reserveSeats(hold.getId(), "a@b.com", Collections.singletonList(new SeatIdentifier(2, 1, 2)));
+	}
+
+	@Test
+	public void testShouldEnforceCustomerQuota() {
+		context.checking(new Expectations() {{
+			oneOf(mockExecutor).isShutdown();will(returnValue(false));
+			oneOf(mockExecutor).scheduleWithFixedDelay(with(any(Runnable.class)), with(any(Long.class)), with(any(Long.class)), with(any(TimeUnit.class)));
+		}});
+		CustomerQuotaLimiter limiter = new CustomerQuotaLimiter(new QuotaPolicy(1, 4, 0, 0, 60000));
+		ticketServiceImpl = new TicketServiceImpl(mockExecutor, new ConcurrentHashMap<>(), new ConcurrentHashMap<>(),
+				holdRegistry, new ConcurrentHashMap<>(), limiter);
+		SeatHold hold = createEventAndHold(2);
+		try {
+			ticketServiceImpl.findAndHoldSeats(1, Optional.empty(), Optional.empty(), "a@b.com");
+			fail("second hold should be over quota");
+		} catch (QuotaExceededException ex) {
+			// expected
+		}
+		// other customers are not affected
+		ticketServiceImpl.findAndHoldSeats(1, Optional.empty(), Optional.empty(), "b@c.com");
+		ticketServiceImpl.releaseHold(hold.getId(), "a@b.com");
+		assertEquals(0, limiter.getActiveHolds(1, "a@b.com"));
+		// a failed hold does not use up quota
+		try {
+			ticketServiceImpl.findAndHoldSeats(4, Optional.empty(), Optional.empty(), "a@b.com");
+			fail("not enough seats left");
+		} catch (SeatHoldException ex) {
+			// expected
+		}
+		assertEquals(0, limiter.getActiveHolds(1, "a@b.com"));
+		ticketServiceImpl.findAndHoldSeats(2, Optional.of(1), Optional.of(2), "a@b.com");
+		assertEquals(2, limiter.getHeldSeats(1, "a@b.com"));
+	}
+
+	@Test
+	public void testShouldPublishPricesWithAvailability() {
+		context.checking(new Expectations() {{
+			oneOf(mockExecutor).isShutdown();will(returnValue(false));
+			oneOf(mockExecutor).scheduleWithFixedDelay(with(any(Runnable.class)), with(any(Long.class)), with(any(Long.class)), with(any(TimeUnit.class)));
+		}});
+		// double from half sold, up to double again for recent holds
+		DynamicPricer pricer = new DynamicPricer(new PricingPolicy(new double[] { 0, 0.5 }, new double[] { 1, 2 }, 1,
+				60000, 4));
+		ticketServiceImpl = new TicketServiceImpl(mockExecutor, new ConcurrentHashMap<>(), new ConcurrentHashMap<>(),
+				holdRegistry, new ConcurrentHashMap<>(), CustomerQuotaLimiter.unlimited(), new HoldIdAllocator(), pricer);
+		SeatHold hold = createEventAndHold(2);
+		Availability availability = ticketServiceImpl.getAvailability(hold.getEventId());
+		assertEquals(0, availability.getLevel(1).getAvailableSeats());
+		assertEquals(800L, availability.getLevel(1).getPriceCents());
+		assertEquals(2, availability.getLevel(2).getAvailableSeats());
+		assertEquals(300L, availability.getLevel(2).getPriceCents());
+	}
+
+	@Test
+	public void testShouldQuoteHoldsAndReservations() {
+		context.checking(new Expectations() {{
+			oneOf(mockExecutor).isShutdown();will(returnValue(false));
+			oneOf(mockExecutor).scheduleWithFixedDelay(with(any(Runnable.class)), with(any(Long.class)), with(any(Long.class)), with(any(TimeUnit.class)));
+		}});
+		ConcurrentHashMap<UUID, SeatReservation> reservations = new ConcurrentHashMap<>();
+		// 1.00 per order, 0.50 per seat and 10%
+		ticketServiceImpl = new TicketServiceImpl(mockExecutor, new ConcurrentHashMap<>(), new ConcurrentHashMap<>(),
+				holdRegistry, reservations, CustomerQuotaLimiter.unlimited(), new HoldIdAllocator(),
+				new DynamicPricer(PricingPolicy.FIXED, new FeeSchedule(100, 50, 1000)));
+		SeatHold hold = createEventAndHold(3);
+		PriceQuote quote = hold.getQuote();
+		assertEquals(2, quote.getLevelCount());
+		assertEquals(400L, quote.getLevelSubtotalCents(quote.indexOf(1)));
+		assertEquals(300L, quote.getLevelSubtotalCents(quote.indexOf(2)));
+		assertEquals(320L, quote.getFeeCents());
+		assertEquals(1020L, quote.getTotalCents());
+
+		// the two seats of level 1
+		String reservationId = ticketServiceImpl.reserveSeats(hold.getId(), "a@b.com", hold.getSeatIds().subList(0, 2));
+		PriceQuote booked = reservations.get(UUID.fromString(reservationId)).getQuote();
+		assertEquals(1, booked.getLevelCount());
+		assertEquals(400L, booked.getSubtotalCents());
+		assertEquals(640L, booked.getTotalCents());
+	}
+
+	@Test
+	public void testShouldAuditEveryReservation() {
+		context.checking(new Expectations() {{
+			oneOf(mockExecutor).isShutdown();will(returnValue(false));
+			oneOf(mockExecutor).scheduleWithFixedDelay(with(any(Runnable.class)), with(any(Long.class)), with(any(Long.class)), with(any(TimeUnit.class)));
+		}});
+		List<String> records = Collections.synchronizedList(new ArrayList<>());
+		// holds are sampled out
+		try (AuditLog audit = new AuditLog(16, Integer.MAX_VALUE, record -> records.add(record.getType() + " "
+				+ record.getHoldId() + " " + record.getSeats() + " " + record.getReservationId()))) {
+			ticketServiceImpl = new TicketServiceImpl(mockExecutor, new ConcurrentHashMap<>(), new ConcurrentHashMap<>(),
+					holdRegistry, new ConcurrentHashMap<>(), CustomerQuotaLimiter.unlimited(), new HoldIdAllocator(),
+					DynamicPricer.fixed(), audit);
+			SeatHold hold = createEventAndHold(3);
+			String reservationId = ticketServiceImpl.reserveSeats(hold.getId(), "a@b.com");
+			assertTrue(audit.flush(5, TimeUnit.SECONDS));
+			assertEquals(Collections.singletonList(AuditType.RESERVED + " " + hold.getId() + " 3 " + reservationId),
+					records);
+		}
+	}
+
+	@Test
+	public void testShouldReturnSameHoldOnRetry() {
+		ticketServiceImpl.createEvent(createEventInput("hello", Arrays.asList(new LevelInput("l1", 2.0, 1, 4))));
+		int eventId = ticketServiceImpl.getFirstEvent().getId();
+		SeatHold hold = ticketServiceImpl.findAndHoldSeats(eventId, 2, Optional.empty(), Optional.empty(), "a@b.com", "k1");
+		assertSame(hold, ticketServiceImpl.findAndHoldSeats(eventId, 2, Optional.empty(), Optional.empty(), "a@b.com", "k1"));
+		assertEquals(2, ticketServiceImpl.numSeatsAvailable(eventId, Optional.empty()));
+		assertNotSame(hold, ticketServiceImpl.findAndHoldSeats(eventId, 2, Optional.empty(), Optional.empty(), "a@b.com", "k2"));
+		assertEquals(0, ticketServiceImpl.numSeatsAvailable(eventId, Optional.empty()));
+	}
+
+	@Test
+	public void testShouldReturnSameReservationOnRetry() {
+		SeatHold hold = createEventAndHold(3);
+		String reservationId = ticketServiceImpl.reserveSeats(hold.getId(), "a@b.com", "k1");
+		// the hold is consumed, the retry still succeeds
+		assertEquals(reservationId, ticketServiceImpl.reserveSeats(hold.getId(), "a@b.com", "k1"));
+		try {
+			ticketServiceImpl.reserveSeats(hold.getId(), "a@b.com", "k2");
+			fail();
+		} catch (SeatReservationException expected) {
+		}
+	}
 }
@@ -0,0 +1,100 @@
+package com.ticketapp.service.archive;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ticketapp.bean.Event;
+import com.ticketapp.bean.Seat.SeatState;
+import com.ticketapp.bean.SeatHold;
+import com.ticketapp.bean.SeatReservation;
+import com.ticketapp.bean.input.EventInput;
+import com.ticketapp.bean.input.LevelInput;
+import com.ticketapp.service.HoldRegistry;
+import com.ticketapp.service.TicketServiceImpl;
+
+public class ArchivedEventTest {
+
+	private ScheduledExecutorService scheduler;
+	private TicketServiceImpl ticketService;
+	private Event event;
+
+	@Before
+	public void before() {
+		scheduler = Executors.newSingleThreadScheduledExecutor();
+		ticketService = new TicketServiceImpl(scheduler, new ConcurrentHashMap<>(), new ConcurrentHashMap<>(),
+				new HoldRegistry(), new ConcurrentHashMap<>());
+		event = ticketService.createEvent(new EventInput("e1", ZonedDateTime.now(), 60l,
+				Arrays.asList(new LevelInput("l1", 2.5, 20, 50), new LevelInput("l2", 1.0, 10, 40)), 10));
+	}
+
+	@After
+	public void after() {
+		scheduler.shutdownNow();
+	}
+
+	private SeatReservation reserve(int numSeats) {
+		SeatHold hold = ticketService.findAndHoldSeats(event.getId(), numSeats, Optional.empty(), Optional.empty(),
+				"a@b.com");
+		String reservationId = ticketService.reserveSeats(hold.getId(), "a@b.com");
+		return new SeatReservation(UUID.fromString(reservationId), event.getId(), hold.getSeatIds(), hold.getQuote());
+	}
+
+	@Test
+	public void testShouldFreezeBookedSeatsAndReservations() {
+		SeatReservation first = reserve(3);
+		SeatReservation second = reserve(5);
+		// never booked, the seats are free once archived
+		ticketService.findAndHoldSeats(event.getId(), 4, Optional.empty(), Optional.empty(), "a@b.com");
+
+		ArchivedEvent archived = ArchivedEvent.of(ticketService.exportEvent(event.getId()));
+		assertEquals(1400, archived.getSeatCount());
+		assertEquals(8, archived.getBookedSeatCount());
+		assertEquals(2, archived.getReservationCount());
+		// 1400 seats are 175 bytes before compression
+		assertTrue(archived.getCompressedSize() < 64);
+
+		Event frozen = archived.toEvent();
+		assertEquals(1392, frozen.getAvailableSeatCount(Optional.empty()));
+		for (SeatReservation reservation : Arrays.asList(first, second)) {
+			SeatReservation found = archived.getReservation(reservation.getId());
+			assertEquals(reservation.getSeatIds(), found.getSeatIds());
+			assertEquals(reservation.getQuote().getTotalCents(), found.getQuote().getTotalCents());
+			reservation.getSeatIds().forEach(seatId -> assertEquals(SeatState.BOOKED, frozen.getSeat(seatId).getState()));
+		}
+		assertNull(archived.getReservation(UUID.randomUUID()));
+	}
+
+	@Test
+	public void testShouldReadBackWhatItWrites() throws Exception {
+		SeatReservation reservation = reserve(6);
+		ArchivedEvent archived = ArchivedEvent.of(ticketService.exportEvent(event.getId()));
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		archived.writeTo(new DataOutputStream(bytes));
+		ArchivedEvent read = ArchivedEvent.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+		assertEquals(archived.toString(), read.toString());
+		assertEquals(event.getStartDateTime(), read.getStartDateTime());
+		assertEquals(event.getLevels(), read.getLevels());
+		assertEquals(250L, read.getLevels().get(0).getPriceCents());
+		assertEquals(reservation.getSeatIds(), read.getReservation(reservation.getId()).getSeatIds());
+		assertEquals(archived.toEvent().getChangedSeats().keySet(), read.toEvent().getChangedSeats().keySet());
+	}
+}
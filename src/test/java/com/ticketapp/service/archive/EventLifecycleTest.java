@@ -0,0 +1,128 @@
+package com.ticketapp.service.archive;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.ticketapp.bean.Event;
+import com.ticketapp.bean.SeatHold;
+import com.ticketapp.bean.input.EventInput;
+import com.ticketapp.bean.input.LevelInput;
+import com.ticketapp.service.HoldRegistry;
+import com.ticketapp.service.TicketServiceImpl;
+import com.ticketapp.service.exception.EventNotHostedException;
+import com.ticketapp.service.exception.NotFoundException;
+
+public class EventLifecycleTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static final long RETENTION = TimeUnit.HOURS.toMillis(1);
+
+	private ScheduledExecutorService scheduler;
+	private HoldRegistry holdRegistry;
+	private TicketServiceImpl ticketService;
+	private final AtomicLong now = new AtomicLong();
+
+	@Before
+	public void before() {
+		scheduler = Executors.newSingleThreadScheduledExecutor();
+		holdRegistry = new HoldRegistry();
+		ticketService = new TicketServiceImpl(scheduler, new ConcurrentHashMap<>(), new ConcurrentHashMap<>(),
+				holdRegistry, new ConcurrentHashMap<>());
+	}
+
+	@After
+	public void after() {
+		scheduler.shutdownNow();
+	}
+
+	private Event createEvent(ZonedDateTime start, long durationMinutes) {
+		return ticketService.createEvent(new EventInput("e", start, durationMinutes,
+				Arrays.asList(new LevelInput("l1", 2.0, 2, 4)), 600));
+	}
+
+	@Test
+	public void testShouldArchiveEventsOnceEnded() {
+		ZonedDateTime start = ZonedDateTime.now();
+		Event ended = createEvent(start, 60);
+		Event later = createEvent(start.plusDays(1), 60);
+		EventArchive archive = new EventArchive();
+		EventLifecycle lifecycle = new EventLifecycle(ticketService, archive, RETENTION, now::get);
+		ticketService.addCommitListener(lifecycle);
+
+		SeatHold booked = ticketService.findAndHoldSeats(ended.getId(), 2, Optional.empty(), Optional.empty(), "a@b.com");
+		String reservationId = ticketService.reserveSeats(booked.getId(), "a@b.com");
+		SeatHold open = ticketService.findAndHoldSeats(ended.getId(), 3, Optional.empty(), Optional.empty(), "a@b.com");
+
+		// over, but still within retention
+		now.set(start.toInstant().toEpochMilli() + TimeUnit.MINUTES.toMillis(60) + RETENTION - 1);
+		assertEquals(0, lifecycle.archiveEnded());
+		now.incrementAndGet();
+		assertEquals(1, lifecycle.archiveEnded());
+		assertEquals(0, lifecycle.archiveEnded());
+
+		assertTrue(archive.contains(ended.getId()));
+		assertFalse(archive.contains(later.getId()));
+		assertEquals(6, archive.getEvent(ended.getId()).getAvailableSeatCount(Optional.empty()));
+		assertEquals(booked.getSeatIds(),
+				archive.getReservation(ended.getId(), UUID.fromString(reservationId)).getSeatIds());
+		// the open hold was cancelled along with the event
+		assertTrue(holdRegistry.isEmpty());
+		try {
+			ticketService.reserveSeats(open.getId(), "a@b.com");
+			fail();
+		} catch (EventNotHostedException expected) {
+			// the event left the node with its holds
+		}
+		try {
+			ticketService.getEvent(ended.getId());
+			fail();
+		} catch (NotFoundException expected) {
+		}
+		assertEquals(8, ticketService.numSeatsAvailable(later.getId(), Optional.empty()));
+	}
+
+	@Test
+	public void testShouldOffloadToDiskAndLoadLazily() throws Exception {
+		ZonedDateTime start = ZonedDateTime.now().minusDays(2);
+		Event ended = createEvent(start, 60);
+		SeatHold booked = ticketService.findAndHoldSeats(ended.getId(), 2, Optional.empty(), Optional.empty(), "a@b.com");
+		ticketService.reserveSeats(booked.getId(), "a@b.com");
+		EventArchive archive = new EventArchive(folder.getRoot().toPath().resolve("archive"));
+		EventLifecycle lifecycle = new EventLifecycle(ticketService, archive, RETENTION, System::currentTimeMillis);
+		// told about events created before it
+		ticketService.addCommitListener(lifecycle);
+
+		assertEquals(1, lifecycle.archiveEnded());
+		assertEquals(1, folder.getRoot().toPath().resolve("archive").toFile().list().length);
+		ArchivedEvent archived = archive.get(ended.getId());
+		assertEquals(2, archived.getBookedSeatCount());
+		// softly cached once read
+		assertSame(archived, archive.get(ended.getId()));
+	}
+
+	@Test(expected = NotFoundException.class)
+	public void testShouldNotFindUnarchivedEvent() {
+		new EventArchive().get(1);
+	}
+}
@@ -0,0 +1,162 @@
+package com.ticketapp.service.audit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class AuditLogTest {
+
+	private final List<String> written = new ArrayList<>();
+	private AuditLog audit;
+
+	@After
+	public void after() {
+		if (audit != null) {
+			audit.close();
+		}
+	}
+
+	private synchronized void collect(AuditRecord record) {
+		written.add(record.toString());
+	}
+
+	private synchronized List<String> written() {
+		return new ArrayList<>(written);
+	}
+
+	@Test
+	public void testShouldWriteRecordsInOrder() {
+		audit = new AuditLog(8, 1, this::collect);
+		UUID reservationId = UUID.randomUUID();
+		assertTrue(audit.append(AuditType.HOLD_CREATED, 1, 7, 2, 1050, "a@b.com", null));
+		assertTrue(audit.append(AuditType.RESERVED, 1, 7, 2, 1050, "a@b.com", reservationId));
+		assertTrue(audit.flush(5, TimeUnit.SECONDS));
+		List<String> records = written();
+		assertEquals(2, records.size());
+		assertEquals("AuditRecord[type=HOLD_CREATED seq=0", records.get(0).substring(0, 35));
+		assertTrue(records.get(0).endsWith("eventId=1 holdId=7 seats=2 amountCents=1050 email=a@b.com]"));
+		assertTrue(records.get(1).startsWith("AuditRecord[type=RESERVED seq=1"));
+		assertTrue(records.get(1).endsWith("reservationId=" + reservationId + "]"));
+	}
+
+	@Test
+	public void testShouldSampleOnlySampledTypes() {
+		audit = new AuditLog(1024, 1000000, this::collect);
+		int kept = 0;
+		for (int i = 0; i < 100; i++) {
+			kept += audit.append(AuditType.HOLD_RELEASED, 1, i, 1, -1, "a@b.com", null) ? 1 : 0;
+			assertTrue(audit.append(AuditType.RESERVED, 1, i, 1, -1, "a@b.com", UUID.randomUUID()));
+		}
+		assertTrue(audit.flush(5, TimeUnit.SECONDS));
+		assertEquals(100 + kept, written().size());
+		assertTrue(kept < 5);
+	}
+
+	private static Thread writerThread(Runnable runnable) {
+		Thread thread = new Thread(runnable, "audit-writer");
+		thread.setDaemon(true);
+		return thread;
+	}
+
+	/**
+	 * Sink which holds the first record until <code>stall</code> is counted
+	 * down
+	 */
+	private AuditSink stalling(CountDownLatch entered, CountDownLatch stall) {
+		return record -> {
+			entered.countDown();
+			try {
+				stall.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			collect(record);
+		};
+	}
+
+	@Test
+	public void testDefaultShouldSampleHoldRecordsOnly() {
+		assertEquals(AuditLog.DEFAULT_SAMPLE_EVERY, AuditLog.getDefault().getSampleEvery());
+		assertTrue(AuditLog.getDefault().getSampleEvery() > 1);
+		assertFalse(AuditType.RESERVED.isSampled());
+		assertFalse(AuditType.CANCELLED.isSampled());
+		assertTrue(AuditType.HOLD_CREATED.isSampled());
+	}
+
+	@Test
+	public void testShouldDropSampledAndWaitForAuditedWhenFull() throws Exception {
+		CountDownLatch entered = new CountDownLatch(1);
+		CountDownLatch stall = new CountDownLatch(1);
+		audit = new AuditLog(2, 1, stalling(entered, stall), AuditLogTest::writerThread, Clock.systemUTC(), 60000);
+		assertTrue(audit.append(AuditType.HOLD_CREATED, 1, 0, 1, -1, "a@b.com", null));
+		// the writer holds the first record until it is written, one slot left
+		assertTrue(entered.await(5, TimeUnit.SECONDS));
+		assertTrue(audit.append(AuditType.HOLD_CREATED, 1, 1, 1, -1, "a@b.com", null));
+		assertFalse(audit.append(AuditType.HOLD_CREATED, 1, 2, 1, -1, "a@b.com", null));
+		assertEquals(1, audit.getDropped());
+		Thread reserver = new Thread(() -> audit.append(AuditType.RESERVED, 1, 3, 1, -1, "a@b.com", UUID.randomUUID()));
+		reserver.start();
+		reserver.join(200);
+		assertTrue(reserver.isAlive());
+		stall.countDown();
+		reserver.join(5000);
+		assertFalse(reserver.isAlive());
+		assertTrue(audit.flush(5, TimeUnit.SECONDS));
+		List<String> records = written();
+		assertEquals(3, records.size());
+		assertTrue(records.get(2).contains("type=RESERVED seq=2"));
+	}
+
+	@Test
+	public void testShouldDropAuditedAfterBoundedWait() throws Exception {
+		CountDownLatch entered = new CountDownLatch(1);
+		CountDownLatch stall = new CountDownLatch(1);
+		audit = new AuditLog(2, 1, stalling(entered, stall), AuditLogTest::writerThread, Clock.systemUTC(), 50);
+		assertTrue(audit.append(AuditType.RESERVED, 1, 0, 1, -1, "a@b.com", UUID.randomUUID()));
+		assertTrue(entered.await(5, TimeUnit.SECONDS));
+		assertTrue(audit.append(AuditType.RESERVED, 1, 1, 1, -1, "a@b.com", UUID.randomUUID()));
+		long start = System.nanoTime();
+		assertFalse(audit.append(AuditType.RESERVED, 1, 2, 1, -1, "a@b.com", UUID.randomUUID()));
+		assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+		assertEquals(1, audit.getDropped());
+		stall.countDown();
+		assertTrue(audit.flush(5, TimeUnit.SECONDS));
+		assertEquals(2, written().size());
+	}
+
+	@Test
+	public void testShouldTimeRecordsWithClock() {
+		Clock clock = Clock.fixed(Instant.ofEpochMilli(1234567), ZoneOffset.UTC);
+		List<Long> times = new ArrayList<>();
+		audit = new AuditLog(8, 1, record -> times.add(record.getTime()), AuditLogTest::writerThread, clock, 10);
+		assertTrue(audit.append(AuditType.HOLD_CREATED, 1, 7, 2, -1, "a@b.com", null));
+		audit.close();
+		assertEquals(1, times.size());
+		assertEquals(1234567L, times.get(0).longValue());
+	}
+
+	@Test
+	public void testShouldWritePendingRecordsOnClose() {
+		audit = new AuditLog(16, 1, this::collect);
+		for (int i = 0; i < 10; i++) {
+			audit.append(AuditType.HOLD_EXPIRED, 1, i, 1, -1, null, null);
+		}
+		audit.close();
+		assertEquals(10, written().size());
+		assertFalse(audit.append(AuditType.RESERVED, 1, 0, 1, -1, null, null));
+		assertNull(new AuditRecord().getReservationId());
+	}
+}
@@ -0,0 +1,45 @@
+package com.ticketapp.service.cluster;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class ConsistentHashRingTest {
+
+	private static final int KEYS = 30000;
+
+	@Test
+	public void testShouldSpreadKeysEvenly() {
+		ConsistentHashRing ring = new ConsistentHashRing(Arrays.asList("n1", "n2", "n3"), 128);
+		Map<String, Integer> counts = new HashMap<>();
+		for (int key = 1; key <= KEYS; key++) {
+			counts.merge(ring.get(key), 1, Integer::sum);
+		}
+		assertEquals(3, counts.size());
+		for (int count : counts.values()) {
+			assertTrue("uneven ring: " + counts, count > KEYS / 5 && count < KEYS / 2);
+		}
+	}
+
+	@Test
+	public void testShouldOnlyRemapKeysOfRemovedNode() {
+		ConsistentHashRing ring = new ConsistentHashRing(Arrays.asList("n1", "n2", "n3"), 128);
+		ConsistentHashRing smaller = new ConsistentHashRing(Arrays.asList("n1", "n2"), 128);
+		for (int key = 1; key <= KEYS; key++) {
+			String owner = ring.get(key);
+			if (!owner.equals("n3")) {
+				assertEquals(owner, smaller.get(key));
+			}
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testShouldRejectEmptyRing() {
+		new ConsistentHashRing(Arrays.asList(), 128);
+	}
+}
@@ -0,0 +1,248 @@
+package com.ticketapp.service.cluster;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ticketapp.bean.Event;
+import com.ticketapp.bean.SeatHold;
+import com.ticketapp.bean.input.EventInput;
+import com.ticketapp.bean.input.LevelInput;
+import com.ticketapp.service.HoldIdAllocator;
+import com.ticketapp.service.HoldRegistry;
+import com.ticketapp.service.TicketNode;
+import com.ticketapp.service.TicketServiceImpl;
+import com.ticketapp.service.exception.NotFoundException;
+import com.ticketapp.service.exception.SeatHoldException;
+import com.ticketapp.service.exception.SeatReservationException;
+import com.ticketapp.service.quota.CustomerQuotaLimiter;
+
+public class TicketRouterTest {
+
+	private static final long TIMEOUT = 30000;
+	private List<ScheduledExecutorService> schedulers;
+	private Map<String, TicketServiceImpl> nodes;
+	private HoldIdAllocator holdIdAllocator;
+	private TicketRouter router;
+
+	@Before
+	public void before() {
+		holdIdAllocator = new HoldIdAllocator();
+		schedulers = new ArrayList<>();
+		nodes = new LinkedHashMap<>();
+		for (String name : Arrays.asList("n1", "n2", "n3")) {
+			// each node has its own hold scheduler
+			ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+			schedulers.add(scheduler);
+			nodes.put(name, new TicketServiceImpl(scheduler, new ConcurrentHashMap<>(), new ConcurrentHashMap<>(),
+					new HoldRegistry(), new ConcurrentHashMap<>(), CustomerQuotaLimiter.unlimited(), holdIdAllocator));
+		}
+		router = new TicketRouter(nodes, holdIdAllocator);
+	}
+
+	@After
+	public void after() {
+		schedulers.forEach(ScheduledExecutorService::shutdownNow);
+	}
+
+	private Event createEvent(String name) {
+		return router.createEvent(new EventInput(name, ZonedDateTime.now(), 1l,
+				Arrays.asList(new LevelInput("l1", 2.0, 10, 10), new LevelInput("l2", 1.0, 10, 10)), 10));
+	}
+
+	@Test
+	public void testShouldCreateEventsOnTheirOwners() {
+		List<EventInput> season = new ArrayList<>();
+		for (int i = 1; i <= 12; i++) {
+			season.add(new EventInput("s" + i, ZonedDateTime.now(), 1l,
+					Arrays.asList(new LevelInput("l1", 2.0, 10, 10), new LevelInput("l2", 1.0, 10, 10)), 10));
+		}
+		List<Event> events = router.createEvents(season);
+		assertEquals(12, events.size());
+		Set<String> owners = new HashSet<>();
+		for (int i = 0; i < events.size(); i++) {
+			Event event = events.get(i);
+			assertEquals(i + 1, event.getId());
+			assertEquals("s" + (i + 1), event.getName());
+			String owner = router.getOwner(event.getId());
+			owners.add(owner);
+			assertEquals(event.getName(), nodes.get(owner).getEvent(event.getId()).getName());
+		}
+		assertTrue(owners.size() > 1);
+		// the first event is the default one
+		assertEquals(200, router.numSeatsAvailable(Optional.empty()));
+		assertEquals(13, createEvent("next").getId());
+	}
+
+	@Test
+	public void testShouldPartitionEvents() {
+		Set<String> owners = new HashSet<>();
+		for (int i = 1; i <= 12; i++) {
+			Event event = createEvent("e" + i);
+			assertEquals(i, event.getId());
+			String owner = router.getOwner(event.getId());
+			owners.add(owner);
+			assertEquals(event.getId(), nodes.get(owner).getEvent(event.getId()).getId());
+			assertEquals(event.getId(), router.getEvent(event.getId()).getId());
+		}
+		assertTrue(owners.size() > 1);
+	}
+
+	@Test
+	public void testShouldRouteHolds() {
+		createEvent("e1");
+		Event event = createEvent("e2");
+		SeatHold hold = router.findAndHoldSeats(event.getId(), 3, Optional.empty(), Optional.empty(), "a@b.com");
+		assertEquals(event.getId(), hold.getEventId());
+		assertEquals(197, router.numSeatsAvailable(event.getId(), Optional.empty()));
+		assertEquals(200, router.numSeatsAvailable(Optional.empty()));
+		assertTrue(router.extendHold(hold.getId(), "a@b.com") > 0);
+		router.reserveSeats(hold.getId(), "a@b.com", hold.getSeatIds().subList(0, 1));
+		assertEquals(199, router.numSeatsAvailable(event.getId(), Optional.empty()));
+	}
+
+	@Test(expected = SeatReservationException.class)
+	public void testShouldNotReserveUnknownHold() {
+		createEvent("e1");
+		router.reserveSeats(12345, "a@b.com");
+	}
+
+	@Test
+	public void testShouldNotRetryFailuresWhenAnotherEventMoves() {
+		Event event = createEvent("e1");
+		Event other = createEvent("e2");
+		SeatHold hold = router.findAndHoldSeats(event.getId(), 1, Optional.empty(), Optional.empty(), "a@b.com");
+		router.releaseHold(hold.getId(), "a@b.com");
+		String owner = router.getOwner(event.getId());
+		String target = nodes.keySet().stream().filter(name -> !name.equals(router.getOwner(other.getId())))
+				.findFirst().get();
+		// the owner moves the other event during every reservation
+		AtomicInteger reserves = new AtomicInteger();
+		TicketRouter[] movingRouter = new TicketRouter[1];
+		Map<String, TicketNode> wrapped = new LinkedHashMap<>(nodes);
+		wrapped.put(owner, (TicketNode) Proxy.newProxyInstance(TicketNode.class.getClassLoader(),
+				new Class<?>[] { TicketNode.class }, (proxy, method, args) -> {
+					if (method.getName().equals("reserveSeats")) {
+						reserves.incrementAndGet();
+						movingRouter[0].moveEvent(other.getId(), target);
+					}
+					try {
+						return method.invoke(nodes.get(owner), args);
+					} catch (InvocationTargetException ex) {
+						throw ex.getCause();
+					}
+				}));
+		movingRouter[0] = new TicketRouter(wrapped, holdIdAllocator);
+		try {
+			movingRouter[0].reserveSeats(hold.getId(), "a@b.com");
+			fail();
+		} catch (SeatReservationException expected) {
+			// released, whatever else moved meanwhile
+		}
+		assertEquals(1, reserves.get());
+		assertEquals(target, movingRouter[0].getOwner(other.getId()));
+	}
+
+	@Test
+	public void testShouldMoveEventWithHolds() {
+		Event event = createEvent("e1");
+		SeatHold reserved = router.findAndHoldSeats(event.getId(), 2, Optional.empty(), Optional.empty(), "a@b.com");
+		SeatHold released = router.findAndHoldSeats(event.getId(), 3, Optional.empty(), Optional.empty(), "b@c.com");
+		router.reserveSeats(reserved.getId(), "a@b.com");
+		SeatHold open = router.findAndHoldSeats(event.getId(), 4, Optional.empty(), Optional.empty(), "c@d.com");
+		router.releaseHold(released.getId(), "b@c.com");
+
+		String source = router.getOwner(event.getId());
+		String target = nodes.keySet().stream().filter(name -> !name.equals(source)).findFirst().get();
+		router.moveEvent(event.getId(), target);
+		assertEquals(target, router.getOwner(event.getId()));
+		assertEquals(194, nodes.get(target).numSeatsAvailable(event.getId(), Optional.empty()));
+
+		// the open hold moved along
+		router.reserveSeats(open.getId(), "c@d.com");
+		assertEquals(194, router.numSeatsAvailable(event.getId(), Optional.empty()));
+		SeatHold hold = router.findAndHoldSeats(event.getId(), 1, Optional.empty(), Optional.empty(), "a@b.com");
+		assertEquals(event.getId(), hold.getEventId());
+
+		// and back to its ring owner
+		router.moveEvent(event.getId(), source);
+		assertEquals(source, router.getOwner(event.getId()));
+		router.releaseHold(hold.getId(), "a@b.com");
+		assertEquals(194, router.numSeatsAvailable(event.getId(), Optional.empty()));
+	}
+
+	@Test(timeout = TIMEOUT)
+	public void testShouldNotLoseSeatsWhileMoving() throws Exception {
+		Event event = createEvent("e1");
+		List<String> names = new ArrayList<>(nodes.keySet());
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		Set<String> reservations = ConcurrentHashMap.newKeySet();
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int t = 0; t < 3; t++) {
+				String email = "c" + t + "@d.com";
+				futures.add(executor.submit(() -> {
+					for (int i = 0; i < 200; i++) {
+						try {
+							SeatHold hold = router.findAndHoldSeats(event.getId(), 1, Optional.empty(),
+									Optional.empty(), email);
+							if (i % 2 == 0) {
+								reservations.add(router.reserveSeats(hold.getId(), email));
+							} else {
+								router.releaseHold(hold.getId(), email);
+							}
+						} catch (SeatHoldException ex) {
+							// sold out
+						}
+					}
+				}));
+			}
+			Future<?> mover = executor.submit(() -> {
+				for (int i = 0; i < 20; i++) {
+					router.moveEvent(event.getId(), names.get(i % names.size()));
+				}
+			});
+			mover.get(TIMEOUT, TimeUnit.MILLISECONDS);
+			for (Future<?> future : futures) {
+				future.get(TIMEOUT, TimeUnit.MILLISECONDS);
+			}
+		} finally {
+			executor.shutdown();
+		}
+		assertEquals(200 - reservations.size(), router.numSeatsAvailable(event.getId(), Optional.empty()));
+		// only the owner has the event
+		String owner = router.getOwner(event.getId());
+		nodes.forEach((name, node) -> {
+			try {
+				node.getEvent(event.getId());
+				assertEquals(owner, name);
+			} catch (NotFoundException ex) {
+				assertNotEquals(owner, name);
+			}
+		});
+	}
+}
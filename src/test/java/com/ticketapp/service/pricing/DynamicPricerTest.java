@@ -0,0 +1,164 @@
+package com.ticketapp.service.pricing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ticketapp.bean.Availability;
+import com.ticketapp.bean.Event;
+import com.ticketapp.bean.PriceQuote;
+import com.ticketapp.bean.Seat;
+import com.ticketapp.bean.Seat.SeatState;
+import com.ticketapp.bean.SeatIdentifier;
+import com.ticketapp.bean.SeatLevel;
+
+public class DynamicPricerTest {
+
+	private AtomicLong clock;
+	private DynamicPricer pricer;
+	private Event event;
+
+	@Before
+	public void before() {
+		clock = new AtomicLong(TimeUnit.SECONDS.toMillis(100));
+		// +20% from half sold, +50% from 80% sold, up to +50% for hold pressure over 10s, never more than double
+		pricer = new DynamicPricer(new PricingPolicy(new double[] { 0, 0.5, 0.8 }, new double[] { 1, 1.2, 1.5 }, 0.5,
+				TimeUnit.SECONDS.toMillis(10), 2), FeeSchedule.NONE, clock::get);
+		event = new Event(1, "Concert", ZonedDateTime.now(), 120, Arrays.asList(
+				new SeatLevel(1, "Orchestra", 100.0, 1, 10), new SeatLevel(2, "Balcony", 50.0, 1, 10)), 10);
+	}
+
+	private static List<SeatIdentifier> seatIds(int level, int count) {
+		return IntStream.rangeClosed(1, count).mapToObj(seat -> new SeatIdentifier(level, 1, seat))
+				.collect(Collectors.toList());
+	}
+
+	private static Event book(Event event, List<SeatIdentifier> seatIds) {
+		return new Event(event, Collections.singletonMap(SeatState.BOOKED,
+				seatIds.stream().map(seatId -> new Seat(seatId, SeatState.AVAILABLE)).collect(Collectors.toList())));
+	}
+
+	@Test
+	public void testShouldKeepBasePricesWithoutDemand() {
+		Availability availability = pricer.price(event);
+		assertEquals(2, availability.getLevels().size());
+		assertEquals(10000L, availability.getLevel(1).getPriceCents());
+		assertEquals(5000L, availability.getLevel(2).getPriceCents());
+		assertEquals(10, availability.getLevel(1).getAvailableSeats());
+	}
+
+	@Test
+	public void testShouldRaisePriceWithSellThrough() {
+		Availability availability = pricer.price(book(event, seatIds(1, 5)));
+		assertEquals(12000L, availability.getLevel(1).getPriceCents());
+		assertEquals(10000L, availability.getLevel(1).getBasePriceCents());
+		assertEquals(5, availability.getLevel(1).getAvailableSeats());
+		// other levels are priced on their own
+		assertEquals(5000L, availability.getLevel(2).getPriceCents());
+	}
+
+	@Test
+	public void testShouldRaisePriceWithRecentHolds() {
+		pricer.recordHold(event, seatIds(1, 5));
+		// 5 seats held recently for 10 available
+		assertEquals(12500L, pricer.price(event).getLevel(1).getPriceCents());
+		clock.addAndGet(TimeUnit.SECONDS.toMillis(5));
+		assertEquals(12500L, pricer.price(event).getLevel(1).getPriceCents());
+		// out of the window
+		clock.addAndGet(TimeUnit.SECONDS.toMillis(6));
+		assertEquals(10000L, pricer.price(event).getLevel(1).getPriceCents());
+	}
+
+	@Test
+	public void testShouldCapMultiplier() {
+		pricer.recordHold(event, seatIds(1, 9));
+		Availability availability = pricer.price(book(event, seatIds(1, 9)));
+		assertEquals(20000L, availability.getLevel(1).getPriceCents());
+	}
+
+	@Test
+	public void testShouldKeepFixedPrices() {
+		DynamicPricer fixed = DynamicPricer.fixed();
+		fixed.recordHold(event, seatIds(1, 9));
+		assertEquals(10000L, fixed.price(book(event, seatIds(1, 9))).getLevel(1).getPriceCents());
+	}
+
+	@Test
+	public void testShouldUseEventPolicy() {
+		pricer.setPolicy(2, PricingPolicy.FIXED);
+		Event other = new Event(2, "Other", ZonedDateTime.now(), 120, event.getLayout(), 10);
+		assertEquals(10000L, pricer.price(book(other, seatIds(1, 9))).getLevel(1).getPriceCents());
+		assertEquals(15000L, pricer.price(book(event, seatIds(1, 9))).getLevel(1).getPriceCents());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testShouldRejectUnorderedTiers() {
+		new PricingPolicy(new double[] { 0, 0.8, 0.5 }, new double[] { 1, 1.2, 1.5 }, 0, 1000, 2);
+	}
+
+	@Test
+	public void testShouldQuoteSeatsPerLevel() {
+		// 2.00 per order, 10%
+		DynamicPricer withFees = new DynamicPricer(PricingPolicy.FIXED, new FeeSchedule(200, 0, 1000), clock::get);
+		List<SeatIdentifier> seatIds = seatIds(1, 3);
+		seatIds.addAll(seatIds(2, 2));
+		PriceQuote quote = withFees.quote(event, seatIds);
+		assertEquals(2, quote.getLevelCount());
+		assertEquals(1, quote.getLevelId(0));
+		assertEquals(3, quote.getSeatCount(0));
+		assertEquals(30000L, quote.getLevelSubtotalCents(0));
+		assertEquals(10000L, quote.getLevelSubtotalCents(1));
+		assertEquals(5, quote.getSeatCount());
+		assertEquals(40000L, quote.getSubtotalCents());
+		assertEquals(4200L, quote.getFeeCents());
+		assertEquals(44200L, quote.getTotalCents());
+	}
+
+	@Test
+	public void testShouldRequoteAtQuotedPrices() {
+		List<SeatIdentifier> seatIds = seatIds(1, 4);
+		seatIds.addAll(seatIds(2, 1));
+		PriceQuote quote = pricer.quote(book(event, seatIds(1, 5)), seatIds);
+		assertEquals(12000L, quote.getUnitPriceCents(0));
+		// prices have gone up since
+		assertEquals(15000L, pricer.price(book(event, seatIds(1, 9))).getLevel(1).getPriceCents());
+		PriceQuote booked = pricer.requote(quote, seatIds(1, 2));
+		assertEquals(1, booked.getLevelCount());
+		assertEquals(24000L, booked.getTotalCents());
+		assertSame(quote, pricer.requote(quote, seatIds));
+	}
+
+	@Test
+	public void testShouldRefundWithoutOrderFee() {
+		// 2.00 per order, 10%
+		DynamicPricer withFees = new DynamicPricer(PricingPolicy.FIXED, new FeeSchedule(200, 0, 1000), clock::get);
+		List<SeatIdentifier> seatIds = seatIds(1, 3);
+		seatIds.addAll(seatIds(2, 2));
+		PriceQuote quote = withFees.quote(event, seatIds);
+		PriceQuote refund = withFees.refund(quote, seatIds(2, 1));
+		assertEquals(5000L, refund.getSubtotalCents());
+		assertEquals(500L, refund.getFeeCents());
+		PriceQuote rest = quote.without(refund);
+		assertEquals(35000L, rest.getSubtotalCents());
+		assertEquals(3700L, rest.getFeeCents());
+		assertEquals(quote.getTotalCents(), refund.getTotalCents() + rest.getTotalCents());
+		// the last seats take the order fee with them
+		assertSame(quote, withFees.refund(quote, seatIds));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testShouldNotRequoteOtherLevels() {
+		pricer.requote(pricer.quote(event, seatIds(1, 2)), seatIds(2, 1));
+	}
+}
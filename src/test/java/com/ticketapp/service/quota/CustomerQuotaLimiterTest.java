@@ -0,0 +1,103 @@
+package com.ticketapp.service.quota;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ticketapp.service.exception.QuotaExceededException;
+import com.ticketapp.service.exception.SeatHoldException;
+
+public class CustomerQuotaLimiterTest {
+
+	private AtomicLong clock;
+	private CustomerQuotaLimiter limiter;
+
+	@Before
+	public void before() {
+		clock = new AtomicLong(TimeUnit.SECONDS.toNanos(100));
+		// 2 holds, 6 seats, 1 attempt per second with bursts of 3, forgotten after 1 minute
+		limiter = new CustomerQuotaLimiter(new QuotaPolicy(2, 6, 1, 3, TimeUnit.MINUTES.toMillis(1)), clock::get);
+	}
+
+	private void assertRejected(int eventId, String email, int seats) {
+		try {
+			limiter.acquire(eventId, email, seats);
+			fail("quota should have been exceeded");
+		} catch (QuotaExceededException ex) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testShouldLimitActiveHolds() {
+		limiter.acquire(1, "a@b.com", 1);
+		limiter.acquire(1, "a@b.com", 1);
+		assertRejected(1, "a@b.com", 1);
+		assertEquals(2, limiter.getActiveHolds(1, "a@b.com"));
+		limiter.release(1, "a@b.com", 1);
+		clock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+		limiter.acquire(1, "a@b.com", 1);
+	}
+
+	@Test
+	public void testShouldLimitHeldSeats() {
+		limiter.acquire(1, "a@b.com", 4);
+		assertRejected(1, "a@b.com", 3);
+		limiter.acquire(1, "a@b.com", 2);
+		assertEquals(6, limiter.getHeldSeats(1, "a@b.com"));
+	}
+
+	@Test
+	public void testShouldRateLimitAttempts() {
+		limiter.acquire(1, "a@b.com", 1);
+		limiter.release(1, "a@b.com", 1);
+		limiter.acquire(1, "a@b.com", 1);
+		limiter.release(1, "a@b.com", 1);
+		limiter.acquire(1, "a@b.com", 1);
+		limiter.release(1, "a@b.com", 1);
+		// burst used up
+		assertRejected(1, "a@b.com", 1);
+		clock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+		limiter.acquire(1, "a@b.com", 1);
+	}
+
+	@Test
+	public void testShouldKeepEventsAndCustomersApart() {
+		limiter.acquire(1, "a@b.com", 6);
+		limiter.acquire(2, "a@b.com", 6);
+		limiter.acquire(1, "b@c.com", 6);
+		assertEquals(6, limiter.getHeldSeats(2, "a@b.com"));
+	}
+
+	@Test
+	public void testShouldApplyEventPolicy() {
+		limiter.setPolicy(2, QuotaPolicy.UNLIMITED);
+		for (int i = 0; i < 100; i++) {
+			limiter.acquire(2, "a@b.com", 10);
+		}
+		assertEquals(0, limiter.size());
+	}
+
+	@Test
+	public void testShouldEvictIdleCustomers() {
+		limiter.acquire(1, "a@b.com", 1);
+		limiter.acquire(1, "b@c.com", 1);
+		limiter.release(1, "b@c.com", 1);
+		clock.addAndGet(TimeUnit.MINUTES.toNanos(2));
+		limiter.evictIdle();
+		// a@b.com still has an open hold
+		assertEquals(1, limiter.size());
+		assertEquals(1, limiter.getActiveHolds(1, "a@b.com"));
+		assertEquals(0, limiter.getActiveHolds(1, "b@c.com"));
+	}
+
+	@Test(expected = SeatHoldException.class)
+	public void testQuotaExceptionShouldBeHoldException() {
+		limiter.acquire(1, "a@b.com", 7);
+	}
+}
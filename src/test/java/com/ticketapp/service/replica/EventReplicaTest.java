@@ -0,0 +1,120 @@
+package com.ticketapp.service.replica;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.nio.ByteBuffer;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ticketapp.bean.Event;
+import com.ticketapp.bean.Seat.SeatState;
+import com.ticketapp.bean.SeatHold;
+import com.ticketapp.bean.SeatIdentifier;
+import com.ticketapp.bean.input.EventInput;
+import com.ticketapp.bean.input.LevelInput;
+import com.ticketapp.service.HoldRegistry;
+import com.ticketapp.service.TicketServiceImpl;
+import com.ticketapp.service.exception.NotFoundException;
+
+public class EventReplicaTest {
+
+	private ScheduledExecutorService scheduler;
+	private TicketServiceImpl ticketService;
+	private EventReplica replica;
+	private Event event;
+
+	@Before
+	public void before() {
+		scheduler = Executors.newSingleThreadScheduledExecutor();
+		ticketService = new TicketServiceImpl(scheduler, new ConcurrentHashMap<>(), new ConcurrentHashMap<>(),
+				new HoldRegistry(), new ConcurrentHashMap<>());
+		replica = new EventReplica();
+		ticketService.addCommitListener(replica);
+		// 2 rows of 4, then 1 row of 3
+		event = ticketService.createEvent(new EventInput("e1", ZonedDateTime.now(), 1l,
+				Arrays.asList(new LevelInput("l1", 2.0, 2, 4), new LevelInput("l2", 1.0, 1, 3)), 10));
+	}
+
+	@After
+	public void after() {
+		scheduler.shutdownNow();
+	}
+
+	@Test
+	public void testShouldFollowCommits() {
+		assertEquals(1, replica.getVersion(event.getId()));
+		assertEquals(11, replica.numSeatsAvailable(event.getId(), Optional.empty()));
+		SeatHold hold = ticketService.findAndHoldSeats(event.getId(), 3, Optional.empty(), Optional.empty(), "a@b.com");
+		assertEquals(2, replica.getVersion(event.getId()));
+		assertEquals(8, replica.numSeatsAvailable(event.getId(), Optional.empty()));
+		assertEquals(5, replica.numSeatsAvailable(event.getId(), Optional.of(1)));
+		assertEquals(3, replica.numSeatsAvailable(event.getId(), Optional.of(2)));
+		assertEquals(0, replica.numSeatsAvailable(event.getId(), Optional.of(3)));
+		ticketService.releaseHold(hold.getId(), "a@b.com");
+		assertEquals(3, replica.getVersion(event.getId()));
+		assertEquals(11, replica.numSeatsAvailable(event.getId(), Optional.empty()));
+	}
+
+	@Test
+	public void testShouldServeSeatMapBitmap() {
+		ticketService.findAndHoldSeats(event.getId(), 2, Optional.empty(), Optional.empty(), "a@b.com");
+		ByteBuffer seatMap = replica.getSeatMap(event.getId());
+		// 11 seats in 2 bytes, the first two seats are taken
+		assertEquals(2, seatMap.remaining());
+		assertEquals(0b11111100, seatMap.get(0) & 0xFF);
+		assertEquals(0b111, seatMap.get(1) & 0xFF);
+	}
+
+	@Test
+	public void testShouldFindAdjacentSeats() {
+		// takes row 1 seats 1-3, leaving a single seat in that row
+		ticketService.findAndHoldSeats(event.getId(), 3, Optional.empty(), Optional.empty(), "a@b.com");
+		assertEquals(new SeatIdentifier(1, 1, 4),
+				replica.findAdjacentSeats(event.getId(), Optional.empty(), Optional.empty(), 1));
+		assertEquals(new SeatIdentifier(1, 2, 1),
+				replica.findAdjacentSeats(event.getId(), Optional.empty(), Optional.empty(), 2));
+		assertEquals(new SeatIdentifier(2, 1, 1),
+				replica.findAdjacentSeats(event.getId(), Optional.of(2), Optional.empty(), 3));
+		assertNull(replica.findAdjacentSeats(event.getId(), Optional.empty(), Optional.empty(), 5));
+	}
+
+	@Test
+	public void testShouldApplyCommitsAcrossSeatMapPages() {
+		Event large = ticketService.createEvent(new EventInput("e2", ZonedDateTime.now(), 1l,
+				Arrays.asList(new LevelInput("l1", 2.0, 100, 50)), 10));
+		SeatHold first = ticketService.findAndHoldSeats(large.getId(), 4090, Optional.empty(), Optional.empty(),
+				"a@b.com");
+		ticketService.findAndHoldSeats(large.getId(), 20, Optional.empty(), Optional.empty(), "a@b.com");
+		ticketService.releaseHold(first.getId(), "a@b.com");
+		Event current = ticketService.getEvent(large.getId());
+		ByteBuffer seatMap = replica.getSeatMap(large.getId());
+		for (int seatIndex = 0; seatIndex < current.getLayout().size(); seatIndex++) {
+			boolean available = (seatMap.get(seatIndex / 8) & (1 << (seatIndex % 8))) != 0;
+			assertEquals(current.getSeatState(seatIndex) == SeatState.AVAILABLE, available);
+		}
+		assertEquals(4980, replica.numSeatsAvailable(large.getId(), Optional.empty()));
+	}
+
+	@Test
+	public void testShouldReplayExistingEvents() {
+		EventReplica late = new EventReplica();
+		ticketService.findAndHoldSeats(event.getId(), 3, Optional.empty(), Optional.empty(), "a@b.com");
+		ticketService.addCommitListener(late);
+		assertEquals(8, late.numSeatsAvailable(event.getId(), Optional.empty()));
+	}
+
+	@Test(expected = NotFoundException.class)
+	public void testShouldDropExportedEvents() {
+		ticketService.exportEvent(event.getId());
+		replica.numSeatsAvailable(event.getId(), Optional.empty());
+	}
+}
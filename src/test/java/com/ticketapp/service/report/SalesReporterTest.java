@@ -0,0 +1,154 @@
+package com.ticketapp.service.report;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ticketapp.bean.SalesReport;
+import com.ticketapp.bean.SeatHold;
+import com.ticketapp.bean.input.EventInput;
+import com.ticketapp.bean.input.LevelInput;
+import com.ticketapp.service.HoldIdAllocator;
+import com.ticketapp.service.HoldRegistry;
+import com.ticketapp.service.TicketServiceImpl;
+import com.ticketapp.service.audit.AuditLog;
+import com.ticketapp.service.exception.NotFoundException;
+import com.ticketapp.service.pricing.DynamicPricer;
+import com.ticketapp.service.pricing.FeeSchedule;
+import com.ticketapp.service.pricing.PricingPolicy;
+import com.ticketapp.service.quota.CustomerQuotaLimiter;
+import com.ticketapp.util.VirtualTimeScheduler;
+
+public class SalesReporterTest {
+
+	private VirtualTimeScheduler scheduler;
+	private TicketServiceImpl ticketService;
+	private SalesReporter reporter;
+	private int eventId;
+
+	@Before
+	public void before() {
+		scheduler = new VirtualTimeScheduler(0);
+		ticketService = new TicketServiceImpl(scheduler, new ConcurrentHashMap<>(), new ConcurrentHashMap<>(),
+				new HoldRegistry(), new ConcurrentHashMap<>(), CustomerQuotaLimiter.unlimited(), new HoldIdAllocator(),
+				DynamicPricer.fixed(), AuditLog.getDefault(), scheduler.getClock());
+		// minute buckets over the last 5 minutes
+		reporter = new SalesReporter(TimeUnit.MINUTES.toMillis(1), 5, scheduler.getClock());
+		ticketService.addCommitListener(reporter);
+		eventId = ticketService.createEvent(new EventInput("report", ZonedDateTime.now(), 120,
+				Arrays.asList(new LevelInput("l1", 50.0, 2, 5), new LevelInput("l2", 20.0, 2, 5)), 30)).getId();
+	}
+
+	@After
+	public void after() {
+		scheduler.shutdownNow();
+	}
+
+	@Test
+	public void testShouldReportSoldHeldAndRevenuePerLevel() {
+		SeatHold first = ticketService.findAndHoldSeats(eventId, 4, Optional.of(1), Optional.of(1), "a@b.com");
+		SeatHold second = ticketService.findAndHoldSeats(eventId, 3, Optional.of(2), Optional.of(2), "b@c.com");
+		ticketService.reserveSeats(first.getId(), "a@b.com", first.getSeatIds().subList(0, 3));
+		SalesReport report = reporter.getReport(eventId);
+		assertEquals(3, report.getLevel(1).getSoldSeats());
+		assertEquals(0, report.getLevel(1).getHeldSeats());
+		assertEquals(15000, report.getLevel(1).getRevenueCents());
+		assertEquals(0, report.getLevel(2).getSoldSeats());
+		assertEquals(3, report.getLevel(2).getHeldSeats());
+		assertEquals(3, report.getSoldSeats());
+		assertEquals(15000, report.getRevenueCents());
+		// 3 of the 7 seats held were booked
+		assertEquals(0.75, report.getLevel(1).getConversion(), 0.001);
+		assertEquals(3.0 / 7, report.getConversion(), 0.001);
+
+		ticketService.reserveSeats(second.getId(), "b@c.com");
+		report = reporter.getReport(eventId);
+		assertEquals(3, report.getLevel(2).getSoldSeats());
+		assertEquals(0, report.getHeldSeats());
+		assertEquals(21000, report.getRevenueCents());
+		assertEquals(6.0 / 7, report.getConversion(), 0.001);
+	}
+
+	@Test
+	public void testShouldReportRevenueAsBooked() {
+		ticketService = new TicketServiceImpl(scheduler, new ConcurrentHashMap<>(), new ConcurrentHashMap<>(),
+				new HoldRegistry(), new ConcurrentHashMap<>(), CustomerQuotaLimiter.unlimited(), new HoldIdAllocator(),
+				new DynamicPricer(PricingPolicy.FIXED, new FeeSchedule(500, 100, 0)), AuditLog.getDefault(),
+				scheduler.getClock());
+		reporter = new SalesReporter(TimeUnit.MINUTES.toMillis(1), 5, scheduler.getClock());
+		ticketService.addCommitListener(reporter);
+		eventId = ticketService.createEvent(new EventInput("fees", ZonedDateTime.now(), 120,
+				Arrays.asList(new LevelInput("l1", 50.0, 2, 5)), 30)).getId();
+		SeatHold first = ticketService.findAndHoldSeats(eventId, 2, Optional.empty(), Optional.empty(), "a@b.com");
+		SeatHold second = ticketService.findAndHoldSeats(eventId, 1, Optional.empty(), Optional.empty(), "b@c.com");
+		String reservationId = ticketService.reserveSeats(first.getId(), "a@b.com");
+		ticketService.reserveSeats(second.getId(), "b@c.com");
+		SalesReport report = reporter.getReport(eventId);
+		assertEquals(15000, report.getLevel(1).getRevenueCents());
+		// an order fee for each booking and a seat fee for each seat
+		assertEquals(1300, report.getFeeCents());
+		assertEquals(16300, report.getRevenueCents());
+
+		ticketService.cancelReservation(eventId, reservationId, "a@b.com");
+		report = reporter.getReport(eventId);
+		assertEquals(5000, report.getLevel(1).getRevenueCents());
+		assertEquals(5600, report.getRevenueCents());
+		// a reporter added later is told of the reservations there are
+		SalesReporter late = new SalesReporter();
+		ticketService.addCommitListener(late);
+		assertEquals(5600, late.getReport(eventId).getRevenueCents());
+	}
+
+	@Test
+	public void testShouldNotCountExpiredHoldsAsSales() {
+		ticketService.findAndHoldSeats(eventId, 5, Optional.empty(), Optional.empty(), "a@b.com");
+		scheduler.advance(1, TimeUnit.MINUTES);
+		SalesReport report = reporter.getReport(eventId);
+		assertEquals(0, report.getSoldSeats());
+		assertEquals(0, report.getHeldSeats());
+		assertEquals(5, report.getLevel(1).getSeatsHeldTotal());
+		assertEquals(0, report.getConversion(), 0);
+	}
+
+	@Test
+	public void testShouldBucketSalesVelocity() {
+		book(2);
+		scheduler.advance(1, TimeUnit.MINUTES);
+		book(3);
+		book(1);
+		scheduler.advance(2, TimeUnit.MINUTES);
+		book(4);
+		// the last 5 minutes up to minute 3, the first one before the start
+		assertArrayEquals(new long[] { 0, 2, 4, 0, 4 }, reporter.getReport(eventId).getSoldPerBucket());
+		scheduler.advance(4, TimeUnit.MINUTES);
+		// minutes 3 to 7, minute 7 reuses the slot of minute 2
+		book(1);
+		assertArrayEquals(new long[] { 4, 0, 0, 0, 1 }, reporter.getReport(eventId).getSoldPerBucket());
+	}
+
+	@Test
+	public void testShouldForgetRemovedEvents() {
+		ticketService.exportEvent(eventId);
+		try {
+			reporter.getReport(eventId);
+			fail();
+		} catch (NotFoundException ex) {
+			// gone
+		}
+	}
+
+	private void book(int seats) {
+		SeatHold hold = ticketService.findAndHoldSeats(eventId, seats, Optional.empty(), Optional.empty(), "a@b.com");
+		ticketService.reserveSeats(hold.getId(), "a@b.com");
+	}
+}
@@ -0,0 +1,30 @@
+package com.ticketapp.util;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class MoneyTest {
+
+	@Test
+	public void testShouldConvertToCents() {
+		assertEquals(1205, Money.toCents(12.05));
+		assertEquals(101, Money.toCents(1.005));
+		assertEquals(0, Money.toCents(null));
+	}
+
+	@Test
+	public void testShouldRoundHalfUp() {
+		assertEquals(150, Money.percentOf(1000, 1500));
+		assertEquals(1, Money.percentOf(5, 1000));
+		assertEquals(0, Money.percentOf(4, 1000));
+		assertEquals(1235, Money.multiply(1000, 1.2345));
+	}
+
+	@Test
+	public void testShouldFormat() {
+		assertEquals("12.05", Money.format(1205));
+		assertEquals("0.00", Money.format(0));
+		assertEquals("-1.50", Money.format(-150));
+	}
+}
@@ -0,0 +1,99 @@
+package com.ticketapp.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class ThreadModeTest {
+
+	private static final long TIMEOUT = 30000;
+
+	@Test
+	public void testPlatformThreadsShouldBeNamedDaemons() {
+		Thread thread = ThreadMode.PLATFORM.newThreadFactory("worker-").newThread(() -> {
+		});
+		assertEquals("worker-0", thread.getName());
+		assertTrue(thread.isDaemon());
+		assertTrue(ThreadMode.PLATFORM.isAvailable());
+	}
+
+	@Test
+	public void testVirtualModeShouldNeedJdk21() {
+		boolean jdk21 = hasVirtualThreads();
+		assertEquals(jdk21, ThreadMode.VIRTUAL.isAvailable());
+		if (!jdk21) {
+			try {
+				ThreadMode.VIRTUAL.newRequestExecutor(1);
+				fail();
+			} catch (UnsupportedOperationException ex) {
+				// before JDK 21
+			}
+		}
+	}
+
+	@Test(timeout = TIMEOUT)
+	public void testShouldRunThousandsOfBlockedRequestsOnVirtualThreads() throws Exception {
+		assumeTrue(ThreadMode.VIRTUAL.isAvailable());
+		Method isVirtual = Thread.class.getMethod("isVirtual");
+		ExecutorService requests = ThreadMode.VIRTUAL.newRequestExecutor(0);
+		int callers = 10000;
+		CountDownLatch blocked = new CountDownLatch(callers);
+		CountDownLatch release = new CountDownLatch(1);
+		AtomicInteger virtual = new AtomicInteger();
+		for (int i = 0; i < callers; i++) {
+			requests.execute(() -> {
+				try {
+					if ((Boolean) isVirtual.invoke(Thread.currentThread())) {
+						virtual.incrementAndGet();
+					}
+					blocked.countDown();
+					release.await();
+				} catch (Exception e) {
+					throw new IllegalStateException(e);
+				}
+			});
+		}
+		// every one of them blocked at once, a platform pool would need as many threads
+		assertTrue(blocked.await(TIMEOUT, TimeUnit.MILLISECONDS));
+		release.countDown();
+		requests.shutdown();
+		assertTrue(requests.awaitTermination(TIMEOUT, TimeUnit.MILLISECONDS));
+		assertEquals(callers, virtual.get());
+	}
+
+	@Test(timeout = TIMEOUT)
+	public void testSchedulerShouldRunTasks() throws Exception {
+		for (ThreadMode mode : ThreadMode.values()) {
+			if (!mode.isAvailable()) {
+				continue;
+			}
+			ScheduledExecutorService scheduler = mode.newScheduler(1);
+			try {
+				assertEquals(mode.name(), scheduler.schedule(mode::name, 10, TimeUnit.MILLISECONDS).get());
+				assertFalse(scheduler.isShutdown());
+			} finally {
+				scheduler.shutdownNow();
+			}
+		}
+	}
+
+	private static boolean hasVirtualThreads() {
+		try {
+			Thread.class.getMethod("ofVirtual");
+			return true;
+		} catch (NoSuchMethodException e) {
+			return false;
+		}
+	}
+}
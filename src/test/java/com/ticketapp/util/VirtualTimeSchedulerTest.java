@@ -0,0 +1,62 @@
+package com.ticketapp.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class VirtualTimeSchedulerTest {
+
+	private final VirtualTimeScheduler scheduler = new VirtualTimeScheduler(1000);
+	private final List<String> ran = new ArrayList<>();
+
+	@Test
+	public void testShouldRunTasksInOrderOfDueTime() {
+		scheduler.schedule(() -> ran.add("b at " + scheduler.currentTimeMillis()), 20, TimeUnit.MILLISECONDS);
+		scheduler.schedule(() -> ran.add("a at " + scheduler.currentTimeMillis()), 10, TimeUnit.MILLISECONDS);
+		scheduler.schedule(() -> ran.add("c at " + scheduler.currentTimeMillis()), 20, TimeUnit.MILLISECONDS);
+		assertEquals(0, scheduler.advance(9, TimeUnit.MILLISECONDS));
+		assertEquals(3, scheduler.advance(1, TimeUnit.SECONDS));
+		assertEquals(Arrays.asList("a at 1010", "b at 1020", "c at 1020"), ran);
+		assertEquals(2009, scheduler.currentTimeMillis());
+		assertEquals(2009, scheduler.getClock().millis());
+	}
+
+	@Test
+	public void testShouldRepeatPeriodicTasksUntilCancelled() {
+		ScheduledFuture<?> future = scheduler.scheduleWithFixedDelay(() -> ran.add("tick"), 100, 100,
+				TimeUnit.MILLISECONDS);
+		assertEquals(10, scheduler.advance(1, TimeUnit.SECONDS));
+		assertTrue(future.cancel(false));
+		assertEquals(0, scheduler.advance(1, TimeUnit.SECONDS));
+		assertEquals(0, scheduler.getQueueSize());
+	}
+
+	@Test
+	public void testShouldRunTasksScheduledByTasks() throws Exception {
+		ScheduledFuture<Integer> result = scheduler.schedule(() -> {
+			scheduler.execute(() -> ran.add("executed"));
+			return 42;
+		}, 1, TimeUnit.SECONDS);
+		assertFalse(result.isDone());
+		scheduler.advance(1, TimeUnit.SECONDS);
+		assertEquals(42, (int) result.get());
+		assertEquals(Arrays.asList("executed"), ran);
+	}
+
+	@Test
+	public void testShouldDropTasksOnShutdown() {
+		scheduler.schedule(() -> ran.add("never"), 1, TimeUnit.SECONDS);
+		assertEquals(1, scheduler.shutdownNow().size());
+		assertTrue(scheduler.isTerminated());
+		scheduler.advance(1, TimeUnit.SECONDS);
+		assertTrue(ran.isEmpty());
+	}
+}